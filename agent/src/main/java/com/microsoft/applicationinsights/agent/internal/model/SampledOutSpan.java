@@ -0,0 +1,114 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.model;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.glowroot.instrumentation.api.AsyncQuerySpan;
+import org.glowroot.instrumentation.api.AsyncSpan;
+import org.glowroot.instrumentation.api.Getter;
+import org.glowroot.instrumentation.api.QueryMessageSupplier;
+import org.glowroot.instrumentation.api.Setter;
+import org.glowroot.instrumentation.api.Timer;
+import org.glowroot.instrumentation.engine.impl.NopTransactionService;
+
+// spans of sampled out operations, nothing is captured and no telemetry is sent when they end
+class SampledOutSpan implements AsyncSpan {
+
+    static final AsyncSpan SPAN = new SampledOutSpan();
+
+    static final AsyncQuerySpan QUERY_SPAN = new SampledOutQuerySpan();
+
+    @Override
+    public void end() {
+    }
+
+    @Override
+    public void endWithLocationStackTrace(long thresholdNanos) {
+    }
+
+    @Override
+    public void endWithError(Throwable t) {
+    }
+
+    @Override
+    public Timer extend() {
+        return NopTransactionService.TIMER;
+    }
+
+    @Override
+    public void stopSyncTimer() {
+    }
+
+    @Override
+    public Timer extendSyncTimer() {
+        return NopTransactionService.TIMER;
+    }
+
+    @Override
+    public @Nullable Object getMessageSupplier() {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public <R> void propagateToResponse(R response, Setter<R> setter) {
+    }
+
+    @Override
+    @Deprecated
+    public <R> void extractFromResponse(R response, Getter<R> getter) {
+    }
+
+    private static class SampledOutQuerySpan extends SampledOutSpan implements AsyncQuerySpan {
+
+        @Override
+        public void rowNavigationAttempted() {
+        }
+
+        @Override
+        public void incrementCurrRow() {
+        }
+
+        @Override
+        public void setCurrRow(long row) {
+        }
+
+        @Override
+        public long partOneEnd() {
+            return 0;
+        }
+
+        @Override
+        public long partOneEndWithLocationStackTrace(long thresholdNanos) {
+            return 0;
+        }
+
+        @Override
+        public void partTwoEnd() {
+        }
+
+        @Override
+        public @Nullable QueryMessageSupplier getMessageSupplier() {
+            return null;
+        }
+    }
+}
@@ -83,6 +83,9 @@ public class ThreadContextImpl<T> implements ThreadContextPlus {
     @Override
     public QuerySpan startQuerySpan(String type, String dest, String text, QueryMessageSupplier queryMessageSupplier,
                                     TimerName timerName) {
+        if (!sdkBinding.isSampledIn()) {
+            return SampledOutSpan.QUERY_SPAN;
+        }
         return new QuerySpanImpl(sdkBinding.getSdkBridge(), type, dest, text, System.currentTimeMillis(),
                 queryMessageSupplier);
     }
@@ -90,6 +93,9 @@ public class ThreadContextImpl<T> implements ThreadContextPlus {
     @Override
     public QuerySpan startQuerySpan(String type, String dest, String text, long queryExecutionCount,
                                     QueryMessageSupplier queryMessageSupplier, TimerName timerName) {
+        if (!sdkBinding.isSampledIn()) {
+            return SampledOutSpan.QUERY_SPAN;
+        }
         return new QuerySpanImpl(sdkBinding.getSdkBridge(), type, dest, text, System.currentTimeMillis(),
                 queryMessageSupplier);
     }
@@ -97,6 +103,9 @@ public class ThreadContextImpl<T> implements ThreadContextPlus {
     @Override
     public AsyncQuerySpan startAsyncQuerySpan(String type, String dest, String text,
                                               QueryMessageSupplier queryMessageSupplier, TimerName timerName) {
+        if (!sdkBinding.isSampledIn()) {
+            return SampledOutSpan.QUERY_SPAN;
+        }
         return new AsyncQuerySpanImpl(sdkBinding.getSdkBridge(), type, dest, text, System.currentTimeMillis(),
                 queryMessageSupplier);
     }
@@ -107,6 +116,10 @@ public class ThreadContextImpl<T> implements ThreadContextPlus {
         SdkBridge sdkBridge = sdkBinding.getSdkBridge();
         String outgoingSpanId = sdkBridge.propagate(new SdkBridge.Setter<>(setter), carrier,
                 Global.isOutboundW3CEnabled(), Global.isOutboundW3CBackCompatEnabled());
+        // the headers are still propagated so that the callees get the sampled flag
+        if (!sdkBinding.isSampledIn()) {
+            return SampledOutSpan.SPAN;
+        }
         return new OutgoingSpanImpl(sdkBridge, type, text, System.currentTimeMillis(), outgoingSpanId,
                 messageSupplier);
     }
@@ -117,6 +130,9 @@ public class ThreadContextImpl<T> implements ThreadContextPlus {
         SdkBridge sdkBridge = sdkBinding.getSdkBridge();
         String outgoingSpanId = sdkBridge.propagate(new SdkBridge.Setter<>(setter), carrier,
                 Global.isOutboundW3CEnabled(), Global.isOutboundW3CBackCompatEnabled());
+        if (!sdkBinding.isSampledIn()) {
+            return SampledOutSpan.SPAN;
+        }
         return new AsyncOutgoingSpanImpl(sdkBridge, type, text, System.currentTimeMillis(), outgoingSpanId,
                 messageSupplier);
     }
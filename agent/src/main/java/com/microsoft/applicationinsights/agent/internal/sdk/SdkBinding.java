@@ -62,6 +62,10 @@ public class SdkBinding<T> implements BindingResult {
         }
     }
 
+    public boolean isSampledIn() {
+        return requestTelemetryContext == null || sdkBridge.isSampledIn(requestTelemetryContext);
+    }
+
     public void addAuxThreadContextHolder(ThreadContextThreadLocal.Holder auxThreadContextHolder) {
         // since other accesses to auxThreadContextHolders are synchronized, may as well make this one synchronized and
         // then don't need to use a concurrent hash set
@@ -34,6 +34,9 @@ public interface SdkBridge<T> {
 
     void setOperationName(T requestTelemetryContext, String operationName);
 
+    // the sampling decision is taken once when the request starts
+    boolean isSampledIn(T requestTelemetryContext);
+
     String generateChildDependencyTarget(String requestContext, boolean w3c);
 
     <C> String propagate(Setter<C> setter, C carrier, boolean w3c, boolean w3cBackCompat);
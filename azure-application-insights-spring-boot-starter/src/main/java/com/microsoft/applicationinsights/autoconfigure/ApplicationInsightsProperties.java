@@ -24,6 +24,7 @@ package com.microsoft.applicationinsights.autoconfigure;
 import com.microsoft.applicationinsights.autoconfigure.helpers.IkeyResolver;
 import com.microsoft.applicationinsights.channel.concrete.TelemetryChannelBase;
 import com.microsoft.applicationinsights.channel.concrete.inprocess.InProcessTelemetryChannel;
+import com.microsoft.applicationinsights.internal.channel.common.HttpConnectionSettings;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionNetworkOutput;
 import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
@@ -203,6 +204,100 @@ public class ApplicationInsightsProperties {
       this.inProcess = inProcess;
     }
 
+    /** Connection management of the ingestion and QuickPulse clients. */
+    private Connections connections = new Connections();
+
+    public Connections getConnections() {
+      return connections;
+    }
+
+    public void setConnections(Connections connections) {
+      this.connections = connections;
+    }
+
+    static class Connections {
+      /** Maximum number of connections in the shared pool. */
+      private int maxConnections = HttpConnectionSettings.DEFAULT_MAX_CONNECTIONS;
+      /** Maximum number of requests waiting for a connection of the pool. */
+      private int maxPendingAcquires = HttpConnectionSettings.DEFAULT_MAX_PENDING_ACQUIRES;
+      /** How long a request waits for a connection of the pool. */
+      private int pendingAcquireTimeoutInMillis = HttpConnectionSettings.DEFAULT_PENDING_ACQUIRE_TIMEOUT_IN_MILLIS;
+      /** How long a connection can stay idle in the pool before it is closed. */
+      private int maxIdleTimeInSeconds = HttpConnectionSettings.DEFAULT_MAX_IDLE_TIME_IN_SECONDS;
+      /** Keeps connections open between requests. */
+      private boolean keepAlive = true;
+      /** Negotiates HTTP/2 with the endpoints that support it. */
+      private boolean http2 = false;
+      /** Number of TLS sessions kept for resumption, 0 for the JDK default. */
+      private int tlsSessionCacheSize = HttpConnectionSettings.DEFAULT_TLS_SESSION_CACHE_SIZE;
+      /** How long a TLS session can be resumed, 0 for the JDK default. */
+      private int tlsSessionTimeoutInSeconds = HttpConnectionSettings.DEFAULT_TLS_SESSION_TIMEOUT_IN_SECONDS;
+
+      public int getMaxConnections() {
+        return maxConnections;
+      }
+
+      public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+      }
+
+      public int getMaxPendingAcquires() {
+        return maxPendingAcquires;
+      }
+
+      public void setMaxPendingAcquires(int maxPendingAcquires) {
+        this.maxPendingAcquires = maxPendingAcquires;
+      }
+
+      public int getPendingAcquireTimeoutInMillis() {
+        return pendingAcquireTimeoutInMillis;
+      }
+
+      public void setPendingAcquireTimeoutInMillis(int pendingAcquireTimeoutInMillis) {
+        this.pendingAcquireTimeoutInMillis = pendingAcquireTimeoutInMillis;
+      }
+
+      public int getMaxIdleTimeInSeconds() {
+        return maxIdleTimeInSeconds;
+      }
+
+      public void setMaxIdleTimeInSeconds(int maxIdleTimeInSeconds) {
+        this.maxIdleTimeInSeconds = maxIdleTimeInSeconds;
+      }
+
+      public boolean isKeepAlive() {
+        return keepAlive;
+      }
+
+      public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+      }
+
+      public boolean isHttp2() {
+        return http2;
+      }
+
+      public void setHttp2(boolean http2) {
+        this.http2 = http2;
+      }
+
+      public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+      }
+
+      public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+      }
+
+      public int getTlsSessionTimeoutInSeconds() {
+        return tlsSessionTimeoutInSeconds;
+      }
+
+      public void setTlsSessionTimeoutInSeconds(int tlsSessionTimeoutInSeconds) {
+        this.tlsSessionTimeoutInSeconds = tlsSessionTimeoutInSeconds;
+      }
+    }
+
     static class InProcess {
       /**
        * Enables developer mode, all telemetry will be sent immediately without batching.
@@ -25,6 +25,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.autoconfigure.ApplicationInsightsProperties.Channel.Connections;
 import com.microsoft.applicationinsights.autoconfigure.ApplicationInsightsProperties.Channel.InProcess;
 import com.microsoft.applicationinsights.autoconfigure.conditionals.InstrumentationKeyCondition;
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
@@ -34,6 +35,8 @@ import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryModule;
 import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.internal.channel.common.HttpClientFactory;
+import com.microsoft.applicationinsights.internal.channel.common.HttpConnectionSettings;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.perfcounter.PerformanceCounterContainer;
 import com.microsoft.applicationinsights.internal.quickpulse.QuickPulse;
@@ -124,6 +127,9 @@ public class ApplicationInsightsTelemetryAutoConfiguration {
     @Bean
     @DependsOn("internalLogger")
     public TelemetryConfiguration telemetryConfiguration() {
+        // Before anything that sends, the channel and QuickPulse share the pool
+        configureHttpConnections(applicationInsightsProperties.getChannel().getConnections());
+
         TelemetryConfiguration telemetryConfiguration = TelemetryConfiguration.getActiveWithoutInitializingConfig();
         if (StringUtils.isNotEmpty(applicationInsightsProperties.getConnectionString())) {
             telemetryConfiguration.setConnectionString(applicationInsightsProperties.getConnectionString());
@@ -152,6 +158,19 @@ public class ApplicationInsightsTelemetryAutoConfiguration {
         return telemetryConfiguration;
     }
 
+    private void configureHttpConnections(Connections connections) {
+        HttpConnectionSettings settings = new HttpConnectionSettings();
+        settings.setMaxConnections(connections.getMaxConnections());
+        settings.setMaxPendingAcquires(connections.getMaxPendingAcquires());
+        settings.setPendingAcquireTimeoutInMillis(connections.getPendingAcquireTimeoutInMillis());
+        settings.setMaxIdleTimeInSeconds(connections.getMaxIdleTimeInSeconds());
+        settings.setKeepAlive(connections.isKeepAlive());
+        settings.setHttp2(connections.isHttp2());
+        settings.setTlsSessionCacheSize(connections.getTlsSessionCacheSize());
+        settings.setTlsSessionTimeoutInSeconds(connections.getTlsSessionTimeoutInSeconds());
+        HttpClientFactory.INSTANCE.configure(settings);
+    }
+
     // TODO: copy-paste from TelemetryConfigurationFactory, move to TelemetryConfiguration?
     private void initializeComponents(TelemetryConfiguration configuration) {
         List<TelemetryModule> telemetryModules = configuration.getTelemetryModules();
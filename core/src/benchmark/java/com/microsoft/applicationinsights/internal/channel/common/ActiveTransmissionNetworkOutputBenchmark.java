@@ -0,0 +1,158 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compares the throughput of {@link ActiveTransmissionNetworkOutput} on platform and on virtual threads,
+ * against a local stand-in for the ingestion endpoint that is slow to answer.
+ *
+ * Not a micro benchmark harness, but enough to compare both. The arguments are the number of transmissions
+ * of each run and the time the endpoint takes to answer, in milliseconds.
+ */
+public final class ActiveTransmissionNetworkOutputBenchmark {
+    private final static String MOCK_CONTENT_TYPE = "MockContentType";
+    private final static String MOCK_ENCODING_TYPE = "MockContentType";
+
+    private ActiveTransmissionNetworkOutputBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int transmissions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final long responseTimeInMillis = args.length > 1 ? Long.parseLong(args[1]) : 20;
+
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/v2/track", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // drain the batch
+                }
+            }
+            try {
+                Thread.sleep(responseTimeInMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            URL endpoint = new URL("http://localhost:" + server.getAddress().getPort() + "/v2/track");
+
+            // warm up
+            send(endpoint, transmissions, false);
+
+            long platformNanos = send(endpoint, transmissions, false);
+            String virtualThroughput = "not supported by this JVM";
+            if (SDKExecutors.isVirtualThreadsSupported()) {
+                send(endpoint, transmissions, true);
+                virtualThroughput = String.format("%d transmissions/s", toThroughput(transmissions, send(endpoint, transmissions, true)));
+            }
+
+            System.out.println(String.format("%d transmissions, %d ms per response: platform threads %d transmissions/s, virtual threads %s",
+                    transmissions, responseTimeInMillis, toThroughput(transmissions, platformNanos), virtualThroughput));
+        } finally {
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    private static long send(final URL endpoint, int transmissions, boolean virtualThreads) throws InterruptedException {
+        final CountDownLatch sent = new CountDownLatch(transmissions);
+        final AtomicInteger accepted = new AtomicInteger();
+        TransmissionOutput httpOutput = new TransmissionOutput() {
+            @Override
+            public boolean send(Transmission transmission) {
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(transmission.getContent());
+                    }
+                    if (connection.getResponseCode() == 200) {
+                        accepted.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                } catch (IOException e) {
+                    return false;
+                } finally {
+                    sent.countDown();
+                }
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        };
+        ActiveTransmissionNetworkOutput tested = new ActiveTransmissionNetworkOutput(httpOutput, new TransmissionPolicyStateFetcher() {
+            @Override
+            public TransmissionPolicy getCurrentState() {
+                return TransmissionPolicy.UNBLOCKED;
+            }
+        }, transmissions, virtualThreads);
+
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < transmissions; ++i) {
+                if (!tested.send(new Transmission(new byte[1024], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE))) {
+                    throw new IllegalStateException("The network output refused a transmission");
+                }
+            }
+            if (!sent.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Transmissions were not sent in time");
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (accepted.get() != transmissions) {
+                throw new IllegalStateException(String.format("%d transmissions were accepted out of %d", accepted.get(), transmissions));
+            }
+            return elapsed;
+        } finally {
+            tested.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long toThroughput(int transmissions, long nanos) {
+        return transmissions * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+}
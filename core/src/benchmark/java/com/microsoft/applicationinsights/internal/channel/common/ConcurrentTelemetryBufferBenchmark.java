@@ -0,0 +1,124 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+
+/**
+ * Compares {@link ConcurrentTelemetryBuffer} with the {@link TelemetryBuffer} it replaces under the same contention.
+ *
+ * Not a micro benchmark harness, but enough to compare both buffers. The arguments are the number of
+ * producer threads and the number of items each of them adds.
+ */
+public final class ConcurrentTelemetryBufferBenchmark {
+    private final static String MOCK_PROPERTY_NAME = "MockProperty";
+    private final static int MAX_TELEMETRIES_IN_BATCH = 500;
+
+    private static final class CountingSender implements TelemetriesTransmitter<String> {
+        private final AtomicLong itemsSent = new AtomicLong();
+
+        @Override
+        public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+            return true;
+        }
+
+        @Override
+        public boolean sendNow(Collection<String> telemetries) {
+            itemsSent.addAndGet(telemetries.size());
+            return true;
+        }
+
+        @Override
+        public void stop(long timeout, TimeUnit timeUnit) {
+        }
+    }
+
+    private ConcurrentTelemetryBufferBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int itemsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        // Warm up both implementations first
+        run(false, threads, itemsPerThread / 10);
+        run(true, threads, itemsPerThread / 10);
+
+        long lockedNanos = run(false, threads, itemsPerThread);
+        long lockFreeNanos = run(true, threads, itemsPerThread);
+
+        long total = (long) threads * itemsPerThread;
+        System.out.println(String.format("%d threads x %d items: TelemetryBuffer %d ns/item, ConcurrentTelemetryBuffer %d ns/item",
+                threads, itemsPerThread, lockedNanos / total, lockFreeNanos / total));
+    }
+
+    private static long run(boolean lockFree, int threads, final int itemsPerThread) throws InterruptedException {
+        CountingSender sender = new CountingSender();
+        final TelemetryBuffer<String> buffer = lockFree
+                ? new ConcurrentTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(MAX_TELEMETRIES_IN_BATCH), createEnforcerWithCurrentValue(5))
+                : new TelemetryBuffer<>(sender, createEnforcerWithCurrentValue(MAX_TELEMETRIES_IN_BATCH), createEnforcerWithCurrentValue(5));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; ++i) {
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < itemsPerThread; ++j) {
+                            buffer.add("mockTelemetry");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        buffer.flush();
+        long elapsed = System.nanoTime() - startTime;
+
+        long expected = (long) threads * itemsPerThread;
+        if (sender.itemsSent.get() != expected) {
+            throw new IllegalStateException(String.format("%d items were sent out of %d", sender.itemsSent.get(), expected));
+        }
+        return elapsed;
+    }
+
+    private static LimitsEnforcer createEnforcerWithCurrentValue(int currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(MOCK_PROPERTY_NAME, 1, 1000, 20, currentValue);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunctions;
+
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Posts batches to a local stand-in for the ingestion endpoint, through the pool of {@link HttpClientFactory}
+ * and with a new connection per request as the clients did before the pool.
+ *
+ * Not a micro benchmark harness, but enough to see what the reused connections save. The argument is the
+ * number of requests of each run.
+ */
+public final class HttpClientFactoryBenchmark {
+    private static final byte[] BATCH = new byte[16 * 1024];
+    private static final byte[] RESPONSE = "{\"itemsReceived\":1,\"itemsAccepted\":1,\"errors\":[]}".getBytes();
+
+    private HttpClientFactoryBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        // It keeps connections alive like the real endpoint
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v2/track", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // drain the batch
+                }
+            }
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(RESPONSE);
+            }
+        });
+        server.start();
+
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        ConnectionProvider pooled = HttpClientFactory.createConnectionProvider(new HttpConnectionSettings());
+        ConnectionProvider unpooled = ConnectionProvider.newConnection();
+        try {
+            URI endpoint = URI.create("http://localhost:" + server.getAddress().getPort() + "/v2/track");
+            ExchangeFunction pooledExchange = ExchangeFunctions.create(new ReactorClientHttpConnector(
+                    HttpClientFactory.createHttpClient(pooled, new HttpConnectionSettings(), metrics)));
+            ExchangeFunction unpooledExchange = ExchangeFunctions.create(new ReactorClientHttpConnector(HttpClient.create(unpooled)));
+
+            // warm up
+            post(pooledExchange, endpoint, 20);
+            post(unpooledExchange, endpoint, 20);
+
+            long pooledNanos = post(pooledExchange, endpoint, requests);
+            long unpooledNanos = post(unpooledExchange, endpoint, requests);
+
+            System.out.println(String.format("%d requests: pooled %d us/request over %d connections, connection per request %d us/request",
+                    requests, TimeUnit.NANOSECONDS.toMicros(pooledNanos / requests), metrics.getTotalConnectionsOpened(),
+                    TimeUnit.NANOSECONDS.toMicros(unpooledNanos / requests)));
+        } finally {
+            pooled.dispose();
+            unpooled.dispose();
+            server.stop(0);
+        }
+    }
+
+    private static long post(ExchangeFunction exchange, URI endpoint, int requests) {
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; ++i) {
+            ClientRequest request = ClientRequest.create(HttpMethod.POST, endpoint)
+                    .header("Content-Type", "application/x-json-stream")
+                    .body(BodyInserters.fromObject(BATCH))
+                    .build();
+            ClientResponse response = exchange.exchange(request).block();
+            if (response.statusCode().value() != 200) {
+                throw new IllegalStateException("The endpoint answered " + response.statusCode());
+            }
+            response.bodyToMono(String.class).block();
+        }
+        return System.nanoTime() - start;
+    }
+}
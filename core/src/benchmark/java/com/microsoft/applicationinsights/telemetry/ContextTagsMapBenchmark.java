@@ -0,0 +1,95 @@
+package com.microsoft.applicationinsights.telemetry;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.microsoft.applicationinsights.extensibility.context.ContextTagKeys;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compares the slots of {@link ContextTagsMap} with the map of strings they replace, in time and allocated bytes.
+ *
+ * Not a micro benchmark harness, but enough to compare both. The argument is the number of contexts to fill.
+ */
+public final class ContextTagsMapBenchmark {
+    private ContextTagsMapBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        String[] keys = {
+                ContextTagKeys.getKeys().getOperationId(), ContextTagKeys.getKeys().getOperationParentId(),
+                ContextTagKeys.getKeys().getOperationName(), ContextTagKeys.getKeys().getCloudRole(),
+                ContextTagKeys.getKeys().getCloudRoleInstance(), ContextTagKeys.getKeys().getInternalSdkVersion(),
+                ContextTagKeys.getKeys().getUserId(), ContextTagKeys.getKeys().getSessionId()};
+        Map<String, Integer> limits = new HashMap<>();
+        for (String key : keys) {
+            limits.put(key, ContextTag.of(key).getMaxLength());
+        }
+
+        // Warm up both first
+        long checksum = fillConcurrentHashMaps(keys, limits, iterations / 10) + fillContextTagsMaps(keys, iterations / 10);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        checksum += fillConcurrentHashMaps(keys, limits, iterations);
+        long mapNanos = System.nanoTime() - start;
+        long mapBytes = allocatedBytes() - allocatedBefore;
+
+        allocatedBefore = allocatedBytes();
+        start = System.nanoTime();
+        checksum += fillContextTagsMaps(keys, iterations);
+        long slotsNanos = System.nanoTime() - start;
+        long slotsBytes = allocatedBytes() - allocatedBefore;
+
+        // Both are filled for the warm up and for the measure
+        if (checksum != 2 * 4L * keys.length * (iterations + iterations / 10)) {
+            throw new IllegalStateException("The maps did not return the values they were given");
+        }
+        System.out.println(String.format("%d tags x %d contexts: ConcurrentHashMap %d ns, %d bytes per context; ContextTagsMap %d ns, %d bytes per context",
+                keys.length, iterations, mapNanos / iterations, mapBytes / iterations, slotsNanos / iterations, slotsBytes / iterations));
+    }
+
+    private static long fillConcurrentHashMaps(String[] keys, Map<String, Integer> limits, int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; ++i) {
+            ConcurrentMap<String, String> tags = new ConcurrentHashMap<>();
+            for (String key : keys) {
+                String value = StringUtils.trim("value");
+                if (limits.containsKey(key)) {
+                    value = StringUtils.truncate(value, limits.get(key));
+                }
+                tags.put(key, value);
+            }
+            for (String key : keys) {
+                checksum += tags.get(key).length() - 1;
+            }
+        }
+        return checksum;
+    }
+
+    private static long fillContextTagsMaps(String[] keys, int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; ++i) {
+            ContextTagsMap tags = new ContextTagsMap();
+            for (String key : keys) {
+                tags.put(key, "value");
+            }
+            for (String key : keys) {
+                checksum += tags.get(key).length() - 1;
+            }
+        }
+        return checksum;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
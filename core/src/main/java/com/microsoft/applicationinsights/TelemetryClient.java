@@ -23,17 +23,18 @@ package com.microsoft.applicationinsights;
 
 import java.util.Date;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
+import com.microsoft.applicationinsights.channel.TelemetrySampler;
 import com.microsoft.applicationinsights.common.CommonUtils;
 import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.extensibility.context.InternalContext;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
@@ -65,7 +66,6 @@ public class TelemetryClient {
     private static final Object TELEMETRY_STOP_HOOK_LOCK = new Object();
     private static final Object TELEMETRY_CONTEXT_LOCK = new Object();
 
-    private static AtomicLong generateCounter = new AtomicLong(0);
     /**
      * Initializes a new instance of the TelemetryClient class. Send telemetry with the specified configuration.
      * @param configuration The configuration this instance will work with.
@@ -393,10 +393,6 @@ public class TelemetryClient {
      */
     public void track(Telemetry telemetry) {
 
-        if (generateCounter.incrementAndGet() % 10000 == 0) {
-            InternalLogger.INSTANCE.info("Total events generated till now %d", generateCounter.get());
-        }
-
         if (telemetry == null) {
             throw new IllegalArgumentException("telemetry item cannot be null");
         }
@@ -428,13 +424,28 @@ public class TelemetryClient {
             }
         }
 
+        // With a head sampler, telemetry that already carries its operation id is sampled before any enrichment
+        // is paid for, the rest is sampled once the initializers had the chance to set the operation id.
+        TelemetrySampler headSampler = configuration.getHeadSampler();
+        boolean sampledAtHead = false;
+        if (headSampler != null && !StringUtils.isEmpty(telemetry.getContext().getOperation().getId())) {
+            if (!isSampledInAtHead(headSampler, telemetry, false)) {
+                return;
+            }
+            sampledAtHead = true;
+        }
+
         activateInitializers(telemetry);
 
         if (StringUtils.isEmpty(telemetry.getContext().getInstrumentationKey())) {
             throw new IllegalArgumentException("Instrumentation key cannot be undefined.");
         }
 
-        if (!activateProcessors(telemetry)) {
+        if (headSampler != null && !sampledAtHead && !isSampledInAtHead(headSampler, telemetry, true)) {
+            return;
+        }
+
+        if (!activateProcessors(telemetry, headSampler != null)) {
             return;
         }
 
@@ -476,21 +487,86 @@ public class TelemetryClient {
         }
     }
 
-    private boolean activateProcessors(Telemetry telemetry) {
+    /**
+     * Samples at the head of the pipeline, with the fixed rate sampling processors first and then the head of
+     * pipeline sampler, in the order they used to run.
+     *
+     * Both fail open: an exception keeps the telemetry, as it always did for processors.
+     * Telemetry sampled out by a processor is not handed to QuickPulse, as before. Telemetry sampled out by the
+     * head of pipeline sampler still is, so the live metrics keep counting the population the channel's sampler saw.
+     * It is initialized first like the rest, which is only paid for while QuickPulse collects.
+     *
+     * @param initialized True when the telemetry initializers already ran
+     */
+    private boolean isSampledInAtHead(TelemetrySampler sampler, Telemetry telemetry, boolean initialized) {
         for (TelemetryProcessor processor : configuration.getTelemetryProcessors()) {
+            if (processor instanceof FixedRateSamplingTelemetryProcessor && !process(processor, telemetry)) {
+                return false;
+            }
+        }
+
+        try {
+            if (sampler.isSampledIn(telemetry)) {
+                return true;
+            }
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
             try {
-                if (!processor.process(telemetry)) {
-                    return false;
-                }
+                InternalLogger.INSTANCE.error("Exception while sampling telemetry: '%s'", t.toString());
             } catch (ThreadDeath td) {
                 throw td;
-            } catch (Throwable t) {
-                try {
-                    InternalLogger.INSTANCE.error("Exception while processing telemetry: '%s'",t.toString());                } catch (ThreadDeath td) {
-                    throw td;
-                } catch (Throwable t2) {
-                    // chomp
-                }
+            } catch (Throwable t2) {
+                // chomp
+            }
+            return true;
+        }
+
+        if (!initialized) {
+            if (!QuickPulseDataCollector.INSTANCE.isEnabled()) {
+                return false;
+            }
+            activateInitializers(telemetry);
+        }
+
+        try {
+            QuickPulseDataCollector.INSTANCE.add(telemetry);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+        }
+
+        return false;
+    }
+
+    /**
+     * @param sampledAtHead True when the fixed rate sampling processors were already applied at the head of the pipeline
+     */
+    private boolean activateProcessors(Telemetry telemetry, boolean sampledAtHead) {
+        for (TelemetryProcessor processor : configuration.getTelemetryProcessors()) {
+            if (sampledAtHead && processor instanceof FixedRateSamplingTelemetryProcessor) {
+                continue;
+            }
+
+            if (!process(processor, telemetry)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean process(TelemetryProcessor processor, Telemetry telemetry) {
+        try {
+            return processor.process(telemetry);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Exception while processing telemetry: '%s'",t.toString());            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
             }
         }
 
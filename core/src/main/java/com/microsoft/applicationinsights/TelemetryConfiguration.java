@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights;
 
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
+import com.microsoft.applicationinsights.channel.TelemetrySampler;
 import com.microsoft.applicationinsights.channel.concrete.nop.NopTelemetryChannel;
 import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
@@ -62,6 +63,8 @@ public final class TelemetryConfiguration {
 
     private TelemetryChannel channel;
 
+    private volatile TelemetrySampler headSampler;
+
     private boolean trackingIsDisabled = false;
 
     /**
@@ -131,6 +134,34 @@ public final class TelemetryConfiguration {
         this.channel = channel;
     }
 
+    /**
+     * Gets the sampler that {@link com.microsoft.applicationinsights.TelemetryClient} consults at the head of
+     * the 'track' pipeline, null when sampling is left to the channel.
+     * @return The head of pipeline sampler.
+     */
+    public TelemetrySampler getHeadSampler() {
+        return headSampler;
+    }
+
+    /**
+     * Sets the sampler that {@link com.microsoft.applicationinsights.TelemetryClient} consults at the head of
+     * the 'track' pipeline.
+     *
+     * Telemetry that already carries an operation id is sampled before the telemetry initializers and
+     * processors run, so sampled out telemetry does not pay for its enrichment. Other telemetry is sampled
+     * right after the initializers. The channel should not be given the same sampler, otherwise telemetry
+     * is sampled twice. The {@link com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor}
+     * instances of the processors are applied at the same point, without a head sampler they run with the other
+     * processors.
+     *
+     * A sampler that throws keeps the telemetry. Telemetry it samples out is still handed to QuickPulse, once
+     * the telemetry initializers ran.
+     * @param headSampler The sampler, or null to disable head of pipeline sampling.
+     */
+    public void setHeadSampler(TelemetrySampler headSampler) {
+        this.headSampler = headSampler;
+    }
+
     /**
      * Gets value indicating whether sending of telemetry to Application Insights is disabled.
      *
@@ -23,9 +23,12 @@ package com.microsoft.applicationinsights.channel.concrete;
 
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -37,7 +40,13 @@ import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.ConfiguredTransmitterFactory;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.channel.TransmitterFactory;
+import com.microsoft.applicationinsights.internal.channel.common.ChannelStatistics;
+import com.microsoft.applicationinsights.internal.channel.common.ConcurrentTelemetryBuffer;
+import com.microsoft.applicationinsights.internal.channel.common.DroppedTelemetryCounters;
+import com.microsoft.applicationinsights.internal.channel.common.OverloadPolicy;
+import com.microsoft.applicationinsights.internal.channel.common.PayloadSizeEstimator;
 import com.microsoft.applicationinsights.internal.channel.common.TelemetryBuffer;
+import com.microsoft.applicationinsights.internal.channel.common.TelemetryLane;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
 import com.microsoft.applicationinsights.internal.util.Sanitizer;
@@ -53,6 +62,10 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
     public static final int DEFAULT_FLUSH_BUFFER_TIMEOUT_IN_SECONDS = 5;
     public static final int MIN_MAX_TELEMETRY_BUFFER_CAPACITY = 1;
     public static final int MAX_MAX_TELEMETRY_BUFFER_CAPACITY = 1000;
+    public static final int MAX_MAX_TELEMETRY_BUFFER_CAPACITY_WITH_BATCH_SIZE_LIMIT = 10000;
+    public static final int DEFAULT_MAX_BATCH_SIZE_IN_KB = 512;
+    public static final int MIN_MAX_BATCH_SIZE_IN_KB = 16;
+    public static final int MAX_MAX_BATCH_SIZE_IN_KB = 16384;
     public static final int MIN_FLUSH_BUFFER_TIMEOUT_IN_SECONDS = 1;
     public static final int MAX_FLUSH_BUFFER_TIMEOUT_IN_SECONDS = 300;
     public static final String DEVELOPER_MODE_SYSTEM_PROPRETY_NAME = "APPLICATION_INSIGHTS_DEVELOPER_MODE";
@@ -63,11 +76,35 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
     public static final String DEVELOPER_MODE_NAME = "DeveloperMode";
     public static final String ENDPOINT_ADDRESS_NAME = "EndpointAddress";
     public static final String MAX_TRANSMISSION_STORAGE_CAPACITY_NAME = "MaxTransmissionStorageFilesCapacityInMB";
+    /**
+     * @deprecated The number of items is no longer logged, it is exposed by {@link ChannelStatistics} over JMX
+     */
+    @Deprecated
     public static final int LOG_TELEMETRY_ITEMS_MODULUS = 10000;
     public static final String THROTTLING_ENABLED_NAME = "Throttling";
+    public static final String CONCURRENT_BUFFER_NAME = "ConcurrentBuffer";
+    public static final String MAX_BATCH_SIZE_IN_KB_NAME = "MaxBatchSizeInKB";
+    public static final String OVERLOAD_POLICY_NAME = "OverloadPolicy";
+    public static final String OVERLOAD_BLOCK_TIMEOUT_IN_MILLIS_NAME = "OverloadBlockTimeoutInMillis";
+    public static final String OVERLOAD_SAMPLING_PERCENTAGE_NAME = "OverloadSamplingPercentage";
+    public static final int MAX_OVERLOAD_BLOCK_TIMEOUT_IN_MILLIS = 60000;
+    public static final String MAX_IN_FLIGHT_REQUESTS_NAME = "MaxInFlightRequests";
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+    public static final int MIN_MAX_IN_FLIGHT_REQUESTS = 1;
+    public static final int MAX_MAX_IN_FLIGHT_REQUESTS = 1024;
+    public static final String SEGMENTED_TRANSMISSION_STORAGE_NAME = "SegmentedTransmissionStorage";
+    public static final String MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND_NAME = "MaxCatchUpBandwidthInKBPerSecond";
+    public static final int DEFAULT_MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND = 1024;
+    public static final int MIN_MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND = 1;
+    public static final int MAX_MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND = 1024 * 1024;
+    public static final String PRIORITY_LANES_NAME = "PriorityLanes";
+    public static final String SHUTDOWN_DEADLINE_IN_SECONDS_NAME = "ShutdownDeadlineInSeconds";
+    public static final int DEFAULT_SHUTDOWN_DEADLINE_IN_SECONDS = 10;
+    public static final int MIN_SHUTDOWN_DEADLINE_IN_SECONDS = 1;
+    public static final int MAX_SHUTDOWN_DEADLINE_IN_SECONDS = 300;
+    public static final String DEFERRED_SERIALIZATION_NAME = "DeferredSerialization";
 
     private TransmitterFactory transmitterFactory;
-    private AtomicLong itemsSent = new AtomicLong(0);
 
     protected boolean stopped = false;
     protected boolean isInitailized = false;
@@ -76,8 +113,35 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
     protected volatile TelemetrySampler telemetrySampler;
     protected TelemetryBuffer<T> telemetryBuffer;
 
+    // One buffer per lane when lanes are enabled, 'telemetryBuffer' is then the buffer of the default lane
+    private Map<TelemetryLane, TelemetryBuffer<T>> laneBuffers;
+
     private boolean developerMode = false;
 
+    private boolean concurrentBuffer = false;
+
+    private int maxBatchSizeInBytes = 0;
+
+    private final PayloadSizeEstimator payloadSizeEstimator = new PayloadSizeEstimator();
+
+    private OverloadPolicy overloadPolicy = OverloadPolicy.DEFAULT;
+
+    private final DroppedTelemetryCounters droppedTelemetryCounters = new DroppedTelemetryCounters();
+
+    private final ChannelStatistics statistics = new ChannelStatistics(droppedTelemetryCounters);
+
+    private int maxInFlightRequests = 0;
+
+    private boolean segmentedTransmissionStorage = false;
+
+    private int maxCatchUpBandwidthInKBPerSecond = 0;
+
+    private boolean priorityLanes = false;
+
+    private int shutdownDeadlineInSeconds = 0;
+
+    private boolean deferredSerialization = false;
+
     private TelemetryConfiguration configuration;
 
     public TelemetryChannelBase(TelemetryConfiguration configuration) {
@@ -161,6 +225,10 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
 
         if (namesAndValues != null) {
             throttling = Boolean.parseBoolean(namesAndValues.get(THROTTLING_ENABLED_NAME));
+            concurrentBuffer = Boolean.parseBoolean(namesAndValues.get(CONCURRENT_BUFFER_NAME));
+            segmentedTransmissionStorage = Boolean.parseBoolean(namesAndValues.get(SEGMENTED_TRANSMISSION_STORAGE_NAME));
+            priorityLanes = Boolean.parseBoolean(namesAndValues.get(PRIORITY_LANES_NAME));
+            deferredSerialization = Boolean.parseBoolean(namesAndValues.get(DEFERRED_SERIALIZATION_NAME));
             developerMode = Boolean.parseBoolean(namesAndValues.get(DEVELOPER_MODE_NAME));
             try {
                 String instantRetryValue = namesAndValues.get(INSTANT_RETRY_NAME);
@@ -177,6 +245,35 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
             }
             endpointAddress = namesAndValues.get(ENDPOINT_ADDRESS_NAME);
 
+            String maxBatchSizeValue = namesAndValues.get(MAX_BATCH_SIZE_IN_KB_NAME);
+            if (maxBatchSizeValue != null) {
+                // Batches are cut by size first, so the number of items can go beyond the usual ceiling
+                maxBatchSizeInBytes = createDefaultMaxBatchSizeInKBEnforcer(null).normalizeStringValue(maxBatchSizeValue) * 1024;
+                maxTelemetryBufferCapacityEnforcer = createMaxTelemetryBufferCapacityEnforcerWithBatchSizeLimit(null);
+            }
+
+            String overloadPolicyValue = namesAndValues.get(OVERLOAD_POLICY_NAME);
+            if (overloadPolicyValue != null) {
+                overloadPolicy = new OverloadPolicy(OverloadPolicy.parseType(overloadPolicyValue),
+                        createOverloadBlockTimeoutInMillisEnforcer().normalizeStringValue(namesAndValues.get(OVERLOAD_BLOCK_TIMEOUT_IN_MILLIS_NAME)),
+                        createOverloadSamplingPercentageEnforcer().normalizeStringValue(namesAndValues.get(OVERLOAD_SAMPLING_PERCENTAGE_NAME)));
+            }
+
+            String maxInFlightRequestsValue = namesAndValues.get(MAX_IN_FLIGHT_REQUESTS_NAME);
+            if (maxInFlightRequestsValue != null) {
+                maxInFlightRequests = createDefaultMaxInFlightRequestsEnforcer(null).normalizeStringValue(maxInFlightRequestsValue);
+            }
+
+            String maxCatchUpBandwidthValue = namesAndValues.get(MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND_NAME);
+            if (maxCatchUpBandwidthValue != null) {
+                maxCatchUpBandwidthInKBPerSecond = createDefaultMaxCatchUpBandwidthInKBPerSecondEnforcer(null).normalizeStringValue(maxCatchUpBandwidthValue);
+            }
+
+            String shutdownDeadlineValue = namesAndValues.get(SHUTDOWN_DEADLINE_IN_SECONDS_NAME);
+            if (shutdownDeadlineValue != null) {
+                shutdownDeadlineInSeconds = createDefaultShutdownDeadlineInSecondsEnforcer(null).normalizeStringValue(shutdownDeadlineValue);
+            }
+
             maxTelemetryBufferCapacityEnforcer.normalizeStringValue(namesAndValues.get(MAX_TELEMETRY_BUFFER_CAPACITY_NAME));
             sendIntervalInSecondsEnforcer.normalizeStringValue(namesAndValues.get(FLUSH_BUFFER_TIMEOUT_IN_SECONDS_NAME));
             maxTransmissionStorageCapacity = namesAndValues.get(MAX_TRANSMISSION_STORAGE_CAPACITY_NAME);
@@ -217,12 +314,60 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
         } else {
             telemetriesTransmitter = transmitterFactory.create(endpointAddress, maxTransmissionStorageCapacity, throttling, maxInstantRetry);
         }
-        telemetryBuffer = new TelemetryBuffer<>(telemetriesTransmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
+        if (priorityLanes) {
+            laneBuffers = new EnumMap<>(TelemetryLane.class);
+            for (TelemetryLane lane : TelemetryLane.values()) {
+                laneBuffers.put(lane, createTelemetryBuffer(telemetriesTransmitter.forLane(lane), maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds));
+            }
+            telemetryBuffer = laneBuffers.get(TelemetryLane.DEFAULT);
+        } else {
+            telemetryBuffer = createTelemetryBuffer(telemetriesTransmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
+        }
+
+        statistics.setBufferDepthGauge(this::getNumberOfBufferedTelemetries);
+        statistics.register(getClass().getSimpleName());
 
         setDeveloperMode(developerMode);
         isInitailized = true;
     }
 
+    private TelemetryBuffer<T> createTelemetryBuffer(TelemetriesTransmitter<T> transmitter, LimitsEnforcer maxTelemetryBufferCapacityEnforcer,
+                                                     LimitsEnforcer sendIntervalInSeconds) {
+        TelemetryBuffer<T> buffer;
+        if (concurrentBuffer) {
+            buffer = new ConcurrentTelemetryBuffer<>(transmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
+        } else {
+            buffer = new TelemetryBuffer<>(transmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
+        }
+        ToIntFunction<T> telemetrySizer = getTelemetrySizer();
+        if (maxBatchSizeInBytes > 0 && telemetrySizer != null) {
+            buffer.setMaxBatchSizeInBytes(maxBatchSizeInBytes, telemetrySizer, payloadSizeEstimator);
+        }
+        return buffer;
+    }
+
+    /**
+     * @param telemetry The telemetry that is about to be buffered
+     * @return The buffer of the lane of the telemetry, or the only buffer when lanes are not enabled
+     */
+    protected TelemetryBuffer<T> getTelemetryBuffer(Telemetry telemetry) {
+        Map<TelemetryLane, TelemetryBuffer<T>> buffers = laneBuffers;
+        return buffers == null ? telemetryBuffer : buffers.get(TelemetryLane.of(telemetry));
+    }
+
+    private Collection<TelemetryBuffer<T>> getTelemetryBuffers() {
+        Map<TelemetryLane, TelemetryBuffer<T>> buffers = laneBuffers;
+        return buffers == null ? Collections.singletonList(telemetryBuffer) : buffers.values();
+    }
+
+    private int getNumberOfBufferedTelemetries() {
+        int count = 0;
+        for (TelemetryBuffer<T> buffer : getTelemetryBuffers()) {
+            count += buffer.size();
+        }
+        return count;
+    }
+
     protected synchronized TransmitterFactory<T> getTransmitterFactory() {
         if (transmitterFactory == null) {
             transmitterFactory = createTransmitterFactory();
@@ -230,6 +375,82 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
         return transmitterFactory;
     }
 
+    /**
+     * Gives the uncompressed size in bytes of a buffered telemetry, needed to limit batches by size.
+     * @return null if the channel cannot tell the size of its telemetries, which is the default
+     */
+    protected ToIntFunction<T> getTelemetrySizer() {
+        return null;
+    }
+
+    /**
+     * @return The estimator that is shared by the buffer and the serializer of this channel
+     */
+    protected PayloadSizeEstimator getPayloadSizeEstimator() {
+        return payloadSizeEstimator;
+    }
+
+    /**
+     * @return What the transmitter does with a batch when it is saturated
+     */
+    protected OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * @return The maximum number of requests the non blocking network output keeps in flight,
+     *         0 when transmissions are sent by a pool of threads, which is the default
+     */
+    protected int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    /**
+     * @return True if transmissions that could not be sent are appended to segment files,
+     *         false if each one is saved to its own file, which is the default
+     */
+    protected boolean isSegmentedTransmissionStorage() {
+        return segmentedTransmissionStorage;
+    }
+
+    /**
+     * @return The maximum number of KB per second used to send back what was saved to the disk,
+     *         0 when there is no limit, which is the default
+     */
+    protected int getMaxCatchUpBandwidthInKBPerSecond() {
+        return maxCatchUpBandwidthInKBPerSecond;
+    }
+
+    /**
+     * @return The number of seconds {@link #stop(long, TimeUnit)} has to send or persist everything the channel holds,
+     *         0 when the components are stopped one after the other with the given timeout, which is the default
+     */
+    protected int getShutdownDeadlineInSeconds() {
+        return shutdownDeadlineInSeconds;
+    }
+
+    /**
+     * @return True if {@link #send(Telemetry)} only queues the telemetry, which is then serialized by the channel's threads,
+     *         false if it is serialized by the application thread, which is the default
+     */
+    protected boolean isDeferredSerialization() {
+        return deferredSerialization;
+    }
+
+    /**
+     * @return The number of telemetries, per telemetry type and per lane, that were dropped because the transmitter was saturated
+     */
+    public DroppedTelemetryCounters getDroppedTelemetryCounters() {
+        return droppedTelemetryCounters;
+    }
+
+    /**
+     * @return What the channel counts and measures about itself, also registered as an MBean
+     */
+    public ChannelStatistics getStatistics() {
+        return statistics;
+    }
+
     // @VisibleForTesting
     TelemetryConfiguration getConfiguration() {
         return this.configuration;
@@ -262,6 +483,9 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
 
     /**
      * Stops on going work
+     *
+     * With a shutdown deadline, the given timeout is not used: the buffers are flushed and the transmitter
+     * sends what it can before persisting the rest, all within the deadline.
      */
     @Override
     public synchronized void stop(long timeout, TimeUnit timeUnit) {
@@ -270,7 +494,13 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
                 return;
             }
 
-            telemetriesTransmitter.stop(timeout, timeUnit);
+            if (shutdownDeadlineInSeconds > 0) {
+                flush();
+                telemetriesTransmitter.drainAndStop(shutdownDeadlineInSeconds, TimeUnit.SECONDS);
+            } else {
+                telemetriesTransmitter.stop(timeout, timeUnit);
+            }
+            statistics.unregister();
             stopped = true;
         } catch (ThreadDeath td) {
             throw td;
@@ -296,7 +526,9 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
      *            is higher than the maximum then the maximum will be used
      */
     public void setTransmitBufferTimeoutInSeconds(int transmitBufferTimeoutInSeconds) {
-        telemetryBuffer.setTransmitBufferTimeoutInSeconds(transmitBufferTimeoutInSeconds);
+        for (TelemetryBuffer<T> buffer : getTelemetryBuffers()) {
+            buffer.setTransmitBufferTimeoutInSeconds(transmitBufferTimeoutInSeconds);
+        }
     }
 
     /**
@@ -309,7 +541,9 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
      *            higher than the maximum then the maximum will be used
      */
     public void setMaxTelemetriesInBatch(int maxTelemetriesInBatch) {
-        telemetryBuffer.setMaxTelemetriesInBatch(maxTelemetriesInBatch);
+        for (TelemetryBuffer<T> buffer : getTelemetryBuffers()) {
+            buffer.setMaxTelemetriesInBatch(maxTelemetriesInBatch);
+        }
     }
 
     /**
@@ -317,7 +551,9 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
      */
     @Override
     public void flush() {
-        telemetryBuffer.flush();
+        for (TelemetryBuffer<T> buffer : getTelemetryBuffers()) {
+            buffer.flush();
+        }
     }
 
     /**
@@ -351,13 +587,12 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
             }
         }
 
+        long startTimeInNanos = System.nanoTime();
         if (!doSend(telemetry)) {
             return;
         }
 
-        if (itemsSent.incrementAndGet() % LOG_TELEMETRY_ITEMS_MODULUS == 0) {
-            InternalLogger.INSTANCE.info("items sent till now %d", itemsSent.get());
-        }
+        statistics.onEnqueued(System.nanoTime() - startTimeInNanos);
 
         if (isDeveloperMode()) {
             writeTelemetryToDebugOutput(telemetry);
@@ -383,6 +618,48 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
                 MAX_MAX_TELEMETRY_BUFFER_CAPACITY, DEFAULT_MAX_TELEMETRY_BUFFER_CAPACITY, currentValue);
     }
 
+    protected LimitsEnforcer createMaxTelemetryBufferCapacityEnforcerWithBatchSizeLimit(Integer currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                MAX_TELEMETRY_BUFFER_CAPACITY_NAME, MIN_MAX_TELEMETRY_BUFFER_CAPACITY,
+                MAX_MAX_TELEMETRY_BUFFER_CAPACITY_WITH_BATCH_SIZE_LIMIT, MAX_MAX_TELEMETRY_BUFFER_CAPACITY_WITH_BATCH_SIZE_LIMIT, currentValue);
+    }
+
+    protected LimitsEnforcer createDefaultMaxBatchSizeInKBEnforcer(Integer currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                MAX_BATCH_SIZE_IN_KB_NAME, MIN_MAX_BATCH_SIZE_IN_KB,
+                MAX_MAX_BATCH_SIZE_IN_KB, DEFAULT_MAX_BATCH_SIZE_IN_KB, currentValue);
+    }
+
+    protected LimitsEnforcer createDefaultMaxCatchUpBandwidthInKBPerSecondEnforcer(Integer currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND_NAME, MIN_MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND,
+                MAX_MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND, DEFAULT_MAX_CATCH_UP_BANDWIDTH_IN_KB_PER_SECOND, currentValue);
+    }
+
+    protected LimitsEnforcer createDefaultShutdownDeadlineInSecondsEnforcer(Integer currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                SHUTDOWN_DEADLINE_IN_SECONDS_NAME, MIN_SHUTDOWN_DEADLINE_IN_SECONDS,
+                MAX_SHUTDOWN_DEADLINE_IN_SECONDS, DEFAULT_SHUTDOWN_DEADLINE_IN_SECONDS, currentValue);
+    }
+
+    protected LimitsEnforcer createDefaultMaxInFlightRequestsEnforcer(Integer currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                MAX_IN_FLIGHT_REQUESTS_NAME, MIN_MAX_IN_FLIGHT_REQUESTS,
+                MAX_MAX_IN_FLIGHT_REQUESTS, DEFAULT_MAX_IN_FLIGHT_REQUESTS, currentValue);
+    }
+
+    protected LimitsEnforcer createOverloadBlockTimeoutInMillisEnforcer() {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                OVERLOAD_BLOCK_TIMEOUT_IN_MILLIS_NAME, 0,
+                MAX_OVERLOAD_BLOCK_TIMEOUT_IN_MILLIS, (int) OverloadPolicy.DEFAULT_BLOCK_TIMEOUT_IN_MILLIS, null);
+    }
+
+    protected LimitsEnforcer createOverloadSamplingPercentageEnforcer() {
+        return LimitsEnforcer.createWithClosestLimitOnError(
+                OVERLOAD_SAMPLING_PERCENTAGE_NAME, 0,
+                100, OverloadPolicy.DEFAULT_SAMPLING_PERCENTAGE, null);
+    }
+
     protected LimitsEnforcer createDefaultSendIntervalInSecondsEnforcer(Integer currentValue) {
         return LimitsEnforcer.createWithClosestLimitOnError(
                 FLUSH_BUFFER_TIMEOUT_IN_SECONDS_NAME, MIN_FLUSH_BUFFER_TIMEOUT_IN_SECONDS,
@@ -24,14 +24,17 @@ package com.microsoft.applicationinsights.channel.concrete.inprocess;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
 import com.microsoft.applicationinsights.channel.concrete.TelemetryChannelBase;
 import com.microsoft.applicationinsights.internal.channel.ConfiguredTransmitterFactory;
+import com.microsoft.applicationinsights.internal.channel.common.DeferredSerializationQueue;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.Utf8JsonBuffer;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 /**
  * An implementation of {@link com.microsoft.applicationinsights.channel.TelemetryChannel}
@@ -51,9 +54,21 @@ import java.util.Map;
  * <p>Use application threads to populate the buffer Use channel's threads to send buffers to the
  * server
  *
+ * <p>With 'DeferredSerialization' the application threads only queue the telemetries, which are then
+ * serialized into the buffer by the channel's threads. The channel owns a telemetry once it is sent,
+ * it must not be changed after that.
+ *
  * <p>Created by gupele on 12/17/2014.
  */
-public final class InProcessTelemetryChannel extends TelemetryChannelBase<String> {
+public final class InProcessTelemetryChannel extends TelemetryChannelBase<byte[]> {
+    // Buffers that grew beyond that size for an unusual item are not kept by the thread
+    private final static int MAX_POOLED_JSON_BUFFER_SIZE = 64 * 1024;
+
+    // The application threads reuse their buffer, a thread that is already using it gets a new one
+    private final static ThreadLocal<Utf8JsonBuffer> JSON_BUFFERS = new ThreadLocal<Utf8JsonBuffer>();
+
+    // Null unless serialization is deferred
+    private DeferredSerializationQueue deferredSerializationQueue;
 
     public InProcessTelemetryChannel(TelemetryConfiguration configuration) {
         super(configuration);
@@ -65,6 +80,7 @@ public final class InProcessTelemetryChannel extends TelemetryChannelBase<String
 
     public InProcessTelemetryChannel(TelemetryConfiguration configuration, Map<String, String> channelConfig) {
         super(configuration, channelConfig);
+        initializeDeferredSerialization();
     }
 
     @Deprecated
@@ -88,31 +104,88 @@ public final class InProcessTelemetryChannel extends TelemetryChannelBase<String
     @Deprecated
     public InProcessTelemetryChannel(Map<String, String> namesAndValues) {
         super(namesAndValues);
+        initializeDeferredSerialization();
+    }
+
+    /**
+     * Flushes the data that the channel might have internally, the queued telemetries are serialized first.
+     */
+    @Override
+    public void flush() {
+        if (deferredSerializationQueue != null) {
+            deferredSerializationQueue.drain();
+        }
+        super.flush();
+    }
+
+    @Override
+    public synchronized void stop(long timeout, TimeUnit timeUnit) {
+        if (deferredSerializationQueue != null) {
+            deferredSerializationQueue.stop();
+        }
+        super.stop(timeout, timeUnit);
     }
 
     @Override
     protected boolean doSend(Telemetry telemetry) {
-        StringWriter writer = new StringWriter();
-        JsonTelemetryDataSerializer jsonWriter = null;
+        // Debug output reads the telemetry after it is sent
+        if (deferredSerializationQueue != null && !isDeveloperMode() && deferredSerializationQueue.offer(telemetry)) {
+            return true;
+        }
+        return serializeToBuffer(telemetry);
+    }
+
+    private boolean serializeToBuffer(Telemetry telemetry) {
+        Utf8JsonBuffer buffer = JSON_BUFFERS.get();
+        if (buffer == null) {
+            buffer = new Utf8JsonBuffer();
+        } else {
+            JSON_BUFFERS.set(null);
+        }
+
         try {
-            jsonWriter = new JsonTelemetryDataSerializer(writer);
+            long startTimeInNanos = System.nanoTime();
+            JsonTelemetryDataSerializer jsonWriter = new JsonTelemetryDataSerializer(buffer);
             telemetry.serialize(jsonWriter);
             jsonWriter.close();
-            String asJson = writer.toString();
-            telemetryBuffer.add(asJson);
+            // The buffer is reused for the next item
+            byte[] asJson = buffer.toByteArray();
+            getStatistics().onSerialized(System.nanoTime() - startTimeInNanos);
+            getTelemetryBuffer(telemetry).add(asJson);
             telemetry.reset();
 
         } catch (IOException e) {
             InternalLogger.INSTANCE.error("Failed to serialize Telemetry");
             InternalLogger.INSTANCE.trace("Stack trace is %s", ExceptionUtils.getStackTrace(e));
             return false;
+        } finally {
+            buffer.reset();
+            if (buffer.capacity() <= MAX_POOLED_JSON_BUFFER_SIZE) {
+                JSON_BUFFERS.set(buffer);
+            }
         }
         return true;
     }
 
+    private void initializeDeferredSerialization() {
+        if (!isDeferredSerialization()) {
+            return;
+        }
+
+        DeferredSerializationQueue queue = new DeferredSerializationQueue(this::serializeToBuffer, getStatistics(), DeferredSerializationQueue.DEFAULT_CAPACITY);
+        getStatistics().setSerializationQueueDepthGauge(queue::size);
+        deferredSerializationQueue = queue;
+    }
+
+    @Override
+    protected ToIntFunction<byte[]> getTelemetrySizer() {
+        return asJson -> asJson.length;
+    }
+
     @Override
-    protected ConfiguredTransmitterFactory<String> createTransmitterFactory() {
-        return new InProcessTelemetryTransmitterFactory();
+    protected ConfiguredTransmitterFactory<byte[]> createTransmitterFactory() {
+        return new InProcessTelemetryTransmitterFactory(getPayloadSizeEstimator(), getOverloadPolicy(), getDroppedTelemetryCounters(), getStatistics(),
+                getMaxInFlightRequests(), isSegmentedTransmissionStorage(), getMaxCatchUpBandwidthInKBPerSecond());
     }
 
 }
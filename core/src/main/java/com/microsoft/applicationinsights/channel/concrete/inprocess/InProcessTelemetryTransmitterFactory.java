@@ -26,19 +26,28 @@ import com.microsoft.applicationinsights.internal.channel.ConfiguredTransmitterF
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
-import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.internal.channel.common.ActiveTransmissionFileSystemOutput;
 import com.microsoft.applicationinsights.internal.channel.common.ActiveTransmissionLoader;
 import com.microsoft.applicationinsights.internal.channel.common.ActiveTransmissionNetworkOutput;
+import com.microsoft.applicationinsights.internal.channel.common.AsyncTransmissionNetworkOutput;
+import com.microsoft.applicationinsights.internal.channel.common.ChannelStatistics;
+import com.microsoft.applicationinsights.internal.channel.common.ConcurrencyLimiter;
+import com.microsoft.applicationinsights.internal.channel.common.DrainRateController;
+import com.microsoft.applicationinsights.internal.channel.common.DroppedTelemetryCounters;
 import com.microsoft.applicationinsights.internal.channel.common.ErrorHandler;
 import com.microsoft.applicationinsights.internal.channel.common.GzipTelemetrySerializer;
 import com.microsoft.applicationinsights.internal.channel.common.NonBlockingDispatcher;
+import com.microsoft.applicationinsights.internal.channel.common.OverloadPolicy;
 import com.microsoft.applicationinsights.internal.channel.common.PartialSuccessHandler;
+import com.microsoft.applicationinsights.internal.channel.common.PayloadSizeEstimator;
+import com.microsoft.applicationinsights.internal.channel.common.SegmentedTransmissionLog;
 import com.microsoft.applicationinsights.internal.channel.common.ThrottlingHandler;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionItemsCache;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionNetworkOutput;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionPolicyManager;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionPolicyStateFetcher;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionStorage;
 import com.microsoft.applicationinsights.internal.channel.common.TransmitterImpl;
 
 import javax.annotation.Nullable;
@@ -47,41 +56,99 @@ import javax.annotation.Nullable;
  * Created by gupele on 1/15/2015.
  */
 final class InProcessTelemetryTransmitterFactory implements ConfiguredTransmitterFactory {
+    private final PayloadSizeEstimator payloadSizeEstimator;
+    private final OverloadPolicy overloadPolicy;
+    private final DroppedTelemetryCounters droppedTelemetryCounters;
+    private final ChannelStatistics statistics;
+    private final int maxInFlightRequests;
+    private final boolean segmentedTransmissionStorage;
+    private final int maxCatchUpBandwidthInKBPerSecond;
+
+    InProcessTelemetryTransmitterFactory() {
+        this(null, OverloadPolicy.DEFAULT, new DroppedTelemetryCounters(), null, 0, false, 0);
+    }
+
+    /**
+     * @param payloadSizeEstimator Gets the outcome of every batch compression, may be null.
+     * @param overloadPolicy What the transmitter does with a batch when it is saturated.
+     * @param droppedTelemetryCounters Counts what the overload policy dropped.
+     * @param statistics Gets what the components of the channel count and measure, may be null.
+     * @param maxInFlightRequests When positive, transmissions are sent without blocking threads, with up to that number of requests in flight.
+     * @param segmentedTransmissionStorage When true, transmissions that could not be sent are appended to segment files instead of one file each.
+     * @param maxCatchUpBandwidthInKBPerSecond When positive, limits the KB per second used to send back what was saved to the disk.
+     */
+    InProcessTelemetryTransmitterFactory(@Nullable PayloadSizeEstimator payloadSizeEstimator, OverloadPolicy overloadPolicy,
+                                         DroppedTelemetryCounters droppedTelemetryCounters, @Nullable ChannelStatistics statistics, int maxInFlightRequests,
+                                         boolean segmentedTransmissionStorage, int maxCatchUpBandwidthInKBPerSecond) {
+        this.payloadSizeEstimator = payloadSizeEstimator;
+        this.overloadPolicy = overloadPolicy;
+        this.droppedTelemetryCounters = droppedTelemetryCounters;
+        this.statistics = statistics;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.segmentedTransmissionStorage = segmentedTransmissionStorage;
+        this.maxCatchUpBandwidthInKBPerSecond = maxCatchUpBandwidthInKBPerSecond;
+    }
+
     @Deprecated
     @Override
     public TelemetriesTransmitter create(@Nullable String endpoint, String maxTransmissionStorageCapacity, boolean throttlingIsEnabled, int maxInstantRetries) {
-        final TransmissionPolicyManager transmissionPolicyManager = new TransmissionPolicyManager(throttlingIsEnabled);
-        transmissionPolicyManager.addTransmissionHandler(new ErrorHandler(transmissionPolicyManager));
-        transmissionPolicyManager.addTransmissionHandler(new PartialSuccessHandler(transmissionPolicyManager));
-        transmissionPolicyManager.addTransmissionHandler(new ThrottlingHandler(transmissionPolicyManager));
-        transmissionPolicyManager.setMaxInstantRetries(maxInstantRetries);
+        // The items of the batches are kept for a while, so partially accepted ones are sent again without decompressing them
+        TransmissionItemsCache itemsCache = new TransmissionItemsCache();
+        final TransmissionPolicyManager transmissionPolicyManager = createTransmissionPolicyManager(throttlingIsEnabled, maxInstantRetries, itemsCache);
         // An active object with the network sender
         TransmissionNetworkOutput actualNetworkSender = TransmissionNetworkOutput.create(endpoint, transmissionPolicyManager);
 
-        return finishTransmitterConstruction(maxTransmissionStorageCapacity, transmissionPolicyManager, actualNetworkSender);
+        return finishTransmitterConstruction(maxTransmissionStorageCapacity, transmissionPolicyManager, actualNetworkSender, itemsCache);
     }
 
     @Override
     public TelemetriesTransmitter create(TelemetryConfiguration configuration, String maxTransmissionStorageCapacity, boolean throttlingIsEnabled, int maxInstantRetries) {
+        // The items of the batches are kept for a while, so partially accepted ones are sent again without decompressing them
+        TransmissionItemsCache itemsCache = new TransmissionItemsCache();
+        final TransmissionPolicyManager transmissionPolicyManager = createTransmissionPolicyManager(throttlingIsEnabled, maxInstantRetries, itemsCache);
+        // An active object with the network sender
+        TransmissionNetworkOutput actualNetworkSender = TransmissionNetworkOutput.create(configuration, transmissionPolicyManager);
+
+        return finishTransmitterConstruction(maxTransmissionStorageCapacity, transmissionPolicyManager, actualNetworkSender, itemsCache);
+    }
+
+    private static TransmissionPolicyManager createTransmissionPolicyManager(boolean throttlingIsEnabled, int maxInstantRetries, TransmissionItemsCache itemsCache) {
         final TransmissionPolicyManager transmissionPolicyManager = new TransmissionPolicyManager(throttlingIsEnabled);
         transmissionPolicyManager.addTransmissionHandler(new ErrorHandler(transmissionPolicyManager));
-        transmissionPolicyManager.addTransmissionHandler(new PartialSuccessHandler(transmissionPolicyManager));
+        transmissionPolicyManager.addTransmissionHandler(new PartialSuccessHandler(transmissionPolicyManager, itemsCache));
         transmissionPolicyManager.addTransmissionHandler(new ThrottlingHandler(transmissionPolicyManager));
         transmissionPolicyManager.setMaxInstantRetries(maxInstantRetries);
-        // An active object with the network sender
-        TransmissionNetworkOutput actualNetworkSender = TransmissionNetworkOutput.create(configuration, transmissionPolicyManager);
-
-        return finishTransmitterConstruction(maxTransmissionStorageCapacity, transmissionPolicyManager, actualNetworkSender);
+        return transmissionPolicyManager;
     }
 
-    private TelemetriesTransmitter finishTransmitterConstruction(String maxTransmissionStorageCapacity, TransmissionPolicyManager transmissionPolicyManager, TransmissionNetworkOutput actualNetworkSender) {
+    private TelemetriesTransmitter finishTransmitterConstruction(String maxTransmissionStorageCapacity, TransmissionPolicyManager transmissionPolicyManager,
+                                                                 TransmissionNetworkOutput actualNetworkSender, TransmissionItemsCache itemsCache) {
         TransmissionPolicyStateFetcher stateFetcher = transmissionPolicyManager.getTransmissionPolicyState();
 
-        TransmissionOutput networkSender = new ActiveTransmissionNetworkOutput(actualNetworkSender, stateFetcher);
-
         // An active object with the file system sender
-        TransmissionFileSystemOutput fileSystemSender = new TransmissionFileSystemOutput(null, maxTransmissionStorageCapacity);
-        TransmissionOutput activeFileSystemOutput = new ActiveTransmissionFileSystemOutput(fileSystemSender, stateFetcher);
+        TransmissionStorage fileSystemSender;
+        if (segmentedTransmissionStorage) {
+            fileSystemSender = new SegmentedTransmissionLog(null, maxTransmissionStorageCapacity);
+        } else {
+            fileSystemSender = new TransmissionFileSystemOutput(null, maxTransmissionStorageCapacity);
+        }
+        TransmissionOutput activeFileSystemOutput = new ActiveTransmissionFileSystemOutput(fileSystemSender, stateFetcher, statistics);
+
+        // While the endpoint is overloaded fewer sends are made at the same time, the others go to the disk
+        TransmissionOutput networkSender;
+        ConcurrencyLimiter concurrencyLimiter;
+        if (maxInFlightRequests > 0) {
+            // Requests in flight do not hold threads, what the network gives up on goes to the disk
+            AsyncTransmissionNetworkOutput asyncNetworkSender = new AsyncTransmissionNetworkOutput(actualNetworkSender, activeFileSystemOutput, stateFetcher, maxInFlightRequests);
+            concurrencyLimiter = asyncNetworkSender.getConcurrencyLimiter();
+            networkSender = asyncNetworkSender;
+        } else {
+            ActiveTransmissionNetworkOutput activeNetworkSender = new ActiveTransmissionNetworkOutput(actualNetworkSender, activeFileSystemOutput, stateFetcher);
+            concurrencyLimiter = activeNetworkSender.getConcurrencyLimiter();
+            networkSender = activeNetworkSender;
+        }
+        actualNetworkSender.setConcurrencyLimiter(concurrencyLimiter);
+        actualNetworkSender.setStatistics(statistics);
 
         // The dispatcher works with the two active senders
         TransmissionDispatcher dispatcher = new NonBlockingDispatcher(new TransmissionOutput[]{networkSender, activeFileSystemOutput});
@@ -89,10 +156,24 @@ final class InProcessTelemetryTransmitterFactory implements ConfiguredTransmitte
 
 
         // The loader works with the file system loader as the active one does
-        TransmissionsLoader transmissionsLoader = new ActiveTransmissionLoader(fileSystemSender, stateFetcher, dispatcher);
+        // it is paced by how the network sends go, and woken up when the policy is unblocked.
+        // It waits for the network sender to be under its limit, what is over the limit would go back to the disk
+        DrainRateController drainRateController = new DrainRateController(maxCatchUpBandwidthInKBPerSecond * 1024L);
+        actualNetworkSender.setDrainRateController(drainRateController);
+        ActiveTransmissionLoader transmissionsLoader = new ActiveTransmissionLoader(fileSystemSender, dispatcher, stateFetcher, 1, drainRateController);
+        transmissionsLoader.setConcurrencyLimiter(concurrencyLimiter);
+        transmissionPolicyManager.addUnblockedListener(transmissionsLoader::wakeUp);
+
+        // The Transmitter manage all, what it could not send before a shutdown deadline is persisted right away
+        TransmitterImpl transmitter = new TransmitterImpl(dispatcher, new GzipTelemetrySerializer(payloadSizeEstimator, itemsCache, statistics),
+                transmissionsLoader, overloadPolicy, droppedTelemetryCounters, fileSystemSender);
 
-        // The Transmitter manage all
+        if (statistics != null) {
+            statistics.setPendingBatchesGauge(transmitter::getNumberOfPendingBatches);
+            statistics.setSendsInFlightGauge(concurrencyLimiter::getNumberOfInFlight);
+            statistics.setStorage(fileSystemSender);
+        }
 
-        return new TransmitterImpl(dispatcher, new GzipTelemetrySerializer(), transmissionsLoader);
+        return transmitter;
     }
 }
@@ -24,6 +24,8 @@ package com.microsoft.applicationinsights.internal.channel;
 import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
+import com.microsoft.applicationinsights.internal.channel.common.TelemetryLane;
+
 /**
  * The class is responsible for getting containers of {@link com.microsoft.applicationinsights.telemetry.Telemetry},
  * transform them into {@link com.microsoft.applicationinsights.internal.channel.common.Transmission} and
@@ -50,4 +52,22 @@ public interface TelemetriesTransmitter<T> {
     boolean sendNow(Collection<T> telemetries);
 
     void stop(long timeout, TimeUnit timeUnit);
+
+    /**
+     * Stops within one timeout: what is pending is sent over the network during the first part of it,
+     * what could not be sent by then is persisted.
+     * @param timeout The time the whole shutdown has
+     * @param timeUnit The unit of the timeout
+     */
+    default void drainAndStop(long timeout, TimeUnit timeUnit) {
+        stop(timeout, timeUnit);
+    }
+
+    /**
+     * @param lane The lane of the telemetries that will be sent through the returned transmitter
+     * @return A transmitter that queues what it sends in that lane, this transmitter if it does not keep lanes apart
+     */
+    default TelemetriesTransmitter<T> forLane(TelemetryLane lane) {
+        return this;
+    }
 }
@@ -34,5 +34,14 @@ public interface TransmissionDispatcher {
     void dispatch(Transmission transmission);
 
     void stop(long timeout, TimeUnit timeUnit);
+
+    /**
+     * Stops the outputs within one timeout, rather than giving the timeout to each of them.
+     * @param timeout The time all the outputs have to stop
+     * @param timeUnit The unit of the timeout
+     */
+    default void stopWithin(long timeout, TimeUnit timeUnit) {
+        stop(timeout, timeUnit);
+    }
 }
 
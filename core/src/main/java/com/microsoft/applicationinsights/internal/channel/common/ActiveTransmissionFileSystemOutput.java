@@ -22,12 +22,14 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
 
 import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
@@ -38,21 +40,29 @@ import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
  * Created by gupele on 12/22/2014.
  */
 public final class ActiveTransmissionFileSystemOutput implements TransmissionOutput {
-    private static final AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(1);
-    private final ThreadPoolExecutor threadPool;
+    private static final int MAX_PENDING_TRANSMISSIONS = 1024;
+    private final ExecutorService threadPool;
     private final TransmissionOutput actualOutput;
     private final TransmissionPolicyStateFetcher transmissionPolicy;
-    private final int instanceId = INSTANCE_ID_POOL.getAndIncrement();
+    private final ChannelStatistics statistics;
 
     public ActiveTransmissionFileSystemOutput(TransmissionOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy) {
+        this(actualOutput, transmissionPolicy, null);
+    }
+
+    /**
+     * @param statistics If not null, counts the transmissions that could not be persisted.
+     */
+    public ActiveTransmissionFileSystemOutput(TransmissionOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy, @Nullable ChannelStatistics statistics) {
         Preconditions.checkNotNull(transmissionPolicy, "transmissionPolicy must be a non-null value");
 
         this.actualOutput = actualOutput;
 
         this.transmissionPolicy = transmissionPolicy;
+        this.statistics = statistics;
 
-        threadPool = ThreadPoolUtils.newLimitedThreadPool(1, 3, 20L, 1024);
-        threadPool.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(ActiveTransmissionFileSystemOutput.class, instanceId));
+        // One writer at a time, as the storage is written in order
+        threadPool = SDKExecutors.newBlockingExecutor(ActiveTransmissionFileSystemOutput.class, SDKExecutors.Priority.NORMAL, 1, MAX_PENDING_TRANSMISSIONS);
     }
 
     @Override
@@ -66,13 +76,17 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
             threadPool.execute(new Runnable() {
                 @Override
                 public void run() {
+                    boolean persisted = false;
                     try {
-                        actualOutput.send(transmission);
+                        persisted = actualOutput.send(transmission);
                     } catch (ThreadDeath td) {
                         throw td;
                     } catch (Throwable throwable) {
                         // Avoid un-expected exit of thread
                     }
+                    if (!persisted) {
+                        onDropped();
+                    }
                 }
             });
             return true;
@@ -81,6 +95,7 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
             // Note that currently if we cannot put the job to work we drop
             // the transmission, we need to add internal logging for that case
             // TODO: log
+            onDropped();
         } catch (Exception e) {
             // TODO: log
         }
@@ -88,9 +103,16 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
         return false;
     }
 
+    private void onDropped() {
+        if (statistics != null) {
+            statistics.onDroppedOnStorage();
+        }
+    }
+
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
-        actualOutput.stop(timeout, timeUnit);
+        // Let the pending transmissions reach the output before it is stopped
         ThreadPoolUtils.stop(threadPool, timeout, timeUnit);
+        actualOutput.stop(timeout, timeUnit);
     }
 }
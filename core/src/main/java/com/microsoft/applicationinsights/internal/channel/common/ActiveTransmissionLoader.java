@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -29,12 +30,21 @@ import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 
 /**
  * The class is responsible for loading transmission files that were saved to the disk
  *
  * The class will ask for the oldest transmission file and will hand it to the dispatcher
  *
+ * The threads wait for a transmission to be stored or for the transmission policy to become
+ * unblocked, see {@link #wakeUp()}, instead of polling the disk. The pace at which they go through
+ * the disk is given by a {@link DrainRateController}.
+ *
+ * When a {@link ConcurrencyLimiter} is set, the threads also wait for the network output to be under its
+ * limit before reading the next transmission. Otherwise the transmission would only be given back to the disk,
+ * which wakes the threads up again.
+ *
  * Created by gupele on 12/22/2014.
  */
 public final class ActiveTransmissionLoader implements TransmissionsLoader {
@@ -42,11 +52,12 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
 
     private static final int DEFAULT_NUMBER_OF_THREADS = 1;
 
-    private static final long DEFAULT_SLEEP_INTERVAL_WHEN_NO_TRANSMISSIONS_FOUND_IN_MILLS = 2000;
-    private static final long DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS = 100;
+    // Waiting is cut short by wakeUp(), these are for what is not signaled like files of other processes
+    private static final long DEFAULT_WAIT_INTERVAL_WHEN_NO_TRANSMISSIONS_FOUND_IN_MILLS = 30000;
+    private static final long DEFAULT_WAIT_INTERVAL_WHEN_BLOCKED_IN_MILLS = 1000;
 
     // The helper class that encapsulates the file system access
-    private final TransmissionFileSystemOutput fileSystem;
+    private final TransmissionStorage fileSystem;
 
     // A synchronized flag to let us know when to stop
     private final AtomicBoolean done = new AtomicBoolean(false);
@@ -61,34 +72,58 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
     // The threads that do the work
     private final Thread[] threads;
 
-    private final long sleepIntervalWhenNoTransmissionsFoundInMills;
+    private final long waitIntervalWhenNoTransmissionsFoundInMills;
+
+    private final DrainRateController drainRateController;
+
+    // Null unless the loader waits for the network output to take one more send
+    private volatile ConcurrencyLimiter concurrencyLimiter;
 
-    public ActiveTransmissionLoader(TransmissionFileSystemOutput fileSystem, TransmissionPolicyStateFetcher transmissionPolicy, TransmissionDispatcher dispatcher) {
+    // Counts the calls to wakeUp(), a thread waits only if there was none since it last looked
+    private final Object wakeUpLock = new Object();
+    private long wakeUpCount;
+
+    public ActiveTransmissionLoader(TransmissionStorage fileSystem, TransmissionPolicyStateFetcher transmissionPolicy, TransmissionDispatcher dispatcher) {
         this(fileSystem, dispatcher, transmissionPolicy, DEFAULT_NUMBER_OF_THREADS);
     }
 
-    public ActiveTransmissionLoader(final TransmissionFileSystemOutput fileSystem,
+    public ActiveTransmissionLoader(final TransmissionStorage fileSystem,
                                     final TransmissionDispatcher dispatcher,
                                     final TransmissionPolicyStateFetcher transmissionPolicy,
                                     int numberOfThreads) {
+        this(fileSystem, dispatcher, transmissionPolicy, numberOfThreads, new DrainRateController(0));
+    }
+
+    public ActiveTransmissionLoader(final TransmissionStorage fileSystem,
+                                    final TransmissionDispatcher dispatcher,
+                                    final TransmissionPolicyStateFetcher transmissionPolicy,
+                                    int numberOfThreads,
+                                    DrainRateController drainRateController) {
         Preconditions.checkNotNull(fileSystem, "fileSystem must be a non-null value");
         Preconditions.checkNotNull(dispatcher, "dispatcher must be a non-null value");
         Preconditions.checkNotNull(transmissionPolicy, "transmissionPolicy must be a non-null value");
+        Preconditions.checkNotNull(drainRateController, "drainRateController must be a non-null value");
         Preconditions.checkArgument(numberOfThreads > 0, "numberOfThreads must be a positive number");
         Preconditions.checkArgument(numberOfThreads < MAX_THREADS_ALLOWED, "numberOfThreads must be smaller than " + MAX_THREADS_ALLOWED);
 
-        // Guy: This will probably be changed once we have configuration
-        this.sleepIntervalWhenNoTransmissionsFoundInMills = DEFAULT_SLEEP_INTERVAL_WHEN_NO_TRANSMISSIONS_FOUND_IN_MILLS;
+        this.waitIntervalWhenNoTransmissionsFoundInMills = DEFAULT_WAIT_INTERVAL_WHEN_NO_TRANSMISSIONS_FOUND_IN_MILLS;
 
         this.transmissionPolicyFetcher = transmissionPolicy;
+        this.drainRateController = drainRateController;
 
         this.fileSystem = fileSystem;
         this.dispatcher = dispatcher;
+        fileSystem.setTransmissionStoredListener(new Runnable() {
+            @Override
+            public void run() {
+                wakeUp();
+            }
+        });
         threads = new Thread[numberOfThreads];
         latch = new CountDownLatch(numberOfThreads);
-        final String threadNameFmt = String.format("%s-worker-%%d", ActiveTransmissionLoader.class.getSimpleName());
+        ThreadFactory threadFactory = SDKExecutors.newBlockingThreadFactory(ActiveTransmissionLoader.class);
         for (int i = 0; i < numberOfThreads; ++i) {
-            threads[i] = new Thread(new Runnable() {
+            threads[i] = threadFactory.newThread(new Runnable() {
                 @Override
                 public void run() {
                     latch.countDown();
@@ -96,25 +131,26 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
                     // Avoid un-expected exit of threads
                     while (!done.get()) {
                         try {
+                            long wakeUpsSeen = getWakeUpCount();
                             TransmissionPolicy currentTransmissionState = transmissionPolicyFetcher.getCurrentState();
                             switch (currentTransmissionState) {
                                 case UNBLOCKED:
-                                    fetchNext(true);
+                                    fetchNext(true, wakeUpsSeen);
                                     break;
                                 case BACKOFF:
                                 case BLOCKED_BUT_CAN_BE_PERSISTED:
-                                    Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
+                                    waitForWakeUp(wakeUpsSeen, DEFAULT_WAIT_INTERVAL_WHEN_BLOCKED_IN_MILLS);
                                     break;
 
                                 case BLOCKED_AND_CANNOT_BE_PERSISTED:
                                     // We fetch but don't do anything with the Transmission
                                     // which means that we are cleaning the disk as needed by that policy
-                                    fetchNext(false);
+                                    fetchNext(false, wakeUpsSeen);
                                     break;
 
                                 default:
                                     InternalLogger.INSTANCE.error("Could not find transmission policy '%s'", currentTransmissionState);
-                                    Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
+                                    waitForWakeUp(wakeUpsSeen, DEFAULT_WAIT_INTERVAL_WHEN_BLOCKED_IN_MILLS);
                                     break;
                             }
                         } catch (InterruptedException e) {
@@ -127,8 +163,7 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
                         }
                     }
                 }
-            }, String.format(threadNameFmt, i));
-            threads[i].setDaemon(true);
+            });
         }}
 
     @Override
@@ -152,17 +187,43 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
         return false;
     }
 
+    /**
+     * Lets the threads look for transmissions right away, to be called when one was stored
+     * or when the transmission policy became unblocked.
+     */
+    public void wakeUp() {
+        synchronized (wakeUpLock) {
+            ++wakeUpCount;
+            wakeUpLock.notifyAll();
+        }
+    }
+
+    /**
+     * Used to inject the limiter of the network output the transmissions are dispatched to.
+     *
+     * @param concurrencyLimiter The limiter of the number of sends at the same time.
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
         done.set(true);
         interruptAllThreads();
-        joinAllThreads();
+        joinAllThreads(System.nanoTime() + timeUnit.toNanos(timeout));
     }
 
-    private void joinAllThreads() {
+    // A thread stuck on the disk is not waited for past the deadline
+    private void joinAllThreads(long deadlineInNanos) {
         for (Thread thread : threads) {
             try {
-                thread.join();
+                long remainingInMillis = TimeUnit.NANOSECONDS.toMillis(deadlineInNanos - System.nanoTime());
+                if (remainingInMillis <= 0) {
+                    InternalLogger.INSTANCE.warn("Active transmission loader threads did not stop in time");
+                    break;
+                }
+                thread.join(remainingInMillis);
             } catch (InterruptedException e) {
                 InternalLogger.INSTANCE.error("Interrupted during join of active transmission loader, exception: %s", e.toString());
                 Thread.currentThread().interrupt();
@@ -177,16 +238,40 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
         }
     }
 
-    private void fetchNext(boolean shouldDispatch) throws InterruptedException {
-        Transmission transmission = fileSystem.fetchOldestFile();
+    private void fetchNext(boolean shouldDispatch, long wakeUpsSeen) throws InterruptedException {
+        // The policy is looked at again once the wait is over
+        ConcurrencyLimiter limiter = concurrencyLimiter;
+        if (shouldDispatch && limiter != null && !limiter.awaitCapacity(DEFAULT_WAIT_INTERVAL_WHEN_BLOCKED_IN_MILLS, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+
+        Transmission transmission = fileSystem.fetchOldest();
         if (transmission == null) {
-            Thread.sleep(sleepIntervalWhenNoTransmissionsFoundInMills);
-        } else {
-            if (shouldDispatch) {
-                dispatcher.dispatch(transmission);
+            waitForWakeUp(wakeUpsSeen, waitIntervalWhenNoTransmissionsFoundInMills);
+        } else if (shouldDispatch) {
+            dispatcher.dispatch(transmission);
+
+            long pauseInMillis = drainRateController.onDispatched(transmission.getContent().length);
+            if (pauseInMillis > 0) {
+                Thread.sleep(pauseInMillis);
             }
+        }
+    }
+
+    private long getWakeUpCount() {
+        synchronized (wakeUpLock) {
+            return wakeUpCount;
+        }
+    }
 
-            Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
+    private void waitForWakeUp(long wakeUpsSeen, long timeoutInMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutInMillis;
+        synchronized (wakeUpLock) {
+            long remaining = timeoutInMillis;
+            while (wakeUpCount == wakeUpsSeen && remaining > 0) {
+                wakeUpLock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
         }
     }
 }
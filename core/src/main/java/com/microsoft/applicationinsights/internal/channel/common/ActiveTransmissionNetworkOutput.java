@@ -22,47 +22,72 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
 
 import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
  * Created by gupele on 12/18/2014.
+ *
+ * When a fallback output is given, the threads only send as many transmissions at the same time as
+ * the {@link ConcurrencyLimiter} allows, the others are given to the fallback output while the endpoint
+ * is overloaded. The transmissions that are still queued once the output is stopped are given to the
+ * fallback output too, rather than being dropped.
  */
 public final class ActiveTransmissionNetworkOutput implements TransmissionOutput {
     private final static int DEFAULT_MAX_MESSAGES_IN_BUFFER = 128;
-    private final static int DEFAULT_MIN_NUMBER_OF_THREADS = 7;
     private final static int DEFAULT_MAX_NUMBER_OF_THREADS = 7;
-    private final static long DEFAULT_REMOVE_IDLE_THREAD_TIMEOUT_IN_SECONDS = 60L;
-    private final static AtomicInteger INTSTANCE_ID_POOL = new AtomicInteger(1);
+    private final static int DEFAULT_MAX_NUMBER_OF_VIRTUAL_THREADS = 64;
 
     private final int maxThreads;
-    private final ThreadPoolExecutor outputThreads;
+    private final ExecutorService outputThreads;
     private final TransmissionOutput actualOutput;
+    private final TransmissionOutput fallbackOutput;
     private final TransmissionPolicyStateFetcher transmissionPolicy;
-    private final int instanceId = INTSTANCE_ID_POOL.getAndIncrement();
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    private volatile boolean stopping;
 
     public ActiveTransmissionNetworkOutput(TransmissionOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy) {
-        this(actualOutput, transmissionPolicy, DEFAULT_MAX_MESSAGES_IN_BUFFER);
+        this(actualOutput, null, transmissionPolicy);
+    }
+
+    /**
+     * @param fallbackOutput Gets the transmissions that are over the limit of sends at the same time, may be null.
+     */
+    public ActiveTransmissionNetworkOutput(TransmissionOutput actualOutput, @Nullable TransmissionOutput fallbackOutput, TransmissionPolicyStateFetcher transmissionPolicy) {
+        this(actualOutput, fallbackOutput, transmissionPolicy, DEFAULT_MAX_MESSAGES_IN_BUFFER, SDKExecutors.isVirtualThreadsEnabled());
     }
 
     public ActiveTransmissionNetworkOutput(TransmissionOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy, int maxMessagesInBuffer) {
+        this(actualOutput, null, transmissionPolicy, maxMessagesInBuffer, SDKExecutors.isVirtualThreadsEnabled());
+    }
+
+    ActiveTransmissionNetworkOutput(TransmissionOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy, int maxMessagesInBuffer, boolean virtualThreads) {
+        this(actualOutput, null, transmissionPolicy, maxMessagesInBuffer, virtualThreads);
+    }
+
+    /**
+     * @param virtualThreads True to send on virtual threads, which lets many more sends wait on the network at once
+     */
+    ActiveTransmissionNetworkOutput(TransmissionOutput actualOutput, @Nullable TransmissionOutput fallbackOutput, TransmissionPolicyStateFetcher transmissionPolicy,
+                                    int maxMessagesInBuffer, boolean virtualThreads) {
         Preconditions.checkNotNull(transmissionPolicy, "transmissionPolicy must be a valid non-null value");
 
         this.actualOutput = actualOutput;
+        this.fallbackOutput = fallbackOutput;
         this.transmissionPolicy = transmissionPolicy;
 
-        maxThreads = DEFAULT_MAX_NUMBER_OF_THREADS;
-        outputThreads = ThreadPoolUtils.newLimitedThreadPool(
-                DEFAULT_MIN_NUMBER_OF_THREADS,
-                maxThreads,
-                DEFAULT_REMOVE_IDLE_THREAD_TIMEOUT_IN_SECONDS,
-                maxMessagesInBuffer);
-        outputThreads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(ActiveTransmissionNetworkOutput.class, instanceId));
+        // The sends block on the network, they run on threads of their own rather than on the shared SDK threads
+        maxThreads = virtualThreads ? DEFAULT_MAX_NUMBER_OF_VIRTUAL_THREADS : DEFAULT_MAX_NUMBER_OF_THREADS;
+        outputThreads = SDKExecutors.newBlockingExecutor(ActiveTransmissionNetworkOutput.class, SDKExecutors.Priority.HIGH, maxThreads, maxMessagesInBuffer, virtualThreads);
+        concurrencyLimiter = new ConcurrencyLimiter(maxThreads);
     }
 
     @Override
@@ -75,12 +100,21 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
             outputThreads.execute(new Runnable() {
                 @Override
                 public void run() {
+                    boolean acquired = !stopping && concurrencyLimiter.tryAcquire();
                     try {
-                        actualOutput.send(transmission);
+                        if (!acquired && fallbackOutput != null) {
+                            fallbackOutput.send(transmission);
+                        } else {
+                            actualOutput.send(transmission);
+                        }
                     } catch (ThreadDeath td) {
                         throw td;
                     } catch (Throwable throwable) {
                         // Avoid un-expected exit of thread
+                    } finally {
+                        if (acquired) {
+                            concurrencyLimiter.release();
+                        }
                     }
                 }
             });
@@ -96,6 +130,7 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
 
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
+        stopping = true;
         actualOutput.stop(timeout, timeUnit);
         ThreadPoolUtils.stop(outputThreads, timeout, timeUnit);
     }
@@ -103,5 +138,12 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
     public int getNumberOfMaxThreads() {
         return this.maxThreads;
     }
+
+    /**
+     * @return The limiter that is to be told how the sends go, see {@link TransmissionNetworkOutput#setConcurrencyLimiter(ConcurrencyLimiter)}
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
 }
 
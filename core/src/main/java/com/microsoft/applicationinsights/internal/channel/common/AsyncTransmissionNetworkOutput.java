@@ -0,0 +1,148 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.channel.AsyncTransmissionOutput;
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+/**
+ * A non blocking alternative to {@link ActiveTransmissionNetworkOutput}.
+ *
+ * Instead of handing the {@link Transmission} to a pool of threads that wait for the
+ * response, the request is sent through {@link AsyncTransmissionOutput#sendAsync(Transmission)}
+ * and the response is handled by the thread that receives it. The number of requests
+ * in flight is limited by a {@link ConcurrencyLimiter}, when the limit is reached the transmission
+ * is refused so the dispatcher can give it to the next {@link TransmissionOutput}, the same way
+ * a full queue of {@link ActiveTransmissionNetworkOutput} does.
+ *
+ * A transmission that the network output gives up on once it is in flight is sent to the fallback output.
+ */
+public final class AsyncTransmissionNetworkOutput implements TransmissionOutput {
+    private final AsyncTransmissionOutput actualOutput;
+    private final TransmissionOutput fallbackOutput;
+    private final TransmissionPolicyStateFetcher transmissionPolicy;
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param actualOutput The output that sends the requests.
+     * @param fallbackOutput Gets the transmissions that could not be sent once in flight, may be null.
+     * @param transmissionPolicy The current transmission policy.
+     * @param maxInFlightRequests The maximum number of requests waiting for a response, lowered while the endpoint is overloaded.
+     */
+    public AsyncTransmissionNetworkOutput(AsyncTransmissionOutput actualOutput, @Nullable TransmissionOutput fallbackOutput,
+                                          TransmissionPolicyStateFetcher transmissionPolicy, int maxInFlightRequests) {
+        Preconditions.checkNotNull(actualOutput, "actualOutput must be a valid non-null value");
+        Preconditions.checkNotNull(transmissionPolicy, "transmissionPolicy must be a valid non-null value");
+        Preconditions.checkArgument(maxInFlightRequests > 0, "maxInFlightRequests must be a positive number");
+
+        this.actualOutput = actualOutput;
+        this.fallbackOutput = fallbackOutput;
+        this.transmissionPolicy = transmissionPolicy;
+        this.concurrencyLimiter = new ConcurrencyLimiter(maxInFlightRequests);
+    }
+
+    @Override
+    public boolean send(final Transmission transmission) {
+        if (stopped || transmissionPolicy.getCurrentState() != TransmissionPolicy.UNBLOCKED) {
+            return false;
+        }
+
+        if (!concurrencyLimiter.tryAcquire()) {
+            return false;
+        }
+
+        try {
+            actualOutput.sendAsync(transmission)
+                    .doFinally(signal -> concurrencyLimiter.release())
+                    .subscribe(done -> {
+                        if (!done) {
+                            onGiveUp(transmission);
+                        }
+                    }, error -> {
+                        InternalLogger.INSTANCE.error("Failed to send transmission: '%s'", error.toString());
+                        onGiveUp(transmission);
+                    });
+            return true;
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            concurrencyLimiter.release();
+            try {
+                InternalLogger.INSTANCE.error("Failed to send transmission: '%s'", t.toString());
+                InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Waits for the requests in flight, up to the timeout, before stopping the actual output.
+     */
+    @Override
+    public void stop(long timeout, TimeUnit timeUnit) {
+        stopped = true;
+        try {
+            if (!concurrencyLimiter.awaitNoneInFlight(timeout, timeUnit)) {
+                InternalLogger.INSTANCE.warn("Stopped while %d requests were still in flight", getNumberOfInFlightRequests());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        actualOutput.stop(timeout, timeUnit);
+    }
+
+    public int getMaxInFlightRequests() {
+        return concurrencyLimiter.getMaxLimit();
+    }
+
+    public int getNumberOfInFlightRequests() {
+        return concurrencyLimiter.getNumberOfInFlight();
+    }
+
+    /**
+     * @return The limiter that is to be told how the sends go, see {@link TransmissionNetworkOutput#setConcurrencyLimiter(ConcurrencyLimiter)}
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    private void onGiveUp(Transmission transmission) {
+        if (fallbackOutput != null) {
+            fallbackOutput.send(transmission);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.annotation.Nullable;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+/**
+ * Counts what goes through a telemetry channel and exposes it as an MBean named
+ * 'com.microsoft.applicationinsights:type=ChannelStatistics,name=&lt;channel class&gt;'.
+ *
+ * The counters are {@link LongAdder}s, so counting from many application threads does not contend,
+ * the sums are only computed when an attribute is read. The gauges are read from the components
+ * of the channel at the same time.
+ *
+ * The attributes can be sent as metrics by the SDK itself with the usual JMX performance counters, e.g.
+ * &lt;Jmx&gt;&lt;Add objectName="com.microsoft.applicationinsights:type=ChannelStatistics,name=InProcessTelemetryChannel"
+ * attribute="ItemsEnqueued" displayName="Items enqueued"/&gt;&lt;/Jmx&gt;
+ */
+public final class ChannelStatistics implements ChannelStatisticsMBean {
+    public static final String OBJECT_NAME_PREFIX = "com.microsoft.applicationinsights:type=ChannelStatistics,name=";
+
+    private static final IntSupplier NO_GAUGE = () -> 0;
+    private static final long[] SEND_LATENCY_BOUNDS_IN_MILLIS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final DroppedTelemetryCounters droppedTelemetryCounters;
+
+    private final LongAdder itemsEnqueued = new LongAdder();
+    private final LongAdder itemsTimedOnSend = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+    private final LongAdder itemsSerialized = new LongAdder();
+    private final LongAdder serializationNanos = new LongAdder();
+    private final LongAdder itemsDequeuedForSerialization = new LongAdder();
+    private final LongAdder serializationQueueWaitNanos = new LongAdder();
+    private final LongAdder batchesCompressed = new LongAdder();
+    private final LongAdder batchesTimedOnCompression = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder sends = new LongAdder();
+    private final LongAdder[] sendLatencyHistogram = new LongAdder[SEND_LATENCY_BOUNDS_IN_MILLIS.length + 1];
+    private final LongAdder transmissionsDroppedOnStorage = new LongAdder();
+    private final LongAdder transmissionsRejectedByEndpoint = new LongAdder();
+
+    private volatile IntSupplier bufferDepthGauge = NO_GAUGE;
+    private volatile IntSupplier serializationQueueDepthGauge = NO_GAUGE;
+    private volatile IntSupplier pendingBatchesGauge = NO_GAUGE;
+    private volatile IntSupplier sendsInFlightGauge = NO_GAUGE;
+    private volatile TransmissionStorage storage;
+
+    // The previous read of the enqueue rate, guarded by this
+    private long rateItems;
+    private long rateTimeInNanos = System.nanoTime();
+
+    private ObjectName objectName;
+
+    public ChannelStatistics(DroppedTelemetryCounters droppedTelemetryCounters) {
+        Preconditions.checkNotNull(droppedTelemetryCounters, "droppedTelemetryCounters must be a valid non-null value");
+
+        this.droppedTelemetryCounters = droppedTelemetryCounters;
+        for (int i = 0; i < sendLatencyHistogram.length; ++i) {
+            sendLatencyHistogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers the MBean, a number is added to the name when another channel of the same name is registered.
+     * @param name The name of the channel
+     */
+    public synchronized void register(String name) {
+        if (objectName != null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (int i = 0; objectName == null; ++i) {
+            try {
+                ObjectName candidate = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(i == 0 ? name : name + "-" + i));
+                server.registerMBean(this, candidate);
+                objectName = candidate;
+            } catch (InstanceAlreadyExistsException e) {
+                // Next number
+            } catch (Exception e) {
+                InternalLogger.INSTANCE.error("Failed to register the channel statistics MBean, exception: %s", e.toString());
+                return;
+            }
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.error("Failed to unregister the channel statistics MBean, exception: %s", e.toString());
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return The name the MBean is registered with, null if it is not
+     */
+    @Nullable
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    public void onEnqueued() {
+        itemsEnqueued.increment();
+    }
+
+    /**
+     * @param nanos The time the application thread spent in the channel to enqueue the telemetry
+     */
+    public void onEnqueued(long nanos) {
+        itemsEnqueued.increment();
+        itemsTimedOnSend.increment();
+        sendNanos.add(nanos);
+    }
+
+    public void onSerialized(long nanos) {
+        itemsSerialized.increment();
+        serializationNanos.add(nanos);
+    }
+
+    /**
+     * @param queueWaitNanos The time the telemetry waited before a thread of the channel picked it up to serialize it
+     */
+    public void onDequeuedForSerialization(long queueWaitNanos) {
+        itemsDequeuedForSerialization.increment();
+        serializationQueueWaitNanos.add(queueWaitNanos);
+    }
+
+    public void onBatchCompressed(long compressedSizeInBytes) {
+        batchesCompressed.increment();
+        compressedBytes.add(compressedSizeInBytes);
+    }
+
+    public void onBatchCompressed(long compressedSizeInBytes, long nanos) {
+        onBatchCompressed(compressedSizeInBytes);
+        batchesTimedOnCompression.increment();
+        compressionNanos.add(nanos);
+    }
+
+    public void onSent(long latencyInMillis) {
+        sends.increment();
+        int bucket = 0;
+        while (bucket < SEND_LATENCY_BOUNDS_IN_MILLIS.length && latencyInMillis > SEND_LATENCY_BOUNDS_IN_MILLIS[bucket]) {
+            ++bucket;
+        }
+        sendLatencyHistogram[bucket].increment();
+    }
+
+    public void onDroppedOnStorage() {
+        transmissionsDroppedOnStorage.increment();
+    }
+
+    public void onRejectedByEndpoint() {
+        transmissionsRejectedByEndpoint.increment();
+    }
+
+    public void setBufferDepthGauge(IntSupplier gauge) {
+        this.bufferDepthGauge = gauge == null ? NO_GAUGE : gauge;
+    }
+
+    public void setSerializationQueueDepthGauge(IntSupplier gauge) {
+        this.serializationQueueDepthGauge = gauge == null ? NO_GAUGE : gauge;
+    }
+
+    public void setPendingBatchesGauge(IntSupplier gauge) {
+        this.pendingBatchesGauge = gauge == null ? NO_GAUGE : gauge;
+    }
+
+    public void setSendsInFlightGauge(IntSupplier gauge) {
+        this.sendsInFlightGauge = gauge == null ? NO_GAUGE : gauge;
+    }
+
+    public void setStorage(TransmissionStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public long getItemsEnqueued() {
+        return itemsEnqueued.sum();
+    }
+
+    @Override
+    public synchronized double getEnqueueRatePerSecond() {
+        long items = itemsEnqueued.sum();
+        long now = System.nanoTime();
+        long elapsedInNanos = now - rateTimeInNanos;
+        double rate = elapsedInNanos <= 0 ? 0 : (items - rateItems) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedInNanos;
+        rateItems = items;
+        rateTimeInNanos = now;
+        return rate;
+    }
+
+    @Override
+    public int getBufferDepth() {
+        return bufferDepthGauge.getAsInt();
+    }
+
+    @Override
+    public int getSerializationQueueDepth() {
+        return serializationQueueDepthGauge.getAsInt();
+    }
+
+    @Override
+    public int getPendingBatches() {
+        return pendingBatchesGauge.getAsInt();
+    }
+
+    @Override
+    public int getSendsInFlight() {
+        return sendsInFlightGauge.getAsInt();
+    }
+
+    @Override
+    public long getSendNanosPerItem() {
+        long items = itemsTimedOnSend.sum();
+        return items == 0 ? 0 : sendNanos.sum() / items;
+    }
+
+    @Override
+    public long getSerializationQueueWaitNanosPerItem() {
+        long items = itemsDequeuedForSerialization.sum();
+        return items == 0 ? 0 : serializationQueueWaitNanos.sum() / items;
+    }
+
+    @Override
+    public long getSerializationNanosPerItem() {
+        long items = itemsSerialized.sum();
+        return items == 0 ? 0 : serializationNanos.sum() / items;
+    }
+
+    @Override
+    public long getBatchesCompressed() {
+        return batchesCompressed.sum();
+    }
+
+    @Override
+    public long getCompressionNanosPerBatch() {
+        long batches = batchesTimedOnCompression.sum();
+        return batches == 0 ? 0 : compressionNanos.sum() / batches;
+    }
+
+    @Override
+    public long getCompressedBytesPerBatch() {
+        long batches = batchesCompressed.sum();
+        return batches == 0 ? 0 : compressedBytes.sum() / batches;
+    }
+
+    @Override
+    public long getSends() {
+        return sends.sum();
+    }
+
+    @Override
+    public long[] getSendLatencyHistogramBoundsInMillis() {
+        return SEND_LATENCY_BOUNDS_IN_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getSendLatencyHistogram() {
+        long[] histogram = new long[sendLatencyHistogram.length];
+        for (int i = 0; i < histogram.length; ++i) {
+            histogram[i] = sendLatencyHistogram[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getItemsDroppedOnOverload() {
+        return droppedTelemetryCounters.getTotalDroppedCount();
+    }
+
+    @Override
+    public long getTransmissionsDroppedOnStorage() {
+        return transmissionsDroppedOnStorage.sum();
+    }
+
+    @Override
+    public long getTransmissionsRejectedByEndpoint() {
+        return transmissionsRejectedByEndpoint.sum();
+    }
+
+    @Override
+    public long getDiskBacklogInBytes() {
+        TransmissionStorage current = storage;
+        return current == null ? 0 : current.getSize();
+    }
+
+    @Override
+    public long getOldestPersistedAgeInSeconds() {
+        TransmissionStorage current = storage;
+        if (current == null) {
+            return 0;
+        }
+        long oldest = current.getOldestStoredTimeInMillis();
+        return oldest <= 0 ? 0 : Math.max(0, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - oldest));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+/**
+ * What the telemetry channel exposes about itself over JMX, see {@link ChannelStatistics}.
+ *
+ * Counters are totals since the channel started, gauges are read when the attribute is.
+ */
+public interface ChannelStatisticsMBean {
+    /**
+     * @return The number of telemetries that were put in the buffer
+     */
+    long getItemsEnqueued();
+
+    /**
+     * @return The number of telemetries per second put in the buffer since the previous time this attribute was read
+     */
+    double getEnqueueRatePerSecond();
+
+    /**
+     * @return The number of telemetries waiting in the buffers
+     */
+    int getBufferDepth();
+
+    /**
+     * @return The number of telemetries waiting to be serialized by the channel's threads, 0 unless serialization is deferred
+     */
+    int getSerializationQueueDepth();
+
+    /**
+     * @return The number of batches waiting for a thread to be serialized and dispatched
+     */
+    int getPendingBatches();
+
+    /**
+     * @return The number of transmissions waiting for a response of the endpoint
+     */
+    int getSendsInFlight();
+
+    /**
+     * @return The average nanoseconds the application thread spent in the channel to enqueue a telemetry
+     */
+    long getSendNanosPerItem();
+
+    /**
+     * @return The average nanoseconds a telemetry waited to be serialized by the channel's threads, 0 unless serialization is deferred
+     */
+    long getSerializationQueueWaitNanosPerItem();
+
+    /**
+     * @return The average nanoseconds it took to serialize a telemetry to json
+     */
+    long getSerializationNanosPerItem();
+
+    /**
+     * @return The number of batches that were compressed into a transmission
+     */
+    long getBatchesCompressed();
+
+    /**
+     * @return The average nanoseconds it took to compress a batch
+     */
+    long getCompressionNanosPerBatch();
+
+    /**
+     * @return The average number of bytes of a compressed batch
+     */
+    long getCompressedBytesPerBatch();
+
+    /**
+     * @return The number of transmissions that were sent to the endpoint, whether they were accepted or not
+     */
+    long getSends();
+
+    /**
+     * @return The upper bounds of the buckets of {@link #getSendLatencyHistogram()}, the last bucket has no bound
+     */
+    long[] getSendLatencyHistogramBoundsInMillis();
+
+    /**
+     * @return The number of sends per latency bucket, one more bucket than there are bounds
+     */
+    long[] getSendLatencyHistogram();
+
+    /**
+     * @return The number of telemetries dropped by the overload policy while the transmitter was saturated
+     */
+    long getItemsDroppedOnOverload();
+
+    /**
+     * @return The number of transmissions that could not be persisted, because the storage was full or failed
+     */
+    long getTransmissionsDroppedOnStorage();
+
+    /**
+     * @return The number of transmissions the endpoint refused and that are not retried, for example on 400
+     */
+    long getTransmissionsRejectedByEndpoint();
+
+    /**
+     * @return The number of bytes of the transmissions waiting on the disk
+     */
+    long getDiskBacklogInBytes();
+
+    /**
+     * @return The number of seconds since the oldest transmission waiting on the disk was persisted, 0 if none is
+     */
+    long getOldestPersistedAgeInSeconds();
+}
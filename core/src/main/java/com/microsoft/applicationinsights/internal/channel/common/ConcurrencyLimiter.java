@@ -0,0 +1,202 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+
+/**
+ * Limits the number of transmissions that are sent to the network at the same time.
+ *
+ * The limit grows by one for every limit's worth of sends that are accepted while the latency
+ * stays close to the fastest send seen lately, and is halved when the endpoint is overloaded,
+ * i.e. it answers 408, 429, 439 or 503, or the send fails without a response. The sends that were
+ * already in flight when the limit was cut do not cut it again, so a burst of throttled responses
+ * counts as one.
+ */
+public final class ConcurrencyLimiter {
+    // Given to onSent when the send failed without a response, a timeout for example
+    public static final int NO_RESPONSE = -1;
+
+    static final double DECREASE_FACTOR = 0.5;
+
+    // Sends slower than that many times the fastest one do not grow the limit
+    static final double LATENCY_TOLERANCE = 2.0;
+
+    // The fastest send is forgotten after that many sends, so a lasting change of the network is learned
+    static final int MIN_LATENCY_WINDOW = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight;
+
+    private long minLatencyInNanos = Long.MAX_VALUE;
+    private int sendsInLatencyWindow;
+
+    private boolean decreased;
+    private long lastDecreaseTimeInNanos;
+
+    /**
+     * Starts at the maximum limit, which is then only lowered by an overloaded endpoint.
+     * @param maxLimit The maximum number of sends at the same time
+     */
+    public ConcurrencyLimiter(int maxLimit) {
+        this(1, maxLimit, maxLimit);
+    }
+
+    /**
+     * @param minLimit The number of sends at the same time the limit is never cut below
+     * @param maxLimit The number of sends at the same time the limit never grows above
+     * @param initialLimit The limit until the first sends are done
+     */
+    public ConcurrencyLimiter(int minLimit, int maxLimit, int initialLimit) {
+        Preconditions.checkArgument(minLimit > 0, "minLimit must be a positive number");
+        Preconditions.checkArgument(maxLimit >= minLimit, "maxLimit must be >= than minLimit");
+        Preconditions.checkArgument(initialLimit >= minLimit && initialLimit <= maxLimit, "initialLimit must be between minLimit and maxLimit");
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return True if one more send may start now, in which case {@link #release()} must be called when it is done
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= getLimit()) {
+            return false;
+        }
+
+        ++inFlight;
+        return true;
+    }
+
+    public synchronized void release() {
+        if (inFlight > 0) {
+            --inFlight;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Called when the response of a send is received, before the send is released.
+     * @param startTimeInNanos The {@link System#nanoTime()} when the send started
+     * @param endTimeInNanos The {@link System#nanoTime()} when the response was received
+     * @param responseCode The HTTP response code, or {@link #NO_RESPONSE}
+     */
+    public synchronized void onSent(long startTimeInNanos, long endTimeInNanos, int responseCode) {
+        if (isOverloaded(responseCode)) {
+            decrease(startTimeInNanos, endTimeInNanos);
+            return;
+        }
+
+        if (responseCode != TransmissionSendResult.SENT_SUCCESSFULLY && responseCode != TransmissionSendResult.PARTIAL_SUCCESS) {
+            return;
+        }
+
+        long latencyInNanos = endTimeInNanos - startTimeInNanos;
+        if (++sendsInLatencyWindow > MIN_LATENCY_WINDOW) {
+            sendsInLatencyWindow = 0;
+            minLatencyInNanos = latencyInNanos;
+        } else {
+            minLatencyInNanos = Math.min(minLatencyInNanos, latencyInNanos);
+        }
+
+        // Only grow when the limit is used, an idle sender tells nothing about what the endpoint can take
+        if (latencyInNanos <= minLatencyInNanos * LATENCY_TOLERANCE && inFlight * 2 >= limit) {
+            limit = Math.min(limit + 1 / limit, maxLimit);
+        }
+    }
+
+    /**
+     * Waits for the sends in flight to be released.
+     * @return True if no send is in flight, false if the timeout expired before
+     */
+    public synchronized boolean awaitNoneInFlight(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        long deadlineInNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (inFlight > 0) {
+            long leftInNanos = deadlineInNanos - System.nanoTime();
+            if (leftInNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, leftInNanos);
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits for the sends in flight to be under the limit, without acquiring anything.
+     * @return True if one more send may start now, false if the timeout expired before
+     */
+    public synchronized boolean awaitCapacity(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        long deadlineInNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (inFlight >= getLimit()) {
+            long leftInNanos = deadlineInNanos - System.nanoTime();
+            if (leftInNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, leftInNanos);
+        }
+
+        return true;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getNumberOfInFlight() {
+        return inFlight;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    private void decrease(long startTimeInNanos, long endTimeInNanos) {
+        if (decreased && startTimeInNanos - lastDecreaseTimeInNanos < 0) {
+            return;
+        }
+
+        limit = Math.max(limit * DECREASE_FACTOR, minLimit);
+        decreased = true;
+        lastDecreaseTimeInNanos = endTimeInNanos;
+    }
+
+    private static boolean isOverloaded(int responseCode) {
+        switch (responseCode) {
+            case NO_RESPONSE:
+            case TransmissionSendResult.REQUEST_TIMEOUT:
+            case TransmissionSendResult.THROTTLED:
+            case TransmissionSendResult.THROTTLED_OVER_EXTENDED_TIME:
+            case TransmissionSendResult.SERVICE_UNAVAILABLE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+
+/**
+ * A lock free alternative to {@link TelemetryBuffer}.
+ *
+ * Application threads claim a slot of a bounded ring by a CAS on the producer index and then publish
+ * their item into that slot, so no application thread ever waits on a monitor.
+ *
+ * Only one thread at a time drains the ring. The thread whose item fills a batch tries to become
+ * the drainer, if another thread is already draining it simply leaves, the current drainer checks
+ * the ring again before it steps down and sends any full batch it finds.
+ *
+ * The drainer may block in 'sendNow', under the {@link OverloadPolicy#BLOCK_WITH_TIMEOUT} policy for example.
+ * A thread that has to wait for it, because the ring is full or to flush, yields a few times and then parks
+ * until the drainer steps down.
+ *
+ * The timeout semantics are the ones of {@link TelemetryBuffer}: the first item of a batch schedules
+ * a 'pick-up' after 'transmitBufferTimeoutInSeconds', a batch that is sent because it is full moves
+ * the buffer to a new generation which turns the pending 'pick-up' into a no-op.
+ *
+ * @param <T> The type of the telemetry being stored in the buffer.
+ */
+public class ConcurrentTelemetryBuffer<T> extends TelemetryBuffer<T> {
+    /// A waiting thread only yields that many times before it parks
+    private final static int YIELDS_BEFORE_PARKING = 64;
+
+    /// A parked thread looks again after that time even if it was not woken up
+    private final static long MAX_PARK_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Lets the Sender fetch the Telemetries when the timeout expires.
+     *
+     * The fetcher only works for 'expectedGeneration', if a full batch was sent in the meantime
+     * nothing is returned, the thread that sent it took care of scheduling the next 'pick-up'.
+     */
+    private final class ConcurrentTelemetryBufferTelemetriesFetcher implements TelemetriesTransmitter.TelemetriesFetcher<T> {
+
+        private final long expectedGeneration;
+
+        private ConcurrentTelemetryBufferTelemetriesFetcher(long expectedGeneration) {
+            this.expectedGeneration = expectedGeneration;
+        }
+
+        @Override
+        public Collection<T> fetch() {
+            if (!generation.compareAndSet(expectedGeneration, expectedGeneration + 1)) {
+                return Collections.emptyList();
+            }
+
+            flushScheduled.set(false);
+
+            List<T> readyToBeSent = Collections.emptyList();
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    readyToBeSent = drain();
+                } finally {
+                    stopDraining();
+                }
+            }
+
+            // Whatever was left behind, either by us or by a concurrent drainer, needs a new 'pick-up'
+            sendFullBatches();
+
+            return readyToBeSent;
+        }
+    }
+
+    /// The sender we use to send Telemetry containers
+    private final TelemetriesTransmitter<T> sender;
+
+    private volatile int maxTelemetriesInBatch;
+    private final LimitsEnforcer maxTelemetriesInBatchEnforcer;
+
+    private volatile int transmitBufferTimeoutInSeconds;
+    private final LimitsEnforcer transmitBufferTimeoutInSecondsEnforcer;
+
+    /// The ring, 'mask' is its capacity minus one since the capacity is a power of two
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    /// The uncompressed size of the item of each slot, written before the item is published
+    private final int[] sizes;
+
+    /// Set when batches are also limited by their estimated compressed size
+    private volatile ToIntFunction<? super T> telemetrySizer;
+
+    /// The uncompressed size of the items that were published and not drained yet
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+
+    /// The next sequence to be claimed by a producer
+    private final AtomicLong producerIndex = new AtomicLong(0);
+
+    /// The next sequence to be drained, only the drainer moves it
+    private final AtomicLong consumerIndex = new AtomicLong(0);
+
+    /// Makes sure there is a single drainer at a time
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /// The threads parked until the drainer steps down
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /// Set while a 'pick-up' is pending
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /// Moves forward whenever a batch is sent, a 'pick-up' of an older generation does nothing
+    private final AtomicLong generation = new AtomicLong(0);
+
+    /**
+     * The constructor needs to get the 'sender' we work with
+     * @param sender The sender object for transmitting the telemetries
+     * @param maxTelemetriesInBatchEnforcer For getting the number of maximum number of telemetries in a batch within limits
+     * @param transmitBufferTimeoutInSecondsEnforcer For getting the number of transmit buffer timeout in seconds within limits
+     */
+    public ConcurrentTelemetryBuffer(TelemetriesTransmitter<T> sender, LimitsEnforcer maxTelemetriesInBatchEnforcer, LimitsEnforcer transmitBufferTimeoutInSecondsEnforcer) {
+        super(sender, maxTelemetriesInBatchEnforcer, transmitBufferTimeoutInSecondsEnforcer);
+
+        this.sender = sender;
+        this.maxTelemetriesInBatchEnforcer = maxTelemetriesInBatchEnforcer;
+        this.maxTelemetriesInBatch = maxTelemetriesInBatchEnforcer.getCurrentValue();
+        this.transmitBufferTimeoutInSecondsEnforcer = transmitBufferTimeoutInSecondsEnforcer;
+        this.transmitBufferTimeoutInSeconds = transmitBufferTimeoutInSecondsEnforcer.getCurrentValue();
+
+        // Twice the largest possible batch, so producers can keep going while a full batch is being drained
+        int capacity = Integer.highestOneBit(Math.max(maxTelemetriesInBatchEnforcer.getMaximum(), 1) * 2 - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sizes = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public void setMaxBatchSizeInBytes(int maxBatchSizeInBytes, ToIntFunction<? super T> telemetrySizer, PayloadSizeEstimator payloadSizeEstimator) {
+        super.setMaxBatchSizeInBytes(maxBatchSizeInBytes, telemetrySizer, payloadSizeEstimator);
+
+        // Items that are already in the ring keep counting as zero bytes
+        this.telemetrySizer = maxBatchSizeInBytes > 0 ? telemetrySizer : null;
+        if (hasFullBatch()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void setMaxTelemetriesInBatch(int value) {
+        maxTelemetriesInBatch = maxTelemetriesInBatchEnforcer.normalizeValue(value);
+        if (maxTelemetriesInBatch < size()) {
+            // Request for smaller buffers, we flush if our buffer contains more elements
+            flush();
+        }
+    }
+
+    @Override
+    public int getMaxTelemetriesInBatch() {
+        return maxTelemetriesInBatch;
+    }
+
+    @Override
+    public void setTransmitBufferTimeoutInSeconds(int value) {
+        int oldValue = transmitBufferTimeoutInSeconds;
+        transmitBufferTimeoutInSeconds = transmitBufferTimeoutInSecondsEnforcer.normalizeValue(value);
+        // Request for quicker flushes, we flush if the previous timeout is bigger
+        if (transmitBufferTimeoutInSeconds < oldValue) {
+            flush();
+        }
+    }
+
+    @Override
+    public int getTransmitBufferTimeoutInSeconds() {
+        return transmitBufferTimeoutInSeconds;
+    }
+
+    /**
+     * The method will add the incoming {@link Telemetry} to the ring.
+     *
+     * If by adding that item the ring holds a full batch, by number of items or by estimated
+     * compressed size, the batch is sent now, otherwise
+     * we make sure a 'pick-up' is scheduled. If the ring is full the caller helps draining it.
+     * @param telemetry The {@link com.microsoft.applicationinsights.telemetry.Telemetry} to add to the buffer.
+     */
+    @Override
+    public void add(T telemetry) {
+        Preconditions.checkNotNull(telemetry, "Telemetry must be non null value");
+
+        long sequence;
+        int attempts = 0;
+        while ((sequence = claim()) < 0) {
+            // The drainer cannot keep up, help it and back off until a slot is free
+            sendFullBatches();
+            attempts = backOff(attempts, this::isFull);
+        }
+
+        int index = indexOf(sequence);
+        ToIntFunction<? super T> sizer = telemetrySizer;
+        int sizeInBytes = sizer == null ? 0 : sizer.applyAsInt(telemetry);
+        sizes[index] = sizeInBytes;
+        slots.set(index, telemetry);
+
+        if (sizeInBytes != 0) {
+            pendingBytes.addAndGet(sizeInBytes);
+        }
+
+        if (hasFullBatch()) {
+            sendFullBatches();
+        } else {
+            scheduleSendIfNeeded();
+        }
+    }
+
+    /**
+     * The method will flush the telemetries currently in the buffer to the {@link com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter}
+     */
+    @Override
+    public void flush() {
+        // A flush should not leave items behind so we wait for the current drainer, if any
+        int attempts = 0;
+        while (!draining.compareAndSet(false, true)) {
+            attempts = backOff(attempts, draining::get);
+        }
+
+        try {
+            List<T> readyToBeSent;
+            while (!(readyToBeSent = drain()).isEmpty()) {
+                generation.incrementAndGet();
+                flushScheduled.set(false);
+                if (!sender.sendNow(readyToBeSent)) {
+                    InternalLogger.INSTANCE.error("Failed to flush buffer data to network");
+                }
+            }
+        } finally {
+            stopDraining();
+        }
+
+        // Items that were claimed but not yet published during the flush
+        scheduleSendIfNeeded();
+    }
+
+    /**
+     * @return The number of items that were claimed and not drained yet
+     */
+    @Override
+    public int size() {
+        return (int) (producerIndex.get() - consumerIndex.get());
+    }
+
+    /**
+     * Sends full batches as long as there are any and no other thread is draining.
+     * Before leaving we make sure that a 'pick-up' is scheduled for what is left.
+     */
+    private void sendFullBatches() {
+        while (hasFullBatch() && draining.compareAndSet(false, true)) {
+            try {
+                while (hasFullBatch()) {
+                    List<T> readyToBeSent = drain();
+                    if (readyToBeSent.isEmpty()) {
+                        // The head slot was claimed but not published yet, its producer will come back here
+                        break;
+                    }
+
+                    generation.incrementAndGet();
+                    flushScheduled.set(false);
+                    if (!sender.sendNow(readyToBeSent)) {
+                        // The batch is already out of the ring, the transmitter counted what its overload policy dropped
+                        InternalLogger.INSTANCE.error("Failed to send buffer data to network");
+                    }
+                }
+            } finally {
+                stopDraining();
+            }
+
+            if (readyHeadIsUnpublished()) {
+                break;
+            }
+        }
+
+        scheduleSendIfNeeded();
+    }
+
+    /**
+     * Waits a little for the drainer, the first attempts only yield and the next ones park the thread
+     * until the drainer steps down.
+     * @param mustWait Tells whether the thread still has to wait, checked once the thread is registered as a waiter
+     * @return The number of attempts so far
+     */
+    private int backOff(int attempts, BooleanSupplier mustWait) {
+        if (attempts < YIELDS_BEFORE_PARKING) {
+            Thread.yield();
+            return attempts + 1;
+        }
+
+        // Registered before checking, so a drainer that steps down after the check unparks the thread
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            if (mustWait.getAsBoolean()) {
+                LockSupport.parkNanos(this, MAX_PARK_IN_NANOS);
+            }
+        } finally {
+            waiters.remove(current);
+        }
+        return attempts;
+    }
+
+    private void stopDraining() {
+        draining.set(false);
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private boolean isFull() {
+        return producerIndex.get() - consumerIndex.get() > mask;
+    }
+
+    private boolean hasFullBatch() {
+        return size() >= maxTelemetriesInBatch || (telemetrySizer != null && isBatchSizeReached(pendingBytes.get()));
+    }
+
+    private void scheduleSendIfNeeded() {
+        if (size() == 0 || flushScheduled.get() || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (!sender.scheduleSend(new ConcurrentTelemetryBufferTelemetriesFetcher(generation.get()), transmitBufferTimeoutInSeconds, TimeUnit.SECONDS)) {
+            // The transmitter fetched the items to apply its overload policy and counted what it dropped,
+            // whatever was added meanwhile is scheduled by the next item that is added
+            flushScheduled.set(false);
+            InternalLogger.INSTANCE.error("Failed to schedule send of the buffer to network");
+        }
+    }
+
+    /**
+     * Claims the next sequence of the ring.
+     * @return The claimed sequence, or -1 if the ring is full
+     */
+    private long claim() {
+        while (true) {
+            long sequence = producerIndex.get();
+            if (sequence - consumerIndex.get() > mask) {
+                return -1;
+            }
+            if (producerIndex.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * The method assumes that the caller is the drainer.
+     *
+     * Please make sure this behavior is kept, the consumer index has a single writer.
+     *
+     * @return Up to 'maxTelemetriesInBatch' published items, in the order they were claimed, the last one
+     * being the one that made the batch reach its size limit if there is such a limit
+     */
+    private List<T> drain() {
+        int max = maxTelemetriesInBatch;
+        long consumer = consumerIndex.get();
+        long limit = Math.min(producerIndex.get(), consumer + max);
+        if (consumer == limit) {
+            return Collections.emptyList();
+        }
+
+        List<T> readyToBeSent = new ArrayList<>((int) (limit - consumer));
+        long batchSizeInBytes = 0;
+        while (consumer < limit) {
+            int index = indexOf(consumer);
+            T telemetry = slots.get(index);
+            if (telemetry == null) {
+                // Claimed but not published yet, we stop here to keep the order
+                break;
+            }
+
+            // The slot must be released before the consumer index moves, or a producer could overwrite it
+            batchSizeInBytes += sizes[index];
+            slots.lazySet(index, null);
+            readyToBeSent.add(telemetry);
+            ++consumer;
+
+            if (batchSizeInBytes != 0 && isBatchSizeReached(batchSizeInBytes)) {
+                break;
+            }
+        }
+        consumerIndex.set(consumer);
+
+        if (batchSizeInBytes != 0) {
+            pendingBytes.addAndGet(-batchSizeInBytes);
+        }
+
+        return readyToBeSent;
+    }
+
+    private boolean readyHeadIsUnpublished() {
+        return size() > 0 && slots.get(indexOf(consumerIndex.get())) == null;
+    }
+
+    private int indexOf(long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the state of the shared connection pool.
+ *
+ * Each connection that is opened costs a TCP and, for https, a TLS handshake, so a number of opened
+ * connections that keeps growing with the number of requests means connections are not reused.
+ */
+public final class ConnectionPoolMetrics {
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger pendingAcquires = new AtomicInteger();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder acquires = new LongAdder();
+
+    void onConnectionOpened() {
+        connectionsOpened.increment();
+        openConnections.incrementAndGet();
+    }
+
+    void onConnectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    void onConnectionAcquired() {
+        acquires.increment();
+        activeConnections.incrementAndGet();
+    }
+
+    void onConnectionReleased() {
+        activeConnections.decrementAndGet();
+    }
+
+    void onAcquireStarted() {
+        pendingAcquires.incrementAndGet();
+    }
+
+    void onAcquireEnded() {
+        pendingAcquires.decrementAndGet();
+    }
+
+    /**
+     * @return The number of connections that are open, in use or idle
+     */
+    public int getOpenConnections() {
+        return Math.max(0, openConnections.get());
+    }
+
+    /**
+     * @return The number of connections that are used by a request
+     */
+    public int getActiveConnections() {
+        return Math.max(0, Math.min(activeConnections.get(), getOpenConnections()));
+    }
+
+    public int getIdleConnections() {
+        return getOpenConnections() - getActiveConnections();
+    }
+
+    /**
+     * @return The number of requests that wait for a connection
+     */
+    public int getPendingAcquires() {
+        return Math.max(0, pendingAcquires.get());
+    }
+
+    /**
+     * @return The number of connections opened since the start, one handshake each
+     */
+    public long getTotalConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    /**
+     * @return The number of times a connection was handed to a request since the start
+     */
+    public long getTotalAcquires() {
+        return acquires.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d, idle=%d, pendingAcquires=%d, totalConnectionsOpened=%d, totalAcquires=%d",
+                getActiveConnections(), getIdleConnections(), getPendingAcquires(), getTotalConnectionsOpened(), getTotalAcquires());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+
+/**
+ * Holds the telemetries sent to a channel that defers their serialization, until one of the
+ * shared SDK threads serializes them, as many as there are at a time.
+ *
+ * Offering a telemetry only links it into a lock free queue, and the first one that finds no
+ * drain task submits it. The queue is bounded: when it is full the telemetry is refused, and
+ * the caller is expected to serialize it itself, which slows the application down instead of
+ * letting the memory grow.
+ *
+ * The serializer is called by one thread at a time, by the drain task or by {@link #drain()}.
+ */
+public final class DeferredSerializationQueue {
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    // The drain task gives its thread back after that many, so it does not hold a shared thread under a steady load
+    private static final int MAX_TELEMETRIES_PER_TASK = 1000;
+
+    private static final class Entry {
+        private final Telemetry telemetry;
+        private final long enqueuedTimeInNanos;
+
+        private Entry(Telemetry telemetry, long enqueuedTimeInNanos) {
+            this.telemetry = telemetry;
+            this.enqueuedTimeInNanos = enqueuedTimeInNanos;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Object serializerLock = new Object();
+    private final Runnable drainTask = this::runDrainTask;
+
+    private final Consumer<Telemetry> serializer;
+    private final ChannelStatistics statistics;
+    private final int capacity;
+    private final ExecutorService threads;
+
+    /**
+     * @param serializer Serializes a telemetry and puts the result in the buffer of the channel
+     * @param statistics The statistics of the channel, may be null
+     * @param capacity The maximum number of telemetries that wait to be serialized
+     */
+    public DeferredSerializationQueue(Consumer<Telemetry> serializer, ChannelStatistics statistics, int capacity) {
+        Preconditions.checkNotNull(serializer, "serializer must be a non-null value");
+        Preconditions.checkArgument(capacity > 0, "capacity must be a positive number");
+
+        this.serializer = serializer;
+        this.statistics = statistics;
+        this.capacity = capacity;
+        this.threads = SDKExecutors.newLimitedExecutor(DeferredSerializationQueue.class, SDKExecutors.Priority.HIGH, 1, 1);
+    }
+
+    /**
+     * The telemetry belongs to the queue once it is taken, it must not be changed by the caller anymore.
+     * @param telemetry The telemetry to serialize
+     * @return False if the queue is full and the telemetry was not taken
+     */
+    public boolean offer(Telemetry telemetry) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+
+        entries.add(new Entry(telemetry, System.nanoTime()));
+        if (drainScheduled.compareAndSet(false, true)) {
+            scheduleDrain();
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of telemetries that wait to be serialized
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Serializes, on the calling thread, the telemetries that were offered before the call.
+     */
+    public void drain() {
+        drain(size.get());
+    }
+
+    /**
+     * Stops the drain task and serializes what is left on the calling thread.
+     * The telemetries offered after that are serialized by the thread that offers them.
+     */
+    public void stop() {
+        threads.shutdown();
+        drain();
+    }
+
+    private void scheduleDrain() {
+        try {
+            threads.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+            drainScheduled.set(false);
+            drain();
+        }
+    }
+
+    private void runDrainTask() {
+        drain(MAX_TELEMETRIES_PER_TASK);
+        drainScheduled.set(false);
+
+        // A telemetry offered while the flag was still set did not schedule a task
+        if (!entries.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+            scheduleDrain();
+        }
+    }
+
+    private void drain(int maxTelemetries) {
+        synchronized (serializerLock) {
+            Entry entry;
+            for (int i = 0; i < maxTelemetries && (entry = entries.poll()) != null; ++i) {
+                size.decrementAndGet();
+                if (statistics != null) {
+                    statistics.onDequeuedForSerialization(System.nanoTime() - entry.enqueuedTimeInNanos);
+                }
+                try {
+                    serializer.accept(entry.telemetry);
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    try {
+                        InternalLogger.INSTANCE.error("Failed to serialize a deferred telemetry, exception: %s", t.toString());
+                        InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+                    } catch (ThreadDeath td) {
+                        throw td;
+                    } catch (Throwable t2) {
+                        // chomp
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+
+/**
+ * Paces the {@link ActiveTransmissionLoader} while it sends back what was saved to the disk.
+ *
+ * The pause after each transmission is halved while sends succeed within the target latency,
+ * and grows when they fail or get slow, so the backlog drains as fast as the network allows
+ * without competing with the live telemetry.
+ *
+ * When a maximum bandwidth is set, the pause is also long enough for the transmissions
+ * not to go beyond that number of bytes per second.
+ */
+public final class DrainRateController {
+    // The fixed pause of the loader before it became adaptive
+    static final long INITIAL_PAUSE_IN_MILLIS = 100;
+    static final long MIN_PAUSE_IN_MILLIS = 10;
+    static final long MAX_PAUSE_IN_MILLIS = 5000;
+    static final long TARGET_LATENCY_IN_MILLIS = 1000;
+
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+    private static final double SLOW_SEND_PAUSE_FACTOR = 1.5;
+
+    private final long maxBytesPerSecond;
+
+    private double pauseInMillis = INITIAL_PAUSE_IN_MILLIS;
+
+    private double averageLatencyInMillis = -1;
+
+    // When the bytes sent so far are within the bandwidth
+    private long bandwidthAvailableTimeInNanos = System.nanoTime();
+
+    /**
+     * @param maxBytesPerSecond The maximum number of bytes per second to send from the disk, 0 for no limit.
+     */
+    public DrainRateController(long maxBytesPerSecond) {
+        Preconditions.checkArgument(maxBytesPerSecond >= 0, "maxBytesPerSecond must be a non-negative number");
+
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+     * Called when a transmission was sent to the network, whether it came from the disk or not.
+     * @param latencyInMillis The time it took to get the response
+     * @param success True when the transmission was accepted
+     */
+    public synchronized void onSent(long latencyInMillis, boolean success) {
+        if (averageLatencyInMillis < 0) {
+            averageLatencyInMillis = latencyInMillis;
+        } else {
+            averageLatencyInMillis += LATENCY_SMOOTHING_FACTOR * (latencyInMillis - averageLatencyInMillis);
+        }
+
+        if (!success) {
+            pauseInMillis = Math.max(pauseInMillis * 2, INITIAL_PAUSE_IN_MILLIS);
+        } else if (averageLatencyInMillis > TARGET_LATENCY_IN_MILLIS) {
+            pauseInMillis *= SLOW_SEND_PAUSE_FACTOR;
+        } else {
+            pauseInMillis /= 2;
+        }
+
+        pauseInMillis = Math.min(Math.max(pauseInMillis, MIN_PAUSE_IN_MILLIS), MAX_PAUSE_IN_MILLIS);
+    }
+
+    /**
+     * Called when a transmission was read from the disk and dispatched.
+     * @param numberOfBytes The size of the transmission content
+     * @return How long to wait before dispatching the next one
+     */
+    public synchronized long onDispatched(int numberOfBytes) {
+        long pause = (long) pauseInMillis;
+        if (maxBytesPerSecond > 0) {
+            long now = System.nanoTime();
+            long start = Math.max(now, bandwidthAvailableTimeInNanos);
+            bandwidthAvailableTimeInNanos = start + TimeUnit.SECONDS.toNanos(numberOfBytes) / maxBytesPerSecond;
+            pause = Math.max(pause, TimeUnit.NANOSECONDS.toMillis(bandwidthAvailableTimeInNanos - now));
+        }
+
+        return pause;
+    }
+
+    /**
+     * @return The pause between two dispatched transmissions, without the bandwidth limit
+     */
+    public synchronized long getPauseInMillis() {
+        return (long) pauseInMillis;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the telemetries that were dropped by the channel, per telemetry type and per {@link TelemetryLane}.
+ *
+ * The type is read from the envelope name of the serialized telemetry, for example 'Request' for
+ * 'Microsoft.ApplicationInsights.{key}.Request'. Counting only happens on the drop path.
+ */
+public final class DroppedTelemetryCounters {
+    public static final String UNKNOWN_TELEMETRY_TYPE = "Unknown";
+
+    private static final byte[] ENVELOPE_NAME_PREFIX = "\"name\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    // Filled once, only the adders change afterwards
+    private final Map<TelemetryLane, LongAdder> laneCounters = new EnumMap<>(TelemetryLane.class);
+
+    public DroppedTelemetryCounters() {
+        for (TelemetryLane lane : TelemetryLane.values()) {
+            laneCounters.put(lane, new LongAdder());
+        }
+    }
+
+    /**
+     * @param lane The lane the telemetries were queued in
+     * @param telemetries The serialized telemetries that were dropped
+     */
+    public void onDropped(TelemetryLane lane, Collection<byte[]> telemetries) {
+        laneCounters.get(lane).add(telemetries.size());
+        onDropped(telemetries);
+    }
+
+    /**
+     * @param telemetries The serialized telemetries that were dropped
+     */
+    public void onDropped(Collection<byte[]> telemetries) {
+        for (byte[] telemetry : telemetries) {
+            onDropped(telemetryTypeOf(telemetry), 1);
+        }
+    }
+
+    public void onDropped(String telemetryType, long count) {
+        LongAdder counter = counters.get(telemetryType);
+        if (counter == null) {
+            LongAdder newCounter = new LongAdder();
+            counter = counters.putIfAbsent(telemetryType, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.add(count);
+    }
+
+    public long getDroppedCount(String telemetryType) {
+        LongAdder counter = counters.get(telemetryType);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long getDroppedCount(TelemetryLane lane) {
+        return laneCounters.get(lane).sum();
+    }
+
+    public long getTotalDroppedCount() {
+        long total = 0;
+        for (LongAdder counter : counters.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return A snapshot of the counters, sorted by telemetry type
+     */
+    public Map<String, Long> getDroppedCounts() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Finds the telemetry type of a serialized telemetry without parsing the whole item,
+     * the envelope name is one of its first fields.
+     * @param serializedTelemetry The telemetry as UTF-8 encoded json
+     * @return The last segment of the envelope name, or {@link #UNKNOWN_TELEMETRY_TYPE}
+     */
+    static String telemetryTypeOf(byte[] serializedTelemetry) {
+        if (serializedTelemetry == null) {
+            return UNKNOWN_TELEMETRY_TYPE;
+        }
+
+        int start = indexOf(serializedTelemetry, ENVELOPE_NAME_PREFIX);
+        if (start < 0) {
+            return UNKNOWN_TELEMETRY_TYPE;
+        }
+        start += ENVELOPE_NAME_PREFIX.length;
+
+        // Bytes of multi-byte UTF-8 characters are never ASCII, so the quote and the dots are found as they are
+        int end = start;
+        int lastDot = -1;
+        while (end < serializedTelemetry.length && serializedTelemetry[end] != '"') {
+            if (serializedTelemetry[end] == '.') {
+                lastDot = end;
+            }
+            ++end;
+        }
+        if (end == serializedTelemetry.length) {
+            return UNKNOWN_TELEMETRY_TYPE;
+        }
+
+        if (lastDot >= start) {
+            start = lastDot + 1;
+        }
+
+        return start < end ? new String(serializedTelemetry, start, end - start, StandardCharsets.UTF_8) : UNKNOWN_TELEMETRY_TYPE;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i <= bytes.length - pattern.length; ++i) {
+            int matched = 0;
+            while (matched < pattern.length && bytes[i + matched] == pattern[matched]) {
+                ++matched;
+            }
+            if (matched == pattern.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
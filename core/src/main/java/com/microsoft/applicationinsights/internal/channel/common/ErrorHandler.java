@@ -1,5 +1,7 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.text.ParseException;
+
 import com.microsoft.applicationinsights.internal.channel.TransmissionHandler;
 import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerArgs;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
@@ -9,6 +11,9 @@ import com.microsoft.applicationinsights.internal.logger.InternalLogger;
  * 408, 500, and 503 result.
  * <p>
  * It does not handle any error codes such as 400, 401, 403, 404, etc.
+ * <p>
+ * A 503 with a Retry-After header blocks the transmissions for the requested time,
+ * the same way a throttled request does.
  *
  * @author jamdavi
  *
@@ -40,9 +45,15 @@ public class ErrorHandler implements TransmissionHandler {
         if (args.getTransmission() != null && args.getTransmissionDispatcher() != null) {
             args.getTransmission().incrementNumberOfSends();
             switch (args.getResponseCode()) {
+            case TransmissionSendResult.SERVICE_UNAVAILABLE:
+                if (suspendAsRequested(args.getRetryHeader())) {
+                    args.getTransmissionDispatcher().dispatch(args.getTransmission());
+                    return true;
+                }
+                backoffAndSendTransmission(args);
+                return true;
             case TransmissionSendResult.REQUEST_TIMEOUT:
             case TransmissionSendResult.INTERNAL_SERVER_ERROR:
-            case TransmissionSendResult.SERVICE_UNAVAILABLE:
                 backoffAndSendTransmission(args);
                 return true;
             default:
@@ -57,6 +68,24 @@ public class ErrorHandler implements TransmissionHandler {
         return false;
     }
 
+    private boolean suspendAsRequested(String retryAfterHeader) {
+        if (retryAfterHeader == null) {
+            return false;
+        }
+
+        try {
+            long retryAfterAsSeconds = ThrottlingHandler.getRetryAfterInSeconds(retryAfterHeader);
+            if (retryAfterAsSeconds <= 0) {
+                return false;
+            }
+            this.transmissionPolicyManager.suspendInSeconds(TransmissionPolicy.BLOCKED_BUT_CAN_BE_PERSISTED, retryAfterAsSeconds);
+            return true;
+        } catch (ParseException e) {
+            InternalLogger.INSTANCE.trace("Retry-After header '%s' could not be parsed", retryAfterHeader);
+            return false;
+        }
+    }
+
     private void backoffAndSendTransmission(TransmissionHandlerArgs args) {
         // It is possible for us to have a temporary blip in transmission
         // this setting will allow us to control how many instant retries we perform
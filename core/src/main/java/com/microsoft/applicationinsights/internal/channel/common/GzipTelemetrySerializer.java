@@ -21,11 +21,15 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Optional;
-import java.util.zip.GZIPOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TelemetrySerializer;
@@ -38,82 +42,226 @@ import com.microsoft.applicationinsights.telemetry.Telemetry;
  * The class is an implementation of the {@link TelemetrySerializer}
  * where the {@link Telemetry} instances are compressed by Gzip after converted to Json format
  *
+ * The items arrive already encoded as UTF-8 and are fed as they are to a reused {@link Deflater},
+ * the only array allocated per batch is the content of the resulting {@link Transmission}.
+ * The compressed stream is the one {@link java.util.zip.GZIPOutputStream} would produce for the same data.
+ *
  * Created by gupele on 12/17/2014.
  */
 public final class GzipTelemetrySerializer implements TelemetrySerializer {
     private final static String GZIP_WEB_CONTENT_TYPE = "application/x-json-stream";
     private final static String GZIP_WEB_ENCODING_TYPE = "gzip";
 
+    // Magic number, deflate, no flags, no modification time, no extra flags, unknown OS
+    private final static byte[] GZIP_HEADER = new byte[] {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private final static int GZIP_TRAILER_SIZE = 8;
+
+    private final static int MAX_POOLED_CONTEXTS = 4;
+    private final static int INITIAL_OUTPUT_BUFFER_SIZE = 64 * 1024;
+    // Buffers that grew beyond that size for an unusual batch are not kept in the pool
+    private final static int MAX_POOLED_OUTPUT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Everything needed to compress one batch, instances are reused between batches.
+     */
+    private static final class CompressionContext {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private byte[] output = new byte[INITIAL_OUTPUT_BUFFER_SIZE];
+        private int outputLength;
+        private long uncompressedLength;
+        private int itemCount;
+
+        private byte[] compress(Collection<byte[]> telemetries, byte[] newline) {
+            deflater.reset();
+            crc.reset();
+            outputLength = 0;
+            write(GZIP_HEADER, 0, GZIP_HEADER.length);
+
+            // The format is:
+            // 1. Separate each Telemetry by newline
+            // 2. Compress the entire data by using Gzip
+            int counter = 0;
+            for (byte[] telemetry : telemetries) {
+                if (telemetry == null) {
+                    InternalLogger.INSTANCE.error("Failed to serialize , exception: null telemetry");
+                    continue;
+                }
+
+                if (counter != 0) {
+                    deflate(newline, 0, newline.length);
+                }
+                deflate(telemetry, 0, telemetry.length);
+                ++counter;
+            }
+
+            if (counter == 0) {
+                return null;
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                drainDeflater();
+            }
+
+            ensureOutputCapacity(GZIP_TRAILER_SIZE);
+            writeIntLittleEndian((int) crc.getValue());
+            writeIntLittleEndian((int) deflater.getBytesRead());
+            uncompressedLength = deflater.getBytesRead();
+            itemCount = counter;
+
+            return Arrays.copyOf(output, outputLength);
+        }
+
+        private void deflate(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return;
+            }
+
+            crc.update(bytes, offset, length);
+            deflater.setInput(bytes, offset, length);
+            while (!deflater.needsInput()) {
+                drainDeflater();
+            }
+        }
+
+        private void drainDeflater() {
+            ensureOutputCapacity(1);
+            outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+        }
+
+        private void write(byte[] bytes, int offset, int length) {
+            ensureOutputCapacity(length);
+            System.arraycopy(bytes, offset, output, outputLength, length);
+            outputLength += length;
+        }
+
+        private void writeIntLittleEndian(int value) {
+            output[outputLength++] = (byte) value;
+            output[outputLength++] = (byte) (value >> 8);
+            output[outputLength++] = (byte) (value >> 16);
+            output[outputLength++] = (byte) (value >> 24);
+        }
+
+        private void ensureOutputCapacity(int needed) {
+            if (output.length - outputLength < needed) {
+                output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + needed));
+            }
+        }
+
+        private boolean isPoolable() {
+            return output.length <= MAX_POOLED_OUTPUT_BUFFER_SIZE;
+        }
+
+        private void end() {
+            deflater.end();
+        }
+    }
+
     private final byte[] newlineString;
 
+    private final Queue<CompressionContext> contexts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledContexts = new AtomicInteger(0);
+
+    private final PayloadSizeEstimator payloadSizeEstimator;
+
+    private final TransmissionItemsCache itemsCache;
+
+    private final ChannelStatistics statistics;
+
     public GzipTelemetrySerializer() {
-        this.newlineString = System.getProperty("line.separator").getBytes();
+        this(null);
+    }
+
+    /**
+     * @param payloadSizeEstimator If not null, gets the uncompressed and compressed sizes of every batch.
+     */
+    public GzipTelemetrySerializer(PayloadSizeEstimator payloadSizeEstimator) {
+        this(payloadSizeEstimator, null);
+    }
+
+    /**
+     * @param payloadSizeEstimator If not null, gets the uncompressed and compressed sizes of every batch.
+     * @param itemsCache If not null, gets the items of every batch for partial success retries.
+     */
+    public GzipTelemetrySerializer(PayloadSizeEstimator payloadSizeEstimator, TransmissionItemsCache itemsCache) {
+        this(payloadSizeEstimator, itemsCache, null);
+    }
+
+    /**
+     * @param payloadSizeEstimator If not null, gets the uncompressed and compressed sizes of every batch.
+     * @param itemsCache If not null, gets the items of every batch for partial success retries.
+     * @param statistics If not null, gets the compressed size of every batch.
+     */
+    public GzipTelemetrySerializer(PayloadSizeEstimator payloadSizeEstimator, TransmissionItemsCache itemsCache, ChannelStatistics statistics) {
+        this.newlineString = System.getProperty("line.separator").getBytes(StandardCharsets.UTF_8);
+        this.payloadSizeEstimator = payloadSizeEstimator;
+        this.itemsCache = itemsCache;
+        this.statistics = statistics;
     }
 
     @Override
-    public Optional<Transmission> serialize(Collection<String> telemetries) {
+    public Optional<Transmission> serialize(Collection<byte[]> telemetries) {
         Preconditions.checkNotNull(telemetries, "telemetries must be non-null value");
         Preconditions.checkArgument(!telemetries.isEmpty(), "telemetries: One or more telemetry item is expected");
 
         Transmission result = null;
-        boolean succeeded = false;
+        CompressionContext context = acquireContext();
+        boolean reusable = false;
         try {
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-
-            try {
-                GZIPOutputStream zipStream = new GZIPOutputStream(byteStream);
-
-                try {
-                    succeeded = compress(zipStream, telemetries);
-                } catch (Exception e) {
-                    InternalLogger.INSTANCE.error("Failed to serialize , exception: %s", e.toString());
-                } catch (ThreadDeath td) {
-                    throw td;
-                } catch (Throwable t) {
-                    try {
-                        InternalLogger.INSTANCE.error("Failed to serialize, unknown exception: %s", t.toString());                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable t2) {
-                        // chomp
-                    }
-                } finally {
-                    zipStream.close();
+            long startTimeInNanos = System.nanoTime();
+            byte[] content = context.compress(telemetries, newlineString);
+            if (content != null) {
+                result = new Transmission(content, GZIP_WEB_CONTENT_TYPE, GZIP_WEB_ENCODING_TYPE);
+                if (payloadSizeEstimator != null) {
+                    payloadSizeEstimator.onBatchCompressed(context.uncompressedLength, content.length);
                 }
-            } finally {
-                byteStream.close();
-
-                // The creation of the result must be done after the 'zipStream' is closed
-                if (succeeded) {
-                    result = new Transmission(byteStream.toByteArray(), GZIP_WEB_CONTENT_TYPE, GZIP_WEB_ENCODING_TYPE);
+                if (statistics != null) {
+                    statistics.onBatchCompressed(content.length, System.nanoTime() - startTimeInNanos);
+                }
+                // Items that failed to serialize are not in the content, so the indices would not match
+                if (itemsCache != null && context.itemCount == telemetries.size()) {
+                    itemsCache.put(result, telemetries);
                 }
             }
-        } catch(Exception e) {
+            reusable = true;
+        } catch (Exception e) {
             InternalLogger.INSTANCE.error("Failed to serialize , exception: %s", e.toString());
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to serialize, unknown exception: %s", t.toString());
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        } finally {
+            releaseContext(context, reusable);
         }
 
         return Optional.ofNullable(result);
     }
 
-    private boolean compress(GZIPOutputStream zipStream, Collection<String> telemetries) throws IOException {
-        int counter = 0;
+    private CompressionContext acquireContext() {
+        CompressionContext context = contexts.poll();
+        if (context == null) {
+            return new CompressionContext();
+        }
 
-        // The format is:
-        // 1. Separate each Telemetry by newline
-        // 2. Compress the entire data by using Gzip
-        for (String telemetry : telemetries) {
+        pooledContexts.decrementAndGet();
+        return context;
+    }
 
-            if (counter != 0) {
-                zipStream.write(newlineString);
-            }
-
-            try {
-                zipStream.write(telemetry.getBytes());
-                ++counter;
-            } catch (Exception e) {
-                InternalLogger.INSTANCE.error("Failed to serialize , exception: %s", e.toString());
+    private void releaseContext(CompressionContext context, boolean reusable) {
+        if (reusable && context.isPoolable()) {
+            if (pooledContexts.incrementAndGet() <= MAX_POOLED_CONTEXTS) {
+                contexts.offer(context);
+                return;
             }
+            pooledContexts.decrementAndGet();
         }
-
-        return counter > 0;
+        context.end();
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.time.Duration;
+
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunctions;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+import io.netty.handler.ssl.SslContextBuilder;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.tcp.SslProvider;
+
+/**
+ * Holds the one connection pool that is shared by the ingestion and the QuickPulse clients.
+ *
+ * Creating a client per request, as we used to, means a new connection, and for https a new TLS handshake,
+ * for most of the batches. The pool is created with the {@link HttpConnectionSettings} given to
+ * {@link #configure(HttpConnectionSettings)}, which should be called before the first request, and
+ * its state is exposed through {@link #getConnectionPoolMetrics()}.
+ */
+public enum HttpClientFactory {
+    INSTANCE;
+
+    private static final String CONNECTION_POOL_NAME = "applicationinsights";
+
+    private final ConnectionPoolMetrics connectionPoolMetrics = new ConnectionPoolMetrics();
+
+    private HttpConnectionSettings settings = new HttpConnectionSettings();
+    private ConnectionProvider connectionProvider;
+    private ClientHttpConnector connector;
+    private ExchangeFunction exchangeFunction;
+
+    /**
+     * Replaces the settings of the pool, the connections of the previous pool are closed.
+     * @param settings The new settings
+     */
+    public synchronized void configure(HttpConnectionSettings settings) {
+        Preconditions.checkNotNull(settings, "settings must be a non-null value");
+
+        this.settings = settings;
+        if (connectionProvider != null) {
+            InternalLogger.INSTANCE.warn("Connection settings were changed after the first request, the connections of the previous pool are closed");
+            connectionProvider.disposeLater().subscribe();
+        }
+        connectionProvider = null;
+        connector = null;
+        exchangeFunction = null;
+    }
+
+    public synchronized HttpConnectionSettings getSettings() {
+        return settings;
+    }
+
+    public synchronized ClientHttpConnector getConnector() {
+        if (connector == null) {
+            connectionProvider = createConnectionProvider(settings);
+            connector = new ReactorClientHttpConnector(createHttpClient(connectionProvider, settings, connectionPoolMetrics));
+        }
+        return connector;
+    }
+
+    public synchronized ExchangeFunction getExchangeFunction() {
+        if (exchangeFunction == null) {
+            exchangeFunction = ExchangeFunctions.create(getConnector());
+        }
+        return exchangeFunction;
+    }
+
+    public ConnectionPoolMetrics getConnectionPoolMetrics() {
+        return connectionPoolMetrics;
+    }
+
+    static ConnectionProvider createConnectionProvider(HttpConnectionSettings settings) {
+        return ConnectionProvider.builder(CONNECTION_POOL_NAME)
+                .maxConnections(settings.getMaxConnections())
+                .pendingAcquireMaxCount(settings.getMaxPendingAcquires())
+                .pendingAcquireTimeout(Duration.ofMillis(settings.getPendingAcquireTimeoutInMillis()))
+                .maxIdleTime(Duration.ofSeconds(settings.getMaxIdleTimeInSeconds()))
+                .build();
+    }
+
+    static HttpClient createHttpClient(ConnectionProvider connectionProvider, HttpConnectionSettings settings, ConnectionPoolMetrics metrics) {
+        HttpClient client = HttpClient.create(connectionProvider)
+                .keepAlive(settings.isKeepAlive())
+                .tcpConfiguration(tcpClient -> tcpClient.doOnConnected(connection -> {
+                    metrics.onConnectionOpened();
+                    connection.onDispose(metrics::onConnectionClosed);
+                }))
+                // A new connection is 'connected', a pooled one is 'acquired', both are 'released' to the pool
+                .observe((connection, state) -> {
+                    if (state == ConnectionObserver.State.CONNECTED || state == ConnectionObserver.State.ACQUIRED) {
+                        metrics.onConnectionAcquired();
+                    } else if (state == ConnectionObserver.State.RELEASED) {
+                        metrics.onConnectionReleased();
+                    }
+                })
+                .mapConnect((connect, bootstrap) -> connect
+                        .doOnSubscribe(subscription -> metrics.onAcquireStarted())
+                        .doFinally(signal -> metrics.onAcquireEnded()));
+
+        if (settings.isHttp2()) {
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        if (settings.getTlsSessionCacheSize() > 0 || settings.getTlsSessionTimeoutInSeconds() > 0) {
+            final SslContextBuilder sslContextBuilder = SslContextBuilder.forClient();
+            if (settings.getTlsSessionCacheSize() > 0) {
+                sslContextBuilder.sessionCacheSize(settings.getTlsSessionCacheSize());
+            }
+            if (settings.getTlsSessionTimeoutInSeconds() > 0) {
+                sslContextBuilder.sessionTimeout(settings.getTlsSessionTimeoutInSeconds());
+            }
+            final SslProvider.DefaultConfigurationType configurationType =
+                    settings.isHttp2() ? SslProvider.DefaultConfigurationType.H2 : SslProvider.DefaultConfigurationType.TCP;
+            client = client.secure(spec -> spec.sslContext(sslContextBuilder).defaultConfiguration(configurationType));
+        }
+
+        return client;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+/**
+ * The settings of the connections shared by the ingestion and the QuickPulse clients.
+ *
+ * The defaults keep connections alive and reuse them, which also lets TLS sessions be resumed
+ * instead of doing a full handshake for every batch.
+ */
+public final class HttpConnectionSettings {
+    public static final int DEFAULT_MAX_CONNECTIONS = HttpSender.DEFAULT_MAX_TOTAL_CONNECTIONS;
+    public static final int DEFAULT_MAX_PENDING_ACQUIRES = 1000;
+    public static final int DEFAULT_PENDING_ACQUIRE_TIMEOUT_IN_MILLIS = HttpSender.REQUEST_TIMEOUT_IN_MILLIS;
+    // Below the 4 minutes after which idle connections are closed by the Azure load balancers
+    public static final int DEFAULT_MAX_IDLE_TIME_IN_SECONDS = 180;
+    public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 0;
+    public static final int DEFAULT_TLS_SESSION_TIMEOUT_IN_SECONDS = 0;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxPendingAcquires = DEFAULT_MAX_PENDING_ACQUIRES;
+    private int pendingAcquireTimeoutInMillis = DEFAULT_PENDING_ACQUIRE_TIMEOUT_IN_MILLIS;
+    private int maxIdleTimeInSeconds = DEFAULT_MAX_IDLE_TIME_IN_SECONDS;
+    private boolean keepAlive = true;
+    private boolean http2 = false;
+    private int tlsSessionCacheSize = DEFAULT_TLS_SESSION_CACHE_SIZE;
+    private int tlsSessionTimeoutInSeconds = DEFAULT_TLS_SESSION_TIMEOUT_IN_SECONDS;
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxPendingAcquires() {
+        return maxPendingAcquires;
+    }
+
+    public void setMaxPendingAcquires(int maxPendingAcquires) {
+        this.maxPendingAcquires = maxPendingAcquires;
+    }
+
+    public int getPendingAcquireTimeoutInMillis() {
+        return pendingAcquireTimeoutInMillis;
+    }
+
+    public void setPendingAcquireTimeoutInMillis(int pendingAcquireTimeoutInMillis) {
+        this.pendingAcquireTimeoutInMillis = pendingAcquireTimeoutInMillis;
+    }
+
+    public int getMaxIdleTimeInSeconds() {
+        return maxIdleTimeInSeconds;
+    }
+
+    public void setMaxIdleTimeInSeconds(int maxIdleTimeInSeconds) {
+        this.maxIdleTimeInSeconds = maxIdleTimeInSeconds;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * When true, HTTP/2 is negotiated with the endpoints that support it, so batches are multiplexed on fewer connections.
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    /**
+     * @return The number of TLS sessions kept for resumption, 0 for the JDK default
+     */
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    /**
+     * @return How long a TLS session can be resumed, 0 for the JDK default
+     */
+    public int getTlsSessionTimeoutInSeconds() {
+        return tlsSessionTimeoutInSeconds;
+    }
+
+    public void setTlsSessionTimeoutInSeconds(int tlsSessionTimeoutInSeconds) {
+        this.tlsSessionTimeoutInSeconds = tlsSessionTimeoutInSeconds;
+    }
+}
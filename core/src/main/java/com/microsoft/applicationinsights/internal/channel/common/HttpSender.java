@@ -26,6 +26,8 @@ import java.io.IOException;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 
+import reactor.core.publisher.Mono;
+
 /**
  * Created by gupele on 6/4/2015.
  */
@@ -36,5 +38,12 @@ public interface HttpSender {
 
     ClientResponse sendPostRequest(ClientRequest post) throws IOException;
 
+    /**
+     * Sends the request without waiting for the response.
+     * @param post The request to send
+     * @return The response, emitted by the thread that receives it
+     */
+    Mono<ClientResponse> sendPostRequestAsync(ClientRequest post);
+
     void enhanceRequest(ClientRequest request);
 }
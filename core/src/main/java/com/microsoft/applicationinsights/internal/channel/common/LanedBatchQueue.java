@@ -0,0 +1,116 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayDeque;
+
+/**
+ * One queue of batches per {@link TelemetryLane}, drained by smooth weighted round robin:
+ * when several lanes have batches waiting, each one is polled in proportion to its weight,
+ * and a lane with nothing waiting does not build up credit.
+ *
+ * The class is not thread safe, its owner is expected to guard it.
+ *
+ * @param <E> The type of the batches
+ */
+final class LanedBatchQueue<E> {
+    private static final TelemetryLane[] LANES = TelemetryLane.values();
+
+    private final ArrayDeque<E>[] queues;
+
+    private final int[] credits = new int[LANES.length];
+
+    @SuppressWarnings("unchecked")
+    LanedBatchQueue() {
+        queues = new ArrayDeque[LANES.length];
+        for (int i = 0; i < queues.length; ++i) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    void addLast(TelemetryLane lane, E batch) {
+        queues[lane.ordinal()].addLast(batch);
+    }
+
+    /**
+     * @return The oldest batch of the lane whose turn it is, null if nothing is waiting
+     */
+    E pollNext() {
+        int totalWeight = 0;
+        int next = -1;
+        for (int i = 0; i < queues.length; ++i) {
+            if (queues[i].isEmpty()) {
+                credits[i] = 0;
+                continue;
+            }
+            credits[i] += LANES[i].getWeight();
+            totalWeight += LANES[i].getWeight();
+            if (next == -1 || credits[i] > credits[next]) {
+                next = i;
+            }
+        }
+
+        if (next == -1) {
+            return null;
+        }
+
+        credits[next] -= totalWeight;
+        return queues[next].pollFirst();
+    }
+
+    E pollFirst(TelemetryLane lane) {
+        return queues[lane.ordinal()].pollFirst();
+    }
+
+    E pollLast(TelemetryLane lane) {
+        return queues[lane.ordinal()].pollLast();
+    }
+
+    boolean isEmpty(TelemetryLane lane) {
+        return queues[lane.ordinal()].isEmpty();
+    }
+
+    /**
+     * @param lane The lane of an incoming batch
+     * @return The least important lane that is less important than 'lane' and has batches waiting, null if there is none
+     */
+    TelemetryLane findLaneToShedBelow(TelemetryLane lane) {
+        for (int i = queues.length - 1; i > lane.ordinal(); --i) {
+            if (!queues[i].isEmpty()) {
+                return LANES[i];
+            }
+        }
+        return null;
+    }
+
+    int size(TelemetryLane lane) {
+        return queues[lane.ordinal()].size();
+    }
+
+    int size() {
+        int size = 0;
+        for (ArrayDeque<E> queue : queues) {
+            size += queue.size();
+        }
+        return size;
+    }
+}
@@ -64,5 +64,18 @@ public final class NonBlockingDispatcher implements TransmissionDispatcher {
             output.stop(timeout, timeUnit);
         }
     }
+
+    /**
+     * The outputs are stopped one after the other, each with an equal share of what is left of the timeout,
+     * so the last ones, which get what the first ones gave up on, still have time for it.
+     */
+    @Override
+    public void stopWithin(long timeout, TimeUnit timeUnit) {
+        long deadlineInNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+        for (int i = 0; i < transmissionOutputs.length; ++i) {
+            long leftInNanos = Math.max(0L, deadlineInNanos - System.nanoTime());
+            transmissionOutputs[i].stop(leftInNanos / (transmissionOutputs.length - i), TimeUnit.NANOSECONDS);
+        }
+    }
 }
 
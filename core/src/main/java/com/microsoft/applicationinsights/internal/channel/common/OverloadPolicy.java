@@ -0,0 +1,104 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+/**
+ * Tells the {@link TransmitterImpl} what to do with a batch when all its pending slots are taken.
+ *
+ * DROP_NEWEST drops the incoming batch, which protects the latency of the application threads.
+ * DROP_OLDEST drops the oldest pending batch to make room for the incoming one.
+ * BLOCK_WITH_TIMEOUT makes the calling thread wait for a slot, up to a timeout, which protects the data.
+ * DEGRADE_BY_SAMPLING keeps a percentage of the incoming batch and appends it to the newest pending batch.
+ *
+ * DROP_OLDEST and DEGRADE_BY_SAMPLING act within the lane of the batch, when that lane has no pending batch
+ * the incoming one is dropped as with DROP_NEWEST.
+ *
+ * Whatever is dropped is counted in {@link DroppedTelemetryCounters}.
+ */
+public final class OverloadPolicy {
+    public enum Type {
+        DROP_NEWEST,
+        DROP_OLDEST,
+        BLOCK_WITH_TIMEOUT,
+        DEGRADE_BY_SAMPLING
+    }
+
+    public static final long DEFAULT_BLOCK_TIMEOUT_IN_MILLIS = 100;
+    public static final int DEFAULT_SAMPLING_PERCENTAGE = 10;
+
+    public static final OverloadPolicy DEFAULT = new OverloadPolicy(Type.DROP_NEWEST, DEFAULT_BLOCK_TIMEOUT_IN_MILLIS, DEFAULT_SAMPLING_PERCENTAGE);
+
+    private final Type type;
+    private final long blockTimeoutInMillis;
+    private final int samplingPercentage;
+
+    public OverloadPolicy(Type type, long blockTimeoutInMillis, int samplingPercentage) {
+        Preconditions.checkNotNull(type, "type must be a non-null value");
+        Preconditions.checkArgument(blockTimeoutInMillis >= 0, "blockTimeoutInMillis must be a non negative number");
+        Preconditions.checkArgument(samplingPercentage >= 0 && samplingPercentage <= 100, "samplingPercentage must be between 0 and 100");
+
+        this.type = type;
+        this.blockTimeoutInMillis = blockTimeoutInMillis;
+        this.samplingPercentage = samplingPercentage;
+    }
+
+    /**
+     * Parses the name of a policy type, for example 'drop_oldest'
+     * @param typeAsString The name of the type, case is ignored
+     * @return The matching type, or the type of the default policy if there is no match
+     */
+    public static Type parseType(String typeAsString) {
+        Type type = DEFAULT.getType();
+        if (StringUtils.isEmpty(typeAsString)) {
+            return type;
+        }
+
+        try {
+            type = Type.valueOf(typeAsString.trim().toUpperCase());
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.error("Failed to parse overload policy '%s', using the default '%s'", typeAsString, type);
+        }
+        return type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getBlockTimeoutInMillis() {
+        return blockTimeoutInMillis;
+    }
+
+    public int getSamplingPercentage() {
+        return samplingPercentage;
+    }
+
+    @Override
+    public String toString() {
+        return type.toString();
+    }
+}
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -30,6 +31,10 @@ import com.microsoft.applicationinsights.internal.logger.InternalLogger;
  */
 public class PartialSuccessHandler implements TransmissionHandler {
 
+    private final TransmissionItemsCache itemsCache;
+
+    private final GzipTelemetrySerializer serializer;
+
     /**
      * Ctor
      *
@@ -40,6 +45,25 @@ public class PartialSuccessHandler implements TransmissionHandler {
      *            control the back off policy.
      */
     public PartialSuccessHandler(TransmissionPolicyManager policy) {
+        this(policy, null);
+    }
+
+    /**
+     * Ctor
+     *
+     * Constructs the PartialSuccessHandler object.
+     *
+     * @param policy
+     *            The {@link TransmissionPolicyManager} object that is needed to
+     *            control the back off policy.
+     * @param itemsCache
+     *            Where the items of the transmissions are found without decompressing
+     *            them, may be null.
+     */
+    public PartialSuccessHandler(TransmissionPolicyManager policy, TransmissionItemsCache itemsCache) {
+        this.itemsCache = itemsCache;
+        // The retries are cached too, since they can be partially accepted again
+        this.serializer = new GzipTelemetrySerializer(null, itemsCache);
     }
 
     @Override
@@ -64,7 +88,7 @@ public class PartialSuccessHandler implements TransmissionHandler {
     	}
 	
         BackendResponse backendResponse = getBackendResponse(args.getResponseBody());
-        List<String> originalItems = generateOriginalItems(args);
+        List<byte[]> originalItems = getOriginalItems(args);
 
         // Somehow the amount of items received and the items sent do not match
         if (backendResponse != null && (originalItems.size() != backendResponse.itemsReceived)) {
@@ -73,7 +97,7 @@ public class PartialSuccessHandler implements TransmissionHandler {
         }
 
         if (backendResponse != null && (backendResponse.itemsAccepted < backendResponse.itemsReceived)) {
-            List<String> newTransmission = new ArrayList<String>();
+            List<byte[]> newTransmission = new ArrayList<byte[]>();
             for (BackendResponse.Error e : backendResponse.errors) {
                 switch (e.statusCode) {
                 case TransmissionSendResult.REQUEST_TIMEOUT:
@@ -96,6 +120,26 @@ public class PartialSuccessHandler implements TransmissionHandler {
 
     }
 
+    /**
+     * Gets the items of the original telemetry request from the cache, and only
+     * if they are not there anymore parses the request.
+     *
+     * @param args
+     *            The {@link TransmissionHandlerArgs} that contains the
+     *            {@link Transmission} object.
+     * @return A List<> of each sent item
+     */
+    List<byte[]> getOriginalItems(TransmissionHandlerArgs args) {
+        if (itemsCache != null) {
+            List<byte[]> items = itemsCache.remove(args.getTransmission());
+            if (items != null) {
+                return items;
+            }
+        }
+
+        return generateOriginalItems(args);
+    }
+
     /**
      * Used to parse the original telemetry request in order to resend the failed
      * ones.
@@ -105,8 +149,8 @@ public class PartialSuccessHandler implements TransmissionHandler {
      *            {@link Transmission} object.
      * @return A List<> of each sent item
      */
-    List<String> generateOriginalItems(TransmissionHandlerArgs args) {
-        List<String> originalItems = new ArrayList<String>();
+    List<byte[]> generateOriginalItems(TransmissionHandlerArgs args) {
+        List<byte[]> originalItems = new ArrayList<byte[]>();
 
         if ("gzip".equalsIgnoreCase(args.getTransmission().getWebContentEncodingType())) {
 
@@ -116,10 +160,10 @@ public class PartialSuccessHandler implements TransmissionHandler {
             try {
                 gis = new GZIPInputStream(
                         new ByteArrayInputStream(args.getTransmission().getContent()));
-                bufferedReader = new BufferedReader(new InputStreamReader(gis));
+                bufferedReader = new BufferedReader(new InputStreamReader(gis, StandardCharsets.UTF_8));
                 String line;
                 while ((line = bufferedReader.readLine()) != null) {
-                    originalItems.add(line);
+                    originalItems.add(line.getBytes(StandardCharsets.UTF_8));
                 }
             } catch (IOException ex) {
                 InternalLogger.INSTANCE.error("IOException: Error while reading the GZIP stream.%nStack Trace:%n%s", ExceptionUtils.getStackTrace(ex));
@@ -142,8 +186,8 @@ public class PartialSuccessHandler implements TransmissionHandler {
                 }
             }
         } else {
-            for (String s : new String(args.getTransmission().getContent()).split("\r\n")) {
-                originalItems.add(s);
+            for (String s : new String(args.getTransmission().getContent(), StandardCharsets.UTF_8).split("\r\n")) {
+                originalItems.add(s.getBytes(StandardCharsets.UTF_8));
             }
         }
         return originalItems;
@@ -160,9 +204,8 @@ public class PartialSuccessHandler implements TransmissionHandler {
      *            The {@link List} of items to resent
      * @return A pass/fail response
      */
-    boolean sendNewTransmission(TransmissionHandlerArgs args, List<String> newTransmission) {
+    boolean sendNewTransmission(TransmissionHandlerArgs args, List<byte[]> newTransmission) {
         if (!newTransmission.isEmpty()) {
-            GzipTelemetrySerializer serializer = new GzipTelemetrySerializer();
             Optional<Transmission> newT = serializer.serialize(newTransmission);
             args.getTransmissionDispatcher().dispatch(newT.get());
             return true;
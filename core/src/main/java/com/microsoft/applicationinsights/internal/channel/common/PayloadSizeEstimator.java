@@ -0,0 +1,66 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+/**
+ * Estimates the compressed size of a batch from its uncompressed size.
+ *
+ * The estimate uses the compression ratio of the batches that were actually compressed,
+ * smoothed with an exponential moving average, the {@link GzipTelemetrySerializer} reports
+ * every batch it compresses. Concurrent reports may overwrite each other, which is fine for an estimate.
+ */
+public final class PayloadSizeEstimator {
+    // Telemetry json usually compresses 5 to 10 times, we start with the low end of that
+    private static final double INITIAL_COMPRESSION_RATIO = 0.2;
+
+    // The weight of the latest batch in the moving average
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private volatile double compressionRatio = INITIAL_COMPRESSION_RATIO;
+
+    /**
+     * @param uncompressedSizeInBytes The size of the data before compression
+     * @return The expected size of that data once compressed
+     */
+    public long estimateCompressedSize(long uncompressedSizeInBytes) {
+        return (long) (uncompressedSizeInBytes * compressionRatio);
+    }
+
+    /**
+     * Records the outcome of a compression
+     * @param uncompressedSizeInBytes The size of the data before compression
+     * @param compressedSizeInBytes The size of the data after compression
+     */
+    public void onBatchCompressed(long uncompressedSizeInBytes, long compressedSizeInBytes) {
+        if (uncompressedSizeInBytes <= 0 || compressedSizeInBytes <= 0) {
+            return;
+        }
+
+        double observed = (double) compressedSizeInBytes / uncompressedSizeInBytes;
+        double current = compressionRatio;
+        compressionRatio = current + SMOOTHING_FACTOR * (observed - current);
+    }
+
+    public double getCompressionRatio() {
+        return compressionRatio;
+    }
+}
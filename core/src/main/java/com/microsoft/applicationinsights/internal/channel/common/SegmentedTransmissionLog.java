@@ -0,0 +1,505 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
+
+/**
+ * Keeps {@link Transmission}s on the disk as records appended to a few segment files,
+ * instead of one serialized file per {@link Transmission}.
+ *
+ * Every record is made of its length, the CRC32 of its content and the content itself.
+ * Segments are written until they reach their size, and deleted once all their records were fetched.
+ * The position of the next record to fetch is kept in a cursor file, so what was fetched
+ * is not fetched again after a restart.
+ *
+ * Transmission files left by {@link TransmissionFileSystemOutput} in the same folder are moved into
+ * the log when it is created.
+ */
+public final class SegmentedTransmissionLog implements TransmissionStorage {
+    private final static String TRANSMISSION_DEFAULT_FOLDER = "transmissions";
+    private final static String SEGMENT_FILE_PREFIX = "Transmissions-";
+    private final static String SEGMENT_FILE_EXTENSION = ".seg";
+    private final static String SEGMENT_FILE_EXTENSION_FOR_SEARCH = "seg";
+    private final static String LEGACY_FILE_EXTENSION_FOR_SEARCH = "trn";
+    private final static String CURSOR_FILE_NAME = "Transmissions.cursor";
+
+    public final static int DEFAULT_SEGMENT_SIZE_IN_BYTES = 1024 * 1024;
+
+    // The length and the checksum of the record
+    final static int RECORD_HEADER_SIZE = 8;
+    private final static int RECORD_FORMAT_VERSION = 1;
+
+    // The id of the segment and the position in it
+    private final static int CURSOR_SIZE = 16;
+
+    private final File folder;
+
+    private final long capacityInBytes;
+
+    private final int segmentSizeInBytes;
+
+    // Oldest first, records are fetched from the first one and appended to the last one
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+
+    private long nextSegmentId = 1;
+
+    // The position of the next record to fetch in the first segment
+    private long readPosition;
+
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    private final ByteBuffer cursorBuffer = ByteBuffer.allocate(CURSOR_SIZE);
+
+    private final FileChannel cursorChannel;
+
+    /// The size of the segments we have on the disk
+    private long size;
+
+    private boolean stopped;
+
+    private volatile Runnable transmissionStoredListener;
+
+    public SegmentedTransmissionLog(String folderPath, String maxTransmissionStorageCapacity) {
+        this(folderPath, maxTransmissionStorageCapacity, DEFAULT_SEGMENT_SIZE_IN_BYTES);
+    }
+
+    public SegmentedTransmissionLog(String folderPath, String maxTransmissionStorageCapacity, int segmentSizeInBytes) {
+        Preconditions.checkArgument(segmentSizeInBytes > RECORD_HEADER_SIZE, "segmentSizeInBytes must be larger than the record header");
+
+        if (folderPath == null) {
+            folderPath = new File(LocalFileSystemUtils.getTempDir(), TRANSMISSION_DEFAULT_FOLDER).getPath();
+        }
+
+        LimitsEnforcer capacityEnforcer = LimitsEnforcer.createWithClosestLimitOnError(TransmissionFileSystemOutput.MIN_CAPACITY_MEGABYTES,
+                                                                                       TransmissionFileSystemOutput.MAX_CAPACITY_MEGABYTES,
+                                                                                       TransmissionFileSystemOutput.DEFAULT_CAPACITY_MEGABYTES,
+                                                                                       TransmissionFileSystemOutput.MAX_TRANSMISSION_STORAGE_CAPACITY_NAME,
+                                                                                       maxTransmissionStorageCapacity);
+        this.capacityInBytes = capacityEnforcer.getCurrentValue() * 1024L * 1024L;
+        this.segmentSizeInBytes = segmentSizeInBytes;
+
+        folder = new File(folderPath);
+
+        if (!folder.exists()) {
+            folder.mkdir();
+        }
+
+        if (!folder.exists() || !folder.canRead() || !folder.canWrite()) {
+            throw new IllegalArgumentException("Folder must exist with read and write permissions");
+        }
+
+        try {
+            cursorChannel = FileChannel.open(new File(folder, CURSOR_FILE_NAME).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to open the cursor file in " + folderPath, e);
+        }
+
+        recover();
+        migrateTransmissionFiles();
+    }
+
+    @Override
+    public boolean send(Transmission transmission) {
+        byte[] record;
+        try {
+            record = encode(transmission);
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.error("Failed to encode transmission, exception: %s", e.toString());
+            return false;
+        }
+
+        synchronized (this) {
+            if (stopped) {
+                return false;
+            }
+
+            if (size + record.length > capacityInBytes) {
+                InternalLogger.INSTANCE.logAlways(InternalLogger.LoggingLevel.WARN, "Persistent storage max capacity has been reached; "
+                    + "currently at %.3f KB. Telemetry will be lost, "
+                    + "please consider increasing the value of MaxTransmissionStorageFilesCapacityInMB property in the configuration file.",
+                    (size / 1024.0));
+                return false;
+            }
+
+            try {
+                Segment segment = getSegmentToAppendTo(record.length);
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    segment.channel.write(buffer, segment.length + buffer.position());
+                }
+
+                // A record that was not completely written is overwritten by the next one
+                segment.length += record.length;
+                size += record.length;
+            } catch (IOException e) {
+                InternalLogger.INSTANCE.error("Failed to append transmission to the log, exception: %s", e.toString());
+                return false;
+            }
+        }
+
+        InternalLogger.INSTANCE.info("Data persisted to file. To be sent when the network is available.");
+        Runnable listener = transmissionStoredListener;
+        if (listener != null) {
+            listener.run();
+        }
+        return true;
+    }
+
+    @Override
+    public void setTransmissionStoredListener(Runnable listener) {
+        this.transmissionStoredListener = listener;
+    }
+
+    @Override
+    public synchronized Transmission fetchOldest() {
+        while (!stopped && !segments.isEmpty()) {
+            Segment segment = segments.peekFirst();
+            if (readPosition >= segment.length) {
+                if (segment == segments.peekLast()) {
+                    // Still appended to
+                    return null;
+                }
+
+                deleteSegment(segments.pollFirst());
+                readPosition = 0;
+                continue;
+            }
+
+            Transmission transmission;
+            try {
+                transmission = readRecord(segment);
+            } catch (IOException e) {
+                // The next records cannot be found without the length of this one
+                InternalLogger.INSTANCE.error("Failed to read the log at %d of '%s', the rest of it is dropped, exception: %s",
+                        readPosition, segment.file.getName(), e.toString());
+                readPosition = segment.length;
+                continue;
+            }
+
+            saveCursor(segment.id);
+            if (transmission != null) {
+                return transmission;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized void stop(long timeout, TimeUnit timeUnit) {
+        if (stopped) {
+            return;
+        }
+
+        stopped = true;
+        for (Segment segment : segments) {
+            segment.close();
+        }
+
+        try {
+            cursorChannel.close();
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.error("Failed to close the cursor file, exception: %s", e.toString());
+        }
+    }
+
+    /**
+     * @return The number of bytes the segments take on the disk
+     */
+    @Override
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return When the oldest segment that is still to be read was created, which is when its first transmission was persisted
+     */
+    @Override
+    public synchronized long getOldestStoredTimeInMillis() {
+        Segment oldest = segments.peekFirst();
+        if (oldest == null || (oldest == segments.peekLast() && readPosition >= oldest.length)) {
+            return 0;
+        }
+        return oldest.createdTimeInMillis;
+    }
+
+    /**
+     * @return The number of segment files on the disk
+     */
+    public synchronized int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    private Segment getSegmentToAppendTo(int recordLength) throws IOException {
+        Segment last = segments.peekLast();
+        if (last != null && last.writable && (last.length == 0 || last.length + recordLength <= segmentSizeInBytes)) {
+            return last;
+        }
+
+        // Segments that were there before we started are only read, since their end might be torn
+        Segment segment = new Segment(nextSegmentId++, folder);
+        segment.channel = FileChannel.open(segment.file.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.writable = true;
+        segment.createdTimeInMillis = System.currentTimeMillis();
+        if (last != null) {
+            last.writable = false;
+        }
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private Transmission readRecord(Segment segment) throws IOException {
+        if (segment.channel == null) {
+            segment.channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ);
+        }
+
+        headerBuffer.clear();
+        readFully(segment.channel, headerBuffer, readPosition);
+        int length = headerBuffer.getInt(0);
+        int checksum = headerBuffer.getInt(4);
+        if (length <= 0 || readPosition + RECORD_HEADER_SIZE + length > segment.length) {
+            throw new IOException("Bad record length " + length);
+        }
+
+        ByteBuffer content = ByteBuffer.allocate(length);
+        readFully(segment.channel, content, readPosition + RECORD_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(content.array(), 0, length);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Bad record checksum");
+        }
+
+        readPosition += RECORD_HEADER_SIZE + length;
+        try {
+            return decode(content.array());
+        } catch (IOException | IllegalArgumentException e) {
+            // The record is intact but not understood, only that one is dropped
+            InternalLogger.INSTANCE.error("Failed to decode transmission from '%s', exception: %s", segment.file.getName(), e.toString());
+            return null;
+        }
+    }
+
+    private void saveCursor(long segmentId) {
+        cursorBuffer.clear();
+        cursorBuffer.putLong(segmentId).putLong(readPosition).flip();
+        try {
+            while (cursorBuffer.hasRemaining()) {
+                cursorChannel.write(cursorBuffer, cursorBuffer.position());
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.error("Failed to save the log cursor, exception: %s", e.toString());
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segment.close();
+        size -= segment.length;
+        if (!segment.file.delete()) {
+            InternalLogger.INSTANCE.error("Failed to delete drained segment '%s'", segment.file.getName());
+        }
+    }
+
+    private void recover() {
+        Collection<File> files = FileUtils.listFiles(folder, new String[] {SEGMENT_FILE_EXTENSION_FOR_SEARCH}, false);
+        List<Segment> found = new ArrayList<Segment>(files.size());
+        for (File file : files) {
+            Long id = Segment.parseId(file.getName());
+            if (id == null) {
+                continue;
+            }
+            Segment segment = new Segment(id, folder);
+            segment.length = file.length();
+            // The creation time is not kept by every file system, the last write is close enough for an estimate
+            segment.createdTimeInMillis = file.lastModified();
+            found.add(segment);
+        }
+        Collections.sort(found);
+
+        long cursorSegmentId = 0;
+        long cursorPosition = 0;
+        try {
+            if (cursorChannel.size() >= CURSOR_SIZE) {
+                cursorBuffer.clear();
+                readFully(cursorChannel, cursorBuffer, 0);
+                cursorSegmentId = cursorBuffer.getLong(0);
+                cursorPosition = cursorBuffer.getLong(8);
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.error("Failed to read the log cursor, stored transmissions might be sent again, exception: %s", e.toString());
+        }
+
+        for (Segment segment : found) {
+            nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+            if (segment.id < cursorSegmentId) {
+                // Drained before the segment could be deleted
+                if (!segment.file.delete()) {
+                    InternalLogger.INSTANCE.error("Failed to delete drained segment '%s'", segment.file.getName());
+                }
+                continue;
+            }
+            if (segment.id == cursorSegmentId) {
+                readPosition = Math.min(cursorPosition, segment.length);
+            }
+            segments.addLast(segment);
+            size += segment.length;
+        }
+    }
+
+    private void migrateTransmissionFiles() {
+        int numberOfFiles = FileUtils.listFiles(folder, new String[] {LEGACY_FILE_EXTENSION_FOR_SEARCH}, false).size();
+        if (numberOfFiles == 0) {
+            return;
+        }
+
+        InternalLogger.INSTANCE.info("Moving %d transmission files into the log", numberOfFiles);
+        TransmissionFileSystemOutput transmissionFiles = new TransmissionFileSystemOutput(folder.getPath(),
+                String.valueOf(TransmissionFileSystemOutput.MAX_CAPACITY_MEGABYTES));
+        for (int i = 0; i < numberOfFiles; ++i) {
+            // A file that cannot be read is deleted and comes back as null, the others are still there
+            Transmission transmission = transmissionFiles.fetchOldestFile();
+            if (transmission != null) {
+                send(transmission);
+            }
+        }
+    }
+
+    static byte[] encode(Transmission transmission) throws IOException {
+        byte[] content = transmission.getContent();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER_SIZE + content.length + 64);
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        // Room for the header that is known only at the end
+        output.writeLong(0);
+        output.writeByte(RECORD_FORMAT_VERSION);
+        output.writeInt(transmission.getVersion());
+        output.writeInt(transmission.getNumberOfSends());
+        output.writeInt(transmission.getNumberOfPersistence());
+        output.writeUTF(transmission.getWebContentType());
+        output.writeUTF(transmission.getWebContentEncodingType());
+        output.writeInt(content.length);
+        output.write(content);
+        output.flush();
+
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+        ByteBuffer.wrap(record).putInt(record.length - RECORD_HEADER_SIZE).putInt((int) crc.getValue());
+        return record;
+    }
+
+    static Transmission decode(byte[] recordContent) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(recordContent));
+        int formatVersion = input.readUnsignedByte();
+        if (formatVersion != RECORD_FORMAT_VERSION) {
+            throw new IOException("Unknown record format " + formatVersion);
+        }
+
+        int version = input.readInt();
+        int numberOfSends = input.readInt();
+        int numberOfPersistence = input.readInt();
+        String webContentType = input.readUTF();
+        String webContentEncodingType = input.readUTF();
+        byte[] content = new byte[input.readInt()];
+        input.readFully(content);
+
+        Transmission transmission = new Transmission(content, webContentType, webContentEncodingType, version);
+        transmission.setNumberOfSends(numberOfSends);
+        transmission.setNumberOfPersistence(numberOfPersistence);
+        return transmission;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static final class Segment implements Comparable<Segment> {
+        final long id;
+        final File file;
+        FileChannel channel;
+        long length;
+        boolean writable;
+        long createdTimeInMillis;
+
+        Segment(long id, File folder) {
+            this.id = id;
+            this.file = new File(folder, String.format("%s%019d%s", SEGMENT_FILE_PREFIX, id, SEGMENT_FILE_EXTENSION));
+        }
+
+        static Long parseId(String fileName) {
+            if (!fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_EXTENSION)) {
+                return null;
+            }
+            try {
+                return Long.parseLong(fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_EXTENSION.length()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        void close() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                InternalLogger.INSTANCE.error("Failed to close segment '%s', exception: %s", file.getName(), e.toString());
+            }
+            channel = null;
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            return Long.compare(id, other.id);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
@@ -71,6 +72,7 @@ public class TelemetryBuffer<T> {
                 ++generation;
                 List<T> readyToBeSent = telemetries;
                 telemetries = new ArrayList<T>();
+                telemetriesSizeInBytes = 0;
 
                 return readyToBeSent;
             }
@@ -88,9 +90,19 @@ public class TelemetryBuffer<T> {
     private int transmitBufferTimeoutInSeconds;
     private LimitsEnforcer transmitBufferTimeoutInSecondsEnforcer;
 
+    /// When set, a batch is also sent once its estimated compressed size reaches 'maxBatchSizeInBytes'
+    /// The limit is volatile as subclasses may check it without holding the lock, the estimator is written last
+    /// when the limit is set and first when it is removed so a non null estimator always comes with a valid limit
+    private ToIntFunction<? super T> telemetrySizer;
+    private volatile PayloadSizeEstimator payloadSizeEstimator;
+    private volatile int maxBatchSizeInBytes;
+
     /// The Telemetry instances are kept here
     private List<T> telemetries;
 
+    /// The uncompressed size of the Telemetry instances in 'telemetries', only counted when 'telemetrySizer' is set
+    private long telemetriesSizeInBytes;
+
     /// A way to help incoming threads make sure they are picking up the right Telemetry container
     private long generation = 0;
 
@@ -141,6 +153,45 @@ public class TelemetryBuffer<T> {
         return this.maxTelemetriesInBatch;
     }
 
+    /**
+     * Sets a limit on the estimated compressed size of a batch, on top of the limit on the number of telemetries.
+     * @param maxBatchSizeInBytes The compressed size that triggers a send, non positive values remove the limit.
+     * @param telemetrySizer Gives the uncompressed size in bytes of a telemetry.
+     * @param payloadSizeEstimator Translates uncompressed sizes into estimated compressed sizes.
+     */
+    public void setMaxBatchSizeInBytes(int maxBatchSizeInBytes, ToIntFunction<? super T> telemetrySizer, PayloadSizeEstimator payloadSizeEstimator) {
+        synchronized (lock) {
+            if (maxBatchSizeInBytes <= 0) {
+                this.telemetrySizer = null;
+                this.payloadSizeEstimator = null;
+                this.maxBatchSizeInBytes = 0;
+                return;
+            }
+
+            Preconditions.checkNotNull(telemetrySizer, "telemetrySizer must be non-null value");
+            Preconditions.checkNotNull(payloadSizeEstimator, "payloadSizeEstimator must be non-null value");
+
+            this.telemetrySizer = telemetrySizer;
+            this.maxBatchSizeInBytes = maxBatchSizeInBytes;
+            this.payloadSizeEstimator = payloadSizeEstimator;
+            telemetriesSizeInBytes = 0;
+            for (T telemetry : telemetries) {
+                telemetriesSizeInBytes += telemetrySizer.applyAsInt(telemetry);
+            }
+            if (isBatchSizeReached(telemetriesSizeInBytes)) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Gets the limit on the estimated compressed size of a batch
+     * @return The limit in bytes, or 0 if batches are only limited by the number of telemetries
+     */
+    public int getMaxBatchSizeInBytes() {
+        return this.maxBatchSizeInBytes;
+    }
+
     /**
      * Sets the transmit buffer timeout in seconds
      * @param value The amount of time to wait before sending the buffer.
@@ -168,7 +219,8 @@ public class TelemetryBuffer<T> {
      * The method will add the incoming {@link Telemetry} to its internal container of Telemetries
      *
      * If that is the first instance in the container, we schedule a 'pick-up' in a configurable amount of time
-     * If by adding that item we exceeded the maximum number of instances, we trigger a send request now.
+     * If by adding that item we exceeded the maximum number of instances, or the estimated compressed size
+     * of the batch reached its limit, we trigger a send request now.
      *
      * Note that a lock is used to make sure we avoid race conditions and to make sure that we cleanly
      * move from a ready to send buffer to a new one
@@ -179,13 +231,17 @@ public class TelemetryBuffer<T> {
 
         synchronized (lock) {
             telemetries.add(telemetry);
+            if (telemetrySizer != null) {
+                telemetriesSizeInBytes += telemetrySizer.applyAsInt(telemetry);
+            }
 
             int currentSize = telemetries.size();
 
-            if (currentSize >= maxTelemetriesInBatch) {
+            if (currentSize >= maxTelemetriesInBatch || isBatchSizeReached(telemetriesSizeInBytes)) {
                 if (!sender.sendNow(prepareTelemetriesForSend())) {
                     // 'prepareTelemetriesForSend' already created a new container
                     // so basically we have nothing to do, the old container is lost
+                    // and the transmitter counted what its overload policy dropped
                     InternalLogger.INSTANCE.error("Failed to send buffer data to network");
                 }
             } else if (currentSize == 1) {
@@ -193,8 +249,10 @@ public class TelemetryBuffer<T> {
                     // We cannot schedule send so we give up the Telemetry
                     // The reason for this is that in case the maximum buffer size is greater than 2
                     // than in case a new Telemetry arrives it won't trigger the schedule and might be lost too
+                    // The transmitter already fetched the container to apply its overload policy and counted what it dropped
                     InternalLogger.INSTANCE.error("Failed to schedule send of the buffer to network");
                     telemetries.clear();
+                    telemetriesSizeInBytes = 0;
                 }
             }
         }
@@ -213,6 +271,26 @@ public class TelemetryBuffer<T> {
         }
     }
 
+    /**
+     * @return The number of telemetries waiting in the buffer
+     */
+    public int size() {
+        synchronized (lock) {
+            return telemetries.size();
+        }
+    }
+
+    /**
+     * Tells whether a batch of that uncompressed size is expected to reach the compressed size limit,
+     * it can be called without holding the lock
+     * @param uncompressedSizeInBytes The uncompressed size of the batch
+     * @return True if there is a limit and the batch is estimated to reach it
+     */
+    protected final boolean isBatchSizeReached(long uncompressedSizeInBytes) {
+        PayloadSizeEstimator estimator = payloadSizeEstimator;
+        return estimator != null && estimator.estimateCompressedSize(uncompressedSizeInBytes) >= maxBatchSizeInBytes;
+    }
+
     /**
      * The method assumes that the lock is held before calling it.
      *
@@ -225,7 +303,8 @@ public class TelemetryBuffer<T> {
 
         final List<T> readyToBeSent = telemetries;
 
-        telemetries = new ArrayList<T>(maxTelemetriesInBatch);
+        telemetries = new ArrayList<T>(Math.min(maxTelemetriesInBatch, Math.max(readyToBeSent.size(), 16)));
+        telemetriesSizeInBytes = 0;
 
         return readyToBeSent;
     }
@@ -0,0 +1,74 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+
+/**
+ * The classes of telemetries that are buffered and queued apart from each other,
+ * so a flood of verbose telemetries cannot delay or push out the critical ones.
+ *
+ * Lanes are declared from the most to the least important, under overload the transmitter
+ * sheds the batches of the least important lane first.
+ */
+public enum TelemetryLane {
+    /**
+     * Requests and exceptions
+     */
+    CRITICAL(4),
+
+    /**
+     * Every type that has no lane of its own
+     */
+    DEFAULT(2),
+
+    /**
+     * Traces, which are usually the most numerous
+     */
+    VERBOSE(1);
+
+    private final int weight;
+
+    TelemetryLane(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return The share of the transmitter threads the lane gets when every lane has batches waiting
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    public static TelemetryLane of(Telemetry telemetry) {
+        if (telemetry instanceof RequestTelemetry || telemetry instanceof ExceptionTelemetry) {
+            return CRITICAL;
+        }
+        if (telemetry instanceof TraceTelemetry) {
+            return VERBOSE;
+        }
+        return DEFAULT;
+    }
+}
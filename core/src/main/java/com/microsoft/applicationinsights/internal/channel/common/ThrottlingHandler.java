@@ -1,6 +1,7 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.text.DateFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -71,8 +72,8 @@ public class ThrottlingHandler implements TransmissionHandler {
     }
 
     /**
-     * Used to put the sender thread to sleep for the specified duration in the
-     * Retry-After header.
+     * Used to block the transmissions for the duration in the Retry-After header,
+     * they are unblocked by a scheduled task, no sender thread is put to sleep.
      *
      * @param suspensionPolicy
      *            The policy used to suspend the threads. For now we use
@@ -88,11 +89,7 @@ public class ThrottlingHandler implements TransmissionHandler {
         }
 
         try {
-            DateFormat formatter = new SimpleDateFormat(RESPONSE_RETRY_AFTER_DATE_FORMAT);
-            Date date = formatter.parse(retryAfterHeader);
-
-            Date now = Calendar.getInstance().getTime();
-            long retryAfterAsSeconds = (date.getTime() - convertToDateToGmt(now).getTime()) / 1000;
+            long retryAfterAsSeconds = getRetryAfterInSeconds(retryAfterHeader);
             this.transmissionPolicyManager.suspendInSeconds(suspensionPolicy, retryAfterAsSeconds);
         } catch (Throwable e) {
             InternalLogger.INSTANCE.error("Throttled but failed to block transmission.%nStack Trace:%n%s",
@@ -102,6 +99,32 @@ public class ThrottlingHandler implements TransmissionHandler {
 
     }
 
+    /**
+     * Parses the Retry-After header, which is either a number of seconds or a date.
+     *
+     * @param retryAfterHeader
+     *            The header that is captured from the HTTP response.
+     * @return The number of seconds to wait from now.
+     * @throws ParseException
+     *             If the header is neither a number nor a date.
+     */
+    static long getRetryAfterInSeconds(String retryAfterHeader) throws ParseException {
+        String value = retryAfterHeader.trim();
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new ParseException(retryAfterHeader, 0);
+            }
+        }
+
+        DateFormat formatter = new SimpleDateFormat(RESPONSE_RETRY_AFTER_DATE_FORMAT);
+        Date date = formatter.parse(value);
+
+        Date now = Calendar.getInstance().getTime();
+        return (date.getTime() - convertToDateToGmt(now).getTime()) / 1000;
+    }
+
     /**
      * Converts parsed date value to GMT for the {@link suspendTransmissions}
      * method.
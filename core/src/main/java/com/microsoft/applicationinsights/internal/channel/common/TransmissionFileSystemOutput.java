@@ -34,11 +34,11 @@ import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -46,7 +46,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
-import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
 import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
@@ -62,21 +61,21 @@ import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
  *
  * Created by gupele on 12/18/2014.
  */
-public final class TransmissionFileSystemOutput implements TransmissionOutput {
+public final class TransmissionFileSystemOutput implements TransmissionStorage {
     private final static String TRANSMISSION_FILE_PREFIX = "Transmission";
     private final static String TRANSMISSION_DEFAULT_FOLDER = "transmissions";
     private final static String TEMP_FILE_EXTENSION = ".tmp";
     private final static String TRANSMISSION_FILE_EXTENSION = ".trn";
     private final static String TRANSMISSION_FILE_EXTENSION_FOR_SEARCH = "trn";
-    private final static int NUMBER_OF_FILES_TO_CACHE = 128;
+    private final static long MIN_INTERVAL_BETWEEN_FOLDER_SCANS_IN_MILLS = 30000;
 
     private final static int MAX_RETRY_FOR_DELETE = 2;
     private final static int DELETE_TIMEOUT_ON_FAILURE_IN_MILLS = 100;
 
     public final static int DEFAULT_CAPACITY_MEGABYTES = 10;
-    private final static int MAX_CAPACITY_MEGABYTES = 1000;
-    private final static int MIN_CAPACITY_MEGABYTES = 1;
-    private static final String MAX_TRANSMISSION_STORAGE_CAPACITY_NAME = "Channel.MaxTransmissionStorageCapacityInMB";
+    final static int MAX_CAPACITY_MEGABYTES = 1000;
+    final static int MIN_CAPACITY_MEGABYTES = 1;
+    static final String MAX_TRANSMISSION_STORAGE_CAPACITY_NAME = "Channel.MaxTransmissionStorageCapacityInMB";
 
 
     /// The folder in which we save transmission files
@@ -87,16 +86,20 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
 
     LimitsEnforcer capacityEnforcer;
 
-    /// The size of the current files we have on the disk
-    private final AtomicLong size;
+    /// The size of the current files we have on the disk, which is the sum of the sizes in the index
+    private final AtomicLong size = new AtomicLong(0);
 
-    /// Cache old files here to re-send to have better performance
-    private final ArrayList<File> cacheOfOldestFiles = new ArrayList<File>();
-    private final HashSet<String> filesThatAreBeingLoaded = new HashSet<String>();
+    /// The names of the files we have on the disk with their sizes, the names start with the creation time so the oldest is first
+    private final TreeMap<String, Long> index = new TreeMap<String, Long>();
+
+    /// Files saved by other processes sharing the folder are found by scanning it, when the index is empty
+    private long lastFolderScanTimeInMillis;
+
+    private volatile Runnable transmissionStoredListener;
 
     public TransmissionFileSystemOutput(String folderPath, String maxTransmissionStorageCapacity) {
         if (folderPath == null) {
-            folderPath = new File(LocalFileSystemUtils.getTempDir(), TRANSMISSION_DEFAULT_FOLDER).getPath();
+            folderPath = getDefaultFolder().getPath();
         }
 
         capacityEnforcer = LimitsEnforcer.createWithClosestLimitOnError(MIN_CAPACITY_MEGABYTES,
@@ -116,8 +119,9 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
             throw new IllegalArgumentException("Folder must exist with read and write permissions");
         }
 
-        long currentSize = getTotalSizeOfTransmissionFiles();
-        size = new AtomicLong(currentSize);
+        synchronized (this) {
+            scanFolder();
+        }
     }
 
     public TransmissionFileSystemOutput() {
@@ -128,8 +132,32 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         this(folderPath, null);
     }
 
+    /**
+     * The folder used when none is configured.
+     */
+    static File getDefaultFolder() {
+        return new File(LocalFileSystemUtils.getTempDir(), TRANSMISSION_DEFAULT_FOLDER);
+    }
+
+    /**
+     * @return The transmission files in the folder, the oldest first
+     */
+    static List<File> listTransmissionFiles(File folder) {
+        List<File> files = new ArrayList<File>(FileUtils.listFiles(folder, new String[] {TRANSMISSION_FILE_EXTENSION_FOR_SEARCH}, false));
+        files.sort(Comparator.comparing(File::getName));
+        return files;
+    }
+
     @Override
     public boolean send(Transmission transmission) {
+        return send(transmission, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores the transmission under a name that tells it was created at the given time,
+     * so a transmission merged from older ones keeps its place in the order of the files.
+     */
+    boolean send(Transmission transmission, long createdTimeInMillis) {
 
         long currentSizeInBytes = size.get();
         if (currentSizeInBytes >= capacityInBytes) {
@@ -140,7 +168,7 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
             return false;
         }
 
-        Optional<File> tempTransmissionFile = createTemporaryFile();
+        Optional<File> tempTransmissionFile = createTemporaryFile(createdTimeInMillis);
         if (!tempTransmissionFile.isPresent()) {
             return false;
         }
@@ -154,6 +182,10 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         }
 
         InternalLogger.INSTANCE.info("Data persisted to file. To be sent when the network is available.");
+        Runnable listener = transmissionStoredListener;
+        if (listener != null) {
+            listener.run();
+        }
         return true;
     }
 
@@ -161,44 +193,48 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
     public void stop(long timeout, TimeUnit timeUnit) {
     }
 
+    @Override
+    public void setTransmissionStoredListener(Runnable listener) {
+        this.transmissionStoredListener = listener;
+    }
+
+    @Override
+    public Transmission fetchOldest() {
+        return fetchOldestFile();
+    }
+
     public Transmission fetchOldestFile() {
         try {
-            Optional<File> oldestFile = fetchOldestFromCache();
+            // Once out of the index no other thread can fetch the file
+            Optional<File> oldestFile = pollOldestFromIndex();
             if (!oldestFile.isPresent()) {
                 return null;
             }
 
-            String fileName = oldestFile.get().getName();
-            try {
-                Optional<File> oldestFileAsTemp = renameToTemporaryName(oldestFile.get());
-                if (!oldestFileAsTemp.isPresent()) {
-                    return null;
-                }
+            Optional<File> oldestFileAsTemp = renameToTemporaryName(oldestFile.get());
+            if (!oldestFileAsTemp.isPresent()) {
+                return null;
+            }
 
-                File tempFile = oldestFileAsTemp.get();
-                Optional<Transmission> transmission = loadTransmission(tempFile);
-
-                // On the vast majority of times this should work
-                // but there might be some timing issues, that's why we try twice
-                for (int deleteCounter = 0; deleteCounter < MAX_RETRY_FOR_DELETE; ++deleteCounter) {
-                    if (tempFile.delete()) {
-                        break;
-                    }
-
-                    try {
-                        Thread.sleep(DELETE_TIMEOUT_ON_FAILURE_IN_MILLS);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
+            File tempFile = oldestFileAsTemp.get();
+            Optional<Transmission> transmission = loadTransmission(tempFile);
+
+            // On the vast majority of times this should work
+            // but there might be some timing issues, that's why we try twice
+            for (int deleteCounter = 0; deleteCounter < MAX_RETRY_FOR_DELETE; ++deleteCounter) {
+                if (tempFile.delete()) {
+                    break;
                 }
 
-                return transmission.get();
-            } finally {
-                synchronized (this) {
-                    filesThatAreBeingLoaded.remove(fileName);
+                try {
+                    Thread.sleep(DELETE_TIMEOUT_ON_FAILURE_IN_MILLS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
+
+            return transmission.get();
         } catch (Exception e) {
             InternalLogger.INSTANCE.error("Error fetching oldest file: %s", ExceptionUtils.getStackTrace(e));
         }
@@ -206,33 +242,45 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         return null;
     }
 
-    public void setCapacity(int suggestedCapacity) {
-        this.capacityInBytes = capacityEnforcer.normalizeValue(suggestedCapacity) * 1024L * 1024L;
+    @Override
+    public long getSize() {
+        return size.get();
     }
 
-    private List<File> sortOldestLastAndTrim(Collection<File> transmissions, int limit) {
-        List<File> asList;
-        if (!(transmissions instanceof List)) {
-            asList = new ArrayList<>(transmissions);
-        } else {
-            asList = (List<File>)transmissions;
+    @Override
+    public long getOldestStoredTimeInMillis() {
+        String oldest;
+        synchronized (this) {
+            if (index.isEmpty()) {
+                return 0;
+            }
+            oldest = index.firstKey();
         }
 
-        Collections.sort(asList, new Comparator<File>() {
-            @Override
-            public int compare(File file1, File file2) {
-            	return file2.getName().compareTo(file1.getName());
-            }
-        });
+        return getCreatedTimeInMillis(new File(folder, oldest));
+    }
 
-        if (asList.size() > limit) {
-            asList = asList.subList(0, limit);
+    /**
+     * The time the transmission stored in the file was created at.
+     */
+    static long getCreatedTimeInMillis(File file) {
+        // The names are 'Transmission-<creation time>-<random>.trn'
+        String[] parts = file.getName().split("-");
+        if (parts.length > 2) {
+            try {
+                return Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                // Not one of ours, the file tells
+            }
         }
+        return file.lastModified();
+    }
 
-        return asList;
+    public void setCapacity(int suggestedCapacity) {
+        this.capacityInBytes = capacityEnforcer.normalizeValue(suggestedCapacity) * 1024L * 1024L;
     }
 
-    private Optional<Transmission> loadTransmission(File file) {
+    static Optional<Transmission> loadTransmission(File file) {
         Transmission transmission = null;
 
         if (file == null) {
@@ -256,7 +304,9 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         try {
             long fileLength = tempTransmissionFile.length();
             FileUtils.moveFile(tempTransmissionFile, transmissionFile);
-            size.addAndGet(fileLength);
+            synchronized (this) {
+                addToIndex(transmissionFile.getName(), fileLength);
+            }
             return true;
         } catch (Exception e) {
             InternalLogger.INSTANCE.error("Rename To Permanent Name failed, exception: %s", e.toString());
@@ -270,7 +320,6 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         try {
             File renamedFile = new File(folder, FilenameUtils.getBaseName(tempTransmissionFile.getName()) + TEMP_FILE_EXTENSION);
             FileUtils.moveFile(tempTransmissionFile, renamedFile);
-            size.addAndGet(-renamedFile.length());
             transmissionFile = renamedFile;
         } catch (Exception ignore) {
             InternalLogger.INSTANCE.error("Rename To Temporary Name failed, exception: %s", ignore.toString());
@@ -291,11 +340,11 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         return false;
     }
 
-    private Optional<File> createTemporaryFile() {
+    private Optional<File> createTemporaryFile(long createdTimeInMillis) {
         File file = null;
         try {
         	// This allow to sort files with creation date (not modified date ...)
-        	String prefix = TRANSMISSION_FILE_PREFIX + "-" + System.currentTimeMillis() + "-";
+        	String prefix = TRANSMISSION_FILE_PREFIX + "-" + createdTimeInMillis + "-";
             file = File.createTempFile(prefix, null, folder);
         } catch (IOException e) {
             InternalLogger.INSTANCE.error("Failed to create temporary file, exception: %s", e.toString());
@@ -304,48 +353,42 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         return Optional.ofNullable(file);
     }
 
-    private long getTotalSizeOfTransmissionFiles() {
-        Collection<File> transmissions = FileUtils.listFiles(folder, new String[] {TRANSMISSION_FILE_EXTENSION_FOR_SEARCH}, false);
-
-        long totalSize = 0;
-        for (File file : transmissions) {
-            totalSize += file.length();
-        }
-
-        return totalSize;
-    }
-
-    private Optional<File> fetchOldestFromCache() {
+    private Optional<File> pollOldestFromIndex() {
         synchronized (this) {
-            if (cacheOfOldestFiles.isEmpty()) {
-
-                // Fill the cache
-                Collection<File> transmissions = FileUtils.listFiles(folder, new String[] {TRANSMISSION_FILE_EXTENSION_FOR_SEARCH}, false);
-
-                if (transmissions.isEmpty()) {
-                    // No files
+            if (index.isEmpty()) {
+                long now = System.currentTimeMillis();
+                if (now - lastFolderScanTimeInMillis < MIN_INTERVAL_BETWEEN_FOLDER_SCANS_IN_MILLS) {
                     return Optional.empty();
                 }
 
-                List<File> filesToLoad = sortOldestLastAndTrim(transmissions, NUMBER_OF_FILES_TO_CACHE);
-
-                if (filesToLoad == null || filesToLoad.isEmpty()) {
-                    return Optional.empty();
-                }
-
-                cacheOfOldestFiles.addAll(filesToLoad);
+                scanFolder();
             }
 
-            File fileToLoad = cacheOfOldestFiles.remove(cacheOfOldestFiles.size() - 1);
-
-            String fileName = fileToLoad.getName();
-            if (filesThatAreBeingLoaded.contains(fileName)) {
+            Map.Entry<String, Long> oldest = index.pollFirstEntry();
+            if (oldest == null) {
+                // No files
                 return Optional.empty();
             }
 
-            filesThatAreBeingLoaded.add(fileName);
-            // Remove oldest which is the last one, this is optimized for not doing a copy
-            return Optional.ofNullable(fileToLoad);
+            size.addAndGet(-oldest.getValue());
+            return Optional.of(new File(folder, oldest.getKey()));
+        }
+    }
+
+    // Should be called while holding the lock of this instance
+    private void scanFolder() {
+        lastFolderScanTimeInMillis = System.currentTimeMillis();
+        Collection<File> transmissions = FileUtils.listFiles(folder, new String[] {TRANSMISSION_FILE_EXTENSION_FOR_SEARCH}, false);
+        for (File file : transmissions) {
+            if (!index.containsKey(file.getName())) {
+                addToIndex(file.getName(), file.length());
+            }
         }
     }
+
+    // Should be called while holding the lock of this instance
+    private void addToIndex(String fileName, long fileLength) {
+        index.put(fileName, fileLength);
+        size.addAndGet(fileLength);
+    }
 }
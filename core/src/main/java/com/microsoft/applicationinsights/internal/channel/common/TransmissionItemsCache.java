@@ -0,0 +1,114 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+
+/**
+ * Keeps the uncompressed items of the most recent {@link Transmission}s, so the items of a partially
+ * accepted one can be sent again without decompressing and splitting its content.
+ *
+ * The cache is bounded by the estimated number of bytes it holds, the oldest transmissions are evicted first.
+ * A transmission that is not found, for example one that was loaded from the disk, is decompressed as before.
+ */
+public final class TransmissionItemsCache {
+    public static final int DEFAULT_CAPACITY_IN_BYTES = 8 * 1024 * 1024;
+
+    // Transmissions are compared by identity, which is what we need
+    private final LinkedHashMap<Transmission, List<byte[]>> itemsByTransmission = new LinkedHashMap<Transmission, List<byte[]>>();
+
+    private final long capacityInBytes;
+
+    private long sizeInBytes;
+
+    public TransmissionItemsCache() {
+        this(DEFAULT_CAPACITY_IN_BYTES);
+    }
+
+    public TransmissionItemsCache(long capacityInBytes) {
+        Preconditions.checkArgument(capacityInBytes > 0, "capacityInBytes must be a positive number");
+
+        this.capacityInBytes = capacityInBytes;
+    }
+
+    /**
+     * @param transmission The transmission that was made of the items
+     * @param items The items in the order they were written in the transmission
+     */
+    public synchronized void put(Transmission transmission, Collection<byte[]> items) {
+        long size = estimateSize(transmission, items);
+        if (size > capacityInBytes) {
+            return;
+        }
+
+        List<byte[]> previous = itemsByTransmission.put(transmission, new ArrayList<byte[]>(items));
+        if (previous != null) {
+            sizeInBytes -= estimateSize(transmission, previous);
+        }
+        sizeInBytes += size;
+
+        Iterator<Map.Entry<Transmission, List<byte[]>>> oldest = itemsByTransmission.entrySet().iterator();
+        while (sizeInBytes > capacityInBytes && oldest.hasNext()) {
+            Map.Entry<Transmission, List<byte[]>> entry = oldest.next();
+            sizeInBytes -= estimateSize(entry.getKey(), entry.getValue());
+            oldest.remove();
+        }
+    }
+
+    /**
+     * @param transmission The transmission to get the items of
+     * @return The items of the transmission, null if they are not in the cache anymore
+     */
+    public synchronized List<byte[]> remove(Transmission transmission) {
+        List<byte[]> items = itemsByTransmission.remove(transmission);
+        if (items != null) {
+            sizeInBytes -= estimateSize(transmission, items);
+        }
+
+        return items;
+    }
+
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public synchronized int size() {
+        return itemsByTransmission.size();
+    }
+
+    // The compressed content is kept alive with the items
+    private static long estimateSize(Transmission transmission, Collection<byte[]> items) {
+        long size = transmission.getContent().length;
+        for (byte[] item : items) {
+            size += item.length;
+        }
+
+        return size;
+    }
+}
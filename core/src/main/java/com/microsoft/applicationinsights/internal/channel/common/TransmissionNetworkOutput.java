@@ -36,6 +36,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
 import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.channel.AsyncTransmissionOutput;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerArgs;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
@@ -52,7 +53,7 @@ import reactor.core.publisher.Mono;
  * Created by gupele on 12/18/2014.
  * Update by gdufrene on 3/28/2020.
  */
-public final class TransmissionNetworkOutput implements TransmissionOutput {
+public final class TransmissionNetworkOutput implements AsyncTransmissionOutput {
     private static final String CONTENT_TYPE_HEADER = "Content-Type";
     private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
     private static final String RESPONSE_THROTTLING_HEADER = "Retry-After";
@@ -67,11 +68,20 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
     private volatile boolean stopped;
     private volatile TelemetryConfiguration configuration;
 
-    // Use one instance for optimization (?)
-    private WebClient httpClient;
+    // One instance on the shared connection pool, so connections and TLS sessions are reused
+    private final WebClient httpClient;
 
     private TransmissionPolicyManager transmissionPolicyManager;
 
+    // Paces the transmissions sent back from the disk according to how the sends go
+    private volatile DrainRateController drainRateController;
+
+    // Adapts the number of sends at the same time according to how the sends go
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+
+    // Counts the latency of the sends and what the endpoint rejected
+    private volatile ChannelStatistics statistics;
+
     /**
      * Creates an instance of the network transmission class.
      *
@@ -108,7 +118,7 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
         if (StringUtils.isNotEmpty(serverUri)) {
             InternalLogger.INSTANCE.warn("Setting the endpoint via the <Channel> element is deprecated and will be removed in a future version. Use the top-level element <ConnectionString>.");
         }
-        // httpClient = ApacheSenderFactory.INSTANCE.create();
+        httpClient = WebClient.builder().clientConnector(HttpClientFactory.INSTANCE.getConnector()).build();
         this.transmissionPolicyManager = transmissionPolicyManager;
         stopped = false;
         if (InternalLogger.INSTANCE.isTraceEnabled()) {
@@ -124,6 +134,33 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
         this.transmissionDispatcher = transmissionDispatcher;
     }
 
+    /**
+     * Used to inject the controller that is told the latency and outcome of every send.
+     *
+     * @param drainRateController The controller of the loader of the transmissions saved to the disk.
+     */
+    public void setDrainRateController(DrainRateController drainRateController) {
+        this.drainRateController = drainRateController;
+    }
+
+    /**
+     * Used to inject the limiter that is told the latency and response code of every send.
+     *
+     * @param concurrencyLimiter The limiter of the number of sends at the same time.
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Used to inject the statistics of the channel this output sends for.
+     *
+     * @param statistics The statistics that are told the latency of every send and the rejected transmissions.
+     */
+    public void setStatistics(ChannelStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Stops all threads from sending data.
      *
@@ -155,59 +192,98 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
      */
     @Override
     public boolean send(Transmission transmission) {
-        if (!stopped) {
-            // If we're not stopped but in a blocked state then fail to second
-            // TransmissionOutput
-            if (transmissionPolicyManager.getTransmissionPolicyState().getCurrentState() != TransmissionPolicy.UNBLOCKED) {
-                return false;
-            }
-
-            // HttpResponse response = null;
-            // HttpPost request = null;
-            int code = 0;
-            String reason = null;
-            String respString = null;
-            Throwable ex = null;
-            String retryAfterHeader = null;
-
-            // POST the transmission data to the endpoint
-            ClientResponse response = 
-            	createTransmissionPostRequest(transmission)
-            	.doOnError(error -> {
-            		InternalLogger.INSTANCE.error("Failed to send, unexpected exception.%nStack Trace:%n%s", ExceptionUtils.getStackTrace(error));
-            	})
-            	.block();
-            code = response.statusCode().value();
-            reason = response.statusCode().getReasonPhrase();
-            List<String> throttling = response.headers().header(RESPONSE_THROTTLING_HEADER);
-            if ( throttling.size() > 0 ) retryAfterHeader = throttling.get(0);
-            respString = response.bodyToMono(String.class).block();
-
-            // After we reach our instant retry limit we should fail to second TransmissionOutput
-            if (code > HttpStatus.PARTIAL_CONTENT.value() && transmission.getNumberOfSends() > this.transmissionPolicyManager.getMaxInstantRetries()) {
-                return false;
-            } else if (code == HttpStatus.OK.value()) {
-                // If we've completed then clear the back off flags as the channel does not need
-                // to be throttled
-                transmissionPolicyManager.clearBackoff();
-            }
-
-            if (code == HttpStatus.BAD_REQUEST.value()) {
-                InternalLogger.INSTANCE.error("Error sending data: %s", reason);
-            } else if (code != HttpStatus.OK.value()) {
-                // Invoke the listeners for handling things like errors
-                // The listeners will handle the back off logic as well as the dispatch
-                // operation
-                TransmissionHandlerArgs args = new TransmissionHandlerArgs();
-                args.setTransmission(transmission);
-                args.setTransmissionDispatcher(transmissionDispatcher);
-                args.setResponseBody(respString);
-                args.setResponseCode(code);
-                args.setException(ex);
-                args.setRetryHeader(retryAfterHeader);
-                this.transmissionPolicyManager.onTransmissionSent(args);
-            }
+        return sendAsync(transmission).block();
+    }
+
+    /**
+     * Sends a {@link com.microsoft.applicationinsights.internal.channel.common.Transmission}
+     * without holding the calling thread, the response is handled by the thread that receives it.
+     *
+     * @param transmission
+     *            The data to send
+     * @return A Mono of false if the transmission should be given to the next
+     *         {@link TransmissionOutput}, of true when done.
+     */
+    @Override
+    public Mono<Boolean> sendAsync(Transmission transmission) {
+        if (stopped) {
+            return Mono.just(true);
+        }
+
+        // If we're not stopped but in a blocked state then fail to second
+        // TransmissionOutput
+        if (transmissionPolicyManager.getTransmissionPolicyState().getCurrentState() != TransmissionPolicy.UNBLOCKED) {
+            return Mono.just(false);
+        }
+
+        // POST the transmission data to the endpoint
+        long startTimeInNanos = System.nanoTime();
+        return createTransmissionPostRequest(transmission)
+            .flatMap(response -> {
+                HttpStatus status = response.statusCode();
+                onSent(startTimeInNanos, status.value());
+                List<String> throttling = response.headers().header(RESPONSE_THROTTLING_HEADER);
+                String retryAfterHeader = throttling.size() > 0 ? throttling.get(0) : null;
+                return response.bodyToMono(String.class)
+                    .defaultIfEmpty("")
+                    .map(respString -> onResponse(transmission, status, retryAfterHeader, respString));
+            })
+            .onErrorResume(error -> {
+                onSent(startTimeInNanos, ConcurrencyLimiter.NO_RESPONSE);
+                InternalLogger.INSTANCE.error("Failed to send, unexpected exception.%nStack Trace:%n%s", ExceptionUtils.getStackTrace(error));
+                return Mono.just(false);
+            });
+    }
+
+    private void onSent(long startTimeInNanos, int responseCode) {
+        long endTimeInNanos = System.nanoTime();
+        DrainRateController controller = drainRateController;
+        if (controller != null) {
+            boolean success = responseCode == HttpStatus.OK.value() || responseCode == HttpStatus.PARTIAL_CONTENT.value();
+            controller.onSent(TimeUnit.NANOSECONDS.toMillis(endTimeInNanos - startTimeInNanos), success);
+        }
+        ConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter != null) {
+            limiter.onSent(startTimeInNanos, endTimeInNanos, responseCode);
+        }
+        ChannelStatistics currentStatistics = statistics;
+        if (currentStatistics != null) {
+            currentStatistics.onSent(TimeUnit.NANOSECONDS.toMillis(endTimeInNanos - startTimeInNanos));
         }
+    }
+
+    private boolean onResponse(Transmission transmission, HttpStatus status, String retryAfterHeader, String respString) {
+        int code = status.value();
+
+        // After we reach our instant retry limit we should fail to second TransmissionOutput
+        if (code > HttpStatus.PARTIAL_CONTENT.value() && transmission.getNumberOfSends() > this.transmissionPolicyManager.getMaxInstantRetries()) {
+            return false;
+        } else if (code == HttpStatus.OK.value()) {
+            // If we've completed then clear the back off flags as the channel does not need
+            // to be throttled
+            transmissionPolicyManager.clearBackoff();
+        }
+
+        ChannelStatistics currentStatistics = statistics;
+        if (currentStatistics != null && isRejected(code)) {
+            currentStatistics.onRejectedByEndpoint();
+        }
+
+        if (code == HttpStatus.BAD_REQUEST.value()) {
+            InternalLogger.INSTANCE.error("Error sending data: %s", status.getReasonPhrase());
+        } else if (code != HttpStatus.OK.value()) {
+            // Invoke the listeners for handling things like errors
+            // The listeners will handle the back off logic as well as the dispatch
+            // operation
+            TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+            args.setTransmission(transmission);
+            args.setTransmissionDispatcher(transmissionDispatcher);
+            args.setResponseBody(respString);
+            args.setResponseCode(code);
+            args.setRetryHeader(retryAfterHeader);
+            this.transmissionPolicyManager.onTransmissionSent(args);
+        }
+
         // If we end up here we've hit an error code we do not expect (403, 401, 400,
         // etc.)
         // This also means that unless there is a TransmissionHandler for this code we
@@ -215,6 +291,14 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
         return true;
     }
 
+    // Client errors other than timeouts and throttling are not retried
+    private static boolean isRejected(int code) {
+        return code >= HttpStatus.BAD_REQUEST.value() && code < HttpStatus.INTERNAL_SERVER_ERROR.value()
+                && code != TransmissionSendResult.REQUEST_TIMEOUT
+                && code != TransmissionSendResult.THROTTLED
+                && code != TransmissionSendResult.THROTTLED_OVER_EXTENDED_TIME;
+    }
+
     /**
      * Generates the HTTP POST to send to the endpoint.
      *
@@ -222,8 +306,7 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
      * @return The completed {@link HttpPost} object
      */
     private Mono<ClientResponse> createTransmissionPostRequest(Transmission transmission) {
-    	WebClient client = WebClient.create(getIngestionEndpoint()); 
-    	return client
+    	return httpClient
 			.post()
 			.uri(URI.create(getIngestionEndpoint()))
 			.syncBody( transmission.getContent() )
@@ -25,9 +25,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.microsoft.applicationinsights.common.Preconditions;
@@ -37,6 +37,7 @@ import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerObs
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
@@ -51,8 +52,6 @@ import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
  * Created by gupele on 6/29/2015.
  */
 public final class TransmissionPolicyManager implements Stoppable, TransmissionHandlerObserver {
-    private static final AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(1);
-
     private int instantRetryAmount = 3;         // Should always be set by the creator of this class
     private final int INSTANT_RETRY_MAX = 10;   // Stops us from getting into an endless loop
 
@@ -69,14 +68,13 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
     private AtomicLong generation = new AtomicLong(0);
 
     // A thread that will callback when the timeout expires
-    private ScheduledThreadPoolExecutor threads;
+    private ScheduledExecutorService threads;
 
     // Keeps the current policy state of the transmission
     private final TransmissionPolicyState policyState = new TransmissionPolicyState();
+    private final List<Runnable> unblockedListeners = new CopyOnWriteArrayList<Runnable>();
     private boolean throttlingIsEnabled = true;
 
-    private final int instanceId = INSTANCE_ID_POOL.getAndIncrement();
-
     /**
      * The class will be activated when a timeout expires
      */
@@ -129,6 +127,7 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
     public void clearBackoff() {
         if (policyState.setCurrentState(TransmissionPolicy.UNBLOCKED)) {
             InternalLogger.INSTANCE.trace("Backoff has been reset.");
+            notifyUnblocked();
         }
         backoffManager.onDoneSending();
     }
@@ -206,9 +205,24 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
             return;
         }
 
-        policyState.setCurrentState(TransmissionPolicy.UNBLOCKED);
+        boolean changed = policyState.setCurrentState(TransmissionPolicy.UNBLOCKED);
         suspensionDate = null;
         InternalLogger.INSTANCE.info("App throttling is cancelled.");
+        if (changed) {
+            notifyUnblocked();
+        }
+    }
+
+    private void notifyUnblocked() {
+        for (Runnable listener : unblockedListeners) {
+            try {
+                listener.run();
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                InternalLogger.INSTANCE.error("Unblocked listener failed, exception: %s", t.toString());
+            }
+        }
     }
 
     private synchronized void createScheduler() {
@@ -216,8 +230,7 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
             return;
         }
 
-        threads = new ScheduledThreadPoolExecutor(1);
-        threads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(TransmissionPolicyManager.class, instanceId));
+        threads = SDKExecutors.newScheduledExecutor(TransmissionPolicyManager.class, SDKExecutors.Priority.NORMAL, 1);
 
         SDKShutdownActivity.INSTANCE.register(this);
     }
@@ -236,6 +249,16 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
         }
     }
 
+    /**
+     * Adds what to call each time the transmission policy goes back to {@link TransmissionPolicy#UNBLOCKED}.
+     * @param listener Called by the thread that unblocked the policy
+     */
+    public void addUnblockedListener(Runnable listener) {
+        if (listener != null) {
+            this.unblockedListeners.add(listener);
+        }
+    }
+
     /**
      * Set the number of retries before performing a back off operation.
      * @param maxInstantRetries Number of retries
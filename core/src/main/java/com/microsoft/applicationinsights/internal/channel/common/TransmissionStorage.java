@@ -0,0 +1,52 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+
+/**
+ * A {@link TransmissionOutput} that keeps what it is sent on the disk until it is fetched back,
+ * oldest first, by the {@link ActiveTransmissionLoader}.
+ */
+public interface TransmissionStorage extends TransmissionOutput {
+    /**
+     * Removes the oldest stored transmission from the storage.
+     * @return The oldest transmission, or null if there is nothing stored
+     */
+    Transmission fetchOldest();
+
+    /**
+     * Sets what to call each time a transmission was stored, replacing the previous one.
+     * @param listener Called by the thread that stored the transmission, may be null
+     */
+    void setTransmissionStoredListener(Runnable listener);
+
+    /**
+     * @return The number of bytes the stored transmissions take on the disk
+     */
+    long getSize();
+
+    /**
+     * @return When the oldest stored transmission was persisted, in milliseconds since the epoch, or 0 if nothing is stored
+     */
+    long getOldestStoredTimeInMillis();
+}
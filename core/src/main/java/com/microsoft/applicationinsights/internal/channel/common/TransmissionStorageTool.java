@@ -0,0 +1,538 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.time.DurationFormatUtils;
+
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
+
+/**
+ * A command line tool for the transmissions that were persisted to the disk by {@link TransmissionFileSystemOutput}.
+ *
+ * <ul>
+ *     <li>'list' shows every stored transmission with its size, number of items and age</li>
+ *     <li>'compact' merges small transmissions into fewer large ones, the application should be stopped meanwhile</li>
+ *     <li>'replay' sends the stored transmissions to an endpoint, or writes their items to an NDJSON file.
+ *     Transmissions that could not be sent are stored again.</li>
+ * </ul>
+ *
+ * The folder is the default folder of the SDK unless '--folder' is given.
+ */
+public final class TransmissionStorageTool {
+    private final static String USAGE =
+            "Usage: TransmissionStorageTool list|compact|replay [options]%n"
+            + "  --folder <path>               The transmissions folder, default is '%s'%n"
+            + "  --max-batch-kb <n>            compact: the uncompressed size of a merged transmission, default is %d%n"
+            + "  --endpoint <url>              replay: where to send, default is '%s'%n"
+            + "  --ndjson <file>               replay: append the items to the file instead of sending them%n"
+            + "  --parallelism <n>             replay: the number of concurrent uploads, default is %d%n"
+            + "  --max-kb-per-second <n>       replay: the upload bandwidth, default is 0 for no limit%n";
+
+    private final static int DEFAULT_MAX_BATCH_KB = 512;
+    private final static int DEFAULT_PARALLELISM = 4;
+    private final static int CONNECT_TIMEOUT_IN_MILLIS = 10000;
+    private final static int READ_TIMEOUT_IN_MILLIS = 30000;
+    private final static String GZIP_WEB_ENCODING_TYPE = "gzip";
+    private final static String AGE_FORMAT = "d'd' HH:mm:ss";
+
+    /**
+     * Where the replayed transmissions go.
+     */
+    interface Destination {
+        /**
+         * @return The outcome of the attempt
+         */
+        ReplayResult send(Transmission transmission) throws IOException;
+    }
+
+    enum ReplayResult {
+        SENT,
+        // Worth another try later, the transmission is stored again
+        RETRY,
+        // Rejected by the endpoint, another try will not change that
+        REJECTED
+    }
+
+    private final File folder;
+
+    private final PrintStream out;
+
+    TransmissionStorageTool(File folder, PrintStream out) {
+        this.folder = folder;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    static int run(String[] args, PrintStream out) {
+        String command = null;
+        String folderPath = null;
+        String endpoint = TransmissionNetworkOutput.DEFAULT_SERVER_URI;
+        String ndjsonPath = null;
+        int maxBatchInKB = DEFAULT_MAX_BATCH_KB;
+        int parallelism = DEFAULT_PARALLELISM;
+        int maxKBPerSecond = 0;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    if (command != null) {
+                        throw new IllegalArgumentException("Unexpected argument '" + arg + "'");
+                    }
+                    command = arg;
+                    continue;
+                }
+
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for '" + arg + "'");
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--folder":
+                        folderPath = value;
+                        break;
+                    case "--max-batch-kb":
+                        maxBatchInKB = parsePositive(arg, value);
+                        break;
+                    case "--endpoint":
+                        endpoint = value;
+                        break;
+                    case "--ndjson":
+                        ndjsonPath = value;
+                        break;
+                    case "--parallelism":
+                        parallelism = parsePositive(arg, value);
+                        break;
+                    case "--max-kb-per-second":
+                        maxKBPerSecond = parsePositive(arg, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option '" + arg + "'");
+                }
+            }
+            if (command == null) {
+                throw new IllegalArgumentException("Missing command");
+            }
+
+            File folder = folderPath == null ? TransmissionFileSystemOutput.getDefaultFolder() : new File(folderPath);
+            if (!folder.isDirectory()) {
+                throw new IllegalArgumentException("Folder '" + folder + "' does not exist");
+            }
+
+            TransmissionStorageTool tool = new TransmissionStorageTool(folder, out);
+            switch (command) {
+                case "list":
+                    return tool.list();
+
+                case "compact":
+                    return tool.compact(maxBatchInKB * 1024L);
+
+                case "replay":
+                    if (ndjsonPath != null) {
+                        try (NdjsonDestination destination = new NdjsonDestination(new File(ndjsonPath))) {
+                            return tool.replay(destination, 1, 0);
+                        }
+                    }
+                    return tool.replay(new HttpDestination(new URL(endpoint)), parallelism, maxKBPerSecond * 1024L);
+
+                default:
+                    throw new IllegalArgumentException("Unknown command '" + command + "'");
+            }
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.printf(USAGE, TransmissionFileSystemOutput.getDefaultFolder(), DEFAULT_MAX_BATCH_KB,
+                    TransmissionNetworkOutput.DEFAULT_SERVER_URI, DEFAULT_PARALLELISM);
+            return 2;
+        } catch (IOException e) {
+            out.println("Failed: " + e);
+            return 1;
+        }
+    }
+
+    /**
+     * Shows the stored transmissions, the oldest first.
+     */
+    int list() {
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        long totalItems = 0;
+        int unreadable = 0;
+
+        List<File> files = TransmissionFileSystemOutput.listTransmissionFiles(folder);
+        out.printf("%-50s %12s %8s %16s%n", "Name", "Bytes", "Items", "Age");
+        for (File file : files) {
+            String items = "?";
+            Optional<Transmission> transmission = TransmissionFileSystemOutput.loadTransmission(file);
+            try {
+                if (transmission.isPresent()) {
+                    int count = readItems(transmission.get()).size();
+                    totalItems += count;
+                    items = String.valueOf(count);
+                }
+            } catch (IOException e) {
+                // Reported as unreadable
+            }
+            if ("?".equals(items)) {
+                ++unreadable;
+            }
+
+            totalBytes += file.length();
+            out.printf("%-50s %12d %8s %16s%n", file.getName(), file.length(), items, formatAge(now, file));
+        }
+
+        out.printf("%d transmissions, %d items, %d bytes", files.size(), totalItems, totalBytes);
+        if (!files.isEmpty()) {
+            out.printf(", the oldest is %s old", formatAge(now, files.get(0)));
+        }
+        out.println();
+        if (unreadable > 0) {
+            out.printf("%d transmissions could not be read%n", unreadable);
+        }
+        return 0;
+    }
+
+    /**
+     * Merges consecutive transmissions until their items reach the given size, the merged transmission
+     * is named after the oldest of them so the order of the files is kept.
+     * The application should not use the folder meanwhile, or it might send a transmission that is also merged.
+     */
+    int compact(long maxBatchInBytes) {
+        TransmissionFileSystemOutput storage = new TransmissionFileSystemOutput(folder.getPath(),
+                String.valueOf(TransmissionFileSystemOutput.MAX_CAPACITY_MEGABYTES));
+        GzipTelemetrySerializer serializer = new GzipTelemetrySerializer();
+
+        List<File> files = TransmissionFileSystemOutput.listTransmissionFiles(folder);
+        List<Batch> batches = new ArrayList<Batch>();
+        Batch batch = new Batch();
+        for (File file : files) {
+            Optional<Transmission> transmission = TransmissionFileSystemOutput.loadTransmission(file);
+            if (!transmission.isPresent() || !GZIP_WEB_ENCODING_TYPE.equalsIgnoreCase(transmission.get().getWebContentEncodingType())) {
+                continue;
+            }
+
+            List<String> items;
+            try {
+                items = readItems(transmission.get());
+            } catch (IOException e) {
+                continue;
+            }
+            long bytes = 0;
+            for (String item : items) {
+                bytes += item.length() + 1;
+            }
+
+            if (!batch.sources.isEmpty() && batch.bytes + bytes > maxBatchInBytes) {
+                batches.add(batch);
+                batch = new Batch();
+            }
+            batch.add(file, bytes);
+        }
+        batches.add(batch);
+
+        int merged = 0;
+        int written = 0;
+        int failed = 0;
+        for (Batch candidate : batches) {
+            if (candidate.sources.size() < 2) {
+                // Nothing to merge
+                continue;
+            }
+            if (candidate.write(storage, serializer)) {
+                merged += candidate.sources.size();
+                ++written;
+            } else {
+                ++failed;
+            }
+        }
+
+        out.printf("Merged %d of %d transmissions into %d%n", merged, files.size(), written);
+        if (failed > 0) {
+            out.printf("%d merged transmissions could not be written, their sources are kept%n", failed);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Takes the stored transmissions, the oldest first, and hands them to the destination.
+     * The transmissions are taken the way the SDK does, so the application may keep running meanwhile.
+     * @param parallelism The number of transmissions that are handed at the same time
+     * @param maxBytesPerSecond The bandwidth, 0 for no limit
+     */
+    int replay(Destination destination, int parallelism, long maxBytesPerSecond) {
+        TransmissionFileSystemOutput storage = new TransmissionFileSystemOutput(folder.getPath(),
+                String.valueOf(TransmissionFileSystemOutput.MAX_CAPACITY_MEGABYTES));
+        DrainRateController rateController = new DrainRateController(maxBytesPerSecond);
+
+        // Transmissions that are stored again must not be replayed again in the same run
+        AtomicInteger remaining = new AtomicInteger(TransmissionFileSystemOutput.listTransmissionFiles(folder).size());
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger kept = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        Runnable worker = () -> {
+            while (remaining.getAndDecrement() > 0) {
+                Transmission transmission = storage.fetchOldest();
+                if (transmission == null) {
+                    break;
+                }
+
+                if (maxBytesPerSecond > 0) {
+                    long pause = rateController.onDispatched(transmission.getContent().length);
+                    try {
+                        Thread.sleep(pause);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                long start = System.nanoTime();
+                ReplayResult result;
+                try {
+                    result = destination.send(transmission);
+                } catch (IOException e) {
+                    out.println("Failed to replay a transmission: " + e);
+                    result = ReplayResult.RETRY;
+                }
+                rateController.onSent(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result == ReplayResult.SENT);
+
+                switch (result) {
+                    case SENT:
+                        sent.incrementAndGet();
+                        break;
+                    case REJECTED:
+                        rejected.incrementAndGet();
+                        break;
+                    default:
+                        if (storage.send(transmission)) {
+                            kept.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                        break;
+                }
+            }
+        };
+
+        ThreadFactory threadFactory = SDKExecutors.newBlockingThreadFactory(TransmissionStorageTool.class);
+        List<Thread> workers = new ArrayList<Thread>(parallelism);
+        for (int i = 0; i < parallelism; ++i) {
+            Thread thread = threadFactory.newThread(worker);
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        out.printf("Replayed %d transmissions, %d were kept for a later try, %d were dropped%n", sent.get(), kept.get(), rejected.get());
+        return kept.get() == 0 && rejected.get() == 0 ? 0 : 1;
+    }
+
+    /**
+     * @return The telemetry items of the transmission, one JSON per item
+     */
+    static List<String> readItems(Transmission transmission) throws IOException {
+        InputStream input = new ByteArrayInputStream(transmission.getContent());
+        if (GZIP_WEB_ENCODING_TYPE.equalsIgnoreCase(transmission.getWebContentEncodingType())) {
+            input = new GZIPInputStream(input);
+        }
+
+        List<String> items = new ArrayList<String>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    items.add(line);
+                }
+            }
+        }
+        return items;
+    }
+
+    private static String formatAge(long now, File file) {
+        long age = Math.max(0, now - TransmissionFileSystemOutput.getCreatedTimeInMillis(file));
+        return DurationFormatUtils.formatDuration(age, AGE_FORMAT);
+    }
+
+    private static int parsePositive(String name, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("'" + name + "' must be a positive number");
+    }
+
+    /**
+     * Transmissions that are merged into one.
+     */
+    private static final class Batch {
+        private final List<File> sources = new ArrayList<File>();
+        private long bytes;
+
+        private void add(File source, long sourceBytes) {
+            sources.add(source);
+            bytes += sourceBytes;
+        }
+
+        /**
+         * @return False if the merged transmission could not be stored, the sources are kept then
+         */
+        private boolean write(TransmissionFileSystemOutput storage, GzipTelemetrySerializer serializer) {
+            // The items are read again so only one batch is held in memory
+            List<byte[]> items = new ArrayList<byte[]>();
+            for (File source : sources) {
+                Optional<Transmission> transmission = TransmissionFileSystemOutput.loadTransmission(source);
+                if (!transmission.isPresent()) {
+                    return false;
+                }
+                try {
+                    for (String item : readItems(transmission.get())) {
+                        items.add(item.getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+
+            if (items.isEmpty()) {
+                return false;
+            }
+
+            Optional<Transmission> merged = serializer.serialize(items);
+            if (!merged.isPresent() || !storage.send(merged.get(), TransmissionFileSystemOutput.getCreatedTimeInMillis(sources.get(0)))) {
+                return false;
+            }
+            for (File source : sources) {
+                source.delete();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Posts the transmission the way {@link TransmissionNetworkOutput} does.
+     */
+    static final class HttpDestination implements Destination {
+        private final URL endpoint;
+
+        HttpDestination(URL endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public ReplayResult send(Transmission transmission) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            try {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setConnectTimeout(CONNECT_TIMEOUT_IN_MILLIS);
+                connection.setReadTimeout(READ_TIMEOUT_IN_MILLIS);
+                connection.setRequestProperty("Content-Type", transmission.getWebContentType());
+                connection.setRequestProperty("Content-Encoding", transmission.getWebContentEncodingType());
+                connection.setFixedLengthStreamingMode(transmission.getContent().length);
+                try (OutputStream body = connection.getOutputStream()) {
+                    body.write(transmission.getContent());
+                }
+
+                int code = connection.getResponseCode();
+                switch (code) {
+                    case TransmissionSendResult.SENT_SUCCESSFULLY:
+                    case TransmissionSendResult.PARTIAL_SUCCESS:
+                        return ReplayResult.SENT;
+
+                    case TransmissionSendResult.REQUEST_TIMEOUT:
+                    case TransmissionSendResult.THROTTLED:
+                    case TransmissionSendResult.THROTTLED_OVER_EXTENDED_TIME:
+                    case TransmissionSendResult.INTERNAL_SERVER_ERROR:
+                    case TransmissionSendResult.SERVICE_UNAVAILABLE:
+                        return ReplayResult.RETRY;
+
+                    default:
+                        return ReplayResult.REJECTED;
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Appends the items of the transmissions to a file, one JSON per line.
+     */
+    static final class NdjsonDestination implements Destination, AutoCloseable {
+        private final Writer writer;
+
+        NdjsonDestination(File file) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public synchronized ReplayResult send(Transmission transmission) throws IOException {
+            for (String item : readItems(transmission)) {
+                writer.write(item);
+                writer.write('\n');
+            }
+            return ReplayResult.SENT;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+}
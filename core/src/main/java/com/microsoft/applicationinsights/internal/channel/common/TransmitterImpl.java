@@ -21,13 +21,21 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
@@ -35,8 +43,10 @@ import com.microsoft.applicationinsights.common.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.channel.TelemetrySerializer;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
@@ -50,7 +60,7 @@ import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
  *
  * Created by gupele on 12/18/2014.
  */
-public final class TransmitterImpl implements TelemetriesTransmitter<String> {
+public final class TransmitterImpl implements TelemetriesTransmitter<byte[]> {
     private static abstract class SendHandler {
         protected final TransmissionDispatcher transmissionDispatcher;
 
@@ -64,7 +74,7 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
             this.serializer = serializer;
         }
 
-        protected void dispatch(Collection<String> telemetries) {
+        protected void dispatch(Collection<byte[]> telemetries) {
             if (telemetries.isEmpty()) {
                 return;
             }
@@ -79,9 +89,9 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
     }
 
     private static final class ScheduledSendHandler extends SendHandler implements Runnable {
-        private final TelemetriesFetcher<String> telemetriesFetcher;
+        private final TelemetriesFetcher<byte[]> telemetriesFetcher;
 
-        public ScheduledSendHandler(TransmissionDispatcher transmissionDispatcher, TelemetriesFetcher<String> telemetriesFetcher, TelemetrySerializer serializer) {
+        public ScheduledSendHandler(TransmissionDispatcher transmissionDispatcher, TelemetriesFetcher<byte[]> telemetriesFetcher, TelemetrySerializer serializer) {
             super(transmissionDispatcher,  serializer);
 
             Preconditions.checkNotNull(telemetriesFetcher, "telemetriesFetcher should be a non-null value");
@@ -91,15 +101,15 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
 
         @Override
         public void run() {
-            Collection<String> telemetriesToSend = telemetriesFetcher.fetch();
+            Collection<byte[]> telemetriesToSend = telemetriesFetcher.fetch();
             dispatch(telemetriesToSend);
         }
     }
 
     private static final class SendNowHandler extends SendHandler implements Runnable {
-        private final Collection<String> telemetries;
+        private final Collection<byte[]> telemetries;
 
-        public SendNowHandler(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, Collection<String> telemetries) {
+        public SendNowHandler(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, Collection<byte[]> telemetries) {
             super(transmissionDispatcher,  serializer);
 
             Preconditions.checkNotNull(telemetries, "telemetries should be non-null value");
@@ -113,9 +123,59 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
         }
     }
 
+    private static final class ScheduledSend {
+        private final TelemetryLane lane;
+
+        private final TelemetriesFetcher<byte[]> telemetriesFetcher;
+
+        private ScheduledSend(TelemetryLane lane, TelemetriesFetcher<byte[]> telemetriesFetcher) {
+            this.lane = lane;
+            this.telemetriesFetcher = telemetriesFetcher;
+        }
+    }
+
+    /**
+     * What the buffer of a lane sees of the transmitter, batches sent now are queued in that lane.
+     */
+    private final class LaneTransmitter implements TelemetriesTransmitter<byte[]> {
+        private final TelemetryLane lane;
+
+        private LaneTransmitter(TelemetryLane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public boolean scheduleSend(TelemetriesFetcher<byte[]> telemetriesFetcher, long value, TimeUnit timeUnit) {
+            return TransmitterImpl.this.scheduleSend(lane, telemetriesFetcher, value, timeUnit);
+        }
+
+        @Override
+        public boolean sendNow(Collection<byte[]> telemetries) {
+            return TransmitterImpl.this.sendNow(lane, telemetries);
+        }
+
+        @Override
+        public void stop(long timeout, TimeUnit timeUnit) {
+            // The lanes share the transmitter, it is stopped by its owner
+        }
+
+        @Override
+        public TelemetriesTransmitter<byte[]> forLane(TelemetryLane lane) {
+            return TransmitterImpl.this.forLane(lane);
+        }
+    }
+
     private static final int MAX_PENDING_SCHEDULE_REQUESTS = 16384;
 
-    private static final AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(1);
+    private static final int MAX_CONCURRENT_SENDS = 2;
+
+    // Share of the drain timeout the loader of the persisted transmissions has to stop
+    private static final int LOADER_PERCENTAGE_OF_DRAIN_TIMEOUT = 10;
+
+    // Share of the drain timeout the pending batches have to reach the network before the rest is persisted
+    private static final int NETWORK_PERCENTAGE_OF_DRAIN_TIMEOUT = 50;
+
+    private static final long DRAIN_POLL_INTERVAL_IN_MILLIS = 10;
 
     private final TransmissionDispatcher transmissionDispatcher;
 
@@ -127,35 +187,83 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
 
     private final Semaphore semaphore;
 
-    private final int instanceId = INSTANCE_ID_POOL.getAndIncrement();
+    private final OverloadPolicy overloadPolicy;
+
+    private final DroppedTelemetryCounters droppedTelemetryCounters;
+
+    private final TransmissionOutput spillOutput;
+
+    // Batches waiting for a thread, per lane and oldest first, guarded by itself.
+    // Kept here so the overload policy can reach the ones that are already queued.
+    private final LanedBatchQueue<Collection<byte[]>> pendingBatches = new LanedBatchQueue<>();
+
+    private final Map<TelemetryLane, TelemetriesTransmitter<byte[]>> laneTransmitters = new EnumMap<>(TelemetryLane.class);
+
+    // Scheduled sends that may not have run yet, so a drain can fetch their telemetries right away
+    private final Map<ScheduledFuture<?>, ScheduledSend> scheduledSends = new ConcurrentHashMap<>();
+
+    // Fraction of an item carried between batches that are degraded by sampling, guarded by pendingBatches
+    private int samplingAccumulator;
 
     public TransmitterImpl(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, TransmissionsLoader transmissionsLoader) {
+        this(transmissionDispatcher, serializer, transmissionsLoader, OverloadPolicy.DEFAULT, new DroppedTelemetryCounters());
+    }
+
+    public TransmitterImpl(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, TransmissionsLoader transmissionsLoader,
+                           OverloadPolicy overloadPolicy, DroppedTelemetryCounters droppedTelemetryCounters) {
+        this(transmissionDispatcher, serializer, transmissionsLoader, overloadPolicy, droppedTelemetryCounters, null);
+    }
+
+    /**
+     * @param spillOutput Persists the batches {@link #drainAndStop(long, TimeUnit)} could not send in time, may be null
+     *                    in which case they are dispatched like the others.
+     */
+    public TransmitterImpl(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, TransmissionsLoader transmissionsLoader,
+                           OverloadPolicy overloadPolicy, DroppedTelemetryCounters droppedTelemetryCounters, @Nullable TransmissionOutput spillOutput) {
         Preconditions.checkNotNull(transmissionDispatcher, "transmissionDispatcher must be non-null value");
         Preconditions.checkNotNull(serializer, "serializer must be non-null value");
         Preconditions.checkNotNull(transmissionsLoader, "transmissionsLoader must be non-null value");
+        Preconditions.checkNotNull(overloadPolicy, "overloadPolicy must be non-null value");
+        Preconditions.checkNotNull(droppedTelemetryCounters, "droppedTelemetryCounters must be non-null value");
 
         this.transmissionDispatcher = transmissionDispatcher;
         this.serializer = serializer;
+        this.overloadPolicy = overloadPolicy;
+        this.droppedTelemetryCounters = droppedTelemetryCounters;
+        this.spillOutput = spillOutput;
+
+        for (TelemetryLane lane : TelemetryLane.values()) {
+            laneTransmitters.put(lane, new LaneTransmitter(lane));
+        }
 
         semaphore = new Semaphore(MAX_PENDING_SCHEDULE_REQUESTS);
 
-        threadPool = Executors.newScheduledThreadPool(2, ThreadPoolUtils.createDaemonThreadFactory(TransmitterImpl.class, instanceId));
+        threadPool = SDKExecutors.newScheduledExecutor(TransmitterImpl.class, SDKExecutors.Priority.HIGH, MAX_CONCURRENT_SENDS);
 
         this.transmissionsLoader = transmissionsLoader;
         this.transmissionsLoader.load(false);
     }
 
+    /**
+     * Telemetries fetched through this method are counted in the {@link TelemetryLane#DEFAULT} lane when dropped.
+     */
     @Override
     public boolean scheduleSend(TelemetriesFetcher telemetriesFetcher, long value, TimeUnit timeUnit) {
+        return scheduleSend(TelemetryLane.DEFAULT, telemetriesFetcher, value, timeUnit);
+    }
+
+    private boolean scheduleSend(TelemetryLane lane, TelemetriesFetcher<byte[]> telemetriesFetcher, long value, TimeUnit timeUnit) {
         Preconditions.checkNotNull(telemetriesFetcher, "telemetriesFetcher should be non-null value");
 
-        if (!semaphore.tryAcquire()) {
-            return false;
+        if (!acquirePermit()) {
+            // The buffer gives up its telemetries when it cannot schedule, they go through the overload policy instead
+            Collection<byte[]> telemetries = telemetriesFetcher.fetch();
+            return !telemetries.isEmpty() && onOverload(lane, telemetries);
         }
 
         try {
             final Runnable command = new ScheduledSendHandler(transmissionDispatcher, telemetriesFetcher, serializer);
-            threadPool.schedule(new Runnable() {
+            ScheduledFuture<?> future = threadPool.schedule(new Runnable() {
                 public void run() {
                     try {
                         semaphore.release();
@@ -174,6 +282,8 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
                     }
                 }
             }, value, timeUnit);
+            scheduledSends.keySet().removeIf(Future::isDone);
+            scheduledSends.put(future, new ScheduledSend(lane, telemetriesFetcher));
 
             return true;
         } catch (ThreadDeath td) {
@@ -181,7 +291,11 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
         } catch (Throwable t) {
             try {
                 semaphore.release();
-                InternalLogger.INSTANCE.error("Error in scheduledSend of telemetry items failed. %d items were not sent ", telemetriesFetcher.fetch().size());
+                Collection<byte[]> dropped = telemetriesFetcher.fetch();
+                if (!dropped.isEmpty()) {
+                    droppedTelemetryCounters.onDropped(lane, dropped);
+                }
+                InternalLogger.INSTANCE.error("Error in scheduledSend of telemetry items failed. %d items were not sent ", dropped.size());
                 InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
             } catch (ThreadDeath td) {
                 throw td;
@@ -193,21 +307,44 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
         return true;
     }
 
+    /**
+     * Batches sent now through this method are queued in the {@link TelemetryLane#DEFAULT} lane.
+     */
+    @Override
+    public boolean sendNow(Collection<byte[]> telemetries) {
+        return sendNow(TelemetryLane.DEFAULT, telemetries);
+    }
+
     @Override
-    public boolean sendNow(Collection<String> telemetries) {
+    public TelemetriesTransmitter<byte[]> forLane(TelemetryLane lane) {
+        Preconditions.checkNotNull(lane, "lane should be non-null value");
+
+        return laneTransmitters.get(lane);
+    }
+
+    private boolean sendNow(TelemetryLane lane, Collection<byte[]> telemetries) {
         Preconditions.checkNotNull(telemetries, "telemetries should be non-null value");
 
-        if (!semaphore.tryAcquire()) {
-            return false;
+        if (!acquirePermit()) {
+            return onOverload(lane, telemetries);
+        }
+
+        synchronized (pendingBatches) {
+            pendingBatches.addLast(lane, telemetries);
         }
 
-        final Runnable command = new SendNowHandler(transmissionDispatcher, serializer, telemetries);
         try {
             threadPool.execute(new Runnable() {
                 public void run() {
                     try {
                         semaphore.release();
-                        command.run();
+                        Collection<byte[]> batch;
+                        synchronized (pendingBatches) {
+                            batch = pendingBatches.pollNext();
+                        }
+                        if (batch != null) {
+                            new SendNowHandler(transmissionDispatcher, serializer, batch).run();
+                        }
                     } catch (ThreadDeath td) {
                         throw td;
                     } catch (Throwable t) {
@@ -230,6 +367,15 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
         } catch (Throwable t) {
             try {
                 semaphore.release();
+                // The batch may already have been taken by a running task in place of another one,
+                // whichever is still waiting in its lane has lost its task and is dropped.
+                Collection<byte[]> dropped;
+                synchronized (pendingBatches) {
+                    dropped = pendingBatches.pollLast(lane);
+                }
+                if (dropped != null) {
+                    droppedTelemetryCounters.onDropped(lane, dropped);
+                }
                 InternalLogger.INSTANCE.error("Error in scheduledSend of telemetry items failed. %d items were not sent ", telemetries.size());
                 InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
             } catch (ThreadDeath td) {
@@ -242,10 +388,250 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
         return false;
     }
 
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    public DroppedTelemetryCounters getDroppedTelemetryCounters() {
+        return droppedTelemetryCounters;
+    }
+
+    /**
+     * @return The number of batches that wait for a thread to be serialized and dispatched
+     */
+    public int getNumberOfPendingBatches() {
+        synchronized (pendingBatches) {
+            return pendingBatches.size();
+        }
+    }
+
+    private boolean acquirePermit() {
+        if (semaphore.tryAcquire()) {
+            return true;
+        }
+
+        if (overloadPolicy.getType() != OverloadPolicy.Type.BLOCK_WITH_TIMEOUT || overloadPolicy.getBlockTimeoutInMillis() == 0) {
+            return false;
+        }
+
+        try {
+            return semaphore.tryAcquire(overloadPolicy.getBlockTimeoutInMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Makes room for a batch that did not get a slot. The oldest batch of a less important lane is shed first,
+     * if there is none the overload policy is applied within the lane of the batch.
+     * DROP_OLDEST and DEGRADE_BY_SAMPLING need a pending batch in that lane, to drop or to append to. When the slots
+     * are all taken by other lanes or by scheduled sends there is none, and the incoming batch is dropped as with
+     * DROP_NEWEST. Either way the dropped telemetries are counted.
+     * @param lane The lane of the incoming batch
+     * @param telemetries The incoming batch
+     * @return True if the incoming batch, or part of it, was queued in place of other telemetries
+     */
+    private boolean onOverload(TelemetryLane lane, Collection<byte[]> telemetries) {
+        Collection<byte[]> dropped = telemetries;
+        TelemetryLane droppedLane = lane;
+        OverloadPolicy.Type appliedPolicyType = OverloadPolicy.Type.DROP_NEWEST;
+        boolean accepted = false;
+
+        synchronized (pendingBatches) {
+            TelemetryLane laneToShed = pendingBatches.findLaneToShedBelow(lane);
+            if (laneToShed != null) {
+                dropped = pendingBatches.pollFirst(laneToShed);
+                droppedLane = laneToShed;
+                pendingBatches.addLast(lane, telemetries);
+                appliedPolicyType = OverloadPolicy.Type.DROP_OLDEST;
+                accepted = true;
+            } else if (!pendingBatches.isEmpty(lane)) {
+                switch (overloadPolicy.getType()) {
+                    case DROP_OLDEST:
+                        dropped = pendingBatches.pollFirst(lane);
+                        pendingBatches.addLast(lane, telemetries);
+                        appliedPolicyType = OverloadPolicy.Type.DROP_OLDEST;
+                        accepted = true;
+                        break;
+
+                    case DEGRADE_BY_SAMPLING:
+                        dropped = sampleIntoNewestBatch(lane, telemetries);
+                        appliedPolicyType = OverloadPolicy.Type.DEGRADE_BY_SAMPLING;
+                        accepted = dropped.size() < telemetries.size();
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+
+        if (!dropped.isEmpty()) {
+            droppedTelemetryCounters.onDropped(droppedLane, dropped);
+            InternalLogger.INSTANCE.warn("Transmitter is overloaded, %d telemetries of the %s lane were dropped as %s by the '%s' policy", dropped.size(), droppedLane, appliedPolicyType, overloadPolicy);
+        }
+
+        return accepted;
+    }
+
+    // Keeps a steady share of the telemetries across overloaded batches and appends it to the newest pending batch of the lane,
+    // must be called while holding pendingBatches
+    private List<byte[]> sampleIntoNewestBatch(TelemetryLane lane, Collection<byte[]> telemetries) {
+        List<byte[]> kept = new ArrayList<>();
+        List<byte[]> dropped = new ArrayList<>();
+        for (byte[] telemetry : telemetries) {
+            samplingAccumulator += overloadPolicy.getSamplingPercentage();
+            if (samplingAccumulator >= 100) {
+                samplingAccumulator -= 100;
+                kept.add(telemetry);
+            } else {
+                dropped.add(telemetry);
+            }
+        }
+
+        if (!kept.isEmpty()) {
+            List<byte[]> merged = new ArrayList<>(pendingBatches.pollLast(lane));
+            merged.addAll(kept);
+            pendingBatches.addLast(lane, merged);
+        }
+
+        return dropped;
+    }
+
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
         transmissionsLoader.stop(timeout, timeUnit);
         ThreadPoolUtils.stop(threadPool, timeout, timeUnit);
         transmissionDispatcher.stop(timeout, timeUnit);
     }
+
+    /**
+     * The telemetries the buffers hold for a scheduled send are sent right away, then the pending batches are
+     * dispatched until the network share of the timeout is over. The batches that no thread took by then were
+     * never sent, they are compressed in parallel and given to the spill output. The sends already in flight
+     * are not interrupted, they are waited for until the deadline, and the transmissions queued for the network
+     * are given to the disk as the outputs are stopped. Every step is bound by what is left of the timeout.
+     */
+    @Override
+    public void drainAndStop(long timeout, TimeUnit timeUnit) {
+        long timeoutInNanos = timeUnit.toNanos(timeout);
+        long startInNanos = System.nanoTime();
+        long deadlineInNanos = startInNanos + timeoutInNanos;
+        long networkDeadlineInNanos = startInNanos + timeoutInNanos / 100 * NETWORK_PERCENTAGE_OF_DRAIN_TIMEOUT;
+
+        // What was persisted stays on the disk for the next run
+        transmissionsLoader.stop(timeoutInNanos / 100 * LOADER_PERCENTAGE_OF_DRAIN_TIMEOUT, TimeUnit.NANOSECONDS);
+
+        sendScheduledNow();
+        threadPool.shutdown();
+        awaitNoPendingBatches(networkDeadlineInNanos);
+
+        Map<TelemetryLane, List<Collection<byte[]>>> leftBatches = new EnumMap<>(TelemetryLane.class);
+        synchronized (pendingBatches) {
+            for (TelemetryLane lane : TelemetryLane.values()) {
+                List<Collection<byte[]>> batches = new ArrayList<>();
+                for (Collection<byte[]> batch = pendingBatches.pollFirst(lane); batch != null; batch = pendingBatches.pollFirst(lane)) {
+                    batches.add(batch);
+                }
+                leftBatches.put(lane, batches);
+            }
+        }
+        // The tasks still queued find no batch, what is left running are the sends in flight
+        awaitTermination(threadPool, networkDeadlineInNanos);
+
+        spill(leftBatches, System.nanoTime() + Math.max(0L, deadlineInNanos - System.nanoTime()) / 2);
+        if (!awaitTermination(threadPool, deadlineInNanos)) {
+            InternalLogger.INSTANCE.warn("Sends still in flight at the shutdown deadline are left to complete on their own");
+        }
+
+        transmissionDispatcher.stopWithin(Math.max(0L, deadlineInNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    // Cancels the timers of the scheduled sends that did not run yet and queues what they would have fetched
+    private void sendScheduledNow() {
+        for (Map.Entry<ScheduledFuture<?>, ScheduledSend> entry : scheduledSends.entrySet()) {
+            if (!entry.getKey().cancel(false)) {
+                continue;
+            }
+            // The permit of a send is released when it runs
+            semaphore.release();
+            ScheduledSend scheduledSend = entry.getValue();
+            Collection<byte[]> telemetries = scheduledSend.telemetriesFetcher.fetch();
+            if (!telemetries.isEmpty() && !sendNow(scheduledSend.lane, telemetries)) {
+                droppedTelemetryCounters.onDropped(scheduledSend.lane, telemetries);
+            }
+        }
+        scheduledSends.clear();
+    }
+
+    private void awaitNoPendingBatches(long deadlineInNanos) {
+        try {
+            while (getNumberOfPendingBatches() > 0 && System.nanoTime() < deadlineInNanos) {
+                Thread.sleep(DRAIN_POLL_INTERVAL_IN_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void spill(Map<TelemetryLane, List<Collection<byte[]>>> batchesPerLane, long deadlineInNanos) {
+        int numberOfBatches = 0;
+        for (List<Collection<byte[]>> batches : batchesPerLane.values()) {
+            numberOfBatches += batches.size();
+        }
+        if (numberOfBatches == 0) {
+            return;
+        }
+
+        InternalLogger.INSTANCE.info("%d batches were not sent in time, they are persisted", numberOfBatches);
+        ExecutorService spillThreads = SDKExecutors.newLimitedExecutor(TransmitterImpl.class, SDKExecutors.Priority.HIGH, SDKExecutors.getNumberOfThreads(), numberOfBatches);
+        for (Map.Entry<TelemetryLane, List<Collection<byte[]>>> entry : batchesPerLane.entrySet()) {
+            final TelemetryLane lane = entry.getKey();
+            for (final Collection<byte[]> batch : entry.getValue()) {
+                spillThreads.execute(() -> spill(lane, batch));
+            }
+        }
+
+        spillThreads.shutdown();
+        if (!awaitTermination(spillThreads, deadlineInNanos)) {
+            int notPersisted = spillThreads.shutdownNow().size();
+            InternalLogger.INSTANCE.warn("%d batches were not persisted before the shutdown deadline", notPersisted);
+        }
+    }
+
+    private void spill(TelemetryLane lane, Collection<byte[]> batch) {
+        try {
+            Optional<Transmission> transmission = serializer.serialize(batch);
+            if (!transmission.isPresent()) {
+                return;
+            }
+
+            if (spillOutput == null) {
+                transmissionDispatcher.dispatch(transmission.get());
+            } else if (!spillOutput.send(transmission.get())) {
+                droppedTelemetryCounters.onDropped(lane, batch);
+            }
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to persist a batch of %d telemetries on shutdown", batch.size());
+                InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    private static boolean awaitTermination(ExecutorService executor, long deadlineInNanos) {
+        try {
+            return executor.awaitTermination(Math.max(0L, deadlineInNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 }
@@ -2,11 +2,11 @@ package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.io.IOException;
 
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFunction;
-import org.springframework.web.reactive.function.client.ExchangeFunctions;
+
+import reactor.core.publisher.Mono;
 
 public class WebClientSender {
 
@@ -18,11 +18,19 @@ public class WebClientSender {
 
 class SpringHttpSender implements HttpSender {
 	
-	ExchangeFunction exchangeFunction = ExchangeFunctions.create(new ReactorClientHttpConnector());
+	// Taken for each request, the shared pool may be configured after this sender is created
+	private ExchangeFunction exchangeFunction() {
+		return HttpClientFactory.INSTANCE.getExchangeFunction();
+	}
 
 	@Override
 	public ClientResponse sendPostRequest(ClientRequest request) throws IOException {
-		return exchangeFunction.exchange(request).block();
+		return sendPostRequestAsync(request).block();
+	}
+
+	@Override
+	public Mono<ClientResponse> sendPostRequestAsync(ClientRequest request) {
+		return exchangeFunction().exchange(request);
 	}
 
 
@@ -23,7 +23,7 @@ package com.microsoft.applicationinsights.internal.channel.sampling;
 
 import java.util.Date;
 import java.util.Set;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -31,6 +31,7 @@ import com.microsoft.applicationinsights.channel.TelemetrySampler;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
 
@@ -142,7 +143,7 @@ public final class AdaptiveTelemetrySampler implements Stoppable, TelemetrySampl
 
     private final AtomicLong counter = new AtomicLong(0);
 
-    private ScheduledThreadPoolExecutor threads;
+    private ScheduledExecutorService threads;
 
     // We use the 'FixedRateTelemetrySampler' to do the actual sampling
     private final FixedRateTelemetrySampler sampler = new FixedRateTelemetrySampler();
@@ -230,8 +231,7 @@ public final class AdaptiveTelemetrySampler implements Stoppable, TelemetrySampl
     }
 
     private void createTimerThread() {
-        threads = new ScheduledThreadPoolExecutor(1);
-        threads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(AdaptiveTelemetrySampler.class));
+        threads = SDKExecutors.newScheduledExecutor(AdaptiveTelemetrySampler.class, SDKExecutors.Priority.LOW, 1);
     }
 
     private int getIntValueOrDefault(String name, String valueAsString, int defaultValue, int minValue, int maxValue) {
@@ -22,6 +22,10 @@ import java.util.Set;
 /**
  * This processor is used to Perform Sampling on User specified sampling rate
  * <p>
+ * When the configuration has a head sampler, see {@link com.microsoft.applicationinsights.TelemetryConfiguration#setHeadSampler},
+ * it is applied at the head of the 'track' pipeline unlike the other processors: before the telemetry initializers
+ * when the item already carries its operation id, right after them otherwise, and always before the other processors.
+ * <p>
  * How to use in ApplicationInsights Configuration :
  * <p>
  * {@code
@@ -188,7 +192,7 @@ public final class FixedRateSamplingTelemetryProcessor implements TelemetryProce
      * @param item : Denotes the class item to be determined applicable for sampling
      * @return boolean
      */
-    private boolean isSamplingApplicable(Class item) {
+    boolean isSamplingApplicable(Class item) {
 
         if (excludedTypes.size() > 0 && excludedTypes.contains(item)) {
             return false;
@@ -0,0 +1,215 @@
+package com.microsoft.applicationinsights.internal.channel.samplingV2;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The sampling decision of an operation, computed once when the operation starts and shared by all of its
+ * telemetry items.
+ *
+ * The decision bound to the current thread is used by {@link SamplingScoreGeneratorV2} instead of hashing the
+ * operation id again for every item, and by the agent to skip the dependencies of sampled out operations.
+ *
+ * A decision taken by the caller may differ from the hash of the operation id. While such a decision is bound
+ * to a thread it is also registered by operation id, so the items of the operation tracked on threads it is not
+ * bound to get the same decision. It stays registered until every thread that bound it unbinds it, the threads
+ * that merely inherited it do not count. Items tracked after that, or while too many operations are registered,
+ * fall back to the hash and may get the opposite decision.
+ */
+public final class SamplingDecision {
+
+    // The highest score below 100, sampled out by any sampling percentage but 100
+    private static final double SAMPLED_OUT_SCORE = Math.nextDown(100.0);
+
+    // Bounds the memory held by operations that are never unbound
+    static final int MAX_REGISTERED_OPERATIONS = 10000;
+
+    private static final InheritableThreadLocal<SamplingDecision> current = new InheritableThreadLocal<>();
+
+    // The decision the current thread bound itself, unlike 'current' it is not inherited
+    private static final ThreadLocal<SamplingDecision> boundByThread = new ThreadLocal<>();
+
+    // The bound decisions that differ from the hash of their operation id, by operation id
+    private static final ConcurrentMap<String, SamplingDecision> registered = new ConcurrentHashMap<>();
+
+    private final String operationId;
+    private final double samplingScore;
+    private final double samplingPercentage;
+    private final boolean differsFromHash;
+
+    // The threads that bound the decision, guarded by the decision
+    private int bindings;
+
+    private SamplingDecision(String operationId, double samplingScore, double samplingPercentage, boolean differsFromHash) {
+        Preconditions.checkArgument(!StringUtils.isEmpty(operationId), "operationId must be a non-empty string");
+
+        this.operationId = operationId;
+        this.samplingScore = samplingScore;
+        this.samplingPercentage = samplingPercentage;
+        this.differsFromHash = differsFromHash;
+    }
+
+    /**
+     * Computes the decision of an operation from the hash of its operation id.
+     * @param operationId The operation id.
+     * @param samplingPercentage The sampling percentage applied to the operation.
+     * @return The decision.
+     */
+    public static SamplingDecision forOperation(String operationId, double samplingPercentage) {
+        return new SamplingDecision(operationId, SamplingScoreGeneratorV2.getSamplingScore(operationId), samplingPercentage, false);
+    }
+
+    /**
+     * Creates the decision of an operation that was already taken by the caller, e.g. through the sampled flag
+     * of the W3C traceparent header. The caller's decision only matters when sampling is enabled,
+     * with a sampling percentage of 100 every operation is sampled in.
+     * @param operationId The operation id.
+     * @param sampled True if the caller sampled the operation in.
+     * @param samplingPercentage The sampling percentage applied to the operation.
+     * @return The decision.
+     */
+    public static SamplingDecision forOperation(String operationId, boolean sampled, double samplingPercentage) {
+        boolean sampledByHash = SamplingScoreGeneratorV2.getSamplingScore(operationId) < samplingPercentage;
+        return new SamplingDecision(operationId, sampled ? 0.0 : SAMPLED_OUT_SCORE, samplingPercentage, sampled != sampledByHash);
+    }
+
+    /**
+     * Gets the sampling percentage the configuration applies to dependencies, 100 when they are not sampled.
+     * @param configuration The configuration.
+     * @return The sampling percentage.
+     */
+    public static double getSamplingPercentage(TelemetryConfiguration configuration) {
+        double samplingPercentage = FixedRateSamplingTelemetryProcessor.DEFAULT_SAMPLING_PERCENTAGE;
+        for (TelemetryProcessor processor : configuration.getTelemetryProcessors()) {
+            if (processor instanceof FixedRateSamplingTelemetryProcessor) {
+                FixedRateSamplingTelemetryProcessor samplingProcessor = (FixedRateSamplingTelemetryProcessor) processor;
+                if (samplingProcessor.isSamplingApplicable(RemoteDependencyTelemetry.class)) {
+                    samplingPercentage = Math.min(samplingPercentage, samplingProcessor.getSamplingPercentage());
+                }
+            }
+        }
+
+        return samplingPercentage;
+    }
+
+    /**
+     * Binds the decision to the current thread, and to the threads it creates.
+     * @param decision The decision, null to unbind the current one.
+     */
+    public static void bind(SamplingDecision decision) {
+        if (decision == null) {
+            unbind();
+            return;
+        }
+
+        SamplingDecision previous = boundByThread.get();
+        if (previous != decision) {
+            if (previous != null) {
+                unregister(previous);
+            }
+            register(decision);
+            boundByThread.set(decision);
+        }
+        current.set(decision);
+    }
+
+    /**
+     * Unbinds the decision from the current thread.
+     */
+    public static void unbind() {
+        SamplingDecision decision = boundByThread.get();
+        if (decision != null) {
+            unregister(decision);
+            boundByThread.remove();
+        }
+        current.remove();
+    }
+
+    /**
+     * Gets the decision bound to the current thread.
+     * @return The decision, or null if none is bound.
+     */
+    public static SamplingDecision current() {
+        return current.get();
+    }
+
+    /**
+     * Finds the decision of an operation, the one bound to the current thread or else the registered one.
+     * @param operationId The operation id.
+     * @return The decision, or null if the hash of the operation id applies.
+     */
+    static SamplingDecision find(String operationId) {
+        SamplingDecision decision = current.get();
+        if (decision != null && decision.isFor(operationId)) {
+            return decision;
+        }
+
+        return registered.isEmpty() ? null : registered.get(operationId);
+    }
+
+    private static void register(SamplingDecision decision) {
+        if (!decision.differsFromHash) {
+            return;
+        }
+
+        synchronized (decision) {
+            if (decision.bindings++ != 0) {
+                return;
+            }
+            if (registered.size() >= MAX_REGISTERED_OPERATIONS) {
+                InternalLogger.INSTANCE.warn("Too many operations sampled by their caller, items of operation '%s' on other threads are sampled by the hash", decision.operationId);
+                return;
+            }
+            registered.put(decision.operationId, decision);
+        }
+    }
+
+    private static void unregister(SamplingDecision decision) {
+        if (!decision.differsFromHash) {
+            return;
+        }
+
+        synchronized (decision) {
+            if (--decision.bindings == 0) {
+                registered.remove(decision.operationId, decision);
+            }
+        }
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    /**
+     * Gets the sampling score shared by all the telemetry items of the operation.
+     * @return [0.0, 100.0)
+     */
+    public double getSamplingScore() {
+        return samplingScore;
+    }
+
+    public double getSamplingPercentage() {
+        return samplingPercentage;
+    }
+
+    /**
+     * Gets a value indicating whether the operation is sampled in, this is also the sampled flag propagated
+     * to the callees.
+     * @return True if the operation is sampled in.
+     */
+    public boolean isSampledIn() {
+        return samplingScore < samplingPercentage;
+    }
+
+    boolean isFor(String operationId) {
+        // Telemetry items of an operation usually share the very same operation id instance
+        return this.operationId == operationId || this.operationId.equals(operationId);
+    }
+}
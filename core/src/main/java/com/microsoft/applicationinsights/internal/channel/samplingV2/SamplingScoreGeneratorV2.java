@@ -2,7 +2,7 @@ package com.microsoft.applicationinsights.internal.channel.samplingV2;
 
 import com.microsoft.applicationinsights.telemetry.Telemetry;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -12,28 +12,40 @@ import org.apache.commons.lang3.StringUtils;
  */
 public class SamplingScoreGeneratorV2 {
 
-    private static Random random = new Random();
-
     /**
      * This method takes the telemetry and returns the hash of the operation id if it is present already
      * or uses the random number generator to generate the sampling score.
+     * The score of the operation's {@link SamplingDecision}, bound to the current thread or registered
+     * because the caller decided, is reused instead of hashing the operation id again.
      * @param telemetry
-     * @return [0.0, 1.0)
+     * @return [0.0, 100.0)
      */
     public static double getSamplingScore(Telemetry telemetry) {
 
-        double samplingScore;
+        String operationId = telemetry.getContext().getOperation().getId();
+        if (StringUtils.isEmpty(operationId)) {
+            return ThreadLocalRandom.current().nextDouble() * 100.0; // always < 100.0
+        }
 
-        if (!StringUtils.isEmpty(telemetry.getContext().getOperation().getId())) {
-            samplingScore =  ((double) getSamplingHashCode(telemetry.getContext().getOperation().getId()) / Integer.MAX_VALUE);
-        } else {
-            samplingScore =  random.nextDouble(); // [0,1)
+        SamplingDecision decision = SamplingDecision.find(operationId);
+        if (decision != null) {
+            return decision.getSamplingScore();
         }
 
-        return samplingScore * 100.0; // always < 100.0
+        return getSamplingScore(operationId);
     }
 
     /**
+     * Returns the sampling score of an operation, the hash of its operation id.
+     * @param operationId The operation id, must not be empty.
+     * @return [0.0, 100.0)
+     */
+    public static double getSamplingScore(String operationId) {
+        return ((double) getSamplingHashCode(operationId) / Integer.MAX_VALUE) * 100.0; // always < 100.0
+    }
+
+    /**
+     * The input is hashed as if it was repeated until it is at least 8 characters long.
      * @param input
      * @return [0, Integer.MAX_VALUE)
      */
@@ -42,15 +54,15 @@ public class SamplingScoreGeneratorV2 {
             return 0;
         }
 
-        StringBuilder inputBuilder = new StringBuilder(input);
-        while (inputBuilder.length() < 8) {
-            inputBuilder.append(input);
-        }
+        int length = input.length();
+        int repetitions = (8 + length - 1) / length;
 
         int hash = 5381;
 
-        for (int i = 0; i < inputBuilder.length(); ++i) {
-            hash = ((hash << 5) + hash) + (int) inputBuilder.charAt(i);
+        for (int r = 0; r < repetitions; ++r) {
+            for (int i = 0; i < length; ++i) {
+                hash = ((hash << 5) + hash) + (int) input.charAt(i);
+            }
         }
 
         if (hash == Integer.MIN_VALUE || hash == Integer.MAX_VALUE) {
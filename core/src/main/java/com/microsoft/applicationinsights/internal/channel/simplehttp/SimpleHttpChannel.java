@@ -29,6 +29,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
 import com.microsoft.applicationinsights.channel.TelemetrySampler;
+import com.microsoft.applicationinsights.internal.channel.common.HttpClientFactory;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
@@ -69,7 +70,7 @@ final class SimpleHttpChannel implements TelemetryChannel
 	                InternalLogger.INSTANCE.trace("SimpleHttpChannel, payload: %s", payload);
 	            }
 	
-	            int code = WebClient.create(DEFAULT_SERVER_URI)
+	            int code = WebClient.builder().clientConnector(HttpClientFactory.INSTANCE.getConnector()).baseUrl(DEFAULT_SERVER_URI).build()
 	            	.post()
 	            	.syncBody(payload)
 	            	.header("Content-Type", "application/x-json-stream")
@@ -73,6 +73,9 @@ public class ApplicationInsightsXmlConfiguration {
     @XmlElement(name="QuickPulse")
     private QuickPulseXmlElement quickPulse;
 
+    @XmlElement(name="HttpConnections")
+    private HttpConnectionsXmlElement httpConnections;
+
     @XmlAttribute
     private String schemaVersion;
 
@@ -159,6 +162,14 @@ public class ApplicationInsightsXmlConfiguration {
         this.quickPulse = quickPulse;
     }
 
+    public HttpConnectionsXmlElement getHttpConnections() {
+        return httpConnections;
+    }
+
+    public void setHttpConnections(HttpConnectionsXmlElement httpConnections) {
+        this.httpConnections = httpConnections;
+    }
+
     public SDKLoggerXmlElement getSdkLogger() {
         return sdkLogger;
     }
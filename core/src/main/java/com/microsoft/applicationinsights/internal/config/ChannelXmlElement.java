@@ -61,6 +61,39 @@ public class ChannelXmlElement {
     @XmlElement(name="MaxInstantRetry")
     private String maxInstantRetry;
 
+    @XmlElement(name="ConcurrentBuffer")
+    private boolean concurrentBuffer;
+
+    @XmlElement(name="MaxBatchSizeInKB")
+    private String maxBatchSizeInKB;
+
+    @XmlElement(name="OverloadPolicy")
+    private String overloadPolicy;
+
+    @XmlElement(name="OverloadBlockTimeoutInMillis")
+    private String overloadBlockTimeoutInMillis;
+
+    @XmlElement(name="OverloadSamplingPercentage")
+    private String overloadSamplingPercentage;
+
+    @XmlElement(name="MaxInFlightRequests")
+    private String maxInFlightRequests;
+
+    @XmlElement(name="SegmentedTransmissionStorage")
+    private boolean segmentedTransmissionStorage;
+
+    @XmlElement(name="MaxCatchUpBandwidthInKBPerSecond")
+    private String maxCatchUpBandwidthInKBPerSecond;
+
+    @XmlElement(name="PriorityLanes")
+    private boolean priorityLanes;
+
+    @XmlElement(name="ShutdownDeadlineInSeconds")
+    private String shutdownDeadlineInSeconds;
+
+    @XmlElement(name="DeferredSerialization")
+    private boolean deferredSerialization;
+
     @XmlAttribute
     private String type = "com.microsoft.applicationinsights.channel.concrete.inprocess.InProcessTelemetryChannel";
 
@@ -144,6 +177,94 @@ public class ChannelXmlElement {
         this.maxInstantRetry = maxInstantRetry;
     }
 
+    public boolean getConcurrentBuffer() {
+        return concurrentBuffer;
+    }
+
+    public void setConcurrentBuffer(boolean concurrentBuffer) {
+        this.concurrentBuffer = concurrentBuffer;
+    }
+
+    public String getMaxBatchSizeInKB() {
+        return maxBatchSizeInKB;
+    }
+
+    public void setMaxBatchSizeInKB(String maxBatchSizeInKB) {
+        this.maxBatchSizeInKB = maxBatchSizeInKB;
+    }
+
+    public String getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    public void setOverloadPolicy(String overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+    public String getOverloadBlockTimeoutInMillis() {
+        return overloadBlockTimeoutInMillis;
+    }
+
+    public void setOverloadBlockTimeoutInMillis(String overloadBlockTimeoutInMillis) {
+        this.overloadBlockTimeoutInMillis = overloadBlockTimeoutInMillis;
+    }
+
+    public String getOverloadSamplingPercentage() {
+        return overloadSamplingPercentage;
+    }
+
+    public void setOverloadSamplingPercentage(String overloadSamplingPercentage) {
+        this.overloadSamplingPercentage = overloadSamplingPercentage;
+    }
+
+    public String getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(String maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public boolean getSegmentedTransmissionStorage() {
+        return segmentedTransmissionStorage;
+    }
+
+    public void setSegmentedTransmissionStorage(boolean segmentedTransmissionStorage) {
+        this.segmentedTransmissionStorage = segmentedTransmissionStorage;
+    }
+
+    public String getMaxCatchUpBandwidthInKBPerSecond() {
+        return maxCatchUpBandwidthInKBPerSecond;
+    }
+
+    public void setMaxCatchUpBandwidthInKBPerSecond(String maxCatchUpBandwidthInKBPerSecond) {
+        this.maxCatchUpBandwidthInKBPerSecond = maxCatchUpBandwidthInKBPerSecond;
+    }
+
+    public boolean getPriorityLanes() {
+        return priorityLanes;
+    }
+
+    public void setPriorityLanes(boolean priorityLanes) {
+        this.priorityLanes = priorityLanes;
+    }
+
+    public String getShutdownDeadlineInSeconds() {
+        return shutdownDeadlineInSeconds;
+    }
+
+    public void setShutdownDeadlineInSeconds(String shutdownDeadlineInSeconds) {
+        this.shutdownDeadlineInSeconds = shutdownDeadlineInSeconds;
+    }
+
+    public boolean getDeferredSerialization() {
+        return deferredSerialization;
+    }
+
+    public void setDeferredSerialization(boolean deferredSerialization) {
+        this.deferredSerialization = deferredSerialization;
+    }
+
     public Map<String, String> getData() {
         HashMap<String, String> data = new HashMap<String, String>();
         if (developerMode) {
@@ -171,6 +292,50 @@ public class ChannelXmlElement {
             data.put("MaxInstantRetry", maxInstantRetry);
         }
 
+        if (concurrentBuffer) {
+            data.put("ConcurrentBuffer", "true");
+        }
+
+        if (!StringUtils.isEmpty(maxBatchSizeInKB)) {
+            data.put("MaxBatchSizeInKB", maxBatchSizeInKB);
+        }
+
+        if (!StringUtils.isEmpty(overloadPolicy)) {
+            data.put("OverloadPolicy", overloadPolicy);
+        }
+
+        if (!StringUtils.isEmpty(overloadBlockTimeoutInMillis)) {
+            data.put("OverloadBlockTimeoutInMillis", overloadBlockTimeoutInMillis);
+        }
+
+        if (!StringUtils.isEmpty(overloadSamplingPercentage)) {
+            data.put("OverloadSamplingPercentage", overloadSamplingPercentage);
+        }
+
+        if (!StringUtils.isEmpty(maxInFlightRequests)) {
+            data.put("MaxInFlightRequests", maxInFlightRequests);
+        }
+
+        if (segmentedTransmissionStorage) {
+            data.put("SegmentedTransmissionStorage", "true");
+        }
+
+        if (!StringUtils.isEmpty(maxCatchUpBandwidthInKBPerSecond)) {
+            data.put("MaxCatchUpBandwidthInKBPerSecond", maxCatchUpBandwidthInKBPerSecond);
+        }
+
+        if (priorityLanes) {
+            data.put("PriorityLanes", "true");
+        }
+
+        if (!StringUtils.isEmpty(shutdownDeadlineInSeconds)) {
+            data.put("ShutdownDeadlineInSeconds", shutdownDeadlineInSeconds);
+        }
+
+        if (deferredSerialization) {
+            data.put("DeferredSerialization", "true");
+        }
+
         data.put("Throttling", throttling ? "true" : "false");
 
         return data;
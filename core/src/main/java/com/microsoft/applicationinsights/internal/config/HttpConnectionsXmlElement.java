@@ -0,0 +1,121 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.config;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * The connection management settings shared by the ingestion and the QuickPulse clients.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class HttpConnectionsXmlElement {
+
+    @XmlElement(name="MaxConnections")
+    private String maxConnections;
+
+    @XmlElement(name="MaxPendingAcquires")
+    private String maxPendingAcquires;
+
+    @XmlElement(name="PendingAcquireTimeoutInMillis")
+    private String pendingAcquireTimeoutInMillis;
+
+    @XmlElement(name="MaxIdleTimeInSeconds")
+    private String maxIdleTimeInSeconds;
+
+    @XmlElement(name="KeepAlive")
+    private boolean keepAlive = true;
+
+    @XmlElement(name="Http2")
+    private boolean http2;
+
+    @XmlElement(name="TlsSessionCacheSize")
+    private String tlsSessionCacheSize;
+
+    @XmlElement(name="TlsSessionTimeoutInSeconds")
+    private String tlsSessionTimeoutInSeconds;
+
+    public String getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(String maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public String getMaxPendingAcquires() {
+        return maxPendingAcquires;
+    }
+
+    public void setMaxPendingAcquires(String maxPendingAcquires) {
+        this.maxPendingAcquires = maxPendingAcquires;
+    }
+
+    public String getPendingAcquireTimeoutInMillis() {
+        return pendingAcquireTimeoutInMillis;
+    }
+
+    public void setPendingAcquireTimeoutInMillis(String pendingAcquireTimeoutInMillis) {
+        this.pendingAcquireTimeoutInMillis = pendingAcquireTimeoutInMillis;
+    }
+
+    public String getMaxIdleTimeInSeconds() {
+        return maxIdleTimeInSeconds;
+    }
+
+    public void setMaxIdleTimeInSeconds(String maxIdleTimeInSeconds) {
+        this.maxIdleTimeInSeconds = maxIdleTimeInSeconds;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public String getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public void setTlsSessionCacheSize(String tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    public String getTlsSessionTimeoutInSeconds() {
+        return tlsSessionTimeoutInSeconds;
+    }
+
+    public void setTlsSessionTimeoutInSeconds(String tlsSessionTimeoutInSeconds) {
+        this.tlsSessionTimeoutInSeconds = tlsSessionTimeoutInSeconds;
+    }
+}
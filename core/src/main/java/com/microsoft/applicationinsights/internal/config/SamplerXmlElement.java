@@ -37,6 +37,9 @@ public class SamplerXmlElement {
 	@XmlElement(name="Adaptive")
     private AdaptiveSamplerXmlElement adaptiveSamplerXmlElement;
 
+	@XmlElement(name="HeadOfPipeline")
+    private boolean headOfPipeline;
+
     public FixedSamplerXmlElement getFixedSamplerXmlElement() {
         return fixedSamplerXmlElement;
     }
@@ -52,4 +55,12 @@ public class SamplerXmlElement {
     public void setAdaptiveSamplerXmlElement(AdaptiveSamplerXmlElement adaptiveSamplerXmlElement) {
         this.adaptiveSamplerXmlElement = adaptiveSamplerXmlElement;
     }
+
+    public boolean isHeadOfPipeline() {
+        return headOfPipeline;
+    }
+
+    public void setHeadOfPipeline(boolean headOfPipeline) {
+        this.headOfPipeline = headOfPipeline;
+    }
 }
@@ -47,6 +47,8 @@ import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.annotation.AnnotationPackageScanner;
 import com.microsoft.applicationinsights.internal.annotation.BuiltInProcessor;
 import com.microsoft.applicationinsights.internal.annotation.PerformanceModule;
+import com.microsoft.applicationinsights.internal.channel.common.HttpClientFactory;
+import com.microsoft.applicationinsights.internal.channel.common.HttpConnectionSettings;
 import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
 import com.microsoft.applicationinsights.internal.heartbeat.HeartBeatModule;
 import com.microsoft.applicationinsights.internal.jmx.JmxAttributeData;
@@ -56,12 +58,14 @@ import com.microsoft.applicationinsights.internal.perfcounter.JvmPerformanceCoun
 import com.microsoft.applicationinsights.internal.perfcounter.PerformanceCounterConfigurationAware;
 import com.microsoft.applicationinsights.internal.perfcounter.PerformanceCounterContainer;
 import com.microsoft.applicationinsights.internal.perfcounter.ProcessPerformanceCountersModule;
+import com.microsoft.applicationinsights.internal.processor.ExceptionAggregationTelemetryProcessor;
 import com.microsoft.applicationinsights.internal.processor.PageViewTelemetryFilter;
 import com.microsoft.applicationinsights.internal.processor.RequestTelemetryFilter;
 import com.microsoft.applicationinsights.internal.processor.SyntheticSourceFilter;
 import com.microsoft.applicationinsights.internal.processor.TelemetryEventFilter;
 import com.microsoft.applicationinsights.internal.processor.TraceTelemetryFilter;
 import com.microsoft.applicationinsights.internal.quickpulse.QuickPulse;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 
 /**
@@ -143,7 +147,14 @@ public enum TelemetryConfigurationFactory {
             setConnectionString(applicationInsightsConfig, configuration);
             setRoleName(applicationInsightsConfig, configuration);
 
+            setHttpConnections(applicationInsightsConfig.getHttpConnections());
+
             TelemetrySampler telemetrySampler = getSampler(applicationInsightsConfig.getSampler());
+            if (telemetrySampler != null && applicationInsightsConfig.getSampler().isHeadOfPipeline()) {
+                // The client samples at the head of the pipeline, the channel must not sample again
+                configuration.setHeadSampler(telemetrySampler);
+                telemetrySampler = null;
+            }
             boolean channelIsConfigured = setChannel(applicationInsightsConfig.getChannel(), telemetrySampler, configuration);
             if (!channelIsConfigured) {
                 InternalLogger.INSTANCE.warn("No channel was initialized. A channel must be set before telemetry tracking will operate correctly.");
@@ -180,6 +191,30 @@ public enum TelemetryConfigurationFactory {
         InternalLogger.INSTANCE.initialize(sdkLogger.getType(), sdkLogger.getData());
     }
 
+    private void setHttpConnections(HttpConnectionsXmlElement httpConnections) {
+        if (httpConnections == null) {
+            return;
+        }
+
+        HttpConnectionSettings settings = new HttpConnectionSettings();
+        settings.setMaxConnections(LimitsEnforcer.createWithClosestLimitOnError(1, 10000,
+                HttpConnectionSettings.DEFAULT_MAX_CONNECTIONS, "MaxConnections", httpConnections.getMaxConnections()).getCurrentValue());
+        settings.setMaxPendingAcquires(LimitsEnforcer.createWithClosestLimitOnError(1, 100000,
+                HttpConnectionSettings.DEFAULT_MAX_PENDING_ACQUIRES, "MaxPendingAcquires", httpConnections.getMaxPendingAcquires()).getCurrentValue());
+        settings.setPendingAcquireTimeoutInMillis(LimitsEnforcer.createWithClosestLimitOnError(1, 600000,
+                HttpConnectionSettings.DEFAULT_PENDING_ACQUIRE_TIMEOUT_IN_MILLIS, "PendingAcquireTimeoutInMillis", httpConnections.getPendingAcquireTimeoutInMillis()).getCurrentValue());
+        settings.setMaxIdleTimeInSeconds(LimitsEnforcer.createWithClosestLimitOnError(1, 3600,
+                HttpConnectionSettings.DEFAULT_MAX_IDLE_TIME_IN_SECONDS, "MaxIdleTimeInSeconds", httpConnections.getMaxIdleTimeInSeconds()).getCurrentValue());
+        settings.setKeepAlive(httpConnections.isKeepAlive());
+        settings.setHttp2(httpConnections.isHttp2());
+        settings.setTlsSessionCacheSize(LimitsEnforcer.createWithClosestLimitOnError(0, 100000,
+                HttpConnectionSettings.DEFAULT_TLS_SESSION_CACHE_SIZE, "TlsSessionCacheSize", httpConnections.getTlsSessionCacheSize()).getCurrentValue());
+        settings.setTlsSessionTimeoutInSeconds(LimitsEnforcer.createWithClosestLimitOnError(0, 86400,
+                HttpConnectionSettings.DEFAULT_TLS_SESSION_TIMEOUT_IN_SECONDS, "TlsSessionTimeoutInSeconds", httpConnections.getTlsSessionTimeoutInSeconds()).getCurrentValue());
+
+        HttpClientFactory.INSTANCE.configure(settings);
+    }
+
     /**
      * Sets the configuration data of Telemetry Initializers in configuration class.
      * @param telemetryInitializers The configuration data.
@@ -270,10 +305,17 @@ public enum TelemetryConfigurationFactory {
             ArrayList<TelemetryProcessorXmlElement> customs = configurationProcessors.getCustomTelemetryProcessors();
             loadProcessorComponents(processors, customs);
         }
+
+        for (TelemetryProcessor processor : processors) {
+            if (processor instanceof ExceptionAggregationTelemetryProcessor) {
+                ((ExceptionAggregationTelemetryProcessor) processor).setConfiguration(configuration);
+            }
+        }
     }
 
     private void addDefaultBuiltInProcessors(List<String> p) {
         p.add(FixedRateSamplingTelemetryProcessor.class.getCanonicalName());
+        p.add(ExceptionAggregationTelemetryProcessor.class.getCanonicalName());
         p.add(PageViewTelemetryFilter.class.getCanonicalName());
         p.add(RequestTelemetryFilter.class.getCanonicalName());
         p.add(SyntheticSourceFilter.class.getCanonicalName());
@@ -23,7 +23,7 @@ package com.microsoft.applicationinsights.internal.perfcounter;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
@@ -35,6 +35,7 @@ import com.microsoft.applicationinsights.extensibility.PerformanceCountersCollec
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
@@ -77,7 +78,7 @@ public enum PerformanceCounterContainer implements Stoppable {
 
     private TelemetryClient telemetryClient;
 
-    private ScheduledThreadPoolExecutor threads;
+    private ScheduledExecutorService threads;
 
     /**
      * /**
@@ -290,8 +291,7 @@ public enum PerformanceCounterContainer implements Stoppable {
     }
 
     private void createThreadToCollect() {
-        threads = new ScheduledThreadPoolExecutor(1);
-        threads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(PerformanceCounterContainer.class));
+        threads = SDKExecutors.newScheduledExecutor(PerformanceCounterContainer.class, SDKExecutors.Priority.LOW, 1);
     }
 
     public void setPlugin(PerformanceCountersCollectionPlugin plugin) {
@@ -0,0 +1,293 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.processor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.internal.annotation.BuiltInProcessor;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+
+/**
+ * Keeps storms of identical exceptions from flooding the channel.
+ *
+ * Exceptions are fingerprinted by their type and their top stack frames. The first ones of each fingerprint
+ * in an interval are sent in full, the others are dropped and counted. At the end of the interval, one summary
+ * exception is sent per fingerprint that had some dropped, with the number of dropped occurrences in
+ * the {@link #OCCURRENCES_METRIC_NAME} metric. The stack frames of the dropped exceptions are never converted.
+ * <p>
+ * How to use in ApplicationInsights Configuration :
+ * <p>
+ * {@code
+<TelemetryProcessors>
+    <BuiltInProcessors>
+        <Processor type = "ExceptionAggregationTelemetryProcessor">
+            <Add name = "MaxFullExceptionsPerInterval" value = "10" />
+            <Add name = "IntervalInSeconds" value = "60" />
+            <Add name = "FingerprintFrames" value = "5" />
+        </Processor>
+    </BuiltInProcessors>
+</TelemetryProcessors>
+ }
+ */
+@BuiltInProcessor("ExceptionAggregationTelemetryProcessor")
+public final class ExceptionAggregationTelemetryProcessor implements TelemetryProcessor {
+    public static final String OCCURRENCES_METRIC_NAME = "AggregatedOccurrences";
+    public static final String MAX_FULL_EXCEPTIONS_PER_INTERVAL_NAME = "MaxFullExceptionsPerInterval";
+    public static final String INTERVAL_IN_SECONDS_NAME = "IntervalInSeconds";
+    public static final String FINGERPRINT_FRAMES_NAME = "FingerprintFrames";
+    public static final int DEFAULT_MAX_FULL_EXCEPTIONS_PER_INTERVAL = 10;
+    public static final int DEFAULT_INTERVAL_IN_SECONDS = 60;
+    public static final int DEFAULT_FINGERPRINT_FRAMES = 5;
+
+    // Past that number of fingerprints in an interval, new ones are not aggregated
+    private static final int MAX_FINGERPRINTS = 1000;
+
+    /**
+     * The type of an exception and its top stack frames.
+     */
+    private static final class Fingerprint {
+        private final Class<?> type;
+        private final StackTraceElement[] frames;
+        private final int hashCode;
+
+        private Fingerprint(Class<?> type, StackTraceElement[] frames) {
+            this.type = type;
+            this.frames = frames;
+            this.hashCode = 31 * type.hashCode() + Arrays.hashCode(frames);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) other;
+            return hashCode == that.hashCode && type == that.type && Arrays.equals(frames, that.frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Occurrences {
+        private final AtomicInteger sentInFull = new AtomicInteger();
+        private final AtomicLong dropped = new AtomicLong();
+
+        // The first dropped exception of the interval, the summary is made of it
+        private final AtomicReference<ExceptionTelemetry> sample = new AtomicReference<>();
+    }
+
+    private final Map<Fingerprint, Occurrences> occurrences = new ConcurrentHashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Consumer<Telemetry> summarySender;
+
+    private volatile int maxFullExceptionsPerInterval = DEFAULT_MAX_FULL_EXCEPTIONS_PER_INTERVAL;
+    private volatile int intervalInSeconds = DEFAULT_INTERVAL_IN_SECONDS;
+    private volatile int fingerprintFrames = DEFAULT_FINGERPRINT_FRAMES;
+
+    // The configuration that owns the processor, the summaries go through its channel
+    private volatile TelemetryConfiguration configuration;
+
+    private volatile TelemetryClient telemetryClient;
+
+    public ExceptionAggregationTelemetryProcessor() {
+        this.summarySender = new Consumer<Telemetry>() {
+            @Override
+            public void accept(Telemetry summary) {
+                getTelemetryClient().track(summary);
+            }
+        };
+    }
+
+    /**
+     * @param summarySender Sends the summaries
+     */
+    ExceptionAggregationTelemetryProcessor(Consumer<Telemetry> summarySender) {
+        this.summarySender = summarySender;
+    }
+
+    public void setMaxFullExceptionsPerInterval(String maxFullExceptionsPerInterval) {
+        this.maxFullExceptionsPerInterval = LimitsEnforcer.createWithClosestLimitOnError(0, Integer.MAX_VALUE,
+                DEFAULT_MAX_FULL_EXCEPTIONS_PER_INTERVAL, MAX_FULL_EXCEPTIONS_PER_INTERVAL_NAME, maxFullExceptionsPerInterval).getCurrentValue();
+    }
+
+    public void setIntervalInSeconds(String intervalInSeconds) {
+        this.intervalInSeconds = LimitsEnforcer.createWithClosestLimitOnError(1, 3600,
+                DEFAULT_INTERVAL_IN_SECONDS, INTERVAL_IN_SECONDS_NAME, intervalInSeconds).getCurrentValue();
+    }
+
+    public void setFingerprintFrames(String fingerprintFrames) {
+        this.fingerprintFrames = LimitsEnforcer.createWithClosestLimitOnError(0, 100,
+                DEFAULT_FINGERPRINT_FRAMES, FINGERPRINT_FRAMES_NAME, fingerprintFrames).getCurrentValue();
+    }
+
+    @Override
+    public boolean process(Telemetry telemetry) {
+        if (!(telemetry instanceof ExceptionTelemetry)) {
+            return true;
+        }
+
+        ExceptionTelemetry exceptionTelemetry = (ExceptionTelemetry) telemetry;
+        Throwable throwable = exceptionTelemetry.getThrowable();
+        if (throwable == null || exceptionTelemetry.getMetrics().containsKey(OCCURRENCES_METRIC_NAME)) {
+            // Not ours to aggregate, or a summary on its way
+            return true;
+        }
+
+        // The intervals start with the first exception
+        startIntervals();
+
+        Fingerprint fingerprint = createFingerprint(throwable);
+        Occurrences current = occurrences.get(fingerprint);
+        if (current == null) {
+            if (occurrences.size() >= MAX_FINGERPRINTS) {
+                return true;
+            }
+            Occurrences created = new Occurrences();
+            current = occurrences.putIfAbsent(fingerprint, created);
+            if (current == null) {
+                current = created;
+            }
+        }
+
+        if (current.sentInFull.incrementAndGet() <= maxFullExceptionsPerInterval) {
+            return true;
+        }
+
+        current.sample.compareAndSet(null, exceptionTelemetry);
+        current.dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Sends one summary per fingerprint that had exceptions dropped since the previous call, and starts a new interval.
+     */
+    void sendSummaries() {
+        for (Map.Entry<Fingerprint, Occurrences> entry : occurrences.entrySet()) {
+            Occurrences current = entry.getValue();
+            ExceptionTelemetry sample = current.sample.getAndSet(null);
+            long dropped = current.dropped.getAndSet(0);
+            int sentInFull = current.sentInFull.getAndSet(0);
+
+            if (dropped == 0) {
+                if (sentInFull == 0) {
+                    // Nothing in a whole interval, an exception counted while it is removed is simply not summarized
+                    occurrences.remove(entry.getKey(), current);
+                }
+                continue;
+            }
+            if (sample == null) {
+                // Counted before its sample was set, it goes with the next summary
+                current.dropped.addAndGet(dropped);
+                continue;
+            }
+
+            summarySender.accept(createSummary(sample, dropped));
+        }
+    }
+
+    private ExceptionTelemetry createSummary(ExceptionTelemetry sample, long dropped) {
+        ExceptionTelemetry summary = new ExceptionTelemetry(sample.getThrowable());
+        summary.setSeverityLevel(sample.getSeverityLevel());
+        summary.getProperties().putAll(sample.getProperties());
+        summary.getMetrics().putAll(sample.getMetrics());
+        summary.getMetrics().put(OCCURRENCES_METRIC_NAME, (double) dropped);
+        return summary;
+    }
+
+    private Fingerprint createFingerprint(Throwable throwable) {
+        StackTraceElement[] trace = throwable.getStackTrace();
+        int frames = Math.min(fingerprintFrames, trace == null ? 0 : trace.length);
+        return new Fingerprint(throwable.getClass(), frames == 0 ? new StackTraceElement[0] : Arrays.copyOf(trace, frames));
+    }
+
+    private void startIntervals() {
+        if (started.get() || !started.compareAndSet(false, true)) {
+            return;
+        }
+
+        ScheduledExecutorService scheduler = SDKExecutors.newScheduledExecutor(ExceptionAggregationTelemetryProcessor.class, SDKExecutors.Priority.LOW);
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sendSummaries();
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    try {
+                        InternalLogger.INSTANCE.error("Failed to send the summaries of aggregated exceptions: '%s'", t.toString());
+                        InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+                    } catch (ThreadDeath td) {
+                        throw td;
+                    } catch (Throwable t2) {
+                        // chomp
+                    }
+                }
+            }
+        }, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
+        SDKShutdownActivity.INSTANCE.register(scheduler);
+    }
+
+    /**
+     * Sets the configuration the summaries are tracked with, the active one is used when it is not set.
+     * @param configuration The configuration that owns the processor
+     */
+    public void setConfiguration(TelemetryConfiguration configuration) {
+        this.configuration = configuration;
+        this.telemetryClient = null;
+    }
+
+    private TelemetryClient getTelemetryClient() {
+        TelemetryClient client = telemetryClient;
+        if (client == null) {
+            TelemetryConfiguration owner = configuration;
+            client = owner == null ? new TelemetryClient() : new TelemetryClient(owner);
+            telemetryClient = client;
+        }
+        return client;
+    }
+}
@@ -23,14 +23,13 @@ package com.microsoft.applicationinsights.internal.quickpulse;
 
 import java.util.Date;
 
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
-import org.springframework.web.reactive.function.client.ExchangeFunctions;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.channel.common.HttpClientFactory;
 import com.microsoft.applicationinsights.internal.channel.common.HttpSender;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 
@@ -80,7 +79,7 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
         		.body(BodyInserters.fromObject(buildPingEntity(currentDate.getTime())))
         		.build();
         
-        ClientResponse response = ExchangeFunctions.create(new ReactorClientHttpConnector())
+        ClientResponse response = HttpClientFactory.INSTANCE.getExchangeFunction()
         	.exchange(request)
         	.block();
 
@@ -24,7 +24,7 @@ package com.microsoft.applicationinsights.internal.quickpulse;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.web.reactive.function.client.ClientRequest;
@@ -37,6 +37,7 @@ import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
 import com.microsoft.applicationinsights.internal.util.DeviceInfo;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 
 /**
  * Created by gupele on 12/4/2016.
@@ -60,12 +61,15 @@ public enum QuickPulse implements Stoppable {
     public void initialize(final TelemetryConfiguration configuration) {
         Preconditions.checkNotNull(configuration, "configuration is null");
         final CountDownLatch latch = new CountDownLatch(1);
-        Executors.newSingleThreadExecutor().execute(new Runnable() {
+        // The caller is blocked until the initialization holds the lock, so it is not queued behind background work
+        ExecutorService initializer = SDKExecutors.newScheduledExecutor(QuickPulse.class, SDKExecutors.Priority.HIGH);
+        initializer.execute(new Runnable() {
             @Override
             public void run() {
                 initializeSync(latch, configuration);
             }
         });
+        initializer.shutdown();
         // don't return until initialization thread has INSTANCE lock
         try {
             latch.await();
@@ -149,6 +149,13 @@ public enum QuickPulseDataCollector {
         counters.set(null);
     }
 
+    /**
+     * @return True while the collector counts the telemetry it is given
+     */
+    public boolean isEnabled() {
+        return counters.get() != null;
+    }
+
     @Deprecated
     public synchronized void enable(final String ikey) {
         this.ikey = ikey;
@@ -72,6 +72,8 @@ public class Envelope
      */
     private ConcurrentMap<String, String> tags;
 
+    private ConcurrentMap<String, String> sharedTags;
+
     /**
      * Backing field for property Data.
      */
@@ -186,6 +188,20 @@ public class Envelope
         this.tags = value;
     }
 
+    /**
+     * Gets the SharedTags property, the part of the tags that other envelopes share and that is serialized once for all of them.
+     */
+    public ConcurrentMap<String, String> getSharedTags() {
+        return this.sharedTags;
+    }
+
+    /**
+     * Sets the SharedTags property.
+     */
+    public void setSharedTags(ConcurrentMap<String, String> value) {
+        this.sharedTags = value;
+    }
+
     /**
      * Gets the Data property.
      */
@@ -226,7 +242,7 @@ public class Envelope
         }
         writer.write("seq", seq, 64);
         writer.write("iKey", iKey, 40);
-        writer.write("tags", tags);
+        writer.writeTags("tags", tags, sharedTags);
         writer.write("data", data);
     }
 
@@ -92,6 +92,10 @@ public final class PerformanceCounterData extends Domain {
         return this.properties;
     }
 
+    public void setProperties(ConcurrentMap<String, String> value) {
+        this.properties = value;
+    }
+
     @Override
     protected void serializeContent(JsonTelemetryDataSerializer writer) throws IOException {
         Preconditions.checkNotNull(writer, "writer must be a non-null value");
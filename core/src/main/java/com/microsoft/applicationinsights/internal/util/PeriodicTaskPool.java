@@ -10,7 +10,6 @@ import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -66,8 +65,7 @@ public class PeriodicTaskPool implements Stoppable {
             throw new IllegalArgumentException("poolName must be non-empty");
         }
         this.poolSize = poolSize;
-        this.periodicTaskService = new ScheduledThreadPoolExecutor(this.poolSize,
-                ThreadPoolUtils.createNamedDaemonThreadFactory(poolName));
+        this.periodicTaskService = SDKExecutors.newScheduledExecutor(poolName, SDKExecutors.Priority.LOW, this.poolSize);
         this.periodicTaskMap = new ConcurrentHashMap<>();
     }
 
@@ -0,0 +1,644 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+/**
+ * The threads that run the background work of the SDK, shared by all of its components.
+ *
+ * There is a fixed number of worker threads, {@link #DEFAULT_NUMBER_OF_THREADS} unless the
+ * {@link #NUMBER_OF_THREADS_PROPERTY_NAME} system property says otherwise, and one timer thread
+ * that only hands the scheduled tasks over to the workers once they are due. Idle workers exit
+ * and are started again when work comes in.
+ *
+ * Components do not get the threads themselves but an executor of their own, so each one keeps
+ * its shutdown and its limits: stopping one executor never affects the tasks of another.
+ * When every worker is busy, the waiting tasks are picked by {@link Priority}, then in order of arrival.
+ *
+ * Work that blocks on I/O is not run by the shared threads, it would keep them from the rest of the work.
+ * It runs on virtual threads, on a JVM that has them and when the {@link #VIRTUAL_THREADS_PROPERTY_NAME}
+ * system property is 'true', otherwise on threads of its own executor that exit once idle.
+ */
+public final class SDKExecutors {
+    public enum Priority {
+        /**
+         * Sending telemetry
+         */
+        HIGH,
+
+        /**
+         * Persisting and managing the transmissions
+         */
+        NORMAL,
+
+        /**
+         * Collecting data in the background, like heartbeats and performance counters
+         */
+        LOW
+    }
+
+    public static final String NUMBER_OF_THREADS_PROPERTY_NAME = "applicationinsights.sdk.threads";
+    public static final int DEFAULT_NUMBER_OF_THREADS = 4;
+    public static final int MIN_NUMBER_OF_THREADS = 1;
+    public static final int MAX_NUMBER_OF_THREADS = 64;
+    public static final String VIRTUAL_THREADS_PROPERTY_NAME = "applicationinsights.sdk.virtualThreads";
+
+    private static final long IDLE_THREAD_TIMEOUT_IN_SECONDS = 60L;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    // The threads are only started by the first component that needs them
+    private static final class Holder {
+        private static final int NUMBER_OF_THREADS = LimitsEnforcer.createWithClosestLimitOnError(
+                MIN_NUMBER_OF_THREADS, MAX_NUMBER_OF_THREADS, DEFAULT_NUMBER_OF_THREADS,
+                NUMBER_OF_THREADS_PROPERTY_NAME, System.getProperty(NUMBER_OF_THREADS_PROPERTY_NAME)).getCurrentValue();
+
+        private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+        private static final ThreadPoolExecutor WORKERS = createWorkers(NUMBER_OF_THREADS);
+    }
+
+    // Resolved by reflection, the SDK still runs on Java 8
+    private static final class VirtualThreads {
+        private static final boolean SUPPORTED = createFactory("ApplicationInsights-SDKProbe") != null;
+
+        private static final boolean ENABLED = SUPPORTED && Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY_NAME);
+
+        private static ThreadFactory createFactory(String name) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                // Before Java 21, or a preview feature that is not enabled
+                return null;
+            }
+        }
+    }
+
+    private SDKExecutors() {
+    }
+
+    /**
+     * @param owner The class of the component, for diagnostics
+     * @param priority The priority of the tasks of the component
+     * @return An executor whose tasks are run by the shared threads
+     */
+    public static ScheduledExecutorService newScheduledExecutor(Class<?> owner, Priority priority) {
+        return newScheduledExecutor(owner.getSimpleName(), priority, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param owner The class of the component, for diagnostics
+     * @param priority The priority of the tasks of the component
+     * @param maxConcurrency The maximum number of tasks of the component that are run at the same time
+     * @return An executor whose tasks are run by the shared threads
+     */
+    public static ScheduledExecutorService newScheduledExecutor(Class<?> owner, Priority priority, int maxConcurrency) {
+        return newScheduledExecutor(owner.getSimpleName(), priority, maxConcurrency);
+    }
+
+    /**
+     * @param name The name of the component, for diagnostics
+     * @param priority The priority of the tasks of the component
+     * @param maxConcurrency The maximum number of tasks of the component that are run at the same time
+     * @return An executor whose tasks are run by the shared threads
+     */
+    public static ScheduledExecutorService newScheduledExecutor(String name, Priority priority, int maxConcurrency) {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be a positive number");
+
+        return new SharedExecutorService(name, priority, maxConcurrency, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @param owner The class of the component, for diagnostics
+     * @param priority The priority of the tasks of the component
+     * @param maxConcurrency The maximum number of tasks of the component that are run at the same time
+     * @param queueCapacity The maximum number of tasks that wait for their turn, more are rejected
+     * @return An executor whose tasks are run by the shared threads
+     */
+    public static ExecutorService newLimitedExecutor(Class<?> owner, Priority priority, int maxConcurrency, int queueCapacity) {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be a positive number");
+        Preconditions.checkArgument(queueCapacity >= 0, "queueCapacity must be a non negative number");
+
+        return new SharedExecutorService(owner.getSimpleName(), priority, maxConcurrency, queueCapacity, null);
+    }
+
+    /**
+     * For tasks that block on I/O, they are run on virtual threads if {@link #isVirtualThreadsEnabled()},
+     * on up to maxConcurrency threads of the executor otherwise. They never take the shared threads.
+     * @param owner The class of the component, for diagnostics
+     * @param priority The priority of the tasks of the component, for diagnostics
+     * @param maxConcurrency The maximum number of tasks of the component that are run at the same time
+     * @param queueCapacity The maximum number of tasks that wait for their turn, more are rejected
+     * @return An executor whose tasks are run by virtual threads or by the shared threads
+     */
+    public static ExecutorService newBlockingExecutor(Class<?> owner, Priority priority, int maxConcurrency, int queueCapacity) {
+        return newBlockingExecutor(owner, priority, maxConcurrency, queueCapacity, isVirtualThreadsEnabled());
+    }
+
+    /**
+     * @param virtualThreads True to run the tasks on virtual threads, which must be supported
+     * @see #newBlockingExecutor(Class, Priority, int, int)
+     */
+    public static ExecutorService newBlockingExecutor(Class<?> owner, Priority priority, int maxConcurrency, int queueCapacity, boolean virtualThreads) {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be a positive number");
+        Preconditions.checkArgument(queueCapacity >= 0, "queueCapacity must be a non negative number");
+        Preconditions.checkArgument(!virtualThreads || isVirtualThreadsSupported(), "virtual threads are not supported by this JVM");
+
+        Executor threads;
+        if (virtualThreads) {
+            ThreadFactory threadFactory = VirtualThreads.createFactory(owner.getSimpleName());
+            threads = command -> threadFactory.newThread(command).start();
+        } else {
+            threads = createBlockingThreads(String.format("%s-worker", owner.getSimpleName()), maxConcurrency);
+        }
+        return new SharedExecutorService(owner.getSimpleName(), priority, maxConcurrency, queueCapacity, threads);
+    }
+
+    /**
+     * For components that keep their own threads because they block for as long as they live.
+     * @param owner The class of the component, the threads are named after it
+     * @return A factory of virtual threads if {@link #isVirtualThreadsEnabled()}, of daemon threads otherwise
+     */
+    public static ThreadFactory newBlockingThreadFactory(Class<?> owner) {
+        String name = String.format("%s-worker", owner.getSimpleName());
+        if (isVirtualThreadsEnabled()) {
+            return VirtualThreads.createFactory(name);
+        }
+        return ThreadPoolUtils.createNamedDaemonThreadFactory(name);
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.SUPPORTED;
+    }
+
+    /**
+     * @return True if the JVM has virtual threads and they were asked for with {@link #VIRTUAL_THREADS_PROPERTY_NAME}
+     */
+    public static boolean isVirtualThreadsEnabled() {
+        return VirtualThreads.ENABLED;
+    }
+
+    /**
+     * @return The number of worker threads, the timer thread is not counted
+     */
+    public static int getNumberOfThreads() {
+        return Holder.NUMBER_OF_THREADS;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, ThreadPoolUtils.createNamedDaemonThreadFactory("ApplicationInsights-SDKTimer"));
+        timer.setRemoveOnCancelPolicy(true);
+        timer.setKeepAliveTime(IDLE_THREAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        return timer;
+    }
+
+    private static ThreadPoolExecutor createWorkers(int numberOfThreads) {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(numberOfThreads, numberOfThreads,
+                IDLE_THREAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                ThreadPoolUtils.createNamedDaemonThreadFactory("ApplicationInsights-SDKWorker"));
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    // The executor never runs more than numberOfThreads tasks at once, so they never wait in the queue for long
+    private static ThreadPoolExecutor createBlockingThreads(String name, int numberOfThreads) {
+        ThreadPoolExecutor threads = new ThreadPoolExecutor(numberOfThreads, numberOfThreads,
+                IDLE_THREAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                ThreadPoolUtils.createNamedDaemonThreadFactory(name));
+        threads.allowCoreThreadTimeOut(true);
+        return threads;
+    }
+
+    /**
+     * A task waiting for a worker, ordered by priority then by arrival.
+     */
+    private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Priority priority;
+        private final long sequence = SEQUENCE.getAndIncrement();
+        private final Runnable command;
+
+        private PrioritizedTask(Priority priority, Runnable command) {
+            this.priority = priority;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The executor of one component. Tasks over its concurrency limit wait in the executor itself,
+     * so they do not hold the workers that other components need.
+     *
+     * As with a {@link ScheduledThreadPoolExecutor}, periodic tasks are cancelled by {@link #shutdown()},
+     * delayed tasks are still run and are waited for by {@link #awaitTermination(long, TimeUnit)}.
+     * Executions of a periodic task never overlap.
+     */
+    private static final class SharedExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+        private final String name;
+        private final Priority priority;
+        private final int maxConcurrency;
+        private final int queueCapacity;
+
+        // When set, the tasks are run by these threads rather than by the shared ones
+        private final Executor threads;
+
+        private final Object lock = new Object();
+
+        // Tasks over the concurrency limit, guarded by lock
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+
+        // Scheduled tasks that are not done, guarded by lock
+        private final Set<SharedScheduledFuture<?>> scheduled = new HashSet<>();
+
+        // Tasks handed to the workers plus the ones in 'waiting', guarded by lock
+        private int running;
+
+        // Delayed tasks that are not due yet, guarded by lock
+        private int delayed;
+
+        // Guarded by lock
+        private boolean shutdown;
+
+        private final Set<Thread> runners = ConcurrentHashMap.newKeySet();
+
+        private SharedExecutorService(String name, Priority priority, int maxConcurrency, int queueCapacity, Executor threads) {
+            Preconditions.checkNotNull(priority, "priority must be a non-null value");
+
+            this.name = name;
+            this.priority = priority;
+            this.maxConcurrency = maxConcurrency;
+            this.queueCapacity = queueCapacity;
+            this.threads = threads;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            Preconditions.checkNotNull(command, "command must be a non-null value");
+
+            synchronized (lock) {
+                if (shutdown) {
+                    throw new RejectedExecutionException(String.format("%s executor is shut down", name));
+                }
+                if (running >= maxConcurrency && waiting.size() >= queueCapacity) {
+                    throw new RejectedExecutionException(String.format("%s executor is full", name));
+                }
+                if (!startOrWait(command)) {
+                    return;
+                }
+            }
+            handOver(command);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return schedule(Executors.callable(command), delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            Preconditions.checkNotNull(callable, "callable must be a non-null value");
+
+            return arm(new SharedScheduledFuture<>(callable, System.nanoTime() + unit.toNanos(delay), 0));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            Preconditions.checkNotNull(command, "command must be a non-null value");
+            Preconditions.checkArgument(period > 0, "period must be a positive number");
+
+            return arm(new SharedScheduledFuture<>(Executors.callable(command), System.nanoTime() + unit.toNanos(initialDelay), unit.toNanos(period)));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            Preconditions.checkNotNull(command, "command must be a non-null value");
+            Preconditions.checkArgument(delay > 0, "delay must be a positive number");
+
+            return arm(new SharedScheduledFuture<>(Executors.callable(command), System.nanoTime() + unit.toNanos(initialDelay), -unit.toNanos(delay)));
+        }
+
+        @Override
+        public void shutdown() {
+            List<SharedScheduledFuture<?>> periodic = new ArrayList<>();
+            synchronized (lock) {
+                shutdown = true;
+                for (SharedScheduledFuture<?> future : scheduled) {
+                    if (future.isPeriodic()) {
+                        periodic.add(future);
+                    }
+                }
+                signalIfTerminated();
+            }
+            for (SharedScheduledFuture<?> future : periodic) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<SharedScheduledFuture<?>> pending;
+            List<Runnable> notStarted;
+            synchronized (lock) {
+                shutdown = true;
+                pending = new ArrayList<>(scheduled);
+                notStarted = new ArrayList<>(waiting);
+                running -= waiting.size();
+                waiting.clear();
+                signalIfTerminated();
+            }
+            for (SharedScheduledFuture<?> future : pending) {
+                future.cancel(false);
+            }
+            for (Thread runner : runners) {
+                runner.interrupt();
+            }
+            notStarted.addAll(pending);
+            return notStarted;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            synchronized (lock) {
+                return shutdown;
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            synchronized (lock) {
+                return isTerminatedLocked();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (lock) {
+                while (!isTerminatedLocked()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s executor (%s)", name, priority);
+        }
+
+        // Counts the task and tells whether it can be handed over now, otherwise it waits for a running one to end,
+        // must be called while holding lock
+        private boolean startOrWait(Runnable command) {
+            ++running;
+            if (running > maxConcurrency) {
+                waiting.addLast(command);
+                return false;
+            }
+            return true;
+        }
+
+        private void handOver(Runnable command) {
+            if (threads != null) {
+                threads.execute(() -> runTask(command));
+            } else {
+                Holder.WORKERS.execute(new PrioritizedTask(priority, () -> runTask(command)));
+            }
+        }
+
+        private void runTask(Runnable command) {
+            Thread current = Thread.currentThread();
+            runners.add(current);
+            try {
+                command.run();
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                try {
+                    InternalLogger.INSTANCE.error("Task of the %s failed", this);
+                    InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            } finally {
+                runners.remove(current);
+                // The worker is shared, an interrupt that was meant for this task must not reach the next one
+                Thread.interrupted();
+
+                Runnable next;
+                synchronized (lock) {
+                    next = waiting.pollFirst();
+                    --running;
+                    signalIfTerminated();
+                }
+                if (next != null) {
+                    handOver(next);
+                }
+            }
+        }
+
+        private <V> SharedScheduledFuture<V> arm(SharedScheduledFuture<V> future) {
+            synchronized (lock) {
+                if (shutdown) {
+                    throw new RejectedExecutionException(String.format("%s executor is shut down", name));
+                }
+                scheduled.add(future);
+                if (!future.isPeriodic()) {
+                    ++delayed;
+                }
+            }
+            future.startTimer();
+            return future;
+        }
+
+        // Called by the timer thread when a scheduled task is due
+        private void onDue(SharedScheduledFuture<?> future) {
+            synchronized (lock) {
+                if (!scheduled.contains(future)) {
+                    return;
+                }
+                if (!future.isPeriodic()) {
+                    scheduled.remove(future);
+                    --delayed;
+                }
+                if (!startOrWait(future)) {
+                    return;
+                }
+            }
+            handOver(future);
+        }
+
+        private void onCancelled(SharedScheduledFuture<?> future) {
+            synchronized (lock) {
+                if (scheduled.remove(future)) {
+                    if (!future.isPeriodic()) {
+                        --delayed;
+                    }
+                    signalIfTerminated();
+                }
+            }
+        }
+
+        // Must be called while holding lock
+        private boolean isTerminatedLocked() {
+            return shutdown && running == 0 && delayed == 0;
+        }
+
+        // Must be called while holding lock
+        private void signalIfTerminated() {
+            if (isTerminatedLocked()) {
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * A delayed or periodic task, its timer only hands it over to the executor once it is due.
+         */
+        private final class SharedScheduledFuture<V> extends FutureTask<V> implements ScheduledFuture<V> {
+            // Positive for a fixed rate, negative for a fixed delay, zero for a task that runs once
+            private final long period;
+
+            private volatile long time;
+
+            private volatile ScheduledFuture<?> timerFuture;
+
+            private SharedScheduledFuture(Callable<V> callable, long time, long period) {
+                super(callable);
+                this.time = time;
+                this.period = period;
+            }
+
+            boolean isPeriodic() {
+                return period != 0;
+            }
+
+            void startTimer() {
+                ScheduledFuture<?> timer = Holder.TIMER.schedule(() -> onDue(this), time - System.nanoTime(), TimeUnit.NANOSECONDS);
+                timerFuture = timer;
+                if (isCancelled()) {
+                    timer.cancel(false);
+                }
+            }
+
+            @Override
+            public void run() {
+                if (!isPeriodic()) {
+                    super.run();
+                    return;
+                }
+
+                if (!runAndReset()) {
+                    // Failed or cancelled, either way there is no next execution
+                    onCancelled(this);
+                    return;
+                }
+
+                time = period > 0 ? time + period : System.nanoTime() - period;
+                boolean stopped;
+                synchronized (lock) {
+                    stopped = shutdown;
+                }
+                if (stopped) {
+                    cancel(false);
+                } else {
+                    startTimer();
+                }
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                ScheduledFuture<?> timer = timerFuture;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                if (cancelled) {
+                    onCancelled(this);
+                }
+                return cancelled;
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public int compareTo(Delayed other) {
+                if (other == this) {
+                    return 0;
+                }
+                return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+}
@@ -46,6 +46,10 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
 
     public static final String TELEMETRY_NAME_PREFIX = "Microsoft.ApplicationInsights.";
 
+    // The envelope names per instrumentation key and envelope type, most items share a handful of them
+    private static final int MAX_CACHED_INSTRUMENTATION_KEYS = 16;
+    private static final ConcurrentMap<String, ConcurrentMap<String, String>> telemetryNames = new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+
     protected BaseTelemetry() {
     }
 
@@ -147,7 +151,7 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
     @Override
     public void serialize(JsonTelemetryDataSerializer writer) throws IOException {
 
-        String telemetryName = getTelemetryName(normalizeInstrumentationKey(context.getInstrumentationKey()), this.getEnvelopName());
+        String telemetryName = getCachedTelemetryName(context.getInstrumentationKey(), this.getEnvelopName());
 
         Envelope envelope = new Envelope();
         envelope.setName(telemetryName);
@@ -161,6 +165,7 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
         envelope.setData(tmp);
         if (getTimestamp() != null) envelope.setTime(LocalStringsUtils.getDateFormatter().format(getTimestamp()));
         envelope.setTags(context.getTags());
+        envelope.setSharedTags(context.getSharedTags());
 
         envelope.serialize(writer);
     }
@@ -223,6 +228,27 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
         }
     }
 
+    private static String getCachedTelemetryName(String instrumentationKey, String envelopType) {
+        if (instrumentationKey == null || envelopType == null) {
+            return getTelemetryName(normalizeInstrumentationKey(instrumentationKey), envelopType);
+        }
+
+        ConcurrentMap<String, String> names = telemetryNames.get(instrumentationKey);
+        if (names == null) {
+            if (telemetryNames.size() >= MAX_CACHED_INSTRUMENTATION_KEYS) {
+                return getTelemetryName(normalizeInstrumentationKey(instrumentationKey), envelopType);
+            }
+            names = telemetryNames.computeIfAbsent(instrumentationKey, k -> new ConcurrentHashMap<String, String>());
+        }
+
+        String name = names.get(envelopType);
+        if (name == null) {
+            name = getTelemetryName(normalizeInstrumentationKey(instrumentationKey), envelopType);
+            names.putIfAbsent(envelopType, name);
+        }
+        return name;
+    }
+
     public static String getTelemetryName(String normalizedInstrumentationKey, String envelopType){
         return String.format(
                 "%s%s%s",
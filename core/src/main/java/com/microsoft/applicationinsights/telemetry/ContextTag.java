@@ -0,0 +1,126 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The context tags defined by {@link com.microsoft.applicationinsights.extensibility.context.ContextTagKeys},
+ * with the maximum length of their values when the endpoint has one.
+ */
+enum ContextTag {
+    APPLICATION_ID("ai.application.id"),
+    APPLICATION_VERSION("ai.application.ver", 1024),
+    APPLICATION_TYPE_ID("ai.application.typeId"),
+    DEVICE_ID("ai.device.id", 1024),
+    DEVICE_OS("ai.device.os"),
+    DEVICE_OS_VERSION("ai.device.osVersion", 256),
+    DEVICE_LOCALE("ai.device.locale"),
+    DEVICE_TYPE("ai.device.type", 64),
+    DEVICE_VM_NAME("ai.device.vmName"),
+    DEVICE_ROLE_NAME("ai.device.roleName"),
+    DEVICE_ROLE_INSTANCE("ai.device.roleInstance"),
+    DEVICE_OEM_NAME("ai.device.oemName", 256),
+    DEVICE_MODEL("ai.device.model", 256),
+    DEVICE_NETWORK("ai.device.network"),
+    DEVICE_SCREEN_RESOLUTION("ai.device.screenResolution"),
+    DEVICE_LANGUAGE("ai.device.language"),
+    DEVICE_IP("ai.device.ip"),
+    LOCATION_LATITUDE("ai.location.latitude"),
+    LOCATION_LONGITUDE("ai.location.longitude"),
+    LOCATION_IP("ai.location.ip", 45),
+    LOCATION_CONTINENT("ai.location.continent"),
+    LOCATION_COUNTRY("ai.location.country"),
+    LOCATION_PROVINCE("ai.location.province"),
+    LOCATION_CITY("ai.location.city"),
+    OPERATION_NAME("ai.operation.name", 1024),
+    OPERATION_ID("ai.operation.id", 128),
+    OPERATION_PARENT_ID("ai.operation.parentId", 128),
+    OPERATION_ROOT_ID("ai.operation.rootId"),
+    OPERATION_CORRELATION_VECTOR("ai.operation.correlationVector", 64),
+    OPERATION_SYNTHETIC_SOURCE("ai.operation.syntheticSource", 1024),
+    SESSION_ID("ai.session.id", 64),
+    SESSION_IS_FIRST("ai.session.isFirst"),
+    SESSION_IS_NEW("ai.session.isNew"),
+    USER_TYPE("ai.user.type"),
+    USER_ID("ai.user.id", 128),
+    USER_AUTH_USER_ID("ai.user.authUserId", 1024),
+    USER_ACCOUNT_ID("ai.user.accountId", 1024),
+    USER_ANONYMOUS_USER_ACQUISITION_DATE("ai.user.anonUserAcquisitionDate"),
+    USER_AUTHENTICATED_USER_ACQUISITION_DATE("ai.user.authUserAcquisitionDate"),
+    USER_ACCOUNT_ACQUISITION_DATE("ai.user.accountAcquisitionDate"),
+    USER_AGENT("ai.user.userAgent"),
+    SAMPLE_RATE("ai.sample.sampleRate"),
+    INTERNAL_SDK_VERSION("ai.internal.sdkVersion", 64),
+    INTERNAL_AGENT_VERSION("ai.internal.agentVersion", 64),
+    INTERNAL_NODE_NAME("ai.internal.nodeName", 256),
+    CLOUD_ROLE("ai.cloud.role", 256),
+    CLOUD_ROLE_INSTANCE("ai.cloud.roleInstance", 256);
+
+    static final int NO_MAX_LENGTH = Integer.MAX_VALUE;
+
+    private static final ContextTag[] VALUES = values();
+
+    private static final Map<String, ContextTag> BY_KEY = new HashMap<String, ContextTag>();
+
+    static {
+        for (ContextTag tag : VALUES) {
+            BY_KEY.put(tag.key, tag);
+        }
+    }
+
+    private final String key;
+    private final int maxLength;
+
+    ContextTag(String key) {
+        this(key, NO_MAX_LENGTH);
+    }
+
+    ContextTag(String key, int maxLength) {
+        this.key = key;
+        this.maxLength = maxLength;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return The tag of that key, null if it is not a known tag
+     */
+    static ContextTag of(Object key) {
+        return key instanceof String ? BY_KEY.get(key) : null;
+    }
+
+    static ContextTag at(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+}
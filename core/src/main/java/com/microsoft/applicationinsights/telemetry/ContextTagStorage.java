@@ -0,0 +1,338 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.microsoft.applicationinsights.common.Preconditions;
+
+/**
+ * Stores the values of the known {@link ContextTag}s in an array indexed by the tag, and the values of
+ * other keys in a map. Neither is created before a value is stored in it.
+ *
+ * The entries are iterated in the order of the tags, then in the order of the map.
+ */
+final class ContextTagStorage extends AbstractMap<String, String> implements ConcurrentMap<String, String> {
+    private volatile AtomicReferenceArray<String> slots;
+    private volatile ConcurrentMap<String, String> others;
+
+    private EntrySet entrySet;
+
+    @Override
+    public String get(Object key) {
+        ContextTag tag = ContextTag.of(key);
+        if (tag != null) {
+            AtomicReferenceArray<String> current = slots;
+            return current == null ? null : current.get(tag.ordinal());
+        }
+
+        ConcurrentMap<String, String> current = others;
+        return current == null ? null : current.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        Preconditions.checkNotNull(value, "value must be a non-null value");
+
+        ContextTag tag = ContextTag.of(key);
+        return tag != null ? getSlots().getAndSet(tag.ordinal(), value) : getOthers().put(key, value);
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value) {
+        Preconditions.checkNotNull(value, "value must be a non-null value");
+
+        ContextTag tag = ContextTag.of(key);
+        if (tag == null) {
+            return getOthers().putIfAbsent(key, value);
+        }
+
+        AtomicReferenceArray<String> current = getSlots();
+        for (;;) {
+            if (current.compareAndSet(tag.ordinal(), null, value)) {
+                return null;
+            }
+            String previous = current.get(tag.ordinal());
+            if (previous != null) {
+                return previous;
+            }
+        }
+    }
+
+    @Override
+    public String remove(Object key) {
+        ContextTag tag = ContextTag.of(key);
+        if (tag != null) {
+            AtomicReferenceArray<String> current = slots;
+            return current == null ? null : current.getAndSet(tag.ordinal(), null);
+        }
+
+        ConcurrentMap<String, String> current = others;
+        return current == null ? null : current.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        ContextTag tag = ContextTag.of(key);
+        if (tag == null) {
+            ConcurrentMap<String, String> current = others;
+            return current != null && value != null && current.remove(key, value);
+        }
+
+        AtomicReferenceArray<String> current = slots;
+        if (current == null || value == null) {
+            return false;
+        }
+        for (;;) {
+            String previous = current.get(tag.ordinal());
+            if (!value.equals(previous)) {
+                return false;
+            }
+            if (current.compareAndSet(tag.ordinal(), previous, null)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue) {
+        Preconditions.checkNotNull(newValue, "newValue must be a non-null value");
+
+        ContextTag tag = ContextTag.of(key);
+        if (tag == null) {
+            ConcurrentMap<String, String> current = others;
+            return current != null && oldValue != null && current.replace(key, oldValue, newValue);
+        }
+
+        AtomicReferenceArray<String> current = slots;
+        if (current == null || oldValue == null) {
+            return false;
+        }
+        for (;;) {
+            String previous = current.get(tag.ordinal());
+            if (!oldValue.equals(previous)) {
+                return false;
+            }
+            if (current.compareAndSet(tag.ordinal(), previous, newValue)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String replace(String key, String value) {
+        Preconditions.checkNotNull(value, "value must be a non-null value");
+
+        ContextTag tag = ContextTag.of(key);
+        if (tag == null) {
+            ConcurrentMap<String, String> current = others;
+            return current == null ? null : current.replace(key, value);
+        }
+
+        AtomicReferenceArray<String> current = slots;
+        if (current == null) {
+            return null;
+        }
+        for (;;) {
+            String previous = current.get(tag.ordinal());
+            if (previous == null || current.compareAndSet(tag.ordinal(), previous, value)) {
+                return previous;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        AtomicReferenceArray<String> currentSlots = slots;
+        if (currentSlots != null) {
+            for (int i = 0; i < currentSlots.length(); ++i) {
+                currentSlots.set(i, null);
+            }
+        }
+
+        ConcurrentMap<String, String> currentOthers = others;
+        if (currentOthers != null) {
+            currentOthers.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        AtomicReferenceArray<String> currentSlots = slots;
+        if (currentSlots != null) {
+            for (int i = 0; i < currentSlots.length(); ++i) {
+                if (currentSlots.get(i) != null) {
+                    ++size;
+                }
+            }
+        }
+
+        ConcurrentMap<String, String> currentOthers = others;
+        return currentOthers == null ? size : size + currentOthers.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !entrySet().iterator().hasNext();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        EntrySet current = entrySet;
+        if (current == null) {
+            current = new EntrySet();
+            entrySet = current;
+        }
+        return current;
+    }
+
+    private AtomicReferenceArray<String> getSlots() {
+        AtomicReferenceArray<String> current = slots;
+        if (current == null) {
+            synchronized (this) {
+                current = slots;
+                if (current == null) {
+                    current = new AtomicReferenceArray<String>(ContextTag.count());
+                    slots = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private ConcurrentMap<String, String> getOthers() {
+        ConcurrentMap<String, String> current = others;
+        if (current == null) {
+            synchronized (this) {
+                current = others;
+                if (current == null) {
+                    current = new ConcurrentHashMap<String, String>();
+                    others = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ContextTagStorage.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ContextTagStorage.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private final AtomicReferenceArray<String> currentSlots = slots;
+        private final ConcurrentMap<String, String> currentOthers = others;
+        private int nextSlot;
+        private Iterator<Map.Entry<String, String>> othersIterator;
+        private Map.Entry<String, String> next;
+        private String lastKey;
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+
+            if (currentSlots != null) {
+                while (nextSlot < currentSlots.length()) {
+                    int slot = nextSlot++;
+                    String value = currentSlots.get(slot);
+                    if (value != null) {
+                        next = new StorageEntry(ContextTag.at(slot).getKey(), value);
+                        return true;
+                    }
+                }
+            }
+
+            if (othersIterator == null) {
+                othersIterator = currentOthers == null ? Collections.<Map.Entry<String, String>>emptyIterator() : currentOthers.entrySet().iterator();
+            }
+            if (othersIterator.hasNext()) {
+                Map.Entry<String, String> entry = othersIterator.next();
+                next = new StorageEntry(entry.getKey(), entry.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<String, String> entry = next;
+            lastKey = entry.getKey();
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+
+            ContextTagStorage.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    private final class StorageEntry extends SimpleEntry<String, String> {
+        private StorageEntry(String key, String value) {
+            super(key, value);
+        }
+
+        @Override
+        public String setValue(String value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
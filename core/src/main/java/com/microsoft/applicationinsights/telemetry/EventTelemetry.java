@@ -52,6 +52,7 @@ public final class EventTelemetry extends BaseSampleSourceTelemetry<EventData> {
     public EventTelemetry() {
         super();
         data = new EventData();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
     }
 
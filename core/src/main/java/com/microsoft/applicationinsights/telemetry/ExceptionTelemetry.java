@@ -40,6 +40,10 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
     private final ExceptionData data;
     private Throwable throwable;
 
+    // The frames are converted when the details are first needed, which is never for the items a processor drops
+    private int pendingStackSize;
+    private boolean exceptionPending;
+
     /**
      * Envelope Name for this telemetry.
      */
@@ -55,6 +59,7 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
     public ExceptionTelemetry() {
         super();
         data = new ExceptionData();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
     }
 
@@ -95,7 +100,8 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
 
     public void setException(Throwable throwable, int stackSize) {
         this.throwable = throwable;
-        updateException(throwable, stackSize);
+        this.pendingStackSize = stackSize;
+        this.exceptionPending = true;
     }
 
     /**
@@ -153,11 +159,15 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
 
     @Override
     protected ExceptionData getData() {
+        if (exceptionPending) {
+            exceptionPending = false;
+            updateException(throwable, pendingStackSize);
+        }
         return data;
     }
 
     public List<ExceptionDetails> getExceptions() {
-        return data.getExceptions();
+        return getData().getExceptions();
     }
 
     private void updateException(Throwable throwable, int stackSize) {
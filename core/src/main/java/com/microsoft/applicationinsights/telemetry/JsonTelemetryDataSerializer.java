@@ -28,17 +28,23 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.StringCharacterIterator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 
 /**
  * This class knows how to transform data that is relevant to {@link Telemetry} instances into JSON.
+ *
+ * The JSON is written either to a {@link Writer} or, without allocating, into a reusable {@link Utf8JsonBuffer}.
+ * Both produce the same JSON, byte for byte once the text of the writer is encoded as UTF-8.
  */
 public final class JsonTelemetryDataSerializer {
 
@@ -51,54 +57,91 @@ public final class JsonTelemetryDataSerializer {
     private final static String JSON_NAME_VALUE_SEPARATOR = ":";
     private final static String JSON_EMPTY_OBJECT = "{}";
     private final static int DELTA = 2;
+    private final static int MAX_KEY_LENGTH = 150;
+    private final static int MAX_ITEM_LENGTH = 8192;
+    private final static String EMPTY_KEY = "(required property name is empty)";
+
+    // The names are almost always constants of the schema classes, so they are encoded once
+    private final static int MAX_ENCODED_NAMES = 1024;
+    private final static ConcurrentMap<String, byte[]> ENCODED_NAMES = new ConcurrentHashMap<String, byte[]>();
 
     private static final Set<Class<?>> WRAPPER_TYPES = getWrapperTypes();
 
     private Writer out;
 
+    // When set, the JSON goes there instead of to 'out'
+    private Utf8JsonBuffer buffer;
+
     private String separator = "";
 
     public JsonTelemetryDataSerializer(Writer out) throws IOException {
         reset(out);
     }
 
+    /**
+     * @param buffer The buffer the JSON is appended to
+     */
+    public JsonTelemetryDataSerializer(Utf8JsonBuffer buffer) {
+        reset(buffer);
+    }
+
     public void reset(Writer out) throws IOException {
         separator = "";
+        this.buffer = null;
         this.out = out;
         this.out.write(JSON_START_OBJECT);
     }
 
+    /**
+     * Starts a new JSON object at the end of the buffer.
+     */
+    public void reset(Utf8JsonBuffer buffer) {
+        separator = "";
+        this.out = null;
+        this.buffer = buffer;
+        this.buffer.writeByte('{');
+    }
+
     public void close() throws IOException {
+        if (buffer != null) {
+            buffer.writeByte('}');
+            return;
+        }
+
         out.write(JSON_CLOSE_OBJECT);
         out.close();
     }
 
     public void write(String name, Duration value) throws IOException {
         writeName(name);
-        write(String.valueOf(value));
+        if (buffer != null && value != null) {
+            writeDuration(value);
+        } else {
+            write(String.valueOf(value));
+        }
         separator = JSON_SEPARATOR;
     }
 
     public void write(String name, DataPointType value) throws IOException {
         if (value != null) {
             writeName(name);
-            out.write(String.valueOf(value.getValue()));
+            writeNumber(value.getValue());
             separator = JSON_SEPARATOR;
         }
     }
 
     public void write(String name, int value) throws IOException {
         writeName(name);
-        out.write(String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
     public void write(String name, com.microsoft.applicationinsights.internal.schemav2.SeverityLevel value) throws IOException {
         if (value != null) {
             writeName(name);
-            out.write(JSON_COMMA);
-            out.write(String.valueOf(value));
-            out.write(JSON_COMMA);
+            writeRaw(JSON_COMMA);
+            writeRaw(String.valueOf(value));
+            writeRaw(JSON_COMMA);
             separator = JSON_SEPARATOR;
         }
     }
@@ -109,13 +152,13 @@ public final class JsonTelemetryDataSerializer {
         }
 
         writeName(name);
-        out.write(String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
     public void write(String name, double value) throws IOException {
         writeName(name);
-        out.write(Double.isNaN(value) || Double.isInfinite(value) ? "0.0" : String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
@@ -125,13 +168,13 @@ public final class JsonTelemetryDataSerializer {
         }
 
         writeName(name);
-        out.write(Double.isNaN(value) || Double.isInfinite(value) ? "0.0" : String.valueOf(value));
+        writeNumber(value.doubleValue());
         separator = JSON_SEPARATOR;
     }
 
     public void write(String name, short value) throws IOException {
         writeName(name);
-        out.write(String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
@@ -141,13 +184,13 @@ public final class JsonTelemetryDataSerializer {
         }
 
         writeName(name);
-        out.write(String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
     public void write(String name, long value) throws IOException {
         writeName(name);
-        out.write(String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
@@ -157,13 +200,13 @@ public final class JsonTelemetryDataSerializer {
         }
 
         writeName(name);
-        out.write(String.valueOf(value));
+        writeNumber(value);
         separator = JSON_SEPARATOR;
     }
 
     public void write(String name, boolean value) throws IOException {
         writeName(name);
-        out.write(String.valueOf(value));
+        writeRaw(String.valueOf(value));
         separator = JSON_SEPARATOR;
     }
 
@@ -173,7 +216,7 @@ public final class JsonTelemetryDataSerializer {
         }
 
         writeName(name);
-        out.write(String.valueOf(value));
+        writeRaw(String.valueOf(value));
         separator = JSON_SEPARATOR;
     }
 
@@ -219,10 +262,16 @@ public final class JsonTelemetryDataSerializer {
     private void writeToJson(String name, String value, int len) throws IOException {
 
         writeName(name);
-        out.write(JSON_COMMA);
-        String sanitizedValue = sanitizeStringForJSON(value, len);
-        out.write(sanitizedValue);
-        out.write(JSON_COMMA);
+        if (buffer != null) {
+            buffer.writeByte('"');
+            buffer.writeJsonString(value, 0, value.length(), len);
+            buffer.writeByte('"');
+        } else {
+            out.write(JSON_COMMA);
+            String sanitizedValue = sanitizeStringForJSON(value, len);
+            out.write(sanitizedValue);
+            out.write(JSON_COMMA);
+        }
         separator = JSON_SEPARATOR;
     }
 
@@ -231,6 +280,17 @@ public final class JsonTelemetryDataSerializer {
             return;
         }
 
+        if (buffer != null) {
+            int sizeBeforeName = buffer.size();
+            writeName(name);
+            if (writeInline(value)) {
+                separator = JSON_SEPARATOR;
+            } else {
+                buffer.truncate(sizeBeforeName);
+            }
+            return;
+        }
+
         String jsonStringToAppend = createJsonFor(value);
         if (StringUtils.isEmpty(jsonStringToAppend)) {
             return;
@@ -250,22 +310,71 @@ public final class JsonTelemetryDataSerializer {
 
         writeName(name);
         try {
-            out.write(JSON_START_OBJECT);
+            writeRaw(JSON_START_OBJECT);
 
             separator = "";
             for (Map.Entry<String, T> entry : map.entrySet()) {
-                writeName(sanitizeKey(entry.getKey()));
+                if (buffer != null) {
+                    writeKey(entry.getKey());
+                } else {
+                    writeName(sanitizeKey(entry.getKey()));
+                }
                 write(entry.getValue());
                 separator = JSON_SEPARATOR;
             }
 
-            out.write(JSON_CLOSE_OBJECT);
+            writeRaw(JSON_CLOSE_OBJECT);
         } finally {
             separator = JSON_SEPARATOR;
         }
     }
 
 
+    /**
+     * Writes the tags the same way {@link #write(String, Map)} does, when writing into a {@link Utf8JsonBuffer}
+     * the tags that are the same as the shared ones are copied from their serialized form.
+     *
+     * @param name The name of the field
+     * @param tags The tags of the item
+     * @param sharedTags The tags of the context the item was initialized from, or null
+     * @throws IOException The exception that might be thrown during the serialization
+     */
+    public void writeTags(String name, Map<String, String> tags, Map<String, String> sharedTags) throws IOException {
+        if (buffer == null || !(sharedTags instanceof ContextTagsMap) || tags == null || tags.isEmpty()) {
+            write(name, tags);
+            return;
+        }
+
+        SerializedTags serialized = ((ContextTagsMap) sharedTags).getSerialized();
+        if (serialized.isEmpty() || !serialized.isPartOf(tags)) {
+            write(name, tags);
+            return;
+        }
+
+        writeName(name);
+        buffer.writeByte('{');
+        buffer.writeBytes(serialized.getJson());
+        separator = JSON_SEPARATOR;
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            if (!serialized.contains(entry.getKey())) {
+                writeKey(entry.getKey());
+                write(entry.getValue());
+            }
+        }
+        buffer.writeByte('}');
+    }
+
+    /**
+     * Writes the entries of the map without the braces, for {@link SerializedTags}.
+     */
+    void writeEntries(Map<String, String> map) throws IOException {
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeKey(entry.getKey());
+            write(entry.getValue());
+            separator = JSON_SEPARATOR;
+        }
+    }
+
     public <T> void write(String name, List<T> list) throws IOException {
         if (list == null) {
             return;
@@ -274,17 +383,17 @@ public final class JsonTelemetryDataSerializer {
         writeName(name);
         try {
             if (list.size() < 1) {
-                out.write("null");
+                writeRaw("null");
             } else {
-                out.write(JSON_START_ARRAY);
+                writeRaw(JSON_START_ARRAY);
                 separator = "";
                 for (T item : list) {
-                    out.write(separator);
+                    writeRaw(separator);
                     write(item);
                     separator = JSON_SEPARATOR;
                 }
 
-                out.write(JSON_CLOSE_ARRAY);
+                writeRaw(JSON_CLOSE_ARRAY);
             }
         } finally {
             separator = JSON_SEPARATOR;
@@ -292,6 +401,11 @@ public final class JsonTelemetryDataSerializer {
     }
 
     private <T> void write(T item) throws IOException {
+        if (buffer != null) {
+            writeToBuffer(item);
+            return;
+        }
+
         if (item instanceof JsonSerializable) {
             String jsonStringToAppend = createJsonFor((JsonSerializable)item);
             if (StringUtils.isEmpty(jsonStringToAppend)) {
@@ -304,8 +418,8 @@ public final class JsonTelemetryDataSerializer {
             {
                 out.write(String.valueOf(item));
             } else {
-                String truncatedName = truncate(String.valueOf(item), 8192);
-                String sanitizedItem = sanitizeStringForJSON(truncatedName, 8192);
+                String truncatedName = truncate(String.valueOf(item), MAX_ITEM_LENGTH);
+                String sanitizedItem = sanitizeStringForJSON(truncatedName, MAX_ITEM_LENGTH);
                 out.write(JSON_COMMA);
                 out.write(sanitizedItem);
                 out.write(JSON_COMMA);
@@ -313,6 +427,123 @@ public final class JsonTelemetryDataSerializer {
         }
     }
 
+    private <T> void writeToBuffer(T item) throws IOException {
+        if (item instanceof JsonSerializable) {
+            int sizeBeforeItem = buffer.size();
+            if (!writeInline((JsonSerializable) item)) {
+                buffer.truncate(sizeBeforeItem);
+            }
+        } else if (WRAPPER_TYPES.contains(item.getClass())) {
+            if (item instanceof Integer || item instanceof Long || item instanceof Short || item instanceof Byte) {
+                buffer.writeLong(((Number) item).longValue());
+            } else if (item instanceof Double) {
+                buffer.writeDouble((Double) item);
+            } else {
+                buffer.writeUtf8(String.valueOf(item));
+            }
+        } else {
+            String value = String.valueOf(item);
+            buffer.writeByte('"');
+            buffer.writeJsonString(value, 0, Math.min(value.length(), MAX_ITEM_LENGTH), MAX_ITEM_LENGTH);
+            buffer.writeByte('"');
+        }
+    }
+
+    /**
+     * Writes the object where the buffer ends, instead of serializing it on its own first.
+     * @return False if the object is empty, the caller drops what was written then
+     */
+    private boolean writeInline(JsonSerializable value) throws IOException {
+        String outerSeparator = separator;
+        separator = "";
+        buffer.writeByte('{');
+        int sizeAfterStart = buffer.size();
+        try {
+            value.serialize(this);
+        } finally {
+            separator = outerSeparator;
+        }
+
+        if (buffer.size() == sizeAfterStart) {
+            return false;
+        }
+        buffer.writeByte('}');
+        return true;
+    }
+
+    private void writeDuration(Duration value) {
+        // Like Duration.toString
+        buffer.writeByte('"');
+        if (value.getDays() != 0) {
+            buffer.writePadded(value.getDays(), 2);
+            buffer.writeByte('.');
+        }
+        buffer.writePadded(value.getHours(), 2);
+        buffer.writeByte(':');
+        buffer.writePadded(value.getMinutes(), 2);
+        buffer.writeByte(':');
+        buffer.writePadded(value.getSeconds(), 2);
+        if (value.getMilliseconds() > 0) {
+            buffer.writeByte('.');
+            buffer.writePadded(value.getMilliseconds(), 3);
+            buffer.writeUtf8("0000");
+        }
+        buffer.writeByte('"');
+    }
+
+    private void writeNumber(long value) throws IOException {
+        if (buffer != null) {
+            buffer.writeLong(value);
+        } else {
+            out.write(String.valueOf(value));
+        }
+    }
+
+    private void writeNumber(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeRaw("0.0");
+        } else if (buffer != null) {
+            buffer.writeDouble(value);
+        } else {
+            out.write(String.valueOf(value));
+        }
+    }
+
+    private void writeRaw(String value) throws IOException {
+        if (buffer != null) {
+            buffer.writeUtf8(value);
+        } else {
+            out.write(value);
+        }
+    }
+
+    /**
+     * Writes the name of a map entry, sanitized as {@link #sanitizeKey(String)} does.
+     */
+    private void writeKey(String key) {
+        if (!separator.isEmpty()) {
+            buffer.writeByte(',');
+        }
+        buffer.writeByte('"');
+
+        // Trimmed like String.trim does
+        int start = 0;
+        int end = key.length();
+        while (start < end && key.charAt(start) <= ' ') {
+            ++start;
+        }
+        while (start < end && key.charAt(end - 1) <= ' ') {
+            --end;
+        }
+        end = Math.min(end, start + MAX_KEY_LENGTH);
+
+        if (buffer.writeJsonString(key, start, end, MAX_KEY_LENGTH) == 0) {
+            buffer.writeUtf8(EMPTY_KEY);
+        }
+        buffer.writeByte('"');
+        buffer.writeByte(':');
+    }
+
     private <T extends JsonSerializable> String createJsonFor(T value) throws IOException {
         StringWriter stringWriter = new StringWriter();
         JsonTelemetryDataSerializer temp = new JsonTelemetryDataSerializer(new BufferedWriter(stringWriter));
@@ -328,6 +559,13 @@ public final class JsonTelemetryDataSerializer {
     }
 
     private void writeName(String name) throws IOException {
+        if (buffer != null) {
+            if (!separator.isEmpty()) {
+                buffer.writeByte(',');
+            }
+            buffer.writeBytes(encodeName(name));
+            return;
+        }
 
         out.write(separator);
         out.write(JSON_COMMA);
@@ -336,6 +574,17 @@ public final class JsonTelemetryDataSerializer {
         out.write(JSON_NAME_VALUE_SEPARATOR);
     }
 
+    private static byte[] encodeName(String name) {
+        byte[] encoded = ENCODED_NAMES.get(name);
+        if (encoded == null) {
+            encoded = (JSON_COMMA + name + JSON_COMMA + JSON_NAME_VALUE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+            if (ENCODED_NAMES.size() < MAX_ENCODED_NAMES) {
+                ENCODED_NAMES.putIfAbsent(name, encoded);
+            }
+        }
+        return encoded;
+    }
+
     private static Set<Class<?>> getWrapperTypes()
     {
         Set<Class<?>> ret = new HashSet<Class<?>>();
@@ -394,8 +643,8 @@ public final class JsonTelemetryDataSerializer {
     }
 
     private String sanitizeKey(String key) {
-        String sanitizedKey = trimAndTruncate(key, 150);
-        sanitizedKey = sanitizeStringForJSON(sanitizedKey, 150);
+        String sanitizedKey = trimAndTruncate(key, MAX_KEY_LENGTH);
+        sanitizedKey = sanitizeStringForJSON(sanitizedKey, MAX_KEY_LENGTH);
         sanitizedKey = MakeKeyNonEmpty(sanitizedKey);
         return sanitizedKey;
     }
@@ -414,7 +663,7 @@ public final class JsonTelemetryDataSerializer {
     }
 
     private String MakeKeyNonEmpty(String key) {
-        return StringUtils.isEmpty(key) ? "(required property name is empty)" : key;
+        return StringUtils.isEmpty(key) ? EMPTY_KEY : key;
     }
 
     private String truncate(String value, int len) {
@@ -0,0 +1,378 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A map of context values in two layers: the values shared with other contexts, which are read only,
+ * and the values of this context, which win over the shared ones.
+ *
+ * A telemetry item references the values of the context it is initialized from instead of copying them.
+ * What the item writes goes to its own layer, a shared value that is removed is hidden by a marker in it.
+ * Reading and iterating go through both layers without copying them.
+ */
+class LayeredContextMap extends AbstractMap<String, String> implements ConcurrentMap<String, String> {
+    private static final class Snapshot {
+        private final int version;
+        private final Map<String, String> values;
+
+        private Snapshot(int version, Map<String, String> values) {
+            this.version = version;
+            this.values = values;
+        }
+    }
+
+    // Hides a shared value, compared by identity
+    private static final String REMOVED = new String("");
+
+    private final ConcurrentMap<String, String> local;
+
+    // Never modified, null when there is no shared layer
+    private volatile Map<String, String> shared;
+
+    private static final AtomicIntegerFieldUpdater<LayeredContextMap> VERSION = AtomicIntegerFieldUpdater.newUpdater(LayeredContextMap.class, "version");
+
+    // Changed after every modification, so the snapshot is known to be stale
+    private volatile int version;
+
+    private volatile Snapshot snapshot;
+
+    // Created when it is first used, as most maps are only read and written by key
+    private EntrySet entrySet;
+
+    LayeredContextMap() {
+        this(new ConcurrentHashMap<String, String>());
+    }
+
+    /**
+     * @param local The storage of the values of this map, which must be empty
+     */
+    LayeredContextMap(ConcurrentMap<String, String> local) {
+        this.local = local;
+    }
+
+    /**
+     * @param key The key of the value
+     * @param value The value that is about to be stored
+     * @return The value to store
+     */
+    String sanitizeValue(String key, String value) {
+        return value;
+    }
+
+    /**
+     * Makes the values of another context visible through this map, the values of this map win over them.
+     * The values of a previous shared layer become values of this map.
+     *
+     * @param values The snapshot of the other context, see {@link #getSnapshot()}
+     */
+    synchronized void setShared(Map<String, String> values) {
+        Map<String, String> previous = shared;
+        if (previous != null) {
+            for (Map.Entry<String, String> entry : previous.entrySet()) {
+                local.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            local.values().removeIf(value -> value == REMOVED);
+        }
+        shared = values.isEmpty() ? null : values;
+        VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * The snapshot is taken again only after the map was modified.
+     * @return The values of the map in a map that must not be modified, and whose identity changes with its content
+     */
+    Map<String, String> getSnapshot() {
+        // Read before the snapshot is taken, a modification made meanwhile leaves the snapshot stale
+        int currentVersion = version;
+        Snapshot current = snapshot;
+        if (current == null || current.version != currentVersion) {
+            Map<String, String> values = new HashMap<String, String>();
+            for (Map.Entry<String, String> entry : entrySet()) {
+                if (!StringUtils.isEmpty(entry.getKey())) {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+            }
+            current = new Snapshot(currentVersion, values.isEmpty() ? Collections.<String, String>emptyMap() : values);
+            snapshot = current;
+        }
+        return current.values;
+    }
+
+    @Override
+    public String get(Object key) {
+        String value = local.get(key);
+        if (value == null) {
+            Map<String, String> sharedValues = shared;
+            return sharedValues == null ? null : sharedValues.get(key);
+        }
+        return value == REMOVED ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String previous = local.put(key, sanitizeValue(key, value));
+        VERSION.incrementAndGet(this);
+        return previous == null ? getShared(key) : visible(previous);
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value) {
+        String sanitized = sanitizeValue(key, value);
+        for (;;) {
+            String current = local.get(key);
+            if (current == REMOVED) {
+                if (local.replace(key, REMOVED, sanitized)) {
+                    VERSION.incrementAndGet(this);
+                    return null;
+                }
+                continue;
+            }
+            if (current != null) {
+                return current;
+            }
+
+            String sharedValue = getShared(key);
+            if (sharedValue != null) {
+                return sharedValue;
+            }
+            if (local.putIfAbsent(key, sanitized) == null) {
+                VERSION.incrementAndGet(this);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public String remove(Object key) {
+        String previous;
+        if (getShared(key) != null) {
+            previous = local.put((String) key, REMOVED);
+            previous = previous == null ? getShared(key) : visible(previous);
+        } else {
+            previous = visible(local.remove(key));
+        }
+        VERSION.incrementAndGet(this);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null || !value.equals(get(key))) {
+            return false;
+        }
+
+        boolean removed;
+        if (getShared(key) != null) {
+            String current = local.get(key);
+            removed = current == null ? local.putIfAbsent((String) key, REMOVED) == null : local.replace((String) key, current, REMOVED);
+        } else {
+            removed = local.remove(key, value);
+        }
+        VERSION.incrementAndGet(this);
+        return removed;
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue) {
+        if (oldValue == null || !oldValue.equals(get(key))) {
+            return false;
+        }
+
+        String sanitized = sanitizeValue(key, newValue);
+        String current = local.get(key);
+        boolean replaced = current == null ? local.putIfAbsent(key, sanitized) == null : local.replace(key, current, sanitized);
+        VERSION.incrementAndGet(this);
+        return replaced;
+    }
+
+    @Override
+    public String replace(String key, String value) {
+        String previous = get(key);
+        if (previous == null) {
+            return null;
+        }
+
+        local.put(key, sanitizeValue(key, value));
+        VERSION.incrementAndGet(this);
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        shared = null;
+        local.clear();
+        VERSION.incrementAndGet(this);
+    }
+
+    @Override
+    public int size() {
+        Map<String, String> sharedValues = shared;
+        if (sharedValues == null) {
+            return local.size();
+        }
+
+        int size = 0;
+        for (String value : local.values()) {
+            if (value != REMOVED) {
+                ++size;
+            }
+        }
+        for (String key : sharedValues.keySet()) {
+            if (!local.containsKey(key)) {
+                ++size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (shared == null && local.isEmpty()) {
+            return true;
+        }
+        return !entrySet().iterator().hasNext();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        EntrySet current = entrySet;
+        if (current == null) {
+            current = new EntrySet();
+            entrySet = current;
+        }
+        return current;
+    }
+
+    private String getShared(Object key) {
+        Map<String, String> sharedValues = shared;
+        return sharedValues == null ? null : sharedValues.get(key);
+    }
+
+    private static String visible(String value) {
+        return value == REMOVED ? null : value;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return LayeredContextMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return LayeredContextMap.this.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            LayeredContextMap.this.clear();
+        }
+    }
+
+    /**
+     * Goes through the local values, then through the shared values that are not overridden or removed.
+     * The entries write through the map, so the changes are noticed.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private final Map<String, String> sharedValues = shared;
+        private Iterator<Map.Entry<String, String>> current = local.entrySet().iterator();
+        private boolean inSharedLayer;
+        private Map.Entry<String, String> next;
+        private String lastKey;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (current.hasNext()) {
+                    Map.Entry<String, String> candidate = current.next();
+                    if (inSharedLayer ? !local.containsKey(candidate.getKey()) : candidate.getValue() != REMOVED) {
+                        next = candidate;
+                    }
+                } else if (!inSharedLayer && sharedValues != null) {
+                    inSharedLayer = true;
+                    current = sharedValues.entrySet().iterator();
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<String, String> entry = new LayeredEntry(next.getKey(), next.getValue());
+            lastKey = next.getKey();
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+
+            LayeredContextMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    private final class LayeredEntry extends SimpleEntry<String, String> {
+        private LayeredEntry(String key, String value) {
+            super(key, value);
+        }
+
+        @Override
+        public String setValue(String value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -59,6 +59,7 @@ public final class MetricTelemetry extends BaseTelemetry<MetricData> {
         super();
         data = new MetricData();
         metric = new DataPoint();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
         data.getMetrics().add(metric);
     }
@@ -53,6 +53,7 @@ public final class PageViewTelemetry extends BaseSampleSourceTelemetry<PageViewD
      */
     public PageViewTelemetry() {
         data = new PageViewData();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
     }
 
@@ -48,6 +48,7 @@ public final class PerformanceCounterTelemetry extends BaseTelemetry<Performance
 
     public PerformanceCounterTelemetry() {
         data = new PerformanceCounterData();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
     }
 
@@ -63,6 +64,7 @@ public final class PerformanceCounterTelemetry extends BaseTelemetry<Performance
         Preconditions.checkArgument(!StringUtils.isEmpty(counterName), "counterName must be non null, non empty value");
 
         data = new PerformanceCounterData();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
 
         data.setCategoryName(categoryName);
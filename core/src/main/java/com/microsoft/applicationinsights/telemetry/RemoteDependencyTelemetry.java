@@ -59,6 +59,7 @@ public final class RemoteDependencyTelemetry extends BaseSampleSourceTelemetry<R
     public RemoteDependencyTelemetry() {
         super();
         data = new RemoteDependencyData();
+        this.data.setProperties(new LayeredContextMap());
         initialize(this.data.getProperties());
     }
 
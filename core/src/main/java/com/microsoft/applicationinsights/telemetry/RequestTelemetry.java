@@ -63,6 +63,7 @@ public final class RequestTelemetry extends BaseSampleSourceTelemetry<RequestDat
      */
     public RequestTelemetry() {
         this.data = new RequestData();
+        this.data.setProperties(new LayeredContextMap());
         initialize(this.data.getProperties());
         setId(LocalStringsUtils.generateRandomIntegerId());
 
@@ -96,6 +97,7 @@ public final class RequestTelemetry extends BaseSampleSourceTelemetry<RequestDat
      */
     public RequestTelemetry(String name, Date timestamp, Duration duration, String responseCode, boolean success) {
         this.data = new RequestData();
+        this.data.setProperties(new LayeredContextMap());
         initialize(this.data.getProperties());
 
         setId(LocalStringsUtils.generateRandomIntegerId());
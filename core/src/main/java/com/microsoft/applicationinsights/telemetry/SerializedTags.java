@@ -0,0 +1,90 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The JSON of context tags that are shared by many telemetry items, the tags are serialized once
+ * and their bytes are copied into every item that still has all of them.
+ */
+final class SerializedTags {
+    private final Map<String, String> tags;
+    private final String[] keys;
+    private final String[] values;
+    // The entries without the braces: "key":"value","key":"value"
+    private final byte[] json;
+
+    /**
+     * @param snapshot A copy of the tags that is not modified afterwards
+     */
+    SerializedTags(Map<String, String> snapshot) throws IOException {
+        this.tags = snapshot;
+        this.keys = new String[snapshot.size()];
+        this.values = new String[snapshot.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            ++i;
+        }
+
+        Utf8JsonBuffer buffer = new Utf8JsonBuffer();
+        new JsonTelemetryDataSerializer(buffer).writeEntries(snapshot);
+        // Without the '{' the serializer starts with
+        this.json = Arrays.copyOfRange(buffer.toByteArray(), 1, buffer.size());
+    }
+
+    /**
+     * @return The snapshot the tags were serialized from
+     */
+    Map<String, String> getTags() {
+        return tags;
+    }
+
+    byte[] getJson() {
+        return json;
+    }
+
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    boolean contains(String key) {
+        return tags.containsKey(key);
+    }
+
+    /**
+     * @return True if the given tags have every one of these tags with the same value
+     */
+    boolean isPartOf(Map<String, String> other) {
+        for (int i = 0; i < keys.length; ++i) {
+            String value = other.get(keys[i]);
+            if (value != values[i] && (value == null || !value.equals(values[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
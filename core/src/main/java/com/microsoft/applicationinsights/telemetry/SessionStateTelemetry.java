@@ -23,7 +23,6 @@ package com.microsoft.applicationinsights.telemetry;
 
 import com.microsoft.applicationinsights.internal.schemav2.SessionStateData;
 
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Telemetry type used to track user sessions in Azure Application Insights.
@@ -57,7 +56,7 @@ public final class SessionStateTelemetry extends BaseTelemetry<SessionStateData>
     public SessionStateTelemetry(SessionState sessionState) {
         super();
         data = new SessionStateData(sessionState);
-        initialize(new ConcurrentHashMap<String, String>());
+        initialize(new LayeredContextMap());
     }
 
     @Override
@@ -31,7 +31,6 @@ import com.microsoft.applicationinsights.extensibility.context.SessionContext;
 import com.microsoft.applicationinsights.extensibility.context.UserContext;
 import com.microsoft.applicationinsights.internal.util.MapUtil;
 
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
@@ -43,11 +42,17 @@ import org.apache.commons.lang3.StringUtils;
  * related telemetry items; and user, session and device data.
  * You can also set properties that are added to every telemetry item, and can
  * be used in the portal to filter the telemetry that used this context.
+ *
+ * A context initialized from another one references a snapshot of its properties and tags,
+ * which is taken again only after they changed, instead of copying them.
  */
 public final class TelemetryContext {
     private ConcurrentMap<String,String> properties;
     private ContextTagsMap tags;
 
+    // The tags of the context this one was initialized from, shared with other contexts
+    private ContextTagsMap sharedTags;
+
     private String instrumentationKey;
     private ComponentContext component;
     private DeviceContext device;
@@ -62,7 +67,7 @@ public final class TelemetryContext {
      * Default Ctor
      */
     public TelemetryContext() {
-        this(new ConcurrentHashMap<String, String>(), new ContextTagsMap());
+        this(new LayeredContextMap(), new ContextTagsMap());
     }
 
     /**
@@ -201,8 +206,25 @@ public final class TelemetryContext {
         if (StringUtils.isEmpty(this.instrumentationKey) && !StringUtils.isEmpty(source.getInstrumentationKey()))
             setInstrumentationKey(source.getInstrumentationKey());
 
-        MapUtil.copy(source.tags, this.tags);
-        MapUtil.copy(source.properties, this.properties);
+        initializeLayer(source.tags, this.tags);
+        initializeLayer(source.properties, this.properties);
+        this.sharedTags = source.tags;
+    }
+
+    // The values of the target win over those of the source, as when they are copied
+    private static void initializeLayer(ConcurrentMap<String, String> source, ConcurrentMap<String, String> target) {
+        if (source != target && source instanceof LayeredContextMap && target instanceof LayeredContextMap) {
+            ((LayeredContextMap) target).setShared(((LayeredContextMap) source).getSnapshot());
+        } else {
+            MapUtil.copy(source, target);
+        }
+    }
+
+    /**
+     * @return The tags of the context this one was last initialized from, null if it was not
+     */
+    ConcurrentMap<String, String> getSharedTags() {
+        return sharedTags;
     }
 
     public InternalContext getInternal() {
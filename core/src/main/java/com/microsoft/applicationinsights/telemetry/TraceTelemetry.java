@@ -63,6 +63,7 @@ public final class TraceTelemetry extends BaseSampleSourceTelemetry<MessageData>
         super();
 
         data = new MessageData();
+        data.setProperties(new LayeredContextMap());
         initialize(data.getProperties());
 
         setMessage(message);
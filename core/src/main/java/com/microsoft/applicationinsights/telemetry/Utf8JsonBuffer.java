@@ -0,0 +1,295 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.CharacterIterator;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that {@link JsonTelemetryDataSerializer} writes UTF-8 JSON into.
+ *
+ * The buffer is meant to be reused between telemetry items: numbers and strings are encoded
+ * straight into it, so serializing an item does not allocate once the buffer is large enough.
+ * Doubles with a fraction are the exception, they are formatted by {@link Double#toString(double)}
+ * so the output is the same as the one of the {@link java.io.Writer} based serializer on every JVM.
+ */
+public final class Utf8JsonBuffer {
+    private final static int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    // The JSON sanitization never lets a string get closer than that to its maximum length
+    private final static int DELTA = 2;
+    // '\\u' and four hex digits
+    private final static int UNICODE_ESCAPE_LENGTH = 6;
+    private final static byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private final static byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    // Double.toString switches to the computerized scientific notation from there on
+    private final static double MAX_PLAIN_DOUBLE = 1e7;
+
+    private byte[] bytes;
+
+    private int size;
+
+    public Utf8JsonBuffer() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public Utf8JsonBuffer(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Empties the buffer, the memory is kept for the next item.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return bytes.length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Drops everything that was written after the buffer had the given size.
+     */
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+    void writeByte(int b) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) b;
+    }
+
+    void writeBytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    /**
+     * Writes the string as is, without escaping.
+     * Unpaired surrogates are replaced by '?', as {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    void writeUtf8(String value) {
+        int length = value.length();
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                writeCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+            } else {
+                writeChar(c);
+            }
+        }
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG);
+            return;
+        }
+
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+
+        int digits = countDigits(value);
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; --i) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    /**
+     * Writes a non negative number with leading zeros up to the given width, as '%0&lt;width&gt;d' does.
+     */
+    void writePadded(long value, int width) {
+        for (int digits = countDigits(value); digits < width; ++digits) {
+            writeByte('0');
+        }
+        writeLong(value);
+    }
+
+    /**
+     * Writes what {@link Double#toString(double)} returns.
+     */
+    void writeDouble(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_PLAIN_DOUBLE) {
+            if (value == 0 && Double.doubleToRawLongBits(value) != 0) {
+                writeByte('-');
+            }
+            writeLong((long) value);
+            writeByte('.');
+            writeByte('0');
+            return;
+        }
+
+        writeUtf8(Double.toString(value));
+    }
+
+    /**
+     * Writes the characters of the given range as the content of a JSON string, the way the
+     * {@link java.io.Writer} based serializer sanitizes them: quotes, backslashes and control
+     * characters are escaped and the escaped content is cut before it reaches the maximum length.
+     *
+     * @return The number of characters of the escaped content
+     */
+    int writeJsonString(String text, int start, int end, int maxLength) {
+        int count = 0;
+        int i = start;
+        while (i < end && count < maxLength - DELTA) {
+            char c = text.charAt(i);
+            if (c == CharacterIterator.DONE) {
+                // That's the end marker of the character iterator the sanitization used to work with
+                break;
+            }
+
+            switch (c) {
+                case '"':
+                    writeEscape('"');
+                    count += 2;
+                    break;
+                case '\\':
+                    writeEscape('\\');
+                    count += 2;
+                    break;
+                case '\b':
+                    writeEscape('b');
+                    count += 2;
+                    break;
+                case '\f':
+                    writeEscape('f');
+                    count += 2;
+                    break;
+                case '\n':
+                    writeEscape('n');
+                    count += 2;
+                    break;
+                case '\r':
+                    writeEscape('r');
+                    count += 2;
+                    break;
+                case '\t':
+                    writeEscape('t');
+                    count += 2;
+                    break;
+                default:
+                    if (!Character.isISOControl(c)) {
+                        if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1)) && count + 1 < maxLength - DELTA) {
+                            writeCodePoint(Character.toCodePoint(c, text.charAt(++i)));
+                            count += 2;
+                        } else {
+                            writeChar(c);
+                            ++count;
+                        }
+                    } else if (count + UNICODE_ESCAPE_LENGTH + 1 < maxLength) {
+                        writeUnicodeEscape(c);
+                        count += UNICODE_ESCAPE_LENGTH;
+                    } else {
+                        return count;
+                    }
+                    break;
+            }
+            ++i;
+        }
+
+        return count;
+    }
+
+    private void writeEscape(char c) {
+        ensureCapacity(2);
+        bytes[size++] = '\\';
+        bytes[size++] = (byte) c;
+    }
+
+    private void writeUnicodeEscape(char c) {
+        ensureCapacity(UNICODE_ESCAPE_LENGTH);
+        bytes[size++] = '\\';
+        bytes[size++] = 'u';
+        bytes[size++] = HEX_DIGITS[(c >> 12) & 0xf];
+        bytes[size++] = HEX_DIGITS[(c >> 8) & 0xf];
+        bytes[size++] = HEX_DIGITS[(c >> 4) & 0xf];
+        bytes[size++] = HEX_DIGITS[c & 0xf];
+    }
+
+    // A char that is not part of a surrogate pair
+    private void writeChar(char c) {
+        ensureCapacity(3);
+        if (c < 0x80) {
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[size++] = (byte) (0xc0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            bytes[size++] = '?';
+        } else {
+            bytes[size++] = (byte) (0xe0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            bytes[size++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void writeCodePoint(int codePoint) {
+        ensureCapacity(4);
+        bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+        bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+
+    // Of a non negative number
+    private static int countDigits(long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            ++digits;
+        }
+        return digits;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (bytes.length - size < needed) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + needed));
+        }
+    }
+}
@@ -32,6 +32,8 @@ import java.util.concurrent.TimeUnit;
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
 import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector;
 import com.microsoft.applicationinsights.channel.TelemetrySampler;
 import com.microsoft.applicationinsights.internal.processor.RequestTelemetryFilter;
 import com.microsoft.applicationinsights.telemetry.*;
@@ -221,6 +223,101 @@ public final class TelemetryClientTests {
         Mockito.verify(mockTelemetryInitializer, Mockito.times(1)).initialize(mockTelemetry);
     }
 
+    @Test
+    public void testHeadSamplerDropsTelemetryBeforeInitializers() {
+        TelemetryInitializer mockTelemetryInitializer = Mockito.mock(TelemetryInitializer.class);
+        configuration.getTelemetryInitializers().add(mockTelemetryInitializer);
+        TelemetrySampler mockSampler = Mockito.mock(TelemetrySampler.class);
+        Mockito.doReturn(false).when(mockSampler).isSampledIn(any(Telemetry.class));
+        configuration.setHeadSampler(mockSampler);
+
+        RequestTelemetry telemetry = new RequestTelemetry();
+        telemetry.getContext().getOperation().setId("operation");
+        client.track(telemetry);
+
+        Mockito.verify(mockSampler, Mockito.times(1)).isSampledIn(telemetry);
+        Mockito.verifyZeroInteractions(mockTelemetryInitializer, channel);
+    }
+
+    @Test
+    public void testFixedRateSamplingProcessorDropsTelemetryBeforeInitializersWithHeadSampler() {
+        TelemetryInitializer mockTelemetryInitializer = Mockito.mock(TelemetryInitializer.class);
+        configuration.getTelemetryInitializers().add(mockTelemetryInitializer);
+        FixedRateSamplingTelemetryProcessor processor = new FixedRateSamplingTelemetryProcessor();
+        processor.setSamplingPercentage("0");
+        configuration.getTelemetryProcessors().add(processor);
+        TelemetrySampler mockSampler = Mockito.mock(TelemetrySampler.class);
+        Mockito.doReturn(true).when(mockSampler).isSampledIn(any(Telemetry.class));
+        configuration.setHeadSampler(mockSampler);
+
+        RequestTelemetry telemetry = new RequestTelemetry();
+        telemetry.getContext().getOperation().setId("operation");
+        client.track(telemetry);
+
+        Mockito.verifyZeroInteractions(mockTelemetryInitializer, mockSampler, channel);
+    }
+
+    @Test
+    public void testFixedRateSamplingProcessorRunsAfterInitializersWithoutHeadSampler() {
+        TelemetryInitializer mockTelemetryInitializer = Mockito.mock(TelemetryInitializer.class);
+        configuration.getTelemetryInitializers().add(mockTelemetryInitializer);
+        FixedRateSamplingTelemetryProcessor processor = new FixedRateSamplingTelemetryProcessor();
+        processor.setSamplingPercentage("0");
+        configuration.getTelemetryProcessors().add(processor);
+
+        RequestTelemetry telemetry = new RequestTelemetry();
+        telemetry.getContext().getOperation().setId("operation");
+        client.track(telemetry);
+
+        Mockito.verify(mockTelemetryInitializer, Mockito.times(1)).initialize(telemetry);
+        Mockito.verifyZeroInteractions(channel);
+    }
+
+    @Test
+    public void testHeadSampledOutTelemetryIsInitializedBeforeQuickPulse() {
+        TelemetryInitializer mockTelemetryInitializer = Mockito.mock(TelemetryInitializer.class);
+        configuration.getTelemetryInitializers().add(mockTelemetryInitializer);
+        TelemetrySampler mockSampler = Mockito.mock(TelemetrySampler.class);
+        Mockito.doReturn(false).when(mockSampler).isSampledIn(any(Telemetry.class));
+        configuration.setHeadSampler(mockSampler);
+
+        RequestTelemetry telemetry = new RequestTelemetry();
+        telemetry.getContext().getOperation().setId("operation");
+        QuickPulseDataCollector.INSTANCE.enable(configuration);
+        try {
+            client.track(telemetry);
+        } finally {
+            QuickPulseDataCollector.INSTANCE.disable();
+        }
+
+        Mockito.verify(mockTelemetryInitializer, Mockito.times(1)).initialize(telemetry);
+        Mockito.verifyZeroInteractions(channel);
+    }
+
+    @Test
+    public void testHeadSamplerWaitsForInitializersToSetOperationId() {
+        final TelemetrySampler mockSampler = Mockito.mock(TelemetrySampler.class);
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Telemetry telemetry = ((Telemetry) invocation.getArguments()[0]);
+                return "operation".equals(telemetry.getContext().getOperation().getId());
+            }
+        }).when(mockSampler).isSampledIn(any(Telemetry.class));
+        configuration.setHeadSampler(mockSampler);
+        configuration.getTelemetryInitializers().add(new TelemetryInitializer() {
+            @Override
+            public void initialize(Telemetry telemetry) {
+                telemetry.getContext().getOperation().setId("operation");
+            }
+        });
+
+        client.trackTrace("trace");
+
+        Mockito.verify(mockSampler, Mockito.times(1)).isSampledIn(any(Telemetry.class));
+        verifyAndGetLastEventSent();
+    }
+
     @Test
     public void testTrackEventWithPropertiesAndMetrics() {
         Map<String, String> properties = new HashMap<String, String>() {{ put("key", "value"); }};
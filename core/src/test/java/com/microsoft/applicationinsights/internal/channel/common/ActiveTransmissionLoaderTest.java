@@ -23,10 +23,14 @@ package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 import org.apache.commons.io.FileUtils;
@@ -38,6 +42,9 @@ import static org.mockito.Matchers.anyObject;
 public class ActiveTransmissionLoaderTest {
     private final static String TEMP_TEST_FOLDER = "TransmissionTests";
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test(expected = NullPointerException.class)
     public void testNullFileSystem() throws Exception {
         new ActiveTransmissionLoader(null, Mockito.mock(TransmissionDispatcher.class), mockStateFetcher(), 1);
@@ -83,6 +90,73 @@ public class ActiveTransmissionLoaderTest {
         testFilesOnDiskAreLoaded(2, false);
     }
 
+    @Test
+    public void testStoredTransmissionWakesUpIdleLoader() throws Exception {
+        SegmentedTransmissionLog storage = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), null);
+        CountingDispatcher dispatcher = new CountingDispatcher(1);
+        ActiveTransmissionLoader tested = new ActiveTransmissionLoader(storage, dispatcher, constantStateFetcher(TransmissionPolicy.UNBLOCKED), 1);
+        try {
+            assertTrue("Failed to load", tested.load(true));
+
+            // Let the thread find nothing and start waiting
+            Thread.sleep(200);
+            storage.send(new Transmission(new byte[2], "MockContentType", "MockEncodingType"));
+
+            assertTrue(dispatcher.latch.await(2, TimeUnit.SECONDS));
+        } finally {
+            tested.stop(1L, TimeUnit.SECONDS);
+            storage.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testNothingIsDispatchedUntilUnblocked() throws Exception {
+        SegmentedTransmissionLog storage = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), null);
+        CountingDispatcher dispatcher = new CountingDispatcher(1);
+        final AtomicReference<TransmissionPolicy> state = new AtomicReference<>(TransmissionPolicy.BACKOFF);
+        ActiveTransmissionLoader tested = new ActiveTransmissionLoader(storage, dispatcher, new TransmissionPolicyStateFetcher() {
+            @Override
+            public TransmissionPolicy getCurrentState() {
+                return state.get();
+            }
+        }, 1);
+        try {
+            assertTrue("Failed to load", tested.load(true));
+            storage.send(new Transmission(new byte[2], "MockContentType", "MockEncodingType"));
+            assertFalse(dispatcher.latch.await(300, TimeUnit.MILLISECONDS));
+
+            state.set(TransmissionPolicy.UNBLOCKED);
+            tested.wakeUp();
+
+            assertTrue(dispatcher.latch.await(2, TimeUnit.SECONDS));
+        } finally {
+            tested.stop(1L, TimeUnit.SECONDS);
+            storage.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testNothingIsDispatchedWhileTheNetworkIsAtItsLimit() throws Exception {
+        SegmentedTransmissionLog storage = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), null);
+        CountingDispatcher dispatcher = new CountingDispatcher(1);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        assertTrue(limiter.tryAcquire());
+        ActiveTransmissionLoader tested = new ActiveTransmissionLoader(storage, dispatcher, constantStateFetcher(TransmissionPolicy.UNBLOCKED), 1);
+        tested.setConcurrencyLimiter(limiter);
+        try {
+            assertTrue("Failed to load", tested.load(true));
+            storage.send(new Transmission(new byte[2], "MockContentType", "MockEncodingType"));
+            assertFalse(dispatcher.latch.await(300, TimeUnit.MILLISECONDS));
+
+            limiter.release();
+
+            assertTrue(dispatcher.latch.await(2, TimeUnit.SECONDS));
+        } finally {
+            tested.stop(1L, TimeUnit.SECONDS);
+            storage.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
     private void testFilesOnDiskAreLoaded(int amount, boolean putFilesFirst) throws IOException, InterruptedException {
         File folder = null;
         ActiveTransmissionLoader tested = null;
@@ -159,6 +233,32 @@ public class ActiveTransmissionLoaderTest {
         }
     }
 
+    private static TransmissionPolicyStateFetcher constantStateFetcher(final TransmissionPolicy policy) {
+        return new TransmissionPolicyStateFetcher() {
+            @Override
+            public TransmissionPolicy getCurrentState() {
+                return policy;
+            }
+        };
+    }
+
+    private static final class CountingDispatcher implements TransmissionDispatcher {
+        final CountDownLatch latch;
+
+        CountingDispatcher(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void dispatch(Transmission transmission) {
+            latch.countDown();
+        }
+
+        @Override
+        public void stop(long timeout, TimeUnit timeUnit) {
+        }
+    }
+
     private TransmissionPolicyStateFetcher mockStateFetcher() {
         TransmissionPolicyStateFetcher mockStateFetcher = Mockito.mock(TransmissionPolicyStateFetcher.class);
         Mockito.doReturn(TransmissionPolicy.UNBLOCKED).when(mockStateFetcher).getCurrentState();
@@ -21,16 +21,28 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.Test;
 
 import org.mockito.Mockito;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyObject;
@@ -38,6 +50,8 @@ import static org.mockito.Matchers.anyObject;
 public class ActiveTransmissionNetworkOutputTest {
     private final static String MOCK_CONTENT_TYPE = "MockContentType";
     private final static String MOCK_ENCODING_TYPE = "MockContentType";
+    private final static int SLOW_ENDPOINT_TRANSMISSIONS = 50;
+    private final static long SLOW_RESPONSE_IN_MILLIS = 20;
 
     @Test
     public void testSendOneTransmission() throws Exception {
@@ -150,4 +164,130 @@ public class ActiveTransmissionNetworkOutputTest {
     @Test
     public void testStop() throws Exception {
     }
+
+    @Test
+    public void testSendsOverTheLimitGoToFallback() throws Exception {
+        final CountDownLatch firstSendStarted = new CountDownLatch(1);
+        final CountDownLatch endpointAnswers = new CountDownLatch(1);
+        TransmissionOutput slowOutput = new TransmissionOutput() {
+            @Override
+            public boolean send(Transmission transmission) {
+                firstSendStarted.countDown();
+                try {
+                    endpointAnswers.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        };
+        TransmissionOutput mockFallback = Mockito.mock(TransmissionOutput.class);
+        TransmissionPolicyStateFetcher mockStateFetcher = Mockito.mock(TransmissionPolicyStateFetcher.class);
+        Mockito.doReturn(TransmissionPolicy.UNBLOCKED).when(mockStateFetcher).getCurrentState();
+        ActiveTransmissionNetworkOutput tested = new ActiveTransmissionNetworkOutput(slowOutput, mockFallback, mockStateFetcher, 10, false);
+
+        // The endpoint kept throttling, so only one send at the same time is left
+        for (int i = 0; i < 10; ++i) {
+            tested.getConcurrencyLimiter().onSent(i * 10L, i * 10L + 5, TransmissionSendResult.THROTTLED);
+        }
+        assertEquals(1, tested.getConcurrencyLimiter().getLimit());
+
+        assertTrue(tested.send(new Transmission(new byte[2], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE)));
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        Transmission overTheLimit = new Transmission(new byte[2], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE);
+        assertTrue(tested.send(overTheLimit));
+
+        Mockito.verify(mockFallback, Mockito.timeout(5000)).send(overTheLimit);
+        endpointAnswers.countDown();
+        tested.stop(5L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends through platform and virtual threads to a local stand-in for the ingestion endpoint that is slow to answer.
+     */
+    @Test
+    public void testEveryTransmissionReachesSlowEndpoint() throws Exception {
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/v2/track", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // drain the batch
+                }
+            }
+            try {
+                Thread.sleep(SLOW_RESPONSE_IN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            URL endpoint = new URL("http://localhost:" + server.getAddress().getPort() + "/v2/track");
+
+            sendThroughSlowEndpoint(endpoint, false);
+            if (SDKExecutors.isVirtualThreadsSupported()) {
+                sendThroughSlowEndpoint(endpoint, true);
+            }
+        } finally {
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    private static void sendThroughSlowEndpoint(final URL endpoint, boolean virtualThreads) throws InterruptedException {
+        final CountDownLatch sent = new CountDownLatch(SLOW_ENDPOINT_TRANSMISSIONS);
+        final AtomicInteger accepted = new AtomicInteger();
+        TransmissionOutput httpOutput = new TransmissionOutput() {
+            @Override
+            public boolean send(Transmission transmission) {
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(transmission.getContent());
+                    }
+                    if (connection.getResponseCode() == 200) {
+                        accepted.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                } catch (IOException e) {
+                    return false;
+                } finally {
+                    sent.countDown();
+                }
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        };
+        ActiveTransmissionNetworkOutput tested = new ActiveTransmissionNetworkOutput(httpOutput, new TransmissionPolicyStateFetcher() {
+            @Override
+            public TransmissionPolicy getCurrentState() {
+                return TransmissionPolicy.UNBLOCKED;
+            }
+        }, SLOW_ENDPOINT_TRANSMISSIONS, virtualThreads);
+
+        try {
+            for (int i = 0; i < SLOW_ENDPOINT_TRANSMISSIONS; ++i) {
+                assertTrue(tested.send(new Transmission(new byte[1024], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE)));
+            }
+            assertTrue("Transmissions were not sent in time", sent.await(60, TimeUnit.SECONDS));
+
+            assertEquals(SLOW_ENDPOINT_TRANSMISSIONS, accepted.get());
+        } finally {
+            tested.stop(1L, TimeUnit.SECONDS);
+        }
+    }
 }
\ No newline at end of file
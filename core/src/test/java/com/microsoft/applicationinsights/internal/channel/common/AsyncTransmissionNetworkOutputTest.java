@@ -0,0 +1,148 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.internal.channel.AsyncTransmissionOutput;
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.Mockito;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+public class AsyncTransmissionNetworkOutputTest {
+    private final static String MOCK_CONTENT_TYPE = "MockContentType";
+    private final static String MOCK_ENCODING_TYPE = "MockContentType";
+
+    /**
+     * Keeps every request 'in flight' until the test completes it.
+     */
+    private static final class PendingOutput implements AsyncTransmissionOutput {
+        private final List<MonoSink<Boolean>> pending = new ArrayList<MonoSink<Boolean>>();
+
+        @Override
+        public Mono<Boolean> sendAsync(Transmission transmission) {
+            return Mono.create(sink -> pending.add(sink));
+        }
+
+        @Override
+        public boolean send(Transmission transmission) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stop(long timeout, TimeUnit timeUnit) {
+        }
+    }
+
+    private PendingOutput actualOutput;
+    private TransmissionOutput mockFallback;
+    private TransmissionPolicyStateFetcher mockStateFetcher;
+
+    @Before
+    public void setUp() {
+        actualOutput = new PendingOutput();
+        mockFallback = Mockito.mock(TransmissionOutput.class);
+        mockStateFetcher = Mockito.mock(TransmissionPolicyStateFetcher.class);
+        Mockito.doReturn(TransmissionPolicy.UNBLOCKED).when(mockStateFetcher).getCurrentState();
+    }
+
+    @Test
+    public void testRequestsInFlightAreLimited() {
+        AsyncTransmissionNetworkOutput tested = new AsyncTransmissionNetworkOutput(actualOutput, mockFallback, mockStateFetcher, 2);
+
+        assertTrue(tested.send(createTransmission()));
+        assertTrue(tested.send(createTransmission()));
+        assertFalse(tested.send(createTransmission()));
+        assertEquals(2, tested.getNumberOfInFlightRequests());
+
+        actualOutput.pending.get(0).success(true);
+
+        assertEquals(1, tested.getNumberOfInFlightRequests());
+        assertTrue(tested.send(createTransmission()));
+        Mockito.verify(mockFallback, Mockito.never()).send(any(Transmission.class));
+    }
+
+    @Test
+    public void testGivenUpTransmissionGoesToFallback() {
+        AsyncTransmissionNetworkOutput tested = new AsyncTransmissionNetworkOutput(actualOutput, mockFallback, mockStateFetcher, 2);
+        Transmission transmission = createTransmission();
+
+        assertTrue(tested.send(transmission));
+        actualOutput.pending.get(0).success(false);
+
+        Mockito.verify(mockFallback, Mockito.times(1)).send(transmission);
+        assertEquals(0, tested.getNumberOfInFlightRequests());
+    }
+
+    @Test
+    public void testFailedTransmissionGoesToFallback() {
+        AsyncTransmissionNetworkOutput tested = new AsyncTransmissionNetworkOutput(actualOutput, mockFallback, mockStateFetcher, 2);
+        Transmission transmission = createTransmission();
+
+        assertTrue(tested.send(transmission));
+        actualOutput.pending.get(0).error(new IllegalStateException("connection reset"));
+
+        Mockito.verify(mockFallback, Mockito.times(1)).send(transmission);
+        assertEquals(0, tested.getNumberOfInFlightRequests());
+    }
+
+    @Test
+    public void testOverloadLowersTheRequestsInFlight() {
+        AsyncTransmissionNetworkOutput tested = new AsyncTransmissionNetworkOutput(actualOutput, mockFallback, mockStateFetcher, 4);
+        tested.getConcurrencyLimiter().onSent(0, 1, TransmissionSendResult.THROTTLED);
+
+        assertTrue(tested.send(createTransmission()));
+        assertTrue(tested.send(createTransmission()));
+        assertFalse(tested.send(createTransmission()));
+        assertEquals(4, tested.getMaxInFlightRequests());
+    }
+
+    @Test
+    public void testRefusedWhenBlocked() {
+        Mockito.doReturn(TransmissionPolicy.BLOCKED_BUT_CAN_BE_PERSISTED).when(mockStateFetcher).getCurrentState();
+        AsyncTransmissionNetworkOutput tested = new AsyncTransmissionNetworkOutput(actualOutput, mockFallback, mockStateFetcher, 2);
+
+        assertFalse(tested.send(createTransmission()));
+        assertTrue(actualOutput.pending.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroMaxInFlightRequests() {
+        new AsyncTransmissionNetworkOutput(actualOutput, mockFallback, mockStateFetcher, 0);
+    }
+
+    private static Transmission createTransmission() {
+        return new Transmission(new byte[2], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE);
+    }
+}
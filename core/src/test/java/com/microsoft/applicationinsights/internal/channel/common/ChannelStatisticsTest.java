@@ -0,0 +1,200 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class ChannelStatisticsTest {
+    @Test
+    public void testAverages() {
+        ChannelStatistics tested = new ChannelStatistics(new DroppedTelemetryCounters());
+        assertEquals(0, tested.getSerializationNanosPerItem());
+        assertEquals(0, tested.getCompressedBytesPerBatch());
+
+        tested.onSerialized(100);
+        tested.onSerialized(300);
+        tested.onBatchCompressed(1000);
+        tested.onBatchCompressed(3000);
+
+        assertEquals(200, tested.getSerializationNanosPerItem());
+        assertEquals(2, tested.getBatchesCompressed());
+        assertEquals(2000, tested.getCompressedBytesPerBatch());
+    }
+
+    @Test
+    public void testStageTimings() {
+        ChannelStatistics tested = new ChannelStatistics(new DroppedTelemetryCounters());
+        assertEquals(0, tested.getSendNanosPerItem());
+        assertEquals(0, tested.getSerializationQueueWaitNanosPerItem());
+        assertEquals(0, tested.getCompressionNanosPerBatch());
+
+        tested.onEnqueued();
+        tested.onEnqueued(100);
+        tested.onEnqueued(300);
+        tested.onDequeuedForSerialization(1000);
+        tested.onDequeuedForSerialization(2000);
+        tested.onBatchCompressed(1000);
+        tested.onBatchCompressed(3000, 50000);
+
+        assertEquals(3, tested.getItemsEnqueued());
+        assertEquals(200, tested.getSendNanosPerItem());
+        assertEquals(1500, tested.getSerializationQueueWaitNanosPerItem());
+        assertEquals(2, tested.getBatchesCompressed());
+        assertEquals(50000, tested.getCompressionNanosPerBatch());
+        assertEquals(2000, tested.getCompressedBytesPerBatch());
+    }
+
+    @Test
+    public void testSendLatencyHistogram() {
+        ChannelStatistics tested = new ChannelStatistics(new DroppedTelemetryCounters());
+        long[] bounds = tested.getSendLatencyHistogramBoundsInMillis();
+
+        tested.onSent(0);
+        tested.onSent(bounds[0]);
+        tested.onSent(bounds[0] + 1);
+        tested.onSent(bounds[bounds.length - 1] + 1);
+
+        long[] expected = new long[bounds.length + 1];
+        expected[0] = 2;
+        expected[1] = 1;
+        expected[bounds.length] = 1;
+        assertArrayEquals(expected, tested.getSendLatencyHistogram());
+        assertEquals(4, tested.getSends());
+    }
+
+    @Test
+    public void testDrops() {
+        DroppedTelemetryCounters droppedTelemetryCounters = new DroppedTelemetryCounters();
+        ChannelStatistics tested = new ChannelStatistics(droppedTelemetryCounters);
+
+        droppedTelemetryCounters.onDropped(TelemetryLane.VERBOSE, Collections.singletonList("{\"name\":\"Microsoft.ApplicationInsights.Message\"}".getBytes(StandardCharsets.UTF_8)));
+        tested.onDroppedOnStorage();
+        tested.onRejectedByEndpoint();
+        tested.onRejectedByEndpoint();
+
+        assertEquals(1, tested.getItemsDroppedOnOverload());
+        assertEquals(1, tested.getTransmissionsDroppedOnStorage());
+        assertEquals(2, tested.getTransmissionsRejectedByEndpoint());
+    }
+
+    @Test
+    public void testGauges() {
+        ChannelStatistics tested = new ChannelStatistics(new DroppedTelemetryCounters());
+        assertEquals(0, tested.getBufferDepth());
+        assertEquals(0, tested.getDiskBacklogInBytes());
+        assertEquals(0, tested.getOldestPersistedAgeInSeconds());
+
+        tested.setBufferDepthGauge(() -> 3);
+        tested.setPendingBatchesGauge(() -> 2);
+        tested.setSendsInFlightGauge(() -> 1);
+        final long oldest = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+        tested.setStorage(new TransmissionStorage() {
+            @Override
+            public Transmission fetchOldest() {
+                return null;
+            }
+
+            @Override
+            public void setTransmissionStoredListener(Runnable listener) {
+            }
+
+            @Override
+            public long getSize() {
+                return 4096;
+            }
+
+            @Override
+            public long getOldestStoredTimeInMillis() {
+                return oldest;
+            }
+
+            @Override
+            public boolean send(Transmission transmission) {
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        });
+
+        assertEquals(3, tested.getBufferDepth());
+        assertEquals(2, tested.getPendingBatches());
+        assertEquals(1, tested.getSendsInFlight());
+        assertEquals(4096, tested.getDiskBacklogInBytes());
+        assertTrue(tested.getOldestPersistedAgeInSeconds() >= 60);
+    }
+
+    @Test
+    public void testEnqueueRateIsSinceThePreviousRead() throws InterruptedException {
+        ChannelStatistics tested = new ChannelStatistics(new DroppedTelemetryCounters());
+        tested.getEnqueueRatePerSecond();
+
+        for (int i = 0; i < 10; ++i) {
+            tested.onEnqueued();
+        }
+        Thread.sleep(10);
+
+        assertTrue(tested.getEnqueueRatePerSecond() > 0);
+        assertEquals(10, tested.getItemsEnqueued());
+        assertEquals(0, tested.getEnqueueRatePerSecond(), 0);
+    }
+
+    @Test
+    public void testRegisteredUnderAFreeName() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ChannelStatistics first = new ChannelStatistics(new DroppedTelemetryCounters());
+        ChannelStatistics second = new ChannelStatistics(new DroppedTelemetryCounters());
+        try {
+            first.register("TestChannel");
+            second.register("TestChannel");
+            first.onEnqueued();
+
+            ObjectName firstName = first.getObjectName();
+            assertNotEquals(firstName, second.getObjectName());
+            assertEquals(1L, server.getAttribute(firstName, "ItemsEnqueued"));
+            assertEquals(0L, server.getAttribute(second.getObjectName(), "ItemsEnqueued"));
+
+            first.unregister();
+            assertNull(first.getObjectName());
+            assertFalse(server.isRegistered(firstName));
+        } finally {
+            first.unregister();
+            second.unregister();
+        }
+    }
+}
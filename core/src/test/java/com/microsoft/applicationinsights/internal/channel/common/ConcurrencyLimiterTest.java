@@ -0,0 +1,165 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class ConcurrencyLimiterTest {
+    private static final long LATENCY_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void testSendsAreLimited() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(2);
+
+        assertTrue(tested.tryAcquire());
+        assertTrue(tested.tryAcquire());
+        assertFalse(tested.tryAcquire());
+
+        tested.release();
+
+        assertEquals(1, tested.getNumberOfInFlight());
+        assertTrue(tested.tryAcquire());
+    }
+
+    @Test
+    public void testOverloadHalvesTheLimitOncePerBurst() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(16);
+
+        // Both were in flight when the first throttled response came
+        tested.onSent(0, LATENCY_IN_NANOS, TransmissionSendResult.THROTTLED);
+        tested.onSent(10, LATENCY_IN_NANOS + 10, TransmissionSendResult.SERVICE_UNAVAILABLE);
+        assertEquals(8, tested.getLimit());
+
+        // Sent after the limit was cut
+        tested.onSent(LATENCY_IN_NANOS + 20, 2 * LATENCY_IN_NANOS, ConcurrencyLimiter.NO_RESPONSE);
+        assertEquals(4, tested.getLimit());
+    }
+
+    @Test
+    public void testLimitIsNotCutBelowTheMinimum() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(2, 16, 4);
+
+        for (int i = 0; i < 10; ++i) {
+            long start = i * LATENCY_IN_NANOS * 2;
+            tested.onSent(start, start + LATENCY_IN_NANOS, TransmissionSendResult.REQUEST_TIMEOUT);
+        }
+
+        assertEquals(2, tested.getLimit());
+    }
+
+    @Test
+    public void testStableLatencyGrowsTheLimitUpToTheMaximum() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(1, 4, 2);
+
+        // Each send at the limit adds 1 / limit, so it takes a bit more than one limit's worth to grow by one
+        sendAtLimit(tested, 3, LATENCY_IN_NANOS);
+        assertEquals(3, tested.getLimit());
+
+        sendAtLimit(tested, 100, LATENCY_IN_NANOS);
+        assertEquals(4, tested.getLimit());
+    }
+
+    @Test
+    public void testGrowingLatencyDoesNotGrowTheLimit() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(1, 4, 2);
+        sendAtLimit(tested, 1, LATENCY_IN_NANOS);
+        int limit = tested.getLimit();
+
+        sendAtLimit(tested, 10, (long) (LATENCY_IN_NANOS * ConcurrencyLimiter.LATENCY_TOLERANCE * 2));
+
+        assertEquals(limit, tested.getLimit());
+    }
+
+    @Test
+    public void testIdleSenderDoesNotGrowTheLimit() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(1, 16, 8);
+
+        for (int i = 0; i < 100; ++i) {
+            tested.onSent(0, LATENCY_IN_NANOS, TransmissionSendResult.SENT_SUCCESSFULLY);
+        }
+
+        assertEquals(8, tested.getLimit());
+    }
+
+    @Test
+    public void testOtherErrorsDoNotChangeTheLimit() {
+        ConcurrencyLimiter tested = new ConcurrencyLimiter(8);
+
+        tested.onSent(0, LATENCY_IN_NANOS, 400);
+        tested.onSent(0, LATENCY_IN_NANOS, TransmissionSendResult.INTERNAL_SERVER_ERROR);
+
+        assertEquals(8, tested.getLimit());
+    }
+
+    @Test
+    public void testAwaitNoneInFlight() throws InterruptedException {
+        final ConcurrencyLimiter tested = new ConcurrencyLimiter(2);
+        assertTrue(tested.tryAcquire());
+
+        assertFalse(tested.awaitNoneInFlight(10, TimeUnit.MILLISECONDS));
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                tested.release();
+            }
+        }).start();
+        assertTrue(tested.awaitNoneInFlight(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitCapacity() throws InterruptedException {
+        final ConcurrencyLimiter tested = new ConcurrencyLimiter(1);
+        assertTrue(tested.awaitCapacity(10, TimeUnit.MILLISECONDS));
+        assertTrue(tested.tryAcquire());
+
+        assertFalse(tested.awaitCapacity(10, TimeUnit.MILLISECONDS));
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                tested.release();
+            }
+        }).start();
+        assertTrue(tested.awaitCapacity(5, TimeUnit.SECONDS));
+        assertEquals(0, tested.getNumberOfInFlight());
+    }
+
+    private static void sendAtLimit(ConcurrencyLimiter tested, int sends, long latencyInNanos) {
+        for (int i = 0; i < sends; ++i) {
+            int acquired = 0;
+            while (tested.tryAcquire()) {
+                ++acquired;
+            }
+            tested.onSent(0, latencyInNanos, TransmissionSendResult.SENT_SUCCESSFULLY);
+            for (int j = 0; j < acquired; ++j) {
+                tested.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ConcurrentTelemetryBufferTest {
+    private final static String MOCK_PROPERTY_NAME = "MockProperty";
+
+    private static final class RecordingSender implements TelemetriesTransmitter<String> {
+        private final List<Collection<String>> sentNow = new CopyOnWriteArrayList<>();
+        private final List<TelemetriesFetcher<String>> scheduled = new CopyOnWriteArrayList<>();
+        private final AtomicLong itemsSent = new AtomicLong();
+        private final boolean keepBatches;
+
+        private RecordingSender(boolean keepBatches) {
+            this.keepBatches = keepBatches;
+        }
+
+        @Override
+        public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+            if (keepBatches) {
+                scheduled.add(telemetriesFetcher);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean sendNow(Collection<String> telemetries) {
+            itemsSent.addAndGet(telemetries.size());
+            if (keepBatches) {
+                sentNow.add(telemetries);
+            }
+            return true;
+        }
+
+        @Override
+        public void stop(long timeout, TimeUnit timeUnit) {
+        }
+    }
+
+    @Test
+    public void testAddOneTelemetrySchedulesOnePickUp() {
+        RecordingSender sender = new RecordingSender(true);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 128);
+
+        testedBuffer.add("mockTelemetry");
+        testedBuffer.add("mockTelemetry");
+
+        assertEquals(1, sender.scheduled.size());
+        assertEquals(0, sender.sentNow.size());
+
+        Collection<String> fetched = sender.scheduled.get(0).fetch();
+        assertEquals(2, fetched.size());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    @Test
+    public void testSendWhenBufferIsFull() {
+        RecordingSender sender = new RecordingSender(true);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 2);
+
+        for (int i = 0; i < 5; ++i) {
+            testedBuffer.add("mockTelemetry" + i);
+        }
+
+        assertEquals(2, sender.sentNow.size());
+        assertEquals(new ArrayList<>(sender.sentNow.get(0)).toString(), "[mockTelemetry0, mockTelemetry1]");
+        assertEquals(new ArrayList<>(sender.sentNow.get(1)).toString(), "[mockTelemetry2, mockTelemetry3]");
+        assertEquals(1, testedBuffer.size());
+    }
+
+    @Test
+    public void testPickUpOfOlderGenerationDoesNothing() {
+        RecordingSender sender = new RecordingSender(true);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 2);
+
+        testedBuffer.add("mockTelemetry");
+        testedBuffer.add("mockTelemetry");
+        testedBuffer.add("mockTelemetry");
+
+        // The first pick-up was issued before the full batch was sent, the second one covers the last item
+        assertEquals(2, sender.scheduled.size());
+        assertEquals(0, sender.scheduled.get(0).fetch().size());
+        assertEquals(1, sender.scheduled.get(1).fetch().size());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    @Test
+    public void testFlushSendsEverything() {
+        RecordingSender sender = new RecordingSender(true);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 10);
+
+        for (int i = 0; i < 7; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+        testedBuffer.flush();
+
+        assertEquals(1, sender.sentNow.size());
+        assertEquals(7, sender.sentNow.get(0).size());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    @Test
+    public void testSetSmallerMaxTelemetriesInBatchFlushes() {
+        RecordingSender sender = new RecordingSender(true);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 10);
+
+        for (int i = 0; i < 7; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+        testedBuffer.setMaxTelemetriesInBatch(3);
+
+        assertEquals(3, testedBuffer.getMaxTelemetriesInBatch());
+        assertEquals(3, sender.sentNow.size());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    @Test
+    public void testSendWhenMaxBatchSizeInBytesIsReached() {
+        RecordingSender sender = new RecordingSender(true);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 1000);
+        // 500 uncompressed bytes are estimated as 100 compressed bytes by a fresh estimator
+        testedBuffer.setMaxBatchSizeInBytes(100, String::length, new PayloadSizeEstimator());
+
+        String telemetry = new String(new char[100]).replace('\0', 'a');
+        for (int i = 0; i < 12; ++i) {
+            testedBuffer.add(telemetry);
+        }
+
+        assertEquals(2, sender.sentNow.size());
+        assertEquals(5, sender.sentNow.get(0).size());
+        assertEquals(5, sender.sentNow.get(1).size());
+        assertEquals(2, testedBuffer.size());
+    }
+
+    @Test
+    public void testNoTelemetryIsLostUnderContentionWithMaxBatchSizeInBytes() throws InterruptedException {
+        RecordingSender sender = new RecordingSender(false);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 1000);
+        testedBuffer.setMaxBatchSizeInBytes(1000, String::length, new PayloadSizeEstimator());
+
+        long added = runProducers(testedBuffer, 8, 50000);
+        testedBuffer.flush();
+
+        assertEquals(added, sender.itemsSent.get());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    @Test
+    public void testNoTelemetryIsLostUnderContention() throws InterruptedException {
+        RecordingSender sender = new RecordingSender(false);
+        ConcurrentTelemetryBuffer<String> testedBuffer = createBuffer(sender, 100);
+
+        long added = runProducers(testedBuffer, 8, 50000);
+        testedBuffer.flush();
+
+        assertEquals(added, sender.itemsSent.get());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    @Test
+    public void testFlushParksWhileTheDrainerIsBlocked() throws InterruptedException {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicLong itemsSent = new AtomicLong();
+        final ConcurrentTelemetryBuffer<String> testedBuffer = new ConcurrentTelemetryBuffer<>(new TelemetriesTransmitter<String>() {
+            @Override
+            public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+                return true;
+            }
+
+            @Override
+            public boolean sendNow(Collection<String> telemetries) {
+                // Blocks like the BLOCK_WITH_TIMEOUT overload policy
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                itemsSent.addAndGet(telemetries.size());
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        }, createEnforcerWithCurrentValue(2), createEnforcerWithCurrentValue(5));
+
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                testedBuffer.add("mockTelemetry");
+                testedBuffer.add("mockTelemetry");
+            }
+        });
+        drainer.start();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        testedBuffer.add("mockTelemetry");
+        Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                testedBuffer.flush();
+            }
+        });
+        flusher.start();
+
+        // Once done yielding the flusher is parked, a spinning thread would always be runnable
+        boolean parked = false;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!parked && System.currentTimeMillis() < deadline) {
+            parked = flusher.getState() == Thread.State.TIMED_WAITING;
+            Thread.sleep(10);
+        }
+        assertTrue("Flusher was never parked", parked);
+
+        release.countDown();
+        drainer.join(5000);
+        flusher.join(5000);
+        assertEquals(3, itemsSent.get());
+        assertEquals(0, testedBuffer.size());
+    }
+
+    private static long runProducers(final TelemetryBuffer<String> buffer, int threads, final int itemsPerThread) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger added = new AtomicInteger();
+        for (int i = 0; i < threads; ++i) {
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < itemsPerThread; ++j) {
+                            buffer.add("mockTelemetry");
+                        }
+                        added.addAndGet(itemsPerThread);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        start.countDown();
+        assertTrue("Producers did not finish in time", done.await(60, TimeUnit.SECONDS));
+
+        return added.get();
+    }
+
+    private static ConcurrentTelemetryBuffer<String> createBuffer(RecordingSender sender, int maxTelemetriesInBatch) {
+        return new ConcurrentTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(maxTelemetriesInBatch), createEnforcerWithCurrentValue(5));
+    }
+
+    private static LimitsEnforcer createEnforcerWithCurrentValue(int currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(MOCK_PROPERTY_NAME, 1, 1000, 20, currentValue);
+    }
+}
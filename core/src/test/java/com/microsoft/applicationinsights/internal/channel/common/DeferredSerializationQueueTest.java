@@ -0,0 +1,124 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class DeferredSerializationQueueTest {
+    @Test
+    public void testTelemetriesAreSerializedInOrderByAnotherThread() throws InterruptedException {
+        final List<Telemetry> serialized = new CopyOnWriteArrayList<Telemetry>();
+        final CountDownLatch done = new CountDownLatch(100);
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        ChannelStatistics statistics = new ChannelStatistics(new DroppedTelemetryCounters());
+        DeferredSerializationQueue tested = new DeferredSerializationQueue(telemetry -> {
+            serialized.add(telemetry);
+            threads.add(Thread.currentThread());
+            done.countDown();
+        }, statistics, 1000);
+
+        Telemetry[] telemetries = new Telemetry[100];
+        for (int i = 0; i < telemetries.length; ++i) {
+            telemetries[i] = new TraceTelemetry("trace " + i);
+            assertTrue(tested.offer(telemetries[i]));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < telemetries.length; ++i) {
+            assertSame(telemetries[i], serialized.get(i));
+            assertFalse(threads.get(i) == caller);
+        }
+        assertEquals(0, tested.size());
+        tested.stop();
+    }
+
+    @Test
+    public void testFullQueueRefusesTelemetries() throws InterruptedException {
+        final CountDownLatch serializing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Telemetry> serialized = new CopyOnWriteArrayList<Telemetry>();
+        DeferredSerializationQueue tested = new DeferredSerializationQueue(telemetry -> {
+            serializing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            serialized.add(telemetry);
+        }, null, 2);
+
+        assertTrue(tested.offer(new TraceTelemetry("first")));
+        assertTrue(serializing.await(10, TimeUnit.SECONDS));
+
+        assertTrue(tested.offer(new TraceTelemetry("second")));
+        assertTrue(tested.offer(new TraceTelemetry("third")));
+        assertFalse(tested.offer(new TraceTelemetry("refused")));
+        assertEquals(2, tested.size());
+
+        release.countDown();
+        tested.drain();
+        assertEquals(0, tested.size());
+        assertEquals(3, serialized.size());
+        tested.stop();
+    }
+
+    @Test
+    public void testTelemetriesOfferedAfterStopAreSerializedByTheCaller() {
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        DeferredSerializationQueue tested = new DeferredSerializationQueue(telemetry -> threads.add(Thread.currentThread()), null, 10);
+        tested.stop();
+
+        assertTrue(tested.offer(new TraceTelemetry("after stop")));
+
+        assertEquals(1, threads.size());
+        assertSame(Thread.currentThread(), threads.get(0));
+        assertEquals(0, tested.size());
+    }
+
+    @Test
+    public void testSerializerFailureDoesNotStopTheQueue() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(2);
+        DeferredSerializationQueue tested = new DeferredSerializationQueue(telemetry -> {
+            done.countDown();
+            throw new IllegalStateException("failed");
+        }, null, 10);
+
+        assertTrue(tested.offer(new TraceTelemetry("first")));
+        assertTrue(tested.offer(new TraceTelemetry("second")));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        tested.stop();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class DrainRateControllerTest {
+    @Test
+    public void testInitialPause() {
+        DrainRateController tested = new DrainRateController(0);
+
+        assertEquals(DrainRateController.INITIAL_PAUSE_IN_MILLIS, tested.getPauseInMillis());
+        assertEquals(DrainRateController.INITIAL_PAUSE_IN_MILLIS, tested.onDispatched(1000));
+    }
+
+    @Test
+    public void testFastSendsShortenThePauseDownToTheMinimum() {
+        DrainRateController tested = new DrainRateController(0);
+
+        tested.onSent(50, true);
+        assertEquals(DrainRateController.INITIAL_PAUSE_IN_MILLIS / 2, tested.getPauseInMillis());
+
+        for (int i = 0; i < 10; ++i) {
+            tested.onSent(50, true);
+        }
+        assertEquals(DrainRateController.MIN_PAUSE_IN_MILLIS, tested.getPauseInMillis());
+    }
+
+    @Test
+    public void testFailuresLengthenThePauseUpToTheMaximum() {
+        DrainRateController tested = new DrainRateController(0);
+
+        tested.onSent(50, false);
+        assertEquals(DrainRateController.INITIAL_PAUSE_IN_MILLIS * 2, tested.getPauseInMillis());
+
+        for (int i = 0; i < 20; ++i) {
+            tested.onSent(50, false);
+        }
+        assertEquals(DrainRateController.MAX_PAUSE_IN_MILLIS, tested.getPauseInMillis());
+    }
+
+    @Test
+    public void testFailureAfterRampUpGoesBackToTheInitialPause() {
+        DrainRateController tested = new DrainRateController(0);
+        for (int i = 0; i < 10; ++i) {
+            tested.onSent(50, true);
+        }
+
+        tested.onSent(50, false);
+
+        assertEquals(DrainRateController.INITIAL_PAUSE_IN_MILLIS, tested.getPauseInMillis());
+    }
+
+    @Test
+    public void testSlowSendsLengthenThePause() {
+        DrainRateController tested = new DrainRateController(0);
+
+        tested.onSent(DrainRateController.TARGET_LATENCY_IN_MILLIS * 2, true);
+
+        assertTrue(tested.getPauseInMillis() > DrainRateController.INITIAL_PAUSE_IN_MILLIS);
+    }
+
+    @Test
+    public void testBandwidthIsEnforced() {
+        DrainRateController tested = new DrainRateController(1000);
+
+        long first = tested.onDispatched(1000);
+        long second = tested.onDispatched(1000);
+
+        assertTrue("first pause " + first, first > 900 && first <= 1000);
+        assertTrue("second pause " + second, second > 1900 && second <= 2000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBandwidth() {
+        new DrainRateController(-1);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class DroppedTelemetryCountersTest {
+    @Test
+    public void testTelemetryTypeIsTheLastSegmentOfTheEnvelopeName() {
+        assertEquals("Request", DroppedTelemetryCounters.telemetryTypeOf(utf8("{\"ver\":1,\"name\":\"Microsoft.ApplicationInsights.abc.Request\",\"time\":\"x\"}")));
+        assertEquals("Event", DroppedTelemetryCounters.telemetryTypeOf(utf8("{\"name\":\"Event\"}")));
+    }
+
+    @Test
+    public void testUnknownTelemetryType() {
+        assertEquals(DroppedTelemetryCounters.UNKNOWN_TELEMETRY_TYPE, DroppedTelemetryCounters.telemetryTypeOf(null));
+        assertEquals(DroppedTelemetryCounters.UNKNOWN_TELEMETRY_TYPE, DroppedTelemetryCounters.telemetryTypeOf(utf8("{\"ver\":1}")));
+        assertEquals(DroppedTelemetryCounters.UNKNOWN_TELEMETRY_TYPE, DroppedTelemetryCounters.telemetryTypeOf(utf8("{\"name\":\"Microsoft.\"}")));
+        assertEquals(DroppedTelemetryCounters.UNKNOWN_TELEMETRY_TYPE, DroppedTelemetryCounters.telemetryTypeOf(utf8("{\"name\":\"Request")));
+    }
+
+    @Test
+    public void testCountsPerTelemetryType() {
+        DroppedTelemetryCounters tested = new DroppedTelemetryCounters();
+
+        tested.onDropped(utf8(
+                "{\"name\":\"Microsoft.ApplicationInsights.abc.Request\"}",
+                "{\"name\":\"Microsoft.ApplicationInsights.abc.Request\"}",
+                "{\"name\":\"Microsoft.ApplicationInsights.abc.Exception\"}"));
+        tested.onDropped("Exception", 5);
+
+        assertEquals(2, tested.getDroppedCount("Request"));
+        assertEquals(6, tested.getDroppedCount("Exception"));
+        assertEquals(0, tested.getDroppedCount("Event"));
+        assertEquals(8, tested.getTotalDroppedCount());
+
+        Map<String, Long> snapshot = tested.getDroppedCounts();
+        assertEquals(2, snapshot.size());
+        assertEquals(Long.valueOf(6), snapshot.get("Exception"));
+    }
+
+    @Test
+    public void testCountsPerLane() {
+        DroppedTelemetryCounters tested = new DroppedTelemetryCounters();
+
+        tested.onDropped(TelemetryLane.VERBOSE, utf8(
+                "{\"name\":\"Microsoft.ApplicationInsights.abc.Message\"}",
+                "{\"name\":\"Microsoft.ApplicationInsights.abc.Message\"}"));
+
+        assertEquals(2, tested.getDroppedCount(TelemetryLane.VERBOSE));
+        assertEquals(0, tested.getDroppedCount(TelemetryLane.CRITICAL));
+        assertEquals(2, tested.getDroppedCount("Message"));
+    }
+
+    @Test
+    public void testTelemetryTypeWithNonAsciiCharacters() {
+        assertEquals("\u00c9v\u00e9nement", DroppedTelemetryCounters.telemetryTypeOf(utf8("{\"data\":\"\u00e9.\u00e8\",\"name\":\"Microsoft.ApplicationInsights.\u00e9t\u00e9.\u00c9v\u00e9nement\"}")));
+    }
+
+    private static byte[] utf8(String telemetry) {
+        return telemetry.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> utf8(String... telemetries) {
+        List<byte[]> result = new ArrayList<>();
+        for (String telemetry : telemetries) {
+            result.add(utf8(telemetry));
+        }
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -104,4 +105,20 @@ public class ErrorHandlerTest {
         Assert.assertTrue(result);
     }
 
+    @Test
+    public void pass503StatusWithRetryHeaderBlocksTransmissions() {
+        TransmissionPolicyManager tpm = new TransmissionPolicyManager(true);
+        TransmissionDispatcher mockedDispatcher = Mockito.mock(TransmissionDispatcher.class);
+        TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+        args.setResponseCode(503);
+        Transmission transmission = new Transmission(new byte[] { 0 }, "testcontent", "testencoding");
+        args.setTransmission(transmission);
+        args.setTransmissionDispatcher(mockedDispatcher);
+        args.setRetryHeader("60");
+
+        Assert.assertTrue(new ErrorHandler(tpm).validateTransmissionAndSend(args));
+        Assert.assertEquals(TransmissionPolicy.BLOCKED_BUT_CAN_BE_PERSISTED, tpm.getTransmissionPolicyState().getCurrentState());
+        Mockito.verify(mockedDispatcher, Mockito.times(1)).dispatch(transmission);
+        tpm.stop(1, TimeUnit.SECONDS);
+    }
 }
@@ -25,6 +25,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
@@ -32,6 +34,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -42,6 +45,7 @@ import org.junit.Test;
 import com.microsoft.applicationinsights.telemetry.TelemetryContext;
 
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
@@ -136,7 +140,7 @@ public final class GzipTelemetrySerializerTest {
     @Test(expected = IllegalArgumentException.class)
     public void testNoData() throws Exception {
         GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
-        tested.serialize(new ArrayList<String>());
+        tested.serialize(new ArrayList<byte[]>());
     }
 
     @Test
@@ -154,6 +158,77 @@ public final class GzipTelemetrySerializerTest {
         testSerialization(10);
     }
 
+    @Test
+    public void testContentIsIdenticalToGzipOutputStream() throws Exception {
+        GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
+        List<String> telemetries = Arrays.asList("{\"name\":\"caf\u00e9 \u2603\"}", "{\"name\":\"\ud83d\ude00\"}");
+
+        // Twice, the second batch goes through a pooled context
+        for (int i = 0; i < 2; ++i) {
+            Optional<Transmission> result = tested.serialize(utf8(telemetries));
+            assertSameGzipStream(gzipWithOutputStream(telemetries), result.get().getContent());
+        }
+    }
+
+    @Test
+    public void testSerializeOfLargeBatch() throws Exception {
+        GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
+
+        // Items larger than the internal buffers, with content that does not compress much
+        List<String> telemetries = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            builder.setLength(0);
+            for (int j = 0; j < 5000; ++j) {
+                builder.append(Integer.toHexString((i * 31 + j) * 0x9E3779B1));
+            }
+            telemetries.add(builder.toString());
+        }
+
+        Optional<Transmission> result = tested.serialize(utf8(telemetries));
+        assertSameGzipStream(gzipWithOutputStream(telemetries), result.get().getContent());
+    }
+
+    @Test
+    public void testNullItemLeavesNothingInTheContent() throws Exception {
+        GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
+        byte[] a = "{\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "{\"name\":\"b\"}".getBytes(StandardCharsets.UTF_8);
+
+        Optional<Transmission> result = tested.serialize(Arrays.asList(null, a, null, b, null));
+        assertSameGzipStream(gzipWithOutputStream(Arrays.asList("{\"name\":\"a\"}", "{\"name\":\"b\"}")), result.get().getContent());
+    }
+
+    // The OS byte of the gzip header written by GZIPOutputStream depends on the JDK version
+    private void assertSameGzipStream(byte[] expected, byte[] actual) {
+        final int osByteIndex = 9;
+        assertEquals(expected.length, actual.length);
+        assertArrayEquals(Arrays.copyOf(expected, osByteIndex), Arrays.copyOf(actual, osByteIndex));
+        assertArrayEquals(Arrays.copyOfRange(expected, osByteIndex + 1, expected.length), Arrays.copyOfRange(actual, osByteIndex + 1, actual.length));
+    }
+
+    private byte[] gzipWithOutputStream(List<String> telemetries) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        GZIPOutputStream zipStream = new GZIPOutputStream(byteStream);
+        byte[] newline = System.getProperty("line.separator").getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < telemetries.size(); ++i) {
+            if (i != 0) {
+                zipStream.write(newline);
+            }
+            zipStream.write(telemetries.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        zipStream.close();
+        return byteStream.toByteArray();
+    }
+
+    private static List<byte[]> utf8(List<String> telemetries) {
+        List<byte[]> result = new ArrayList<byte[]>(telemetries.size());
+        for (String telemetry : telemetries) {
+            result.add(telemetry.getBytes(StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
     private void testSerialization(int amount) throws Exception {
         GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
 
@@ -179,7 +254,7 @@ public final class GzipTelemetrySerializerTest {
             expected.put(stubTelemetry.getTelemetryName(), stubTelemetry);
         }
 
-        Optional<Transmission> result = tested.serialize(telemetriesSerialized);
+        Optional<Transmission> result = tested.serialize(utf8(telemetriesSerialized));
 
         assertNotNull(result);
 
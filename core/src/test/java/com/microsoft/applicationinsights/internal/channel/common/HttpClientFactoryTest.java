@@ -0,0 +1,136 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunctions;
+
+import reactor.netty.resources.ConnectionProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class HttpClientFactoryTest {
+    private static final int REQUESTS = 200;
+    private static final byte[] BATCH = new byte[16 * 1024];
+    private static final byte[] RESPONSE = "{\"itemsReceived\":1,\"itemsAccepted\":1,\"errors\":[]}".getBytes();
+
+    // A local stand-in for the ingestion endpoint, it keeps connections alive like the real one
+    private HttpServer server;
+    private URI endpoint;
+
+    // Each connection has its own client address, the server sees as many addresses as connections
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v2/track", exchange -> {
+            clientAddresses.add(exchange.getRemoteAddress());
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // drain the batch
+                }
+            }
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(RESPONSE);
+            }
+        });
+        server.start();
+        endpoint = URI.create("http://localhost:" + server.getAddress().getPort() + "/v2/track");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testConnectionsAreReused() {
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        ConnectionProvider provider = HttpClientFactory.createConnectionProvider(new HttpConnectionSettings());
+        try {
+            ExchangeFunction exchange = ExchangeFunctions.create(new ReactorClientHttpConnector(
+                    HttpClientFactory.createHttpClient(provider, new HttpConnectionSettings(), metrics)));
+
+            post(exchange, REQUESTS);
+
+            assertEquals(1, metrics.getTotalConnectionsOpened());
+            assertEquals(1, clientAddresses.size());
+            assertTrue(metrics.getTotalAcquires() >= REQUESTS);
+            assertEquals(1, metrics.getOpenConnections());
+            assertEquals(0, metrics.getPendingAcquires());
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Test
+    public void testConnectionsAreNotKeptWithoutKeepAlive() {
+        HttpConnectionSettings settings = new HttpConnectionSettings();
+        settings.setKeepAlive(false);
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        ConnectionProvider provider = HttpClientFactory.createConnectionProvider(settings);
+        try {
+            ExchangeFunction exchange = ExchangeFunctions.create(new ReactorClientHttpConnector(
+                    HttpClientFactory.createHttpClient(provider, settings, metrics)));
+
+            post(exchange, 10);
+
+            assertEquals(10, metrics.getTotalConnectionsOpened());
+            assertEquals(10, clientAddresses.size());
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    private void post(ExchangeFunction exchange, int requests) {
+        for (int i = 0; i < requests; ++i) {
+            ClientRequest request = ClientRequest.create(HttpMethod.POST, endpoint)
+                    .header("Content-Type", "application/x-json-stream")
+                    .body(BodyInserters.fromObject(BATCH))
+                    .build();
+            ClientResponse response = exchange.exchange(request).block();
+            assertEquals(200, response.statusCode().value());
+            response.bodyToMono(String.class).block();
+        }
+    }
+}
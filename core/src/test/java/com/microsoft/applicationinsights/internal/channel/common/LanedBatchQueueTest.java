@@ -0,0 +1,101 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class LanedBatchQueueTest {
+    @Test
+    public void testLanesAreDrainedByWeight() {
+        LanedBatchQueue<String> tested = new LanedBatchQueue<>();
+        for (int i = 0; i < 70; ++i) {
+            tested.addLast(TelemetryLane.CRITICAL, "c");
+            tested.addLast(TelemetryLane.DEFAULT, "d");
+            tested.addLast(TelemetryLane.VERBOSE, "v");
+        }
+
+        List<String> polled = new ArrayList<>();
+        for (int i = 0; i < 70; ++i) {
+            polled.add(tested.pollNext());
+        }
+
+        assertEquals(40, count(polled, "c"));
+        assertEquals(20, count(polled, "d"));
+        assertEquals(10, count(polled, "v"));
+    }
+
+    @Test
+    public void testSingleLaneIsFifo() {
+        LanedBatchQueue<String> tested = new LanedBatchQueue<>();
+        tested.addLast(TelemetryLane.VERBOSE, "1");
+        tested.addLast(TelemetryLane.VERBOSE, "2");
+
+        assertEquals("1", tested.pollNext());
+        assertEquals("2", tested.pollNext());
+        assertNull(tested.pollNext());
+    }
+
+    @Test
+    public void testIdleLaneDoesNotBuildUpCredit() {
+        LanedBatchQueue<String> tested = new LanedBatchQueue<>();
+        for (int i = 0; i < 10; ++i) {
+            tested.addLast(TelemetryLane.VERBOSE, "v");
+            assertEquals("v", tested.pollNext());
+        }
+
+        tested.addLast(TelemetryLane.VERBOSE, "v");
+        tested.addLast(TelemetryLane.CRITICAL, "c");
+        assertEquals("c", tested.pollNext());
+    }
+
+    @Test
+    public void testLaneToShedIsTheLeastImportantBelow() {
+        LanedBatchQueue<String> tested = new LanedBatchQueue<>();
+        assertNull(tested.findLaneToShedBelow(TelemetryLane.CRITICAL));
+
+        tested.addLast(TelemetryLane.DEFAULT, "d");
+        assertEquals(TelemetryLane.DEFAULT, tested.findLaneToShedBelow(TelemetryLane.CRITICAL));
+        assertNull(tested.findLaneToShedBelow(TelemetryLane.DEFAULT));
+
+        tested.addLast(TelemetryLane.VERBOSE, "v");
+        assertEquals(TelemetryLane.VERBOSE, tested.findLaneToShedBelow(TelemetryLane.CRITICAL));
+        assertEquals(TelemetryLane.VERBOSE, tested.findLaneToShedBelow(TelemetryLane.DEFAULT));
+        assertTrue(tested.isEmpty(TelemetryLane.CRITICAL));
+    }
+
+    private static int count(List<String> polled, String value) {
+        int count = 0;
+        for (String item : polled) {
+            if (item.equals(value)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -21,11 +21,14 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.concurrent.TimeUnit;
+
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
 import org.junit.Test;
 
 import org.mockito.Mockito;
 
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyObject;
 
 public class NonBlockingDispatcherTest {
@@ -78,6 +81,33 @@ public class NonBlockingDispatcherTest {
         Mockito.verify(mockOutput2, Mockito.times(1)).send((Transmission) anyObject());
     }
 
+    @Test
+    public void testStopWithinSharesTheTimeout() {
+        final long[] timeoutsInNanos = new long[2];
+        TransmissionOutput[] outputs = new TransmissionOutput[2];
+        for (int i = 0; i < outputs.length; ++i) {
+            final int index = i;
+            outputs[i] = new TransmissionOutput() {
+                @Override
+                public boolean send(Transmission transmission) {
+                    return false;
+                }
+
+                @Override
+                public void stop(long timeout, TimeUnit timeUnit) {
+                    timeoutsInNanos[index] = timeUnit.toNanos(timeout);
+                }
+            };
+        }
+
+        new NonBlockingDispatcher(outputs).stopWithin(1L, TimeUnit.SECONDS);
+
+        // The first output gets half, the last one gets what the first did not use
+        assertTrue(timeoutsInNanos[0] <= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(timeoutsInNanos[1] > timeoutsInNanos[0]);
+        assertTrue(timeoutsInNanos[1] <= TimeUnit.SECONDS.toNanos(1));
+    }
+
     private NonBlockingDispatcher createDispatcher() {
         TransmissionOutput mockOutput1 = Mockito.mock(TransmissionOutput.class);
         TransmissionOutput mockOutput2 = Mockito.mock(TransmissionOutput.class);
@@ -1,17 +1,22 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerArgs;
 import com.microsoft.applicationinsights.internal.channel.common.ErrorHandler;
+import com.microsoft.applicationinsights.internal.channel.common.GzipTelemetrySerializer;
 import com.microsoft.applicationinsights.internal.channel.common.PartialSuccessHandler;
 import com.microsoft.applicationinsights.internal.channel.common.Transmission;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionItemsCache;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionPolicyManager;
 
 public class PartialSuccessHandlerTest {
@@ -113,7 +118,7 @@ public class PartialSuccessHandlerTest {
         args.setTransmission(new Transmission(fourItems, "application/x-json-stream", "gzip"));
         args.setTransmissionDispatcher(mockedDispatcher);
         PartialSuccessHandler eh = new PartialSuccessHandler(tpm);
-        boolean result = eh.sendNewTransmission(args, new ArrayList<String>());
+        boolean result = eh.sendNewTransmission(args, new ArrayList<byte[]>());
         Assert.assertFalse(result);
     }
 
@@ -231,8 +236,8 @@ public class PartialSuccessHandlerTest {
         args.setTransmission(new Transmission(fourItems, "application/x-json-stream", "gzip"));
         args.setTransmissionDispatcher(mockedDispatcher);
         PartialSuccessHandler eh = new PartialSuccessHandler(tpm);
-        List<String> singleItem = new ArrayList<String>();
-        singleItem.add("{\"ver\":1,\"name\":\"Microsoft.ApplicationInsights.b69a3a06e25a425ba1a44e9ff6f13582.Event\",\"time\":\"2018-02-11T16:02:36.120-0500\",\"sampleRate\":100.0,\"iKey\":\"b69a3a06-e25a-425b-a1a4-4e9ff6f13582\",\"tags\":{\"ai.internal.sdkVersion\":\"java:2.0.0-beta-snapshot\",\"ai.device.id\":\"test.machine.name\",\"ai.device.locale\":\"en-US\",\"ai.internal.nodename\":\"test.machine.name\",\"ai.device.os\":\"Windows 10\",\"ai.device.roleInstance\":\"test.machine.name\",\"ai.device.osVersion\":\"Windows 10\",\"ai.session.id\":\"20180211160233\"},\"data\":{\"baseType\":\"EventData\",\"baseData\":{\"ver\":2,\"name\":\"TestEvent0\",\"properties\":null}}}\r\n");
+        List<byte[]> singleItem = new ArrayList<byte[]>();
+        singleItem.add(utf8("{\"ver\":1,\"name\":\"Microsoft.ApplicationInsights.b69a3a06e25a425ba1a44e9ff6f13582.Event\",\"time\":\"2018-02-11T16:02:36.120-0500\",\"sampleRate\":100.0,\"iKey\":\"b69a3a06-e25a-425b-a1a4-4e9ff6f13582\",\"tags\":{\"ai.internal.sdkVersion\":\"java:2.0.0-beta-snapshot\",\"ai.device.id\":\"test.machine.name\",\"ai.device.locale\":\"en-US\",\"ai.internal.nodename\":\"test.machine.name\",\"ai.device.os\":\"Windows 10\",\"ai.device.roleInstance\":\"test.machine.name\",\"ai.device.osVersion\":\"Windows 10\",\"ai.session.id\":\"20180211160233\"},\"data\":{\"baseType\":\"EventData\",\"baseData\":{\"ver\":2,\"name\":\"TestEvent0\",\"properties\":null}}}\r\n"));
         boolean result = eh.sendNewTransmission(args, singleItem);
         Assert.assertTrue(result);
     }
@@ -246,7 +251,7 @@ public class PartialSuccessHandlerTest {
         args.setTransmission(new Transmission(fourItems, "application/x-json-stream", "gzip"));
         args.setTransmissionDispatcher(mockedDispatcher);
         PartialSuccessHandler eh = new PartialSuccessHandler(tpm);
-        List<String> originalItems = eh.generateOriginalItems(args);
+        List<byte[]> originalItems = eh.generateOriginalItems(args);
         Assert.assertEquals(4, originalItems.size());
     }
 
@@ -259,8 +264,81 @@ public class PartialSuccessHandlerTest {
         args.setTransmission(new Transmission(fourItemsNonGZIP.getBytes(), "application/json", "utf8"));
         args.setTransmissionDispatcher(mockedDispatcher);
         PartialSuccessHandler eh = new PartialSuccessHandler(tpm);
-        List<String> originalItems = eh.generateOriginalItems(args);
+        List<byte[]> originalItems = eh.generateOriginalItems(args);
         Assert.assertEquals(4, originalItems.size());
     }
 
+    @Test
+    public void passGetOriginalItemsFromCache() {
+        TransmissionPolicyManager tpm = new TransmissionPolicyManager(true);
+        TransmissionItemsCache itemsCache = new TransmissionItemsCache();
+        List<byte[]> items = utf8("{\"item\":0}", "{\"item\":1}");
+        Transmission transmission = new GzipTelemetrySerializer(null, itemsCache).serialize(items).get();
+
+        TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+        args.setResponseCode(206);
+        args.setTransmission(transmission);
+        PartialSuccessHandler eh = new PartialSuccessHandler(tpm, itemsCache);
+
+        Assert.assertEquals(items, eh.getOriginalItems(args));
+        Assert.assertEquals(0, itemsCache.size());
+
+        // Not in the cache anymore, the content is decompressed
+        Assert.assertEquals(asStrings(items), asStrings(eh.getOriginalItems(args)));
+    }
+
+    @Test
+    public void pass206RetryIsCachedForTheNextPartialSuccess() {
+        TransmissionPolicyManager tpm = new TransmissionPolicyManager(true);
+        TransmissionItemsCache itemsCache = new TransmissionItemsCache();
+        TransmissionDispatcher mockedDispatcher = Mockito.mock(TransmissionDispatcher.class);
+        List<byte[]> items = utf8("{\"item\":0}", "{\"item\":1}", "{\"item\":2}", "{\"item\":3}");
+
+        TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+        args.setResponseCode(206);
+        args.setTransmission(new GzipTelemetrySerializer(null, itemsCache).serialize(items).get());
+        args.setTransmissionDispatcher(mockedDispatcher);
+        args.setResponseBody("{\"itemsReceived\": 4, \"itemsAccepted\": 2, \"errors\": [" +
+                "{\"index\": 1, \"statusCode\": 500, \"message\": \"Internal Server Error\"}," +
+                "{\"index\": 3, \"statusCode\": 439, \"message\": \"Too many requests\"}]}");
+        PartialSuccessHandler eh = new PartialSuccessHandler(tpm, itemsCache);
+        Assert.assertTrue(eh.validateTransmissionAndSend(args));
+
+        ArgumentCaptor<Transmission> retry = ArgumentCaptor.forClass(Transmission.class);
+        Mockito.verify(mockedDispatcher).dispatch(retry.capture());
+        Assert.assertEquals(Arrays.asList("{\"item\":1}", "{\"item\":3}"), asStrings(itemsCache.remove(retry.getValue())));
+    }
+
+    @Test
+    public void passGenerateOriginalItemsKeepsNonAsciiCharacters() {
+        TransmissionPolicyManager tpm = new TransmissionPolicyManager(true);
+        List<byte[]> items = utf8("{\"item\":\"\u00e9t\u00e9\"}", "{\"item\":\"\u6f22\u5b57\"}");
+
+        TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+        args.setResponseCode(206);
+        args.setTransmission(new GzipTelemetrySerializer().serialize(items).get());
+        PartialSuccessHandler eh = new PartialSuccessHandler(tpm);
+
+        Assert.assertEquals(asStrings(items), asStrings(eh.generateOriginalItems(args)));
+    }
+
+    private static byte[] utf8(String item) {
+        return item.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> utf8(String... items) {
+        List<byte[]> result = new ArrayList<byte[]>();
+        for (String item : items) {
+            result.add(utf8(item));
+        }
+        return result;
+    }
+
+    private static List<String> asStrings(List<byte[]> items) {
+        List<String> result = new ArrayList<String>();
+        for (byte[] item : items) {
+            result.add(new String(item, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class PayloadSizeEstimatorTest {
+    @Test
+    public void testInitialEstimate() {
+        PayloadSizeEstimator tested = new PayloadSizeEstimator();
+
+        assertEquals(200, tested.estimateCompressedSize(1000));
+    }
+
+    @Test
+    public void testEstimateConvergesToObservedRatio() {
+        PayloadSizeEstimator tested = new PayloadSizeEstimator();
+
+        for (int i = 0; i < 100; ++i) {
+            tested.onBatchCompressed(1000, 100);
+        }
+
+        assertEquals(0.1, tested.getCompressionRatio(), 0.001);
+        assertEquals(100, tested.estimateCompressedSize(1000), 1);
+    }
+
+    @Test
+    public void testEmptyBatchesAreIgnored() {
+        PayloadSizeEstimator tested = new PayloadSizeEstimator();
+
+        tested.onBatchCompressed(0, 20);
+        tested.onBatchCompressed(1000, 0);
+
+        assertEquals(0.2, tested.getCompressionRatio(), 0.0);
+    }
+}
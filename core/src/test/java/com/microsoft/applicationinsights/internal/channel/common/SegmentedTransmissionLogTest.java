@@ -0,0 +1,235 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class SegmentedTransmissionLogTest {
+    private final static String MOCK_CONTENT_TYPE = "application/x-json-stream";
+    private final static String MOCK_ENCODING_TYPE = "gzip";
+    private final static int SMALL_SEGMENT_SIZE_IN_BYTES = 256;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testFetchInTheOrderOfSends() throws Exception {
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), null);
+
+        for (int i = 1; i <= 10; ++i) {
+            assertTrue(tested.send(createTransmission(i)));
+        }
+
+        for (int i = 1; i <= 10; ++i) {
+            assertTransmission(i, tested.fetchOldest());
+        }
+        assertNull(tested.fetchOldest());
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTransmissionFieldsAreKept() throws Exception {
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), null);
+
+        Transmission transmission = new Transmission(new byte[] {1, 2, 3}, MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE, 2);
+        transmission.setNumberOfSends(3);
+        transmission.setNumberOfPersistence(4);
+        tested.send(transmission);
+
+        Transmission fetched = tested.fetchOldest();
+        assertNotNull(fetched);
+        assertArrayEquals(new byte[] {1, 2, 3}, fetched.getContent());
+        assertEquals(MOCK_CONTENT_TYPE, fetched.getWebContentType());
+        assertEquals(MOCK_ENCODING_TYPE, fetched.getWebContentEncodingType());
+        assertEquals(2, fetched.getVersion());
+        assertEquals(3, fetched.getNumberOfSends());
+        assertEquals(4, fetched.getNumberOfPersistence());
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testDrainedSegmentsAreDeleted() throws Exception {
+        File folder = tmpFolder.newFolder();
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(folder.getPath(), null, SMALL_SEGMENT_SIZE_IN_BYTES);
+
+        for (int i = 1; i <= 20; ++i) {
+            tested.send(createTransmission(i));
+        }
+        int numberOfSegments = tested.getNumberOfSegments();
+        assertTrue(numberOfSegments > 1);
+        assertEquals(numberOfSegments, countSegmentFiles(folder));
+
+        for (int i = 1; i <= 20; ++i) {
+            assertTransmission(i, tested.fetchOldest());
+        }
+        assertNull(tested.fetchOldest());
+
+        // The one that is appended to is kept
+        assertEquals(1, tested.getNumberOfSegments());
+        assertEquals(1, countSegmentFiles(folder));
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRestartContinuesFromTheCursor() throws Exception {
+        String folderPath = tmpFolder.newFolder().getPath();
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(folderPath, null, SMALL_SEGMENT_SIZE_IN_BYTES);
+        for (int i = 1; i <= 10; ++i) {
+            tested.send(createTransmission(i));
+        }
+        for (int i = 1; i <= 4; ++i) {
+            assertTransmission(i, tested.fetchOldest());
+        }
+        tested.stop(1L, TimeUnit.SECONDS);
+
+        tested = new SegmentedTransmissionLog(folderPath, null, SMALL_SEGMENT_SIZE_IN_BYTES);
+        tested.send(createTransmission(11));
+        for (int i = 5; i <= 11; ++i) {
+            assertTransmission(i, tested.fetchOldest());
+        }
+        assertNull(tested.fetchOldest());
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCorruptedSegmentIsSkipped() throws Exception {
+        File folder = tmpFolder.newFolder();
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(folder.getPath(), null, SMALL_SEGMENT_SIZE_IN_BYTES);
+        for (int i = 1; i <= 20; ++i) {
+            tested.send(createTransmission(i));
+        }
+        tested.stop(1L, TimeUnit.SECONDS);
+
+        File[] segmentFiles = listSegmentFiles(folder);
+        Arrays.sort(segmentFiles);
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles[0], "rw")) {
+            // Flip a byte of the content of the first record
+            file.seek(SegmentedTransmissionLog.RECORD_HEADER_SIZE + 1);
+            int value = file.read();
+            file.seek(SegmentedTransmissionLog.RECORD_HEADER_SIZE + 1);
+            file.write(value ^ 0xff);
+        }
+
+        tested = new SegmentedTransmissionLog(folder.getPath(), null, SMALL_SEGMENT_SIZE_IN_BYTES);
+        Transmission transmission = tested.fetchOldest();
+        assertNotNull(transmission);
+
+        // The rest of the first segment is gone, the rest of the log is there in order
+        int first = Integer.parseInt(new String(transmission.getContent(), StandardCharsets.UTF_8));
+        assertTrue(first > 1);
+        for (int i = first + 1; i <= 20; ++i) {
+            assertTransmission(i, tested.fetchOldest());
+        }
+        assertNull(tested.fetchOldest());
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCapacityIsEnforced() throws Exception {
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), "1");
+
+        Transmission transmission = new Transmission(new byte[400 * 1024], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE);
+        assertTrue(tested.send(transmission));
+        assertTrue(tested.send(transmission));
+        assertTrue(!tested.send(transmission));
+        assertTrue(tested.getSize() <= 1024 * 1024);
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTransmissionFilesAreMigrated() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionFileSystemOutput transmissionFiles = new TransmissionFileSystemOutput(folder.getPath());
+        for (int i = 1; i <= 3; ++i) {
+            transmissionFiles.send(createTransmission(i));
+            // File names are ordered by their creation time in milliseconds
+            Thread.sleep(2);
+        }
+
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(folder.getPath(), null);
+        assertEquals(0, FileUtils.listFiles(folder, new String[] {"trn"}, false).size());
+
+        for (int i = 1; i <= 3; ++i) {
+            assertTransmission(i, tested.fetchOldest());
+        }
+        assertNull(tested.fetchOldest());
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOldestStoredTime() throws Exception {
+        SegmentedTransmissionLog tested = new SegmentedTransmissionLog(tmpFolder.newFolder().getPath(), null, SMALL_SEGMENT_SIZE_IN_BYTES);
+        assertEquals(0, tested.getOldestStoredTimeInMillis());
+
+        long before = System.currentTimeMillis();
+        assertTrue(tested.send(createTransmission(1)));
+        long after = System.currentTimeMillis();
+
+        long oldest = tested.getOldestStoredTimeInMillis();
+        assertTrue(oldest >= before && oldest <= after);
+
+        assertTransmission(1, tested.fetchOldest());
+        assertNull(tested.fetchOldest());
+        assertEquals(0, tested.getOldestStoredTimeInMillis());
+
+        tested.stop(1L, TimeUnit.SECONDS);
+    }
+
+    private static Transmission createTransmission(int index) {
+        return new Transmission(String.valueOf(index).getBytes(StandardCharsets.UTF_8), MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE);
+    }
+
+    private static void assertTransmission(int expectedIndex, Transmission transmission) {
+        assertNotNull(transmission);
+        assertEquals(String.valueOf(expectedIndex), new String(transmission.getContent(), StandardCharsets.UTF_8));
+    }
+
+    private static File[] listSegmentFiles(File folder) {
+        return FileUtils.listFiles(folder, new String[] {"seg"}, false).toArray(new File[0]);
+    }
+
+    private static int countSegmentFiles(File folder) {
+        return listSegmentFiles(folder).length;
+    }
+}
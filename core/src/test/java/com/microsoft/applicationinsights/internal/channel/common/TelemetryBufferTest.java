@@ -29,6 +29,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
 
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
@@ -537,6 +538,45 @@ public final class TelemetryBufferTest {
         mockSender.waitForFinish(6L);
     }
 
+    @Test
+    public void testSendWhenMaxBatchSizeInBytesIsReached() throws Exception {
+        final List<Collection<String>> sent = new ArrayList<Collection<String>>();
+        TelemetriesTransmitter<String> sender = new TelemetriesTransmitter<String>() {
+            @Override
+            public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+                return true;
+            }
+
+            @Override
+            public boolean sendNow(Collection<String> telemetries) {
+                sent.add(telemetries);
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        };
+
+        TelemetryBuffer<String> testedBuffer = new TelemetryBuffer<String>(sender, createEnforcerWithCurrentValue(1000), createDefaultSenderTimeoutEnforcer());
+        // 500 uncompressed bytes are estimated as 100 compressed bytes by a fresh estimator
+        testedBuffer.setMaxBatchSizeInBytes(100, new ToIntFunction<String>() {
+            @Override
+            public int applyAsInt(String value) {
+                return value.length();
+            }
+        }, new PayloadSizeEstimator());
+
+        String telemetry = new String(new char[100]).replace('\0', 'a');
+        for (int i = 0; i < 12; ++i) {
+            testedBuffer.add(telemetry);
+        }
+
+        assertEquals(2, sent.size());
+        assertEquals(5, sent.get(0).size());
+        assertEquals(5, sent.get(1).size());
+    }
+
     private LimitsEnforcer createDefaultBatchSizeEnforcer() {
         return LimitsEnforcer.createWithClosestLimitOnError(MOCK_PROPERTY_NAME, 1, 10000, 100, null);
     }
@@ -1,5 +1,8 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -141,4 +144,29 @@ public class ThrottlingHandlerTest {
         Assert.assertTrue(result);
     }
 
+    @Test
+    public void retryAfterInSeconds() throws ParseException {
+        Assert.assertEquals(120, ThrottlingHandler.getRetryAfterInSeconds("120"));
+        Assert.assertEquals(5, ThrottlingHandler.getRetryAfterInSeconds(" 5 "));
+    }
+
+    @Test(expected = ParseException.class)
+    public void retryAfterNeitherSecondsNorDate() throws ParseException {
+        ThrottlingHandler.getRetryAfterInSeconds("soon");
+    }
+
+    @Test
+    public void pass429StatusSecondsValueBlocksTransmissions() {
+        TransmissionPolicyManager tpm = new TransmissionPolicyManager(true);
+        TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+        args.setResponseCode(429);
+        args.setTransmission(new Transmission(new byte[] { 0 }, "testcontent", "testencoding"));
+        args.setTransmissionDispatcher(Mockito.mock(TransmissionDispatcher.class));
+        args.setRetryHeader("60");
+
+        Assert.assertTrue(new ThrottlingHandler(tpm).validateTransmissionAndSend(args));
+        Assert.assertEquals(TransmissionPolicy.BLOCKED_BUT_CAN_BE_PERSISTED, tpm.getTransmissionPolicyState().getCurrentState());
+        tpm.stop(1, TimeUnit.SECONDS);
+    }
+
 }
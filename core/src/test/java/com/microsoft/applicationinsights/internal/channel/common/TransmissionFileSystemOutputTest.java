@@ -22,8 +22,10 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.Collection;
@@ -103,6 +105,53 @@ public final class TransmissionFileSystemOutputTest {
         }
     }
 
+    @Test
+    public void testFilesOfPreviousRunAreFetchedOldestFirst() throws Exception {
+        File folder = tmpFolder.newFolder(TEMP_TEST_FOLDER+"3");
+        TransmissionFileSystemOutput previous = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+        for (int i = 1; i <= 3; ++i) {
+            previous.send(new Transmission((MOCK_CONTENT + i).getBytes(), MOCK_CONTENT_TYPE_BASE, MOCK_ENCODING_TYPE_BASE));
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        TransmissionFileSystemOutput tested = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+        for (int i = 1; i <= 3; ++i) {
+            Transmission transmission = tested.fetchOldestFile();
+            assertNotNull(transmission);
+            assertEquals(MOCK_CONTENT + i, new String(transmission.getContent()));
+        }
+        assertNull(tested.fetchOldestFile());
+    }
+
+    @Test
+    public void testFetchingFreesCapacity() throws Exception {
+        File folder = tmpFolder.newFolder(TEMP_TEST_FOLDER+"4");
+        TransmissionFileSystemOutput tested = createAndSend(folder.getAbsolutePath(), 3, SIZE_OF_MOCK_TRANSMISSION);
+        Transmission transmission = new Transmission(new byte[SIZE_OF_TRANSMISSION_CONTENT], "MockContentType", "MockEncodingType");
+        assertFalse(tested.send(transmission));
+
+        assertNotNull(tested.fetchOldestFile());
+        assertTrue(tested.send(transmission));
+    }
+
+    @Test
+    public void testOldestStoredTime() throws Exception {
+        TransmissionFileSystemOutput tested = new TransmissionFileSystemOutput(tmpFolder.newFolder(TEMP_TEST_FOLDER + "5").getAbsolutePath());
+        assertEquals(0, tested.getOldestStoredTimeInMillis());
+        assertEquals(0, tested.getSize());
+
+        long before = System.currentTimeMillis();
+        assertTrue(tested.send(new Transmission(MOCK_CONTENT.getBytes(), "MockContentType", "MockEncodingType")));
+        long after = System.currentTimeMillis();
+
+        long oldest = tested.getOldestStoredTimeInMillis();
+        assertTrue(oldest >= before && oldest <= after);
+        assertTrue(tested.getSize() > 0);
+
+        assertNotNull(tested.fetchOldestFile());
+        assertEquals(0, tested.getOldestStoredTimeInMillis());
+    }
+
     private TransmissionFileSystemOutput testSuccessfulSends(int amount) throws Exception {
         return testSuccessfulSends(amount, amount, null, null);
     }
@@ -0,0 +1,109 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public final class TransmissionItemsCacheTest {
+    // The items are compared by identity, as the cache keeps the arrays it is given
+    private static final byte[] A = {'a'};
+    private static final byte[] B = {'b'};
+    private static final byte[] C = {'c'};
+
+    @Test
+    public void testRemoveReturnsTheItemsOnce() {
+        TransmissionItemsCache tested = new TransmissionItemsCache();
+        Transmission transmission = createTransmission(10);
+
+        tested.put(transmission, Arrays.asList(A, B));
+
+        assertEquals(Arrays.asList(A, B), tested.remove(transmission));
+        assertNull(tested.remove(transmission));
+        assertEquals(0, tested.getSizeInBytes());
+    }
+
+    @Test
+    public void testOtherTransmissionWithSameContentIsNotFound() {
+        TransmissionItemsCache tested = new TransmissionItemsCache();
+
+        tested.put(createTransmission(10), Collections.singletonList(A));
+
+        assertNull(tested.remove(createTransmission(10)));
+    }
+
+    @Test
+    public void testOldestAreEvictedWhenFull() {
+        // Each entry is 10 bytes of content and 1 byte for the item
+        TransmissionItemsCache tested = new TransmissionItemsCache(30);
+        Transmission first = createTransmission(10);
+        Transmission second = createTransmission(10);
+        Transmission third = createTransmission(10);
+
+        tested.put(first, Collections.singletonList(A));
+        tested.put(second, Collections.singletonList(B));
+        tested.put(third, Collections.singletonList(C));
+
+        assertEquals(2, tested.size());
+        assertEquals(22, tested.getSizeInBytes());
+        assertNull(tested.remove(first));
+        assertEquals(Collections.singletonList(B), tested.remove(second));
+        assertEquals(Collections.singletonList(C), tested.remove(third));
+    }
+
+    @Test
+    public void testTransmissionLargerThanTheCapacityIsNotCached() {
+        TransmissionItemsCache tested = new TransmissionItemsCache(30);
+        Transmission small = createTransmission(10);
+        tested.put(small, Collections.singletonList(A));
+
+        tested.put(createTransmission(40), Collections.singletonList(B));
+
+        assertEquals(1, tested.size());
+        assertEquals(Collections.singletonList(A), tested.remove(small));
+    }
+
+    @Test
+    public void testItemsAreCountedByTheirEncodedSize() {
+        TransmissionItemsCache tested = new TransmissionItemsCache();
+        List<byte[]> items = Collections.singletonList(new byte[100]);
+
+        tested.put(createTransmission(10), items);
+
+        assertEquals(110, tested.getSizeInBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new TransmissionItemsCache(0);
+    }
+
+    private static Transmission createTransmission(int contentLength) {
+        return new Transmission(new byte[contentLength], "application/x-json-stream", "gzip");
+    }
+}
@@ -21,6 +21,10 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -69,4 +73,37 @@ public final class TransmissionPolicyManagerTest {
         Thread.sleep(1000);
         assertEquals(TransmissionPolicy.UNBLOCKED, tested.getTransmissionPolicyState().getCurrentState());
     }
+
+    @Test
+    public void testUnblockedListenersAreCalledWhenSuspensionEnds() throws InterruptedException {
+        TransmissionPolicyManager tested = new TransmissionPolicyManager(true);
+        final CountDownLatch unblocked = new CountDownLatch(1);
+        tested.addUnblockedListener(new Runnable() {
+            @Override
+            public void run() {
+                unblocked.countDown();
+            }
+        });
+
+        tested.suspendInSeconds(TransmissionPolicy.BLOCKED_BUT_CAN_BE_PERSISTED, 1);
+        assertEquals(1, unblocked.getCount());
+
+        assertTrue(unblocked.await(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUnblockedListenersAreNotCalledWhenAlreadyUnblocked() {
+        TransmissionPolicyManager tested = new TransmissionPolicyManager(true);
+        final AtomicInteger calls = new AtomicInteger();
+        tested.addUnblockedListener(new Runnable() {
+            @Override
+            public void run() {
+                calls.incrementAndGet();
+            }
+        });
+
+        tested.clearBackoff();
+
+        assertEquals(0, calls.get());
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class TransmissionStorageToolTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private File folder;
+    private ByteArrayOutputStream output;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = tmpFolder.newFolder("transmissions");
+        output = new ByteArrayOutputStream();
+
+        TransmissionFileSystemOutput storage = new TransmissionFileSystemOutput(folder.getPath());
+        GzipTelemetrySerializer serializer = new GzipTelemetrySerializer();
+        for (int i = 0; i < 5; ++i) {
+            storage.send(serializer.serialize(Arrays.asList(("{\"i\":" + (2 * i) + "}").getBytes(StandardCharsets.UTF_8), ("{\"i\":" + (2 * i + 1) + "}").getBytes(StandardCharsets.UTF_8))).get(), 1000L + i);
+        }
+    }
+
+    @Test
+    public void testListShowsEveryTransmission() {
+        assertEquals(0, run("list", "--folder", folder.getPath()));
+
+        String listed = output.toString();
+        assertTrue(listed, listed.contains("5 transmissions, 10 items"));
+        for (File file : TransmissionFileSystemOutput.listTransmissionFiles(folder)) {
+            assertTrue(listed, listed.contains(file.getName()));
+        }
+    }
+
+    @Test
+    public void testCompactMergesUpToTheBatchSize() throws Exception {
+        // Each transmission holds 16 bytes of items, so 1 KB fits all of them
+        assertEquals(0, run("compact", "--folder", folder.getPath(), "--max-batch-kb", "1"));
+
+        List<File> files = TransmissionFileSystemOutput.listTransmissionFiles(folder);
+        assertEquals(1, files.size());
+        assertEquals(1000L, TransmissionFileSystemOutput.getCreatedTimeInMillis(files.get(0)));
+
+        Transmission merged = TransmissionFileSystemOutput.loadTransmission(files.get(0)).get();
+        assertEquals(Arrays.asList("{\"i\":0}", "{\"i\":1}", "{\"i\":2}", "{\"i\":3}", "{\"i\":4}",
+                "{\"i\":5}", "{\"i\":6}", "{\"i\":7}", "{\"i\":8}", "{\"i\":9}"), TransmissionStorageTool.readItems(merged));
+    }
+
+    @Test
+    public void testReplayToNdjsonEmptiesTheFolderInOrder() throws Exception {
+        File ndjson = new File(tmpFolder.getRoot(), "items.ndjson");
+        assertEquals(0, run("replay", "--folder", folder.getPath(), "--ndjson", ndjson.getPath()));
+
+        assertTrue(TransmissionFileSystemOutput.listTransmissionFiles(folder).isEmpty());
+        List<String> lines = Files.readAllLines(ndjson.toPath(), StandardCharsets.UTF_8);
+        assertEquals(10, lines.size());
+        assertEquals("{\"i\":0}", lines.get(0));
+        assertEquals("{\"i\":9}", lines.get(9));
+    }
+
+    @Test
+    public void testReplayKeepsWhatCouldNotBeSent() {
+        TransmissionStorageTool tool = new TransmissionStorageTool(folder, new PrintStream(output));
+
+        assertEquals(1, tool.replay(transmission -> TransmissionStorageTool.ReplayResult.RETRY, 2, 0));
+
+        assertEquals(5, TransmissionFileSystemOutput.listTransmissionFiles(folder).size());
+    }
+
+    @Test
+    public void testUnknownCommandPrintsTheUsage() {
+        assertEquals(2, run("purge", "--folder", folder.getPath()));
+
+        assertTrue(output.toString().contains("Usage:"));
+    }
+
+    private int run(String... args) {
+        return TransmissionStorageTool.run(args, new PrintStream(output));
+    }
+}
@@ -22,17 +22,23 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -40,6 +46,7 @@ import org.mockito.Mockito;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.channel.TelemetrySerializer;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
@@ -49,6 +56,38 @@ public final class TransmitterImplTest {
     private final static String MOCK_WEB_CONTENT_TYPE = "MWCT";
     private final static String MOCK_CONTENT_ENCODING_TYPE = "MCET";
 
+    // Number of batches that saturate the transmitter: two running on its threads and 16384 waiting
+    private final static int SATURATING_BATCHES = 2 + 16384;
+
+    /**
+     * Holds the transmitter threads until released and records every batch it gets.
+     */
+    private static final class BlockingSerializer implements TelemetrySerializer {
+        private final CountDownLatch running = new CountDownLatch(2);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Collection<byte[]>> batches = new ArrayList<Collection<byte[]>>();
+
+        @Override
+        public Optional<Transmission> serialize(Collection<byte[]> telemetries) {
+            synchronized (batches) {
+                batches.add(telemetries);
+            }
+            running.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.empty();
+        }
+
+        List<Collection<byte[]>> getBatches() {
+            synchronized (batches) {
+                return new ArrayList<Collection<byte[]>>(batches);
+            }
+        }
+    }
+
     @Test(expected = NullPointerException.class)
     public void testCtorWithNullTransmissionDispatcher() {
         TelemetrySerializer mockSerializer = Mockito.mock(TelemetrySerializer.class);
@@ -176,7 +215,7 @@ public final class TransmitterImplTest {
                     }
                 });
             }
-            ArrayList<String> asJsons = toJson(telemetries);
+            ArrayList<byte[]> asJsons = toJson(telemetries);
 
             Transmission mockTransmission = new Transmission(new byte[1], MOCK_WEB_CONTENT_TYPE, MOCK_CONTENT_ENCODING_TYPE);
             Optional<Transmission> mockSerialize = Optional.empty();
@@ -263,7 +302,7 @@ public final class TransmitterImplTest {
                     }
                 });
             }
-            Collection<String> asJsons = toJson(telemetries);
+            Collection<byte[]> asJsons = toJson(telemetries);
 
             Transmission mockTransmission = new Transmission(new byte[1], MOCK_WEB_CONTENT_TYPE, MOCK_CONTENT_ENCODING_TYPE);
             Optional<Transmission> mockSerialize = Optional.empty();
@@ -303,15 +342,351 @@ public final class TransmitterImplTest {
         }
     }
 
-    private static ArrayList<String> toJson(List<Telemetry> telemetries) throws IOException {
+    @Test
+    public void testDropNewestWhenSaturated() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.DROP_NEWEST, 0, 0), counters);
+        try {
+            Collection<byte[]> newest = createBatch("Event", 3);
+            assertFalse(transmitter.sendNow(newest));
+            assertEquals(3, counters.getDroppedCount("Event"));
+            assertEquals(3, counters.getTotalDroppedCount());
+
+            List<Collection<byte[]>> sent = releaseAndWait(serializer, SATURATING_BATCHES);
+            assertFalse(sent.contains(newest));
+        } finally {
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testDropOldestWhenSaturated() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.DROP_OLDEST, 0, 0), counters);
+        try {
+            Collection<byte[]> newest = createBatch("Event", 3);
+            assertTrue(transmitter.sendNow(newest));
+            assertEquals(1, counters.getDroppedCount("Request"));
+            assertEquals(0, counters.getDroppedCount("Event"));
+
+            List<Collection<byte[]>> sent = releaseAndWait(serializer, SATURATING_BATCHES);
+            assertTrue(sent.contains(newest));
+            assertEquals(SATURATING_BATCHES, sent.size());
+        } finally {
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testDropOldestFallsBackToDropNewestWhenTheLaneHasNoPendingBatch() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.DROP_OLDEST, 0, 0), counters);
+        try {
+            assertFalse(transmitter.forLane(TelemetryLane.VERBOSE).sendNow(createBatch("Message", 2)));
+            assertEquals(2, counters.getDroppedCount(TelemetryLane.VERBOSE));
+            assertEquals(0, counters.getDroppedCount(TelemetryLane.DEFAULT));
+        } finally {
+            serializer.release.countDown();
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testRefusedScheduleSendIsCounted() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.DROP_NEWEST, 0, 0), counters);
+        try {
+            final Collection<byte[]> telemetries = createBatch("Event", 3);
+            assertFalse(transmitter.forLane(TelemetryLane.VERBOSE).scheduleSend(new TelemetriesTransmitter.TelemetriesFetcher<byte[]>() {
+                @Override
+                public Collection<byte[]> fetch() {
+                    return telemetries;
+                }
+            }, 1L, TimeUnit.SECONDS));
+            assertEquals(3, counters.getDroppedCount("Event"));
+            assertEquals(3, counters.getDroppedCount(TelemetryLane.VERBOSE));
+        } finally {
+            serializer.release.countDown();
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBlockWithTimeoutWhenSaturated() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.BLOCK_WITH_TIMEOUT, 50, 0), counters);
+        try {
+            long start = System.nanoTime();
+            assertFalse(transmitter.sendNow(createBatch("Event", 2)));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+            assertEquals(2, counters.getDroppedCount("Event"));
+
+            serializer.release.countDown();
+            assertTrue(transmitter.sendNow(createBatch("Event", 2)));
+            assertEquals(2, counters.getTotalDroppedCount());
+        } finally {
+            serializer.release.countDown();
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testDegradeBySamplingWhenSaturated() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.DEGRADE_BY_SAMPLING, 0, 25), counters);
+        try {
+            assertTrue(transmitter.sendNow(createBatch("Event", 8)));
+            assertEquals(6, counters.getDroppedCount("Event"));
+
+            // The kept telemetries travel with the newest pending batch
+            int sampledBatches = 0;
+            for (Collection<byte[]> batch : releaseAndWait(serializer, SATURATING_BATCHES)) {
+                if (batch.size() == 3) {
+                    ++sampledBatches;
+                }
+            }
+            assertEquals(1, sampledBatches);
+        } finally {
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testLessImportantLaneIsShedFirstWhenSaturated() throws InterruptedException {
+        DroppedTelemetryCounters counters = new DroppedTelemetryCounters();
+        BlockingSerializer serializer = new BlockingSerializer();
+        TransmitterImpl transmitter = createSaturatedTransmitter(serializer, new OverloadPolicy(OverloadPolicy.Type.DROP_NEWEST, 0, 0), counters);
+        try {
+            Collection<byte[]> critical = createBatch("Exception", 2);
+            assertTrue(transmitter.forLane(TelemetryLane.CRITICAL).sendNow(critical));
+            assertEquals(1, counters.getDroppedCount(TelemetryLane.DEFAULT));
+            assertEquals(0, counters.getDroppedCount(TelemetryLane.CRITICAL));
+
+            // Nothing is less important than a trace, the policy applies
+            assertFalse(transmitter.forLane(TelemetryLane.VERBOSE).sendNow(createBatch("Message", 3)));
+            assertEquals(3, counters.getDroppedCount(TelemetryLane.VERBOSE));
+
+            List<Collection<byte[]>> sent = releaseAndWait(serializer, SATURATING_BATCHES);
+            assertTrue(sent.contains(critical));
+            // The critical lane has the larger weight, its batch is not sent after the whole default lane
+            assertTrue(sent.indexOf(critical) < 10);
+        } finally {
+            transmitter.stop(1L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testDrainAndStopPersistsWhatIsNotSentInTime() throws InterruptedException {
+        // The two threads of the transmitter are held, the batches behind them cannot reach the network
+        final CountDownLatch running = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger serialized = new AtomicInteger();
+        TelemetrySerializer serializer = new TelemetrySerializer() {
+            @Override
+            public Optional<Transmission> serialize(Collection<byte[]> telemetries) {
+                if (serialized.incrementAndGet() <= 2) {
+                    running.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return Optional.of(new Transmission(new byte[2], MOCK_WEB_CONTENT_TYPE, MOCK_CONTENT_ENCODING_TYPE));
+            }
+        };
+        final List<Transmission> persisted = new ArrayList<Transmission>();
+        TransmissionOutput spillOutput = new TransmissionOutput() {
+            @Override
+            public boolean send(Transmission transmission) {
+                synchronized (persisted) {
+                    persisted.add(transmission);
+                }
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        };
+        final boolean[] outputsStopped = new boolean[1];
+        TransmitterImpl transmitter = new TransmitterImpl(new TransmissionDispatcher() {
+            @Override
+            public void dispatch(Transmission transmission) {
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+                outputsStopped[0] = true;
+            }
+        }, serializer, new TransmissionsLoader() {
+            @Override
+            public boolean load(boolean waitForThreadsToStart) {
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        }, OverloadPolicy.DEFAULT, new DroppedTelemetryCounters(), spillOutput);
+
+        try {
+            assertTrue(transmitter.sendNow(createBatch("Request", 1)));
+            assertTrue(transmitter.sendNow(createBatch("Request", 1)));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 5; ++i) {
+                assertTrue(transmitter.sendNow(createBatch("Event", 1)));
+            }
+
+            long start = System.nanoTime();
+            transmitter.drainAndStop(1L, TimeUnit.SECONDS);
+            long elapsedInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(5, persisted.size());
+            assertEquals(0, transmitter.getNumberOfPendingBatches());
+            assertTrue(outputsStopped[0]);
+            assertTrue("The deadline was not kept: " + elapsedInMillis, elapsedInMillis < 1500);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testDrainAndStopDoesNotInterruptSendsInFlight() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final AtomicInteger interrupted = new AtomicInteger();
+        TelemetrySerializer serializer = new TelemetrySerializer() {
+            @Override
+            public Optional<Transmission> serialize(Collection<byte[]> telemetries) {
+                running.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of(new Transmission(new byte[2], MOCK_WEB_CONTENT_TYPE, MOCK_CONTENT_ENCODING_TYPE));
+            }
+        };
+        final AtomicInteger dispatched = new AtomicInteger();
+        TransmitterImpl transmitter = createDrainedTransmitter(serializer, dispatched);
+
+        assertTrue(transmitter.sendNow(createBatch("Request", 1)));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        transmitter.drainAndStop(2L, TimeUnit.SECONDS);
+
+        assertEquals(0, interrupted.get());
+        assertEquals(1, dispatched.get());
+    }
+
+    @Test
+    public void testDrainAndStopSendsScheduledTelemetriesRightAway() {
+        final AtomicInteger dispatched = new AtomicInteger();
+        TelemetrySerializer serializer = new TelemetrySerializer() {
+            @Override
+            public Optional<Transmission> serialize(Collection<byte[]> telemetries) {
+                return Optional.of(new Transmission(new byte[2], MOCK_WEB_CONTENT_TYPE, MOCK_CONTENT_ENCODING_TYPE));
+            }
+        };
+        TransmitterImpl transmitter = createDrainedTransmitter(serializer, dispatched);
+
+        final Collection<byte[]> telemetries = createBatch("Request", 3);
+        assertTrue(transmitter.scheduleSend(new TelemetriesTransmitter.TelemetriesFetcher<byte[]>() {
+            @Override
+            public Collection<byte[]> fetch() {
+                return telemetries;
+            }
+        }, 1L, TimeUnit.HOURS));
+        transmitter.drainAndStop(2L, TimeUnit.SECONDS);
+
+        assertEquals(1, dispatched.get());
+    }
+
+    private static TransmitterImpl createDrainedTransmitter(TelemetrySerializer serializer, final AtomicInteger dispatched) {
+        return new TransmitterImpl(new TransmissionDispatcher() {
+            @Override
+            public void dispatch(Transmission transmission) {
+                dispatched.incrementAndGet();
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        }, serializer, new TransmissionsLoader() {
+            @Override
+            public boolean load(boolean waitForThreadsToStart) {
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        });
+    }
+
+    private static TransmitterImpl createSaturatedTransmitter(BlockingSerializer serializer, OverloadPolicy policy, DroppedTelemetryCounters counters) throws InterruptedException {
+        TransmitterImpl transmitter = new TransmitterImpl(new TransmissionDispatcher() {
+            @Override
+            public void dispatch(Transmission transmission) {
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        }, serializer, new TransmissionsLoader() {
+            @Override
+            public boolean load(boolean waitForThreadsToStart) {
+                return true;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        }, policy, counters);
+
+        assertTrue(transmitter.sendNow(createBatch("Request", 1)));
+        assertTrue(transmitter.sendNow(createBatch("Request", 1)));
+        assertTrue(serializer.running.await(10, TimeUnit.SECONDS));
+        for (int i = 2; i < SATURATING_BATCHES; ++i) {
+            assertTrue(transmitter.sendNow(createBatch("Request", 1)));
+        }
+
+        return transmitter;
+    }
+
+    private static List<Collection<byte[]>> releaseAndWait(BlockingSerializer serializer, int expectedBatches) throws InterruptedException {
+        serializer.release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (serializer.getBatches().size() < expectedBatches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        return serializer.getBatches();
+    }
+
+    private static Collection<byte[]> createBatch(String telemetryType, int size) {
+        List<byte[]> batch = new ArrayList<byte[]>();
+        for (int i = 0; i < size; ++i) {
+            batch.add(("{\"ver\":1,\"name\":\"Microsoft.ApplicationInsights.key." + telemetryType + "\",\"i\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+        }
+        return batch;
+    }
+
+    private static ArrayList<byte[]> toJson(List<Telemetry> telemetries) throws IOException {
         StringWriter writer = new StringWriter();
         JsonTelemetryDataSerializer jsonWriter = new JsonTelemetryDataSerializer(writer);
-        ArrayList<String> asJsons = new ArrayList<String>();
+        ArrayList<byte[]> asJsons = new ArrayList<byte[]>();
         for (Telemetry telemetry : telemetries) {
             telemetry.serialize(jsonWriter);
             jsonWriter.close();
             String asJson = writer.toString();
-            asJsons.add(asJson);
+            asJsons.add(asJson.getBytes(StandardCharsets.UTF_8));
             writer.getBuffer().setLength(0);
             jsonWriter.reset(writer);
         }
@@ -0,0 +1,126 @@
+package com.microsoft.applicationinsights.internal.channel.samplingV2;
+
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SamplingDecisionTest {
+
+    @After
+    public void tearDown() {
+        SamplingDecision.unbind();
+    }
+
+    @Test
+    public void decisionIsTheHashOfTheOperationId() {
+        SamplingDecision decision = SamplingDecision.forOperation("operation", 50.0);
+
+        Assert.assertEquals(SamplingScoreGeneratorV2.getSamplingScore("operation"), decision.getSamplingScore(), 0.0);
+        Assert.assertEquals(decision.getSamplingScore() < 50.0, decision.isSampledIn());
+    }
+
+    @Test
+    public void callerDecisionIsHonoredWhenSamplingIsEnabled() {
+        Assert.assertTrue(SamplingDecision.forOperation("operation", true, 1.0).isSampledIn());
+        Assert.assertFalse(SamplingDecision.forOperation("operation", false, 99.0).isSampledIn());
+        Assert.assertTrue(SamplingDecision.forOperation("operation", false, 100.0).isSampledIn());
+    }
+
+    @Test
+    public void boundDecisionIsUsedForItemsOfTheOperation() {
+        String operationId = "operation";
+        SamplingDecision.bind(SamplingDecision.forOperation(operationId, false, 50.0));
+
+        Telemetry sameOperation = new RemoteDependencyTelemetry();
+        sameOperation.getContext().getOperation().setId(operationId);
+        Telemetry otherOperation = new RemoteDependencyTelemetry();
+        otherOperation.getContext().getOperation().setId("other");
+
+        Assert.assertEquals(SamplingDecision.current().getSamplingScore(), SamplingScoreGeneratorV2.getSamplingScore(sameOperation), 0.0);
+        Assert.assertEquals(SamplingScoreGeneratorV2.getSamplingScore("other"), SamplingScoreGeneratorV2.getSamplingScore(otherOperation), 0.0);
+
+        SamplingDecision.unbind();
+        Assert.assertNull(SamplingDecision.current());
+        Assert.assertEquals(SamplingScoreGeneratorV2.getSamplingScore(operationId), SamplingScoreGeneratorV2.getSamplingScore(sameOperation), 0.0);
+    }
+
+    @Test
+    public void callerDecisionIsSharedWithThreadsItIsNotBoundTo() throws InterruptedException {
+        // A caller decision that differs from the hash of the operation id
+        final String operationId = "operation";
+        boolean sampledByHash = SamplingScoreGeneratorV2.getSamplingScore(operationId) < 50.0;
+        SamplingDecision decision = SamplingDecision.forOperation(operationId, !sampledByHash, 50.0);
+
+        final Telemetry telemetry = new RemoteDependencyTelemetry();
+        telemetry.getContext().getOperation().setId(operationId);
+        final double[] score = new double[1];
+        // Created before the decision is bound so nothing is inherited
+        Thread unboundThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                score[0] = SamplingScoreGeneratorV2.getSamplingScore(telemetry);
+            }
+        });
+
+        SamplingDecision.bind(decision);
+        unboundThread.start();
+        unboundThread.join();
+        Assert.assertEquals(decision.getSamplingScore(), score[0], 0.0);
+
+        SamplingDecision.unbind();
+        Assert.assertEquals(SamplingScoreGeneratorV2.getSamplingScore(operationId), SamplingScoreGeneratorV2.getSamplingScore(telemetry), 0.0);
+    }
+
+    @Test
+    public void threadThatInheritedTheDecisionDoesNotUnregisterIt() throws InterruptedException {
+        final String operationId = "operation";
+        boolean sampledByHash = SamplingScoreGeneratorV2.getSamplingScore(operationId) < 50.0;
+        final SamplingDecision decision = SamplingDecision.forOperation(operationId, !sampledByHash, 50.0);
+        final SamplingDecision otherDecision = SamplingDecision.forOperation("other", 50.0);
+        SamplingDecision.bind(decision);
+
+        // The pool thread inherits the decision, then serves a request of its own
+        Thread inheritingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SamplingDecision.bind(otherDecision);
+                SamplingDecision.unbind();
+            }
+        });
+        inheritingThread.start();
+        inheritingThread.join();
+
+        Assert.assertSame(decision, SamplingDecision.find(operationId));
+        final SamplingDecision[] found = new SamplingDecision[1];
+        Thread unboundThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SamplingDecision.unbind();
+                found[0] = SamplingDecision.find(operationId);
+            }
+        });
+        unboundThread.start();
+        unboundThread.join();
+        Assert.assertSame(decision, found[0]);
+    }
+
+    @Test
+    public void samplingPercentageIsTakenFromTheProcessorsSamplingDependencies() {
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        Assert.assertEquals(100.0, SamplingDecision.getSamplingPercentage(configuration), 0.0);
+
+        FixedRateSamplingTelemetryProcessor requestsOnly = new FixedRateSamplingTelemetryProcessor();
+        requestsOnly.setSamplingPercentage("10");
+        requestsOnly.addToIncludedType("Request");
+        configuration.getTelemetryProcessors().add(requestsOnly);
+        Assert.assertEquals(100.0, SamplingDecision.getSamplingPercentage(configuration), 0.0);
+
+        FixedRateSamplingTelemetryProcessor processor = new FixedRateSamplingTelemetryProcessor();
+        processor.setSamplingPercentage("25");
+        configuration.getTelemetryProcessors().add(processor);
+        Assert.assertEquals(25.0, SamplingDecision.getSamplingPercentage(configuration), 0.0);
+    }
+}
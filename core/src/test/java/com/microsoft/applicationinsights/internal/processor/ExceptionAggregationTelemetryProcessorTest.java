@@ -0,0 +1,166 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.channel.TelemetryChannel;
+import com.microsoft.applicationinsights.channel.TelemetrySampler;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExceptionAggregationTelemetryProcessorTest {
+    private final List<Telemetry> summaries = new ArrayList<Telemetry>();
+
+    private final ExceptionAggregationTelemetryProcessor tested = new ExceptionAggregationTelemetryProcessor(new Consumer<Telemetry>() {
+        @Override
+        public void accept(Telemetry summary) {
+            summaries.add(summary);
+        }
+    });
+
+    @Test
+    public void testFirstExceptionsOfAnIntervalAreSentInFull() {
+        tested.setMaxFullExceptionsPerInterval("3");
+
+        assertEquals(3, processThrownBySameLine(8, false));
+
+        tested.sendSummaries();
+
+        assertEquals(1, summaries.size());
+        ExceptionTelemetry summary = (ExceptionTelemetry) summaries.get(0);
+        assertEquals(5.0, summary.getMetrics().get(ExceptionAggregationTelemetryProcessor.OCCURRENCES_METRIC_NAME), 0.0);
+        assertEquals(IllegalStateException.class.getName(), summary.getExceptions().get(0).getTypeName());
+
+        // A new interval
+        assertEquals(1, processThrownBySameLine(1, false));
+    }
+
+    @Test
+    public void testTypesAreAggregatedApart() {
+        tested.setMaxFullExceptionsPerInterval("1");
+
+        assertEquals(1, processThrownBySameLine(2, false));
+        assertEquals(1, processThrownBySameLine(2, true));
+
+        tested.sendSummaries();
+
+        assertEquals(2, summaries.size());
+    }
+
+    @Test
+    public void testThrowSitesAreAggregatedApart() {
+        tested.setMaxFullExceptionsPerInterval("1");
+        tested.setFingerprintFrames("1");
+
+        assertTrue(tested.process(new ExceptionTelemetry(new IllegalStateException("down"))));
+        assertTrue(tested.process(new ExceptionTelemetry(new IllegalStateException("down"))));
+    }
+
+    @Test
+    public void testNoSummaryWithoutDroppedExceptions() {
+        assertEquals(1, processThrownBySameLine(1, false));
+
+        tested.sendSummaries();
+
+        assertTrue(summaries.isEmpty());
+    }
+
+    @Test
+    public void testSummariesAndOtherTelemetriesAreNotAggregated() {
+        tested.setMaxFullExceptionsPerInterval("0");
+        assertTrue(tested.process(new TraceTelemetry("message")));
+        assertEquals(0, processThrownBySameLine(1, false));
+
+        tested.sendSummaries();
+
+        assertEquals(1, summaries.size());
+        Telemetry summary = summaries.get(0);
+        assertTrue(tested.process(summary));
+    }
+
+    @Test
+    public void testSummariesAreTrackedWithTheOwningConfiguration() {
+        final List<Telemetry> sent = new ArrayList<Telemetry>();
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey("owning-ikey");
+        configuration.setChannel(new TelemetryChannel() {
+            @Override
+            public boolean isDeveloperMode() {
+                return false;
+            }
+
+            @Override
+            public void setDeveloperMode(boolean value) {
+            }
+
+            @Override
+            public void send(Telemetry item) {
+                sent.add(item);
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void setSampler(TelemetrySampler telemetrySampler) {
+            }
+        });
+        ExceptionAggregationTelemetryProcessor owned = new ExceptionAggregationTelemetryProcessor();
+        owned.setConfiguration(configuration);
+        owned.setMaxFullExceptionsPerInterval("0");
+        owned.setFingerprintFrames("1");
+
+        owned.process(new ExceptionTelemetry(new IllegalStateException("down")));
+        owned.sendSummaries();
+
+        assertEquals(1, sent.size());
+        assertEquals("owning-ikey", sent.get(0).getContext().getInstrumentationKey());
+    }
+
+    // Only the top frame is used so the calls made from different lines of a test look the same
+    private int processThrownBySameLine(int times, boolean illegalArgument) {
+        tested.setFingerprintFrames("1");
+        int sentInFull = 0;
+        for (int i = 0; i < times; ++i) {
+            Exception exception = illegalArgument ? new IllegalArgumentException("invalid") : new IllegalStateException("down");
+            if (tested.process(new ExceptionTelemetry(exception))) {
+                ++sentInFull;
+            }
+        }
+        return sentInFull;
+    }
+}
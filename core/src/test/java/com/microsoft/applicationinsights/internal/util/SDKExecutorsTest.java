@@ -0,0 +1,230 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class SDKExecutorsTest {
+    @Test
+    public void testConcurrencyIsLimitedPerExecutor() throws InterruptedException {
+        ExecutorService tested = SDKExecutors.newLimitedExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.NORMAL, 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        try {
+            for (int i = 0; i < 3; ++i) {
+                tested.execute(() -> {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    concurrent.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, maxConcurrent.get());
+        } finally {
+            release.countDown();
+            ThreadPoolUtils.stop(tested, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testTasksOverTheQueueCapacityAreRejected() throws InterruptedException {
+        ExecutorService tested = SDKExecutors.newLimitedExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.NORMAL, 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            tested.execute(() -> {
+                running.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            tested.execute(() -> { });
+
+            try {
+                tested.execute(() -> { });
+                assertTrue("Expected the task to be rejected", false);
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        } finally {
+            release.countDown();
+            ThreadPoolUtils.stop(tested, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPeriodicTaskRunsUntilCancelled() throws InterruptedException {
+        ScheduledExecutorService tested = SDKExecutors.newScheduledExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.LOW, 1);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch threeRuns = new CountDownLatch(3);
+        try {
+            ScheduledFuture<?> future = tested.scheduleAtFixedRate(() -> {
+                runs.incrementAndGet();
+                threeRuns.countDown();
+            }, 0, 10, TimeUnit.MILLISECONDS);
+
+            assertTrue(threeRuns.await(5, TimeUnit.SECONDS));
+            assertTrue(future.cancel(false));
+            assertTrue(future.isCancelled());
+
+            Thread.sleep(50);
+            int afterCancel = runs.get();
+            Thread.sleep(100);
+            assertEquals(afterCancel, runs.get());
+        } finally {
+            ThreadPoolUtils.stop(tested, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testShutdownCancelsPeriodicTasksAndRunsDelayedOnes() throws InterruptedException {
+        ScheduledExecutorService tested = SDKExecutors.newScheduledExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.LOW);
+        CountDownLatch delayedRan = new CountDownLatch(1);
+        ScheduledFuture<?> periodic = tested.scheduleWithFixedDelay(() -> { }, 1, 1, TimeUnit.HOURS);
+        tested.schedule(delayedRan::countDown, 100, TimeUnit.MILLISECONDS);
+
+        tested.shutdown();
+        assertTrue(periodic.isCancelled());
+        assertFalse(tested.isTerminated());
+
+        assertTrue(tested.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, delayedRan.getCount());
+    }
+
+    @Test
+    public void testExecutorsAreStoppedIndependently() throws InterruptedException {
+        ScheduledExecutorService stopped = SDKExecutors.newScheduledExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.LOW);
+        ScheduledExecutorService tested = SDKExecutors.newScheduledExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.LOW);
+        try {
+            stopped.shutdownNow();
+            assertTrue(stopped.awaitTermination(1, TimeUnit.SECONDS));
+
+            CountDownLatch ran = new CountDownLatch(1);
+            tested.execute(ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            ThreadPoolUtils.stop(tested, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopTheExecutor() throws InterruptedException {
+        ExecutorService tested = SDKExecutors.newLimitedExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.HIGH, 1, 10);
+        try {
+            tested.execute(() -> {
+                throw new IllegalStateException("expected");
+            });
+            CountDownLatch ran = new CountDownLatch(1);
+            tested.execute(ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            ThreadPoolUtils.stop(tested, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBlockingTasksDoNotTakeTheSharedThreads() throws InterruptedException {
+        int blockingTasks = SDKExecutors.getNumberOfThreads() + 1;
+        ExecutorService blocking = SDKExecutors.newBlockingExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.HIGH, blockingTasks, 0, false);
+        ExecutorService shared = SDKExecutors.newLimitedExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.LOW, 1, 10);
+        CountDownLatch started = new CountDownLatch(blockingTasks);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < blockingTasks; ++i) {
+                blocking.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            CountDownLatch ran = new CountDownLatch(1);
+            shared.execute(ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            ThreadPoolUtils.stop(blocking, 1, TimeUnit.SECONDS);
+            ThreadPoolUtils.stop(shared, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBlockingExecutorRunsOnVirtualThreadsOnlyWhenSupported() throws InterruptedException {
+        if (!SDKExecutors.isVirtualThreadsSupported()) {
+            try {
+                SDKExecutors.newBlockingExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.HIGH, 1, 10, true);
+                assertTrue("Expected virtual threads to be refused", false);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            assertFalse(SDKExecutors.isVirtualThreadsEnabled());
+            return;
+        }
+
+        ExecutorService tested = SDKExecutors.newBlockingExecutor(SDKExecutorsTest.class, SDKExecutors.Priority.HIGH, 10, 10, true);
+        try {
+            CountDownLatch ranOnVirtualThread = new CountDownLatch(1);
+            tested.execute(() -> {
+                try {
+                    // Thread.isVirtual() is not there on Java 8
+                    if ((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())) {
+                        ranOnVirtualThread.countDown();
+                    }
+                } catch (ReflectiveOperationException e) {
+                    // counted as not virtual
+                }
+            });
+            assertTrue(ranOnVirtualThread.await(5, TimeUnit.SECONDS));
+        } finally {
+            ThreadPoolUtils.stop(tested, 1, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.microsoft.applicationinsights.telemetry;
 
+import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.microsoft.applicationinsights.extensibility.context.ContextTagKeys;
@@ -55,4 +57,68 @@ public class ContextTagsMapTests {
         assertEquals(customValue, map.get(customKey));
     }
 
+    @Test
+    public void serializedTagsAreReusedUntilModified() throws Exception {
+        map.put(ContextTagKeys.getKeys().getCloudRole(), "role");
+
+        SerializedTags serialized = map.getSerialized();
+        assertSame(serialized, map.getSerialized());
+        assertEquals("\"ai.cloud.role\":\"role\"", new String(serialized.getJson(), "UTF-8"));
+
+        map.put(ContextTagKeys.getKeys().getCloudRoleInstance(), "instance");
+        assertNotSame(serialized, map.getSerialized());
+    }
+
+    @Test
+    public void everyContextTagKeyIsAKnownTag() throws Exception {
+        int count = 0;
+        for (Method method : ContextTagKeys.class.getMethods()) {
+            if (method.getName().startsWith("get") && method.getReturnType() == String.class && method.getParameterTypes().length == 0) {
+                String key = (String) method.invoke(ContextTagKeys.getKeys());
+                ContextTag tag = ContextTag.of(key);
+                assertNotNull(key, tag);
+                assertEquals(key, tag.getKey());
+                ++count;
+            }
+        }
+        assertEquals(ContextTag.count(), count);
+    }
+
+    @Test
+    public void knownAndUnknownTagsAreStoredAndIterated() {
+        map.put("custom", "1");
+        map.put(ContextTagKeys.getKeys().getOperationId(), "id");
+        map.put(ContextTagKeys.getKeys().getCloudRole(), "role");
+
+        assertEquals(3, map.size());
+        assertEquals("1", map.get("custom"));
+        assertEquals("id", map.remove(ContextTagKeys.getKeys().getOperationId()));
+        assertNull(map.get(ContextTagKeys.getKeys().getOperationId()));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("custom", "1");
+        expected.put(ContextTagKeys.getKeys().getCloudRole(), "role");
+        assertEquals(expected, new HashMap<>(map));
+
+        for (Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getKey().equals("custom")) {
+                iterator.remove();
+            }
+        }
+        assertEquals(1, map.size());
+        assertFalse(map.containsKey("custom"));
+    }
+
+    @Test
+    public void conditionalOperationsOnKnownTags() {
+        String key = ContextTagKeys.getKeys().getUserId();
+        assertNull(map.putIfAbsent(key, "a"));
+        assertEquals("a", map.putIfAbsent(key, "b"));
+        assertFalse(map.replace(key, "b", "c"));
+        assertTrue(map.replace(key, "a", "c"));
+        assertEquals("c", map.replace(key, "d"));
+        assertFalse(map.remove(key, "c"));
+        assertTrue(map.remove(key, "d"));
+        assertTrue(map.isEmpty());
+    }
 }
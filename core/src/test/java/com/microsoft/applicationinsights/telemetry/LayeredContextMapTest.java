@@ -0,0 +1,155 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class LayeredContextMapTest {
+    @Test
+    public void testLocalValuesWinOverSharedOnes() {
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.put("a", "local");
+        tested.setShared(shared("a", "shared", "b", "shared"));
+
+        assertEquals("local", tested.get("a"));
+        assertEquals("shared", tested.get("b"));
+        assertEquals(2, tested.size());
+        assertEquals(expected("a", "local", "b", "shared"), new HashMap<String, String>(tested));
+    }
+
+    @Test
+    public void testRemovedSharedValueIsHiddenWithoutChangingTheSharedLayer() {
+        Map<String, String> shared = shared("a", "1", "b", "2");
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.setShared(shared);
+
+        assertEquals("1", tested.remove("a"));
+
+        assertNull(tested.get("a"));
+        assertFalse(tested.containsKey("a"));
+        assertEquals(1, tested.size());
+        assertEquals("1", shared.get("a"));
+
+        assertNull(tested.putIfAbsent("a", "3"));
+        assertEquals("3", tested.get("a"));
+    }
+
+    @Test
+    public void testAllSharedValuesRemovedIsEmpty() {
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.setShared(shared("a", "1"));
+        assertFalse(tested.isEmpty());
+
+        tested.remove("a");
+
+        assertTrue(tested.isEmpty());
+        assertEquals(0, tested.size());
+    }
+
+    @Test
+    public void testConditionalOperationsSeeSharedValues() {
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.setShared(shared("a", "1", "b", "2", "c", "3"));
+
+        assertEquals("1", tested.putIfAbsent("a", "other"));
+        assertFalse(tested.replace("b", "other", "4"));
+        assertTrue(tested.replace("b", "2", "4"));
+        assertEquals("3", tested.replace("c", "5"));
+        assertFalse(tested.remove("a", "other"));
+        assertTrue(tested.remove("a", "1"));
+
+        assertEquals(expected("b", "4", "c", "5"), new HashMap<String, String>(tested));
+    }
+
+    @Test
+    public void testIteratorGoesThroughBothLayersAndWritesThrough() {
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.put("a", "local");
+        tested.setShared(shared("a", "shared", "b", "2", "c", "3", "d", "4"));
+
+        int count = 0;
+        for (Iterator<Map.Entry<String, String>> iterator = tested.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, String> entry = iterator.next();
+            ++count;
+            if (entry.getKey().equals("b")) {
+                iterator.remove();
+            } else if (entry.getKey().equals("c")) {
+                entry.setValue("changed");
+            }
+        }
+
+        assertEquals(4, count);
+        assertEquals(expected("a", "local", "c", "changed", "d", "4"), new HashMap<String, String>(tested));
+    }
+
+    @Test
+    public void testPreviousSharedLayerBecomesLocal() {
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.setShared(shared("a", "1", "b", "2"));
+        tested.remove("b");
+
+        tested.setShared(shared("a", "other", "b", "other", "c", "3"));
+
+        assertEquals(expected("a", "1", "b", "other", "c", "3"), new HashMap<String, String>(tested));
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilModified() {
+        LayeredContextMap tested = new LayeredContextMap();
+        tested.put("a", "1");
+
+        Map<String, String> snapshot = tested.getSnapshot();
+        assertSame(snapshot, tested.getSnapshot());
+        assertEquals(expected("a", "1"), snapshot);
+
+        tested.put("b", "2");
+        assertNotSame(snapshot, tested.getSnapshot());
+        assertEquals(expected("a", "1"), snapshot);
+
+        Map<String, String> modified = tested.getSnapshot();
+        tested.entrySet().iterator().next().setValue("changed");
+        assertNotSame(modified, tested.getSnapshot());
+    }
+
+    private static Map<String, String> shared(String... keysAndValues) {
+        return expected(keysAndValues);
+    }
+
+    private static Map<String, String> expected(String... keysAndValues) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+}
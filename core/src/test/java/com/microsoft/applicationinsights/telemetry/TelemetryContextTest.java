@@ -21,6 +21,7 @@
 
 package com.microsoft.applicationinsights.telemetry;
 
+import com.microsoft.applicationinsights.extensibility.context.ContextTagKeys;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -72,4 +73,47 @@ public final class TelemetryContextTest {
 
         Assert.assertEquals(TEST_IKEY, contextToInitialize.getInstrumentationKey());
     }
+
+    @Test
+    public void testInitializedContextSeesSourceValuesAndKeepsItsOwn() {
+        TelemetryContext source = new TelemetryContext();
+        source.getProperties().put("shared", "source");
+        source.getProperties().put("overridden", "source");
+        source.getCloud().setRole("role");
+
+        TelemetryContext contextToInitialize = new TelemetryContext();
+        contextToInitialize.getProperties().put("overridden", "item");
+        contextToInitialize.initialize(source);
+
+        assertEquals("source", contextToInitialize.getProperties().get("shared"));
+        assertEquals("item", contextToInitialize.getProperties().get("overridden"));
+        assertEquals("role", contextToInitialize.getTags().get(ContextTagKeys.getKeys().getCloudRole()));
+    }
+
+    @Test
+    public void testInitializedContextIsNotChangedByTheSourceAndDoesNotChangeIt() {
+        TelemetryContext source = new TelemetryContext();
+        source.getProperties().put("key", "before");
+
+        TelemetryContext contextToInitialize = new TelemetryContext();
+        contextToInitialize.initialize(source);
+        source.getProperties().put("key", "after");
+        contextToInitialize.getProperties().remove("key");
+        contextToInitialize.getProperties().put("other", "item");
+
+        assertNull(contextToInitialize.getProperties().get("key"));
+        assertEquals("after", source.getProperties().get("key"));
+        assertNull(source.getProperties().get("other"));
+    }
+
+    @Test
+    public void testSharedPropertiesAreSerialized() {
+        TelemetryContext source = new TelemetryContext();
+        source.getProperties().put("shared", "value");
+
+        EventTelemetry telemetry = new EventTelemetry("event");
+        telemetry.getContext().initialize(source);
+
+        assertTrue(telemetry.toString().contains("\"shared\":\"value\""));
+    }
 }
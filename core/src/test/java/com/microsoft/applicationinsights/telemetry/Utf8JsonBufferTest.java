@@ -0,0 +1,230 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.microsoft.applicationinsights.internal.schemav2.SeverityLevel;
+
+/**
+ * The buffer is verified against the {@link java.io.Writer} based serializer, the JSON must be the same byte for byte.
+ */
+public final class Utf8JsonBufferTest {
+    private final static class Values implements JsonSerializable {
+        private final String text;
+        private final int maxLength;
+        private final Map<String, Object> map = new LinkedHashMap<String, Object>();
+        private List<Object> list;
+        private JsonSerializable nested;
+        private double d;
+        private long l;
+        private Duration duration;
+
+        private Values(String text, int maxLength) {
+            this.text = text;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public void serialize(JsonTelemetryDataSerializer serializer) throws IOException {
+            serializer.writeRequired("text", text, maxLength);
+            serializer.write("empty", "", 10);
+            serializer.write("d", d);
+            serializer.write("l", l);
+            serializer.write("severity", SeverityLevel.Warning);
+            serializer.write("flag", Boolean.TRUE);
+            serializer.write("duration", duration);
+            serializer.write("when", new Date(1500000000000L));
+            serializer.write("map", map);
+            serializer.write("list", list);
+            serializer.write("nested", nested);
+        }
+    }
+
+    private final static class Empty implements JsonSerializable {
+        @Override
+        public void serialize(JsonTelemetryDataSerializer serializer) {
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        assertSameJson(new Values("plain", 100));
+        assertSameJson(new Values("q\"uo\\te\b\f\n\r\t/", 100));
+        assertSameJson(new Values("control\u0001\u001f\u007f\u0085", 100));
+        assertSameJson(new Values("non ascii \u00e9\u20ac\ud83d\ude00", 100));
+        assertSameJson(new Values("unpaired \ud83d and \ude00", 100));
+        assertSameJson(new Values("stops at \uffff the end marker", 100));
+        assertSameJson(new Values(null, 100));
+    }
+
+    @Test
+    public void testStringsAtTheMaximumLength() throws IOException {
+        for (int maxLength = 3; maxLength < 12; ++maxLength) {
+            assertSameJson(new Values("abcdefgh\"ij", maxLength));
+            assertSameJson(new Values("abcdef\u0001\u0002", maxLength));
+            assertSameJson(new Values("abcdef\ud83d\ude00\ud83d\ude00", maxLength));
+        }
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        for (double d : new double[] {0.0, -0.0, 1.0, -42.0, 9999999.0, 1e7, 1e-3, 0.1, 123.456, -1.5e300, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE}) {
+            Values values = new Values("d", 10);
+            values.d = d;
+            assertSameJson(values);
+        }
+        for (long l : new long[] {0, 7, -7, 10, 100, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Values values = new Values("l", 10);
+            values.l = l;
+            assertSameJson(values);
+        }
+    }
+
+    @Test
+    public void testDurations() throws IOException {
+        for (Duration duration : new Duration[] {new Duration(0), new Duration(5), new Duration(3723004), new Duration(2, 3, 4, 5, 6), new Duration(123, 0, 0, 0, 0)}) {
+            Values values = new Values("duration", 20);
+            values.duration = duration;
+            assertSameJson(values);
+        }
+    }
+
+    @Test
+    public void testMapsListsAndNestedObjects() throws IOException {
+        Values values = new Values("outer", 20);
+        values.map.put("key", "value");
+        values.map.put("  trimmed  ", 1);
+        values.map.put("   ", 2.5);
+        values.map.put("k\"ey", true);
+        values.map.put("nested", new Values("inner", 20));
+        values.map.put("empty", new Empty());
+        values.list = Arrays.<Object>asList("a", 1, 2L, 3.5, 'c', 1.5f, new Empty(), new Values("item", 20));
+        values.nested = new Values("nested", 20);
+        assertSameJson(values);
+
+        values.list = Arrays.asList();
+        values.nested = new Empty();
+        assertSameJson(values);
+    }
+
+    @Test
+    public void testTelemetries() throws IOException {
+        EventTelemetry event = new EventTelemetry("event");
+        event.getProperties().put("property", "value");
+        event.getMetrics().put("metric", 1.5);
+        event.getContext().getOperation().setId("operation");
+        event.getContext().getCloud().setRole("role");
+        event.setTimestamp(new Date(1500000000000L));
+        assertSameJson(event);
+
+        assertSameJson(new RequestTelemetry("GET /", new Date(1500000000000L), 1234, "200", true));
+        assertSameJson(new RemoteDependencyTelemetry("dependency", "SELECT 1", new Duration(17), false));
+        assertSameJson(new TraceTelemetry("trace \u00e9", com.microsoft.applicationinsights.telemetry.SeverityLevel.Error));
+        assertSameJson(new MetricTelemetry("metric", 0.25));
+        assertSameJson(new PageViewTelemetry("page"));
+        assertSameJson(new ExceptionTelemetry(new IllegalStateException("failure", new RuntimeException("cause"))));
+    }
+
+    @Test
+    public void testSharedTagsAreCopiedWhileTheItemStillHasThem() throws IOException {
+        TelemetryContext shared = new TelemetryContext();
+        shared.getCloud().setRole("role");
+        shared.getCloud().setRoleInstance("instance");
+        shared.getInternal().setSdkVersion("java:1.0");
+
+        EventTelemetry event = new EventTelemetry("event");
+        event.getContext().initialize(shared);
+        event.getContext().getOperation().setId("operation");
+        assertSameTags(event, 4);
+
+        EventTelemetry overridden = new EventTelemetry("overridden");
+        overridden.getContext().initialize(shared);
+        overridden.getContext().getCloud().setRole("another role");
+        assertSameTags(overridden, 3);
+
+        shared.getDevice().setId("device");
+        EventTelemetry afterChange = new EventTelemetry("after change");
+        afterChange.getContext().initialize(shared);
+        assertSameTags(afterChange, 4);
+    }
+
+    @Test
+    public void testBufferIsReused() throws IOException {
+        Utf8JsonBuffer buffer = new Utf8JsonBuffer(16);
+        for (int i = 0; i < 3; ++i) {
+            buffer.reset();
+            JsonTelemetryDataSerializer serializer = new JsonTelemetryDataSerializer(buffer);
+            new Values("text " + i, 100).serialize(serializer);
+            serializer.close();
+
+            assertEquals(toJsonWithWriter(new Values("text " + i, 100)), buffer.toString());
+        }
+    }
+
+    private static void assertSameJson(JsonSerializable value) throws IOException {
+        Utf8JsonBuffer buffer = new Utf8JsonBuffer();
+        JsonTelemetryDataSerializer serializer = new JsonTelemetryDataSerializer(buffer);
+        value.serialize(serializer);
+        serializer.close();
+
+        // Compared as bytes, the writer keeps unpaired surrogates that are only replaced once encoded
+        String expected = toJsonWithWriter(value);
+        assertArrayEquals(expected, expected.getBytes(StandardCharsets.UTF_8), buffer.toByteArray());
+    }
+
+    // The order of the tags may differ, their content may not
+    private static void assertSameTags(Telemetry telemetry, int expectedNumberOfTags) throws IOException {
+        Utf8JsonBuffer buffer = new Utf8JsonBuffer();
+        JsonTelemetryDataSerializer serializer = new JsonTelemetryDataSerializer(buffer);
+        telemetry.serialize(serializer);
+        serializer.close();
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<?, ?> expected = mapper.readValue(toJsonWithWriter(telemetry), Map.class);
+        Map<?, ?> actual = mapper.readValue(buffer.toString(), Map.class);
+        assertEquals(expected, actual);
+        assertEquals(expectedNumberOfTags, ((Map<?, ?>) actual.get("tags")).size());
+    }
+
+    private static String toJsonWithWriter(JsonSerializable value) throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonTelemetryDataSerializer serializer = new JsonTelemetryDataSerializer(writer);
+        value.serialize(serializer);
+        serializer.close();
+        return writer.toString();
+    }
+}
@@ -25,6 +25,7 @@ import com.microsoft.applicationinsights.web.internal.correlation.tracecontext.T
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.HttpServletRequest;
 
+import com.microsoft.applicationinsights.internal.channel.samplingV2.SamplingDecision;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
 import com.microsoft.applicationinsights.web.internal.cookies.SessionCookie;
 import com.microsoft.applicationinsights.web.internal.cookies.UserCookie;
@@ -43,6 +44,7 @@ public class RequestTelemetryContext {
     private final CorrelationContext correlationContext;
     private Tracestate tracestate;
     private int traceflag;
+    private SamplingDecision samplingDecision;
     private final AtomicInteger currentChildId = new AtomicInteger();
 
     /**
@@ -82,6 +84,26 @@ public class RequestTelemetryContext {
         this.traceflag = traceflag;
     }
 
+    /**
+     * Gets the sampling decision of the request's operation.
+     * @return The sampling decision, null until the correlation is resolved.
+     */
+    public SamplingDecision getSamplingDecision() {
+        return samplingDecision;
+    }
+
+    /**
+     * Sets the sampling decision of the request's operation, computed once when the request starts.
+     * The decision is bound to the current thread if this context is.
+     * @param samplingDecision The sampling decision.
+     */
+    public void setSamplingDecision(SamplingDecision samplingDecision) {
+        this.samplingDecision = samplingDecision;
+        if (ThreadContext.getRequestTelemetryContext() == this) {
+            SamplingDecision.bind(samplingDecision);
+        }
+    }
+
     /**
      * Gets the correlation context associated with the request
      * @return The correlation context map.
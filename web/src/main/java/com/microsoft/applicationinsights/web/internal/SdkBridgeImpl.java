@@ -23,6 +23,7 @@ package com.microsoft.applicationinsights.web.internal;
 
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.internal.agent.AbstractSdkBridge;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.SamplingDecision;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
 import com.microsoft.applicationinsights.web.internal.correlation.TelemetryCorrelationUtils;
 import com.microsoft.applicationinsights.web.internal.correlation.TraceContextCorrelation;
@@ -52,6 +53,12 @@ class SdkBridgeImpl extends AbstractSdkBridge<RequestTelemetryContext> {
         }
     }
 
+    @Override
+    public boolean isSampledIn(RequestTelemetryContext requestTelemetryContext) {
+        SamplingDecision samplingDecision = requestTelemetryContext.getSamplingDecision();
+        return samplingDecision == null || samplingDecision.isSampledIn();
+    }
+
     @Override
     public String generateChildDependencyTarget(String requestContext, boolean w3c) {
         if (w3c) {
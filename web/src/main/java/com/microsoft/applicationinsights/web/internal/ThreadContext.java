@@ -21,6 +21,8 @@
 
 package com.microsoft.applicationinsights.web.internal;
 
+import com.microsoft.applicationinsights.internal.channel.samplingV2.SamplingDecision;
+
 /**
  * Created by yonisha on 2/16/2015.
  */
@@ -37,6 +39,7 @@ public class ThreadContext {
      */
     public static void setRequestTelemetryContext(RequestTelemetryContext telemetryContext) {
         threadLocal.set(telemetryContext);
+        SamplingDecision.bind(telemetryContext != null ? telemetryContext.getSamplingDecision() : null);
     }
 
     /**
@@ -52,5 +55,6 @@ public class ThreadContext {
      */
     public static void remove() {
         threadLocal.remove();
+        SamplingDecision.unbind();
     }
 }
\ No newline at end of file
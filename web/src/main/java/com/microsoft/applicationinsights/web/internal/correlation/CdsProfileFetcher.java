@@ -29,7 +29,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -39,9 +38,11 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.channel.common.HttpClientFactory;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.util.PeriodicTaskPool;
+import com.microsoft.applicationinsights.internal.util.SDKExecutors;
 
 import reactor.core.publisher.Mono;
 
@@ -57,8 +58,11 @@ public class CdsProfileFetcher implements AppProfileFetcher, ApplicationIdResolv
     /* Visible for Testing */ final ConcurrentMap<String, Integer> failureCounters;
 
     private final PeriodicTaskPool taskThreadPool;
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final ExecutorService executorService = SDKExecutors.newScheduledExecutor(CdsProfileFetcher.class, SDKExecutors.Priority.LOW);
     private final CdsRetryPolicy retryPolicy;
+
+    // Shares the connection pool of the ingestion and QuickPulse clients
+    private final WebClient httpClient;
     
     // for testing purpose
     private Function<String, Future<String>> futureTaskFactory = this::createFetchTask;
@@ -73,6 +77,7 @@ public class CdsProfileFetcher implements AppProfileFetcher, ApplicationIdResolv
     public CdsProfileFetcher(CdsRetryPolicy retryPolicy) {
         taskThreadPool = new PeriodicTaskPool(1, CdsProfileFetcher.class.getSimpleName());
         this.retryPolicy = retryPolicy;
+        this.httpClient = WebClient.builder().clientConnector(HttpClientFactory.INSTANCE.getConnector()).build();
 
         /*
         RequestConfig requestConfig = RequestConfig.custom()
@@ -206,8 +211,9 @@ public class CdsProfileFetcher implements AppProfileFetcher, ApplicationIdResolv
     private Future<String> createFetchTask(String endpoint) {
     	CompletableFuture<String> future = new CompletableFuture<>();
     	
-    	Mono<String> appId = WebClient.create(endpoint)
+    	Mono<String> appId = httpClient
     		.get()
+    		.uri(endpoint)
     		.exchange()
     		.flatMap( mono -> mono.bodyToMono(String.class) )
     		.doOnError( error -> future.completeExceptionally(error) );
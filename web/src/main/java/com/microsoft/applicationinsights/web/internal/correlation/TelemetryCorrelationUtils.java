@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.web.internal.correlation;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.SamplingDecision;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
 import com.microsoft.applicationinsights.web.internal.RequestTelemetryContext;
@@ -91,6 +92,13 @@ public class TelemetryCorrelationUtils {
             requestTelemetry.getContext().getOperation().setId(rootId);
             requestTelemetry.getContext().getOperation().setParentId(parentId);
 
+            // Decide on sampling once for the whole operation
+            RequestTelemetryContext context = ThreadContext.getRequestTelemetryContext();
+            if (context != null) {
+                context.setSamplingDecision(SamplingDecision.forOperation(rootId,
+                    SamplingDecision.getSamplingPercentage(TelemetryConfiguration.getActive())));
+            }
+
             // let us resolve the context now.
             resolveCorrelationContext(request, requestTelemetry);
 
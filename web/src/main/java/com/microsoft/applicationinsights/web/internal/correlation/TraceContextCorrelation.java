@@ -1,6 +1,7 @@
 package com.microsoft.applicationinsights.web.internal.correlation;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.SamplingDecision;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
 import com.microsoft.applicationinsights.web.internal.RequestTelemetryContext;
@@ -83,8 +84,16 @@ public class TraceContextCorrelation {
                 requestTelemetry.getContext().getOperation().setParentId(incomingTraceparent.getSpanId());
             }
 
-            // Propagate trace-flags
-            ThreadContext.getRequestTelemetryContext().setTraceflag(processedTraceParent.getTraceFlags());
+            // Decide on sampling once for the whole operation, honoring the caller's decision if any
+            double samplingPercentage = SamplingDecision.getSamplingPercentage(TelemetryConfiguration.getActive());
+            SamplingDecision samplingDecision = incomingTraceparent != null
+                ? SamplingDecision.forOperation(processedTraceParent.getTraceId(), incomingTraceparent.isSampled(), samplingPercentage)
+                : SamplingDecision.forOperation(processedTraceParent.getTraceId(), samplingPercentage);
+            ThreadContext.getRequestTelemetryContext().setSamplingDecision(samplingDecision);
+
+            // Propagate trace-flags, the sampled flag tells the callees about the decision
+            ThreadContext.getRequestTelemetryContext().setTraceflag(
+                Traceparent.withSampledFlag(processedTraceParent.getTraceFlags(), samplingDecision.isSampledIn()));
 
             String appId = getAppId();
 
@@ -12,6 +12,11 @@ import java.util.concurrent.ThreadLocalRandom;
 // @Experimental
 public class Traceparent {
 
+    /**
+     * The trace-flags bit telling that the caller may have recorded the trace
+     */
+    public static final int SAMPLED_FLAG = 0x01;
+
     /**
      * Version number between range [0,255] inclusive
      */
@@ -72,6 +77,22 @@ public class Traceparent {
         return spanId;
     }
 
+    /**
+     * Gets the sampled flag of the trace-flags.
+     * @return True if the caller may have recorded the trace.
+     */
+    public boolean isSampled() {
+        return (traceFlags & SAMPLED_FLAG) != 0;
+    }
+
+    /**
+     * Sets or clears the sampled flag of the given trace-flags.
+     * @return The trace-flags with the sampled flag set according to the given decision.
+     */
+    public static int withSampledFlag(int traceFlags, boolean sampled) {
+        return sampled ? traceFlags | SAMPLED_FLAG : traceFlags & ~SAMPLED_FLAG;
+    }
+
     /**
      * Validates the given input based on W3C specifications.
      */
@@ -108,6 +108,17 @@ public class TraceparentTests {
         Traceparent t1 = Traceparent.fromString(invalidTraceparent);
     }
 
+    @Test
+    public void sampledFlagIsReadAndWritten() {
+        String traceId = Traceparent.randomHex(16);
+        String spanId = Traceparent.randomHex(8);
+        Assert.assertTrue(Traceparent.fromString(String.format("00-%s-%s-01", traceId, spanId)).isSampled());
+        Assert.assertFalse(Traceparent.fromString(String.format("00-%s-%s-00", traceId, spanId)).isSampled());
+
+        Assert.assertEquals(0x03, Traceparent.withSampledFlag(0x02, true));
+        Assert.assertEquals(0x02, Traceparent.withSampledFlag(0x03, false));
+    }
+
     @Test
     public void returnsNullTraceParentWhenTryingToCreateFromEmptyString() {
         Traceparent t1 = Traceparent.fromString("");